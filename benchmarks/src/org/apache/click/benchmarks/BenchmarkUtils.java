@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.benchmarks;
+
+import java.io.File;
+
+import org.apache.click.control.Checkbox;
+import org.apache.click.control.Column;
+import org.apache.click.control.Form;
+import org.apache.click.control.Option;
+import org.apache.click.control.Select;
+import org.apache.click.control.Submit;
+import org.apache.click.control.Table;
+import org.apache.click.control.TextArea;
+import org.apache.click.control.TextField;
+
+/**
+ * Provides the controls and web application directory shared by the
+ * benchmarks.
+ */
+public final class BenchmarkUtils {
+
+    /**
+     * The system property of the benchmark web application directory:
+     * &nbsp; <tt>click.benchmarks.webapp</tt>.
+     */
+    public static final String WEBAPP_PROPERTY = "click.benchmarks.webapp";
+
+    /** The number of customer rows of the benchmark table: &nbsp; <tt>500</tt>. */
+    public static final int TABLE_ROWS = 500;
+
+    /** The page size of the benchmark table: &nbsp; <tt>20</tt>. */
+    public static final int TABLE_PAGE_SIZE = 20;
+
+    private BenchmarkUtils() {
+    }
+
+    /**
+     * Return the absolute path of the benchmark web application directory.
+     * The directory is set by the <tt>click.benchmarks.webapp</tt> system
+     * property, and defaults to <tt>benchmarks/web</tt> relative to the
+     * working directory.
+     *
+     * @return the absolute path of the benchmark web application directory
+     */
+    public static String getWebappPath() {
+        String path = System.getProperty(WEBAPP_PROPERTY, "benchmarks/web");
+        return new File(path).getAbsolutePath();
+    }
+
+    /**
+     * Create the customer table, with sortable columns and a paginator.
+     *
+     * @param name the table name
+     * @return the customer table
+     */
+    public static Table createCustomerTable(String name) {
+        Table table = new Table(name);
+        table.setClass(Table.CLASS_ITS);
+        table.setPageSize(TABLE_PAGE_SIZE);
+        table.setShowBanner(true);
+        table.setSortable(true);
+
+        table.addColumn(new Column("id"));
+        table.addColumn(new Column("name"));
+
+        Column column = new Column("email");
+        column.setAutolink(true);
+        table.addColumn(column);
+
+        column = new Column("holdings");
+        column.setFormat("${0,number,#,##0.00}");
+        column.setTextAlign("right");
+        table.addColumn(column);
+
+        column = new Column("dateJoined");
+        column.setFormat("{0,date,medium}");
+        table.addColumn(column);
+
+        table.addColumn(new Column("address.city", "City"));
+
+        return table;
+    }
+
+    /**
+     * Create the customer form, with text, checkbox, select and text area
+     * fields.
+     *
+     * @param name the form name
+     * @return the customer form
+     */
+    public static Form createCustomerForm(String name) {
+        Form form = new Form(name);
+
+        TextField nameField = new TextField("name", true);
+        nameField.setMinLength(3);
+        form.add(nameField);
+
+        form.add(new TextField("email", true));
+        form.add(new TextField("holdings"));
+        form.add(new Checkbox("active"));
+
+        Select state = new Select("address.state", "State");
+        state.add(new Option("ACT"));
+        state.add(new Option("NSW"));
+        state.add(new Option("NT"));
+        state.add(new Option("QLD"));
+        state.add(new Option("SA"));
+        state.add(new Option("TAS"));
+        state.add(new Option("VIC"));
+        state.add(new Option("WA"));
+        form.add(state);
+
+        form.add(new TextArea("notes"));
+
+        form.add(new Submit("ok", "  OK  "));
+
+        return form;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.click.util.ClickUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the {@link ClickUtils#encode(Object)} and
+ * {@link ClickUtils#decode(String)} serialization of a customer, as used to
+ * store page and control state in request parameters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ClickUtilsBenchmark {
+
+    private Customer customer;
+
+    private String encoded;
+
+    /**
+     * Create the customer and its encoded form.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        customer = Customer.createCustomers(1).get(0);
+        encoded = ClickUtils.encode(customer);
+    }
+
+    /**
+     * Benchmark encoding a customer.
+     *
+     * @return the encoded customer
+     * @throws IOException if an I/O error occurs
+     */
+    @Benchmark
+    public String encode() throws IOException {
+        return ClickUtils.encode(customer);
+    }
+
+    /**
+     * Benchmark decoding a customer.
+     *
+     * @return the decoded customer
+     * @throws IOException if an I/O error occurs
+     * @throws ClassNotFoundException if the customer class is not found
+     */
+    @Benchmark
+    public Object decode() throws IOException, ClassNotFoundException {
+        return ClickUtils.decode(encoded);
+    }
+}
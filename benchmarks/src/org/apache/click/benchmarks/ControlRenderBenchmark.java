@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.click.MockContext;
+import org.apache.click.control.Form;
+import org.apache.click.control.Table;
+import org.apache.click.util.ClickUtils;
+import org.apache.commons.io.output.NullWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the rendering of a Table and a Form, outside of a request cycle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ControlRenderBenchmark {
+
+    private Table table;
+
+    private Form form;
+
+    private NullWriter writer;
+
+    /**
+     * Create the mock context and the controls to render.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        MockContext.initContext("/table.htm");
+
+        List<Customer> customers = Customer.createCustomers(BenchmarkUtils.TABLE_ROWS);
+
+        table = BenchmarkUtils.createCustomerTable("table");
+        table.setRowList(customers);
+        table.setSortedColumn("name");
+
+        form = BenchmarkUtils.createCustomerForm("form");
+        form.copyFrom(customers.get(1));
+
+        writer = new NullWriter();
+    }
+
+    /**
+     * Benchmark rendering the first page of the customer table to a String.
+     *
+     * @return the rendered table
+     */
+    @Benchmark
+    public String renderTable() {
+        return table.toString();
+    }
+
+    /**
+     * Benchmark rendering the first page of the customer table to a Writer.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Benchmark
+    public void renderTableToWriter() throws IOException {
+        ClickUtils.renderControl(table, writer);
+    }
+
+    /**
+     * Benchmark rendering the customer form to a String.
+     *
+     * @return the rendered form
+     */
+    @Benchmark
+    public String renderForm() {
+        return form.toString();
+    }
+
+    /**
+     * Benchmark rendering the customer form to a Writer.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Benchmark
+    public void renderFormToWriter() throws IOException {
+        ClickUtils.renderControl(form, writer);
+    }
+}
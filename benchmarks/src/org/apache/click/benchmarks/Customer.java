@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.benchmarks;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Provides a customer value object for the benchmark pages and controls.
+ */
+public class Customer implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Integer id;
+    private String name;
+    private String email;
+    private Double holdings;
+    private Date dateJoined;
+    private boolean active;
+    private Address address = new Address();
+
+    // Public Methods ---------------------------------------------------------
+
+    /**
+     * Create the given number of customers with sample data.
+     *
+     * @param count the number of customers to create
+     * @return the list of customers
+     */
+    public static List<Customer> createCustomers(int count) {
+        List<Customer> customers = new ArrayList<Customer>(count);
+        long time = 1262304000000L;
+        for (int i = 0; i < count; i++) {
+            Customer customer = new Customer();
+            customer.setId(new Integer(i));
+            customer.setName("Customer " + i);
+            customer.setEmail("customer" + i + "@example.com");
+            customer.setHoldings(new Double(i * 1234.56));
+            customer.setDateJoined(new Date(time + i * 86400000L));
+            customer.setActive(i % 3 != 0);
+            customer.getAddress().setCity("City " + (i % 20));
+            customer.getAddress().setState("NSW");
+            customers.add(customer);
+        }
+        return customers;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public Double getHoldings() {
+        return holdings;
+    }
+
+    public void setHoldings(Double holdings) {
+        this.holdings = holdings;
+    }
+
+    public Date getDateJoined() {
+        return dateJoined;
+    }
+
+    public void setDateJoined(Date dateJoined) {
+        this.dateJoined = dateJoined;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+
+    public Address getAddress() {
+        return address;
+    }
+
+    public void setAddress(Address address) {
+        this.address = address;
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Provides a customer address value object.
+     */
+    public static class Address implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String city;
+        private String state;
+
+        public String getCity() {
+            return city;
+        }
+
+        public void setCity(String city) {
+            this.city = city;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.benchmarks;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.click.Control;
+import org.apache.click.control.Table;
+import org.apache.click.util.MessagesMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link MessagesMap} creation and lookups of the Table control
+ * messages, as performed by each control rendered in a request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MessagesMapBenchmark {
+
+    private Map<String, String> messages;
+
+    /**
+     * Create and load the Table messages map.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        messages = createMessages();
+        messages.get("table-first-label");
+    }
+
+    /**
+     * Benchmark looking up a message of a loaded messages map.
+     *
+     * @return the message value
+     */
+    @Benchmark
+    public String get() {
+        return messages.get("table-first-label");
+    }
+
+    /**
+     * Benchmark looking up a key which is not defined.
+     *
+     * @return true if the key is defined
+     */
+    @Benchmark
+    public boolean containsMissingKey() {
+        return messages.containsKey("table-default-class");
+    }
+
+    /**
+     * Benchmark creating a messages map and looking up a message, as
+     * performed for each control instance.
+     *
+     * @return the message value
+     */
+    @Benchmark
+    public String createAndGet() {
+        return createMessages().get("table-first-label");
+    }
+
+    private static Map<String, String> createMessages() {
+        return new MessagesMap(Table.class, Control.CONTROL_MESSAGES, Locale.ENGLISH);
+    }
+}
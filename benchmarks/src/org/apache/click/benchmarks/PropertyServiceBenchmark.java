@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletContext;
+
+import org.apache.click.MockContext;
+import org.apache.click.control.Checkbox;
+import org.apache.click.control.Field;
+import org.apache.click.control.FieldSet;
+import org.apache.click.control.Form;
+import org.apache.click.control.HiddenField;
+import org.apache.click.control.TextField;
+import org.apache.click.service.CompiledPropertyService;
+import org.apache.click.service.ConfigService;
+import org.apache.click.service.MVELPropertyService;
+import org.apache.click.service.OGNLPropertyService;
+import org.apache.click.service.PropertyService;
+import org.apache.click.util.ContainerUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks copying a large form to customer objects with
+ * {@link ContainerUtils#copyContainerToObject(org.apache.click.control.Container, Object, List)}
+ * for each of the {@link OGNLPropertyService}, {@link MVELPropertyService} and
+ * {@link CompiledPropertyService} property services.
+ * <p/>
+ * The form contains a field set of typed, nested and boolean customer fields
+ * for each of {@link #CUSTOMERS} customers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PropertyServiceBenchmark {
+
+    /** The number of customer field sets of the form: &nbsp; <tt>10</tt>. */
+    public static final int CUSTOMERS = 10;
+
+    /** The property service to benchmark. */
+    @Param({"ognl", "mvel", "compiled"})
+    public String service;
+
+    private Form form;
+
+    private List<FieldSet> fieldSets;
+
+    private List<List<Field>> fieldLists;
+
+    /**
+     * Create the mock context, the property service and the form to copy.
+     *
+     * @throws Exception if the property service could not be initialized
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        MockContext context = MockContext.initContext("/form.htm");
+
+        ServletContext servletContext = context.getServletContext();
+        PropertyService propertyService = createPropertyService();
+        propertyService.onInit(servletContext);
+
+        ConfigService configService = (ConfigService)
+            servletContext.getAttribute(ConfigService.CONTEXT_NAME);
+        servletContext.setAttribute(ConfigService.CONTEXT_NAME,
+            createConfigService(configService, propertyService));
+
+        List<Customer> customers = Customer.createCustomers(CUSTOMERS);
+
+        form = new Form("form");
+        fieldSets = new ArrayList<FieldSet>(CUSTOMERS);
+        fieldLists = new ArrayList<List<Field>>(CUSTOMERS);
+
+        for (int i = 0; i < CUSTOMERS; i++) {
+            FieldSet fieldSet = createCustomerFieldSet("customer" + i, customers.get(i));
+            form.add(fieldSet);
+            fieldSets.add(fieldSet);
+            fieldLists.add(ContainerUtils.getInputFields(fieldSet));
+        }
+
+        // Compile the property paths before the warmup iterations
+        copyForm();
+    }
+
+    /**
+     * Benchmark copying each customer field set of the form to a new
+     * customer.
+     *
+     * @return the list of customers
+     */
+    @Benchmark
+    public List<Customer> copyForm() {
+        List<Customer> customers = new ArrayList<Customer>(CUSTOMERS);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            Customer customer = new Customer();
+            ContainerUtils.copyContainerToObject(fieldSets.get(i), customer,
+                fieldLists.get(i));
+            customers.add(customer);
+        }
+        return customers;
+    }
+
+    // Private Methods --------------------------------------------------------
+
+    private PropertyService createPropertyService() {
+        if ("mvel".equals(service)) {
+            return new MVELPropertyService();
+
+        } else if ("compiled".equals(service)) {
+            return new CompiledPropertyService();
+
+        } else {
+            return new OGNLPropertyService();
+        }
+    }
+
+    private FieldSet createCustomerFieldSet(String name, Customer customer) {
+        FieldSet fieldSet = new FieldSet(name);
+
+        fieldSet.add(new HiddenField("id", customer.getId()));
+        fieldSet.add(createTextField("name", customer.getName()));
+        fieldSet.add(createTextField("email", customer.getEmail()));
+        fieldSet.add(new HiddenField("holdings", customer.getHoldings()));
+        fieldSet.add(new HiddenField("dateJoined", customer.getDateJoined()));
+
+        Checkbox active = new Checkbox("active");
+        active.setChecked(customer.isActive());
+        fieldSet.add(active);
+
+        fieldSet.add(createTextField("address.city", customer.getAddress().getCity()));
+        fieldSet.add(createTextField("address.state", customer.getAddress().getState()));
+
+        return fieldSet;
+    }
+
+    private TextField createTextField(String name, String value) {
+        TextField field = new TextField(name);
+        field.setValue(value);
+        return field;
+    }
+
+    /**
+     * Return a config service delegating to the given config service, which
+     * returns the given property service.
+     */
+    private static ConfigService createConfigService(final ConfigService configService,
+        final PropertyService propertyService) {
+
+        InvocationHandler handler = new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+
+                if ("getPropertyService".equals(method.getName())) {
+                    return propertyService;
+                }
+                try {
+                    return method.invoke(configService, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+
+        return (ConfigService) Proxy.newProxyInstance(
+            ConfigService.class.getClassLoader(),
+            new Class<?>[] { ConfigService.class }, handler);
+    }
+}
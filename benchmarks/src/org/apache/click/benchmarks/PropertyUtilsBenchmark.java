@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.click.util.PropertyAccessor;
+import org.apache.click.util.PropertyUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks reading simple and nested properties with {@link PropertyUtils}
+ * and {@link PropertyAccessor}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PropertyUtilsBenchmark {
+
+    private Customer customer;
+
+    private Map<String, Object> map;
+
+    private Map<Object, Object> methodCache;
+
+    private PropertyAccessor nameAccessor;
+
+    private PropertyAccessor cityAccessor;
+
+    /**
+     * Create the customer and the property accessors.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        customer = Customer.createCustomers(1).get(0);
+
+        map = new HashMap<String, Object>();
+        map.put("name", customer.getName());
+
+        methodCache = new HashMap<Object, Object>();
+
+        nameAccessor = new PropertyAccessor("name");
+        cityAccessor = new PropertyAccessor("address.city");
+    }
+
+    /**
+     * Benchmark reading a simple property.
+     *
+     * @return the property value
+     */
+    @Benchmark
+    public Object getValue() {
+        return PropertyUtils.getValue(customer, "name");
+    }
+
+    /**
+     * Benchmark reading a nested property.
+     *
+     * @return the property value
+     */
+    @Benchmark
+    public Object getNestedValue() {
+        return PropertyUtils.getValue(customer, "address.city");
+    }
+
+    /**
+     * Benchmark reading a simple property with a method cache, as used by
+     * the Table columns.
+     *
+     * @return the property value
+     */
+    @Benchmark
+    public Object getValueWithCache() {
+        return PropertyUtils.getValue(customer, "name", methodCache);
+    }
+
+    /**
+     * Benchmark reading a Map value.
+     *
+     * @return the map value
+     */
+    @Benchmark
+    public Object getMapValue() {
+        return PropertyUtils.getValue(map, "name");
+    }
+
+    /**
+     * Benchmark reading a simple property with a PropertyAccessor.
+     *
+     * @return the property value
+     */
+    @Benchmark
+    public Object accessorGetValue() {
+        return nameAccessor.getValue(customer);
+    }
+
+    /**
+     * Benchmark reading a nested property with a PropertyAccessor.
+     *
+     * @return the property value
+     */
+    @Benchmark
+    public Object accessorGetNestedValue() {
+        return cityAccessor.getValue(customer);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.click.MockContainer;
+import org.apache.click.benchmarks.pages.FormPage;
+import org.apache.click.benchmarks.pages.TablePage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks full GET and POST request cycles through
+ * <tt>ClickServlet.handleRequest</tt>, using a {@link MockContainer} for the
+ * benchmark web application. Each benchmark returns the rendered HTML
+ * document.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RequestCycleBenchmark {
+
+    private MockContainer container;
+
+    /**
+     * Start the mock container and warm the page templates.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        container = new MockContainer(BenchmarkUtils.getWebappPath());
+        container.start();
+
+        getTablePage();
+        getFormPage();
+    }
+
+    /**
+     * Stop the mock container.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        container.stop();
+    }
+
+    /**
+     * Benchmark a GET request of the first page of the customer table.
+     *
+     * @return the rendered HTML document
+     */
+    @Benchmark
+    public String getTablePage() {
+        container.getRequest().reset();
+        container.getRequest().setMethod("GET");
+        container.testPage(TablePage.class);
+        return container.getHtml();
+    }
+
+    /**
+     * Benchmark a GET request sorting the customer table by name and
+     * displaying the third page.
+     *
+     * @return the rendered HTML document
+     */
+    @Benchmark
+    public String sortTablePage() {
+        container.getRequest().reset();
+        container.getRequest().setMethod("GET");
+        container.setParameter("actionLink", "table-controlLink");
+        container.setParameter("column", "name");
+        container.setParameter("ascending", "false");
+        container.setParameter("page", "2");
+        container.testPage(TablePage.class);
+        return container.getHtml();
+    }
+
+    /**
+     * Benchmark a GET request of the customer form.
+     *
+     * @return the rendered HTML document
+     */
+    @Benchmark
+    public String getFormPage() {
+        container.getRequest().reset();
+        container.getRequest().setMethod("GET");
+        container.testPage(FormPage.class);
+        return container.getHtml();
+    }
+
+    /**
+     * Benchmark a POST request of a valid customer form, which is validated
+     * and copied to a customer.
+     *
+     * @return the rendered HTML document
+     */
+    @Benchmark
+    public String postFormPage() {
+        container.getRequest().reset();
+        container.getRequest().setMethod("POST");
+        container.setParameter("form_name", "form");
+        container.setParameter("name", "John Smith");
+        container.setParameter("email", "john.smith@example.com");
+        container.setParameter("holdings", "1234.56");
+        container.setParameter("active", "on");
+        container.setParameter("address.state", "NSW");
+        container.setParameter("notes", "Benchmark customer");
+        container.setParameter("ok", "  OK  ");
+        container.testPage(FormPage.class);
+        return container.getHtml();
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.benchmarks.pages;
+
+import org.apache.click.Page;
+import org.apache.click.benchmarks.BenchmarkUtils;
+import org.apache.click.benchmarks.Customer;
+import org.apache.click.control.Form;
+
+/**
+ * Provides a page rendering a customer form, which copies the submitted
+ * values to a customer.
+ */
+public class FormPage extends Page {
+
+    private static final long serialVersionUID = 1L;
+
+    private Form form = BenchmarkUtils.createCustomerForm("form");
+
+    private Customer customer;
+
+    // Constructors -----------------------------------------------------------
+
+    /**
+     * Create the form page.
+     */
+    public FormPage() {
+        form.getField("ok").setListener(this, "onOkClick");
+        addControl(form);
+    }
+
+    // Event Handlers ---------------------------------------------------------
+
+    /**
+     * Copy the valid form values to a new customer.
+     *
+     * @return true to continue rendering the page
+     */
+    public boolean onOkClick() {
+        if (form.isValid()) {
+            customer = new Customer();
+            form.copyTo(customer);
+        }
+        return true;
+    }
+
+    // Public Methods ---------------------------------------------------------
+
+    /**
+     * Return the customer created by the last valid form submission.
+     *
+     * @return the customer created by the last valid form submission
+     */
+    public Customer getCustomer() {
+        return customer;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.benchmarks.pages;
+
+import java.util.List;
+
+import org.apache.click.Page;
+import org.apache.click.benchmarks.BenchmarkUtils;
+import org.apache.click.benchmarks.Customer;
+import org.apache.click.control.Table;
+import org.apache.click.dataprovider.DataProvider;
+
+/**
+ * Provides a page rendering a paginated and sortable customer table.
+ */
+public class TablePage extends Page {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final List<Customer> CUSTOMERS =
+        Customer.createCustomers(BenchmarkUtils.TABLE_ROWS);
+
+    private Table table = BenchmarkUtils.createCustomerTable("table");
+
+    // Constructors -----------------------------------------------------------
+
+    /**
+     * Create the table page.
+     */
+    public TablePage() {
+        table.setDataProvider(new DataProvider<Customer>() {
+
+            private static final long serialVersionUID = 1L;
+
+            public List<Customer> getData() {
+                return CUSTOMERS;
+            }
+        });
+        addControl(table);
+    }
+}
@@ -17,11 +17,15 @@
 
 /*
  * This script provides cookie manipulation functionality to the Click Tree control.
- * Two cookies are used to track the expanded nodes and collapsed nodes.
- * 
- * When node expands, the node's id is added to the first cookie and
- * removed form the second cookie. When a node is collapsed the id
- * is removed from the first cookie and added to the second.
+ * A delta cookie is used to track the nodes expanded and collapsed since the
+ * last request.
+ *
+ * When a node expands, '*' followed by the node's id is added to the cookie.
+ * When a node collapses, '-' followed by the node's id is added to the cookie.
+ * Only the last change of a node is kept in the cookie.
+ *
+ * The previous functions tracking the expanded and collapsed nodes in two
+ * cookies are still provided.
  */
 
 /*
@@ -79,6 +83,32 @@ function handleCookie(object, event, expandId, nodeId, expandedCookieName, colla
     }
 }
 
+/*
+ * This method is called from html. Record the node's new expand state
+ * in the delta cookie, replacing any earlier change of the node.
+ */
+function handleCookieDelta(object, event, expandId, nodeId, deltaCookieName) {
+    stopPropagation(event);
+    var span = document.getElementById(expandId);
+
+    var change = (isClassExpanded(span) ? '*' : '-') + nodeId;
+
+    var cookie = getCookie(deltaCookieName);
+    var result = [];
+    if (cookie != null && cookie.length > 0) {
+        //remove any quotes
+        var ar = cookie.replace(/"/g,'').split(',');
+        for (var i = 0; i < ar.length; i++) {
+            if (ar[i].length > 0 && ar[i].substring(1) != nodeId) {
+                result.push(ar[i]);
+            }
+        }
+    }
+    result.push(change);
+
+    setCookie(deltaCookieName, '"' + result.join(',') + '"', 0, '/');
+}
+
 /*
  * Add cookie value to the specified cookie. Returns
  * true if the cookie was modified, false otherwise
@@ -174,3 +174,36 @@ function isLeaf(objectArg) {
         return true;
     return false;
 }
+
+/*
+ * Loads the children of a node whose subtree was not rendered, from the
+ * specified url. The loaded <ul> element is appended to the node and shown
+ * if the node is still expanded. The subtree is only loaded once.
+ */
+function loadSubtree(expandId, url) {
+    var span = document.getElementById(expandId);
+    if(span==null || span.getAttribute("loading") || span.getElementsByTagName("ul").length > 0) {
+        return;
+    }
+    span.setAttribute("loading", "true");
+
+    var request = window.XMLHttpRequest ? new XMLHttpRequest() : new ActiveXObject("Microsoft.XMLHTTP");
+    request.open("GET", url, true);
+    request.setRequestHeader("X-Requested-With", "XMLHttpRequest");
+    request.onreadystatechange = function() {
+        if(request.readyState != 4) {
+            return;
+        }
+        span.removeAttribute("loading");
+        if(request.status != 200 || span.getElementsByTagName("ul").length > 0) {
+            return;
+        }
+        var container = document.createElement("div");
+        container.innerHTML = request.responseText;
+        while(container.firstChild) {
+            span.appendChild(container.firstChild);
+        }
+        handleChildMenuIfExists(span, isClassExpanded(span) ? 1 : 0);
+    };
+    request.send(null);
+}
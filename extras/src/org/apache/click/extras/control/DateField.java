@@ -34,6 +34,7 @@ import org.apache.click.element.Element;
 import org.apache.click.element.JsImport;
 import org.apache.click.element.JsScript;
 import org.apache.click.util.ClickUtils;
+import org.apache.click.util.FormatRegistry;
 import org.apache.click.util.HtmlStringBuffer;
 import org.apache.commons.lang.StringUtils;
 
@@ -321,7 +322,7 @@ public class DateField extends TextField {
     public SimpleDateFormat getDateFormat() {
         if (dateFormat == null) {
             String formatPattern = getFormatPattern();
-            dateFormat = new SimpleDateFormat(formatPattern, getLocale());
+            dateFormat = FormatRegistry.newDateFormat(formatPattern, getLocale());
         }
         return dateFormat;
     }
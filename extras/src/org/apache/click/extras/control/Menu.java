@@ -20,7 +20,10 @@ package org.apache.click.extras.control;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
 
 import javax.servlet.ServletContext;
@@ -291,6 +294,13 @@ public class Menu extends AbstractControl {
      */
     protected static final String DEFAULT_CONFIG_FILE = "/WEB-INF/menu.xml";
 
+    /**
+     * The request attribute name of the role access decisions made for the
+     * request: &nbsp; "<tt>org.apache.click.extras.control.Menu.roleDecisions</tt>".
+     */
+    protected static final String ROLE_DECISIONS_ATTRIBUTE =
+        Menu.class.getName() + ".roleDecisions";
+
     // Class Variables --------------------------------------------------------
 
     /** The cached root Menu as defined in <tt>menu.xml</tt>. */
@@ -322,6 +332,9 @@ public class Menu extends AbstractControl {
     /** The menu display label. */
     protected String label;
 
+    /** The index of the menu tree, or null if the tree is not indexed. */
+    protected MenuIndex menuIndex;
+
     /**
      * The list of valid page paths. If any of these page paths match the
      * current request then the Menu item will be selected.
@@ -716,6 +729,36 @@ public class Menu extends AbstractControl {
         this.label = label;
     }
 
+    /**
+     * Return the index of the menu tree, or null if the menu tree is not
+     * indexed.
+     *
+     * @see MenuIndex
+     *
+     * @return the index of the menu tree
+     */
+    public MenuIndex getMenuIndex() {
+        return menuIndex;
+    }
+
+    /**
+     * Set the index of the menu tree on this menu and all its child menus.
+     * {@link #isSelected()} uses the index to determine whether a menu is
+     * selected, instead of scanning the menu's children.
+     *
+     * @see MenuIndex
+     *
+     * @param menuIndex the index of the menu tree, or null to remove the index
+     */
+    public void setMenuIndex(MenuIndex menuIndex) {
+        this.menuIndex = menuIndex;
+        if (hasChildren()) {
+            for (int i = 0, size = children.size(); i < size; i++) {
+                children.get(i).setMenuIndex(menuIndex);
+            }
+        }
+    }
+
     /**
      * Return the list of valid Page paths for the Menu item. If any of these
      * page paths match the current request then the Menu item will be selected.
@@ -786,6 +829,10 @@ public class Menu extends AbstractControl {
 
     /**
      * Return true if the Menu item is selected.
+     * <p/>
+     * If the menu tree has a {@link #getMenuIndex() menu index} the selection
+     * is looked up in the index, otherwise the menu's pages, path and child
+     * menus are checked.
      *
      * @return true if the Menu item is selected
      */
@@ -796,6 +843,10 @@ public class Menu extends AbstractControl {
 
         final String pageToView = getContext().getResourcePath();
 
+        if (menuIndex != null) {
+            return menuIndex.isSelected(this, pageToView);
+        }
+
         boolean selected = false;
 
         if (getPages().contains(pageToView)) {
@@ -868,6 +919,10 @@ public class Menu extends AbstractControl {
      * If no {@link #getRoles() roles} are defined, the AccessController are invoked
      * with a <tt>null</tt> argument to determine whether access is permitted to
      * menus without roles.
+     * <p/>
+     * The access decision for each role is remembered for the duration of the
+     * request, so the AccessController is invoked once per distinct role and
+     * access controller when rendering a menu tree.
      *
      * @return true if the user is in one of the menu roles, or false otherwise
      * @throws IllegalStateException if the menu accessController is not defined
@@ -883,13 +938,13 @@ public class Menu extends AbstractControl {
         if (hasRoles()) {
             for (int i = 0, size = getRoles().size(); i < size; i++) {
                 String rolename = getRoles().get(i);
-                if (getAccessController().hasAccess(request, rolename)) {
+                if (hasAccess(request, rolename)) {
                     return true;
                 }
             }
         } else {
             // Check access for menus without roles. CLK-724
-            return getAccessController().hasAccess(request, null);
+            return hasAccess(request, null);
         }
 
         return false;
@@ -1108,6 +1163,11 @@ public class Menu extends AbstractControl {
     public Menu add(Menu menu) {
         getChildren().add(menu);
         menu.setParent(this);
+
+        // The menu index no longer matches the menu tree
+        if (menuIndex != null || menu.getMenuIndex() != null) {
+            findRootMenu().setMenuIndex(null);
+        }
         return menu;
     }
 
@@ -1535,4 +1595,38 @@ public class Menu extends AbstractControl {
         return menu;
     }
 
+    // Private Methods --------------------------------------------------------
+
+    /**
+     * Return true if the access controller grants access to the given role,
+     * remembering the decision in the request.
+     *
+     * @param request the servlet request
+     * @param role the role to check, or null for menus without roles
+     * @return true if the access controller grants access to the role
+     */
+    @SuppressWarnings("unchecked")
+    private boolean hasAccess(HttpServletRequest request, String role) {
+        AccessController controller = getAccessController();
+
+        Map<AccessController, Map<String, Boolean>> decisions =
+            (Map<AccessController, Map<String, Boolean>>) request.getAttribute(ROLE_DECISIONS_ATTRIBUTE);
+        if (decisions == null) {
+            decisions = new IdentityHashMap<AccessController, Map<String, Boolean>>();
+            request.setAttribute(ROLE_DECISIONS_ATTRIBUTE, decisions);
+        }
+
+        Map<String, Boolean> roleDecisions = decisions.get(controller);
+        if (roleDecisions == null) {
+            roleDecisions = new HashMap<String, Boolean>();
+            decisions.put(controller, roleDecisions);
+        }
+
+        Boolean access = roleDecisions.get(role);
+        if (access == null) {
+            access = Boolean.valueOf(controller.hasAccess(request, role));
+            roleDecisions.put(role, access);
+        }
+        return access.booleanValue();
+    }
 }
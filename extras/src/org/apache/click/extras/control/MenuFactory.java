@@ -301,6 +301,10 @@ public class MenuFactory implements Serializable {
 
         Menu rootMenu = loadFromMenuXml(name, fileName, accessController, menuClass);
 
+        // Index the selected menus of each path once, rather than scanning
+        // the menu tree each time a menu is rendered
+        rootMenu.setMenuIndex(createMenuIndex(rootMenu));
+
         // Retrieve headElements to guard against race conditions when initializing
         // menus from multiple threads. CLK-713
         rootMenu.getHeadElements();
@@ -453,6 +457,18 @@ public class MenuFactory implements Serializable {
         }
     }
 
+    /**
+     * Create the index of the given root menu and all its child menus.
+     *
+     * @see MenuIndex
+     *
+     * @param rootMenu the root menu to index
+     * @return the index of the given root menu
+     */
+    protected MenuIndex createMenuIndex(Menu rootMenu) {
+        return new MenuIndex(rootMenu);
+    }
+
     /**
      * Return a copy of the Applications root Menu as defined by the
      * configuration file.
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.extras.control;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provides an immutable index of a menu tree, mapping each resource path to
+ * the menus which are selected when the path is requested.
+ * <p/>
+ * A menu is selected if its {@link Menu#getPath() path} or one of its
+ * {@link Menu#getPages() pages} matches the request resource path, or if
+ * one of its child menus is selected. The index stores, for each path, the
+ * matching menus together with all their ancestor menus, so
+ * {@link Menu#isSelected()} is a lookup in the index rather than a
+ * recursive scan of the menu's children.
+ * <p/>
+ * The index is built by {@link MenuFactory} when a root menu is loaded and is
+ * set on every menu of the tree. Adding a menu to an indexed tree removes the
+ * index from the tree, and menus without an index revert to scanning their
+ * children. If the paths or pages of an indexed menu are changed, set a new
+ * index on the root menu:
+ *
+ * <pre class="prettyprint">
+ * rootMenu.setMenuIndex(new MenuIndex(rootMenu)); </pre>
+ */
+public class MenuIndex implements Serializable {
+
+    // Constants --------------------------------------------------------------
+
+    private static final long serialVersionUID = 1L;
+
+    /** The empty menu array. */
+    private static final Menu[] EMPTY_MENUS = new Menu[0];
+
+    // Instance Variables -----------------------------------------------------
+
+    /** The root menu of the index. */
+    private final Menu rootMenu;
+
+    /** The selected menus keyed on resource path. */
+    private final Map<String, Menu[]> selectedMenus;
+
+    // Constructors -----------------------------------------------------------
+
+    /**
+     * Create a new MenuIndex for the given root menu and all its child menus.
+     *
+     * @param rootMenu the root menu of the menu tree to index
+     */
+    public MenuIndex(Menu rootMenu) {
+        if (rootMenu == null) {
+            throw new IllegalArgumentException("Null rootMenu parameter");
+        }
+
+        this.rootMenu = rootMenu;
+
+        Map<String, List<Menu>> menuMap = new HashMap<String, List<Menu>>();
+        indexMenu(rootMenu, new ArrayList<Menu>(), menuMap);
+
+        selectedMenus = new HashMap<String, Menu[]>(menuMap.size() * 2);
+        for (Map.Entry<String, List<Menu>> entry : menuMap.entrySet()) {
+            List<Menu> menus = entry.getValue();
+            selectedMenus.put(entry.getKey(), menus.toArray(new Menu[menus.size()]));
+        }
+    }
+
+    // Public Methods ---------------------------------------------------------
+
+    /**
+     * Return the root menu of the index.
+     *
+     * @return the root menu of the index
+     */
+    public Menu getRootMenu() {
+        return rootMenu;
+    }
+
+    /**
+     * Return true if the given menu is selected for the given resource path.
+     *
+     * @param menu the menu to test
+     * @param resourcePath the request resource path
+     * @return true if the given menu is selected for the resource path
+     */
+    public boolean isSelected(Menu menu, String resourcePath) {
+        Menu[] menus = getMenus(resourcePath);
+        for (int i = 0; i < menus.length; i++) {
+            if (menus[i] == menu) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the list of menus selected for the given resource path, ordered
+     * with each matching menu preceded by its ancestor menus.
+     *
+     * @param resourcePath the request resource path
+     * @return the unmodifiable list of menus selected for the resource path
+     */
+    public List<Menu> getSelectedMenus(String resourcePath) {
+        return Collections.unmodifiableList(Arrays.asList(getMenus(resourcePath)));
+    }
+
+    // Private Methods --------------------------------------------------------
+
+    private Menu[] getMenus(String resourcePath) {
+        if (resourcePath == null) {
+            return EMPTY_MENUS;
+        }
+        Menu[] menus = selectedMenus.get(resourcePath);
+        return (menus != null) ? menus : EMPTY_MENUS;
+    }
+
+    private static void indexMenu(Menu menu, List<Menu> ancestors,
+        Map<String, List<Menu>> menuMap) {
+
+        ancestors.add(menu);
+
+        String path = menu.getPath();
+        if (path != null) {
+            path = path.startsWith("/") ? path : "/" + path;
+            addSelectedMenus(path, ancestors, menuMap);
+        }
+        for (String page : menu.getPages()) {
+            addSelectedMenus(page, ancestors, menuMap);
+        }
+
+        if (menu.hasChildren()) {
+            for (Menu child : menu.getChildren()) {
+                indexMenu(child, ancestors, menuMap);
+            }
+        }
+
+        ancestors.remove(ancestors.size() - 1);
+    }
+
+    private static void addSelectedMenus(String path, List<Menu> ancestors,
+        Map<String, List<Menu>> menuMap) {
+
+        List<Menu> menus = menuMap.get(path);
+        if (menus == null) {
+            menus = new ArrayList<Menu>(ancestors.size());
+            menuMap.put(path, menus);
+        }
+
+        for (Menu menu : ancestors) {
+            boolean contains = false;
+            for (Menu selected : menus) {
+                if (selected == menu) {
+                    contains = true;
+                    break;
+                }
+            }
+            if (!contains) {
+                menus.add(menu);
+            }
+        }
+    }
+}
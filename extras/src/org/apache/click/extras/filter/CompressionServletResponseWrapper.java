@@ -83,6 +83,12 @@ public class CompressionServletResponseWrapper extends HttpServletResponseWrappe
     /** Content type. */
     protected String contentType = null;
 
+    /**
+     * Flag indicating the wrapped response content is already encoded, for
+     * example a pre-compressed resource, and must be written unmodified.
+     */
+    protected boolean encoded = false;
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -113,6 +119,11 @@ public class CompressionServletResponseWrapper extends HttpServletResponseWrappe
      */
     public ServletOutputStream createOutputStream() throws IOException {
 
+        // Content already encoded by the servlet is written unmodified
+        if (encoded) {
+            return origResponse.getOutputStream();
+        }
+
         CompressionResponseStream stream =
             new CompressionResponseStream(origResponse, origRequest);
         stream.setBuffer(threshold);
@@ -215,11 +226,15 @@ public class CompressionServletResponseWrapper extends HttpServletResponseWrappe
     }
 
     /**
-     * Set the content length. This method does nothing.
+     * Set the content length. This method does nothing unless the content is
+     * already encoded.
      *
      * @param length the content length
      */
     public void setContentLength(int length) {
+        if (encoded) {
+            super.setContentLength(length);
+        }
     }
 
     /**
@@ -229,7 +244,7 @@ public class CompressionServletResponseWrapper extends HttpServletResponseWrappe
      * @param value the int value
      */
     public void setIntHeader(String header, int value) {
-        if (!"Content-Length".equals(header)) {
+        if (encoded || !"Content-Length".equals(header)) {
             super.setIntHeader(header, value);
         }
     }
@@ -241,9 +256,37 @@ public class CompressionServletResponseWrapper extends HttpServletResponseWrappe
      * @param value the string value
      */
     public void setHeader(String header, String value) {
-        if (!"Content-Length".equals(header)) {
+        checkContentEncoding(header);
+        if (encoded || !"Content-Length".equals(header)) {
             super.setHeader(header, value);
         }
     }
 
+    /**
+     * Add the string value to the header.
+     *
+     * @param header the response header
+     * @param value the string value
+     */
+    public void addHeader(String header, String value) {
+        checkContentEncoding(header);
+        if (encoded || !"Content-Length".equals(header)) {
+            super.addHeader(header, value);
+        }
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Mark the response content as already encoded if the given header is
+     * the <tt>Content-Encoding</tt> header and no output has been obtained.
+     *
+     * @param header the response header being set
+     */
+    private void checkContentEncoding(String header) {
+        if (stream == null && "Content-Encoding".equalsIgnoreCase(header)) {
+            encoded = true;
+        }
+    }
+
 }
@@ -233,6 +233,11 @@ import org.apache.commons.lang.StringUtils;
  * <p/>
  * GZIP compression is only applied if the browser supports it, and if the size
  * of the content is greater than 384 bytes.
+ * <p/>
+ * Content which already has a <tt>Content-Encoding</tt> header is written
+ * unmodified. For example resources served by
+ * {@link org.apache.click.service.ClickResourceService} are compressed once
+ * when loaded, and are not compressed again by this filter on each request.
  *
  * <h4>How does caching work?</h4>
  * For an explanation of how browsers and caching work, you can read the
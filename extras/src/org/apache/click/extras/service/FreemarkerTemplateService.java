@@ -24,6 +24,7 @@ import java.util.Map;
 
 import javax.servlet.ServletContext;
 
+import org.apache.click.Control;
 import org.apache.click.Page;
 import org.apache.click.service.ConfigService;
 import org.apache.click.service.LogService;
@@ -36,11 +37,18 @@ import freemarker.cache.ClassTemplateLoader;
 import freemarker.cache.MultiTemplateLoader;
 import freemarker.cache.TemplateLoader;
 import freemarker.cache.WebappTemplateLoader;
+import freemarker.core.Environment;
+import freemarker.ext.beans.BeansWrapper;
+import freemarker.ext.beans.StringModel;
 import freemarker.log.Logger;
 import freemarker.template.Configuration;
 import freemarker.template.ObjectWrapper;
 import freemarker.template.Template;
+import freemarker.template.TemplateDirectiveBody;
+import freemarker.template.TemplateDirectiveModel;
 import freemarker.template.TemplateExceptionHandler;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
 
 /**
  * Provides a <a target="_blank" href="http://www.freemarker.org/">Freemarker</a> TemplateService class.
@@ -116,6 +124,19 @@ import freemarker.template.TemplateExceptionHandler;
  *   &lt;/body&gt;
  * &lt;/html&gt;
  * </pre>
+ *
+ * <h3>Streaming Control Rendering</h3>
+ * A control referenced in a template, for example <tt>${table}</tt>, is
+ * rendered by calling its <tt>toString()</tt> method. When the
+ * <tt>streamingRender</tt> property is enabled, controls can also be invoked
+ * as a directive, for example <tt>&lt;@table/&gt;</tt>, which renders the
+ * control directly to the template writer in chunks, see
+ * {@link ClickUtils#renderControl(Control, Writer)}.
+ *
+ * <pre class="prettyprint">
+ * &lt;template-service classname="org.apache.click.extras.service.FreemarkerTemplateService"&gt;
+ *   &lt;property name="streamingRender" value="true"/&gt;
+ * &lt;/template-service&gt; </pre>
  */
 public class FreemarkerTemplateService implements TemplateService {
 
@@ -145,6 +166,9 @@ public class FreemarkerTemplateService implements TemplateService {
     /** The /click/not-found.htm page template has been deployed. */
     protected boolean deployedNotFoundTemplate;
 
+    /** The controls can be rendered directly to the writer. */
+    protected boolean streamingRender;
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -194,7 +218,11 @@ public class FreemarkerTemplateService implements TemplateService {
                 TemplateExceptionHandler.HTML_DEBUG_HANDLER);
 
         // Use beans wrapper (recommended for most applications)
-        configuration.setObjectWrapper(ObjectWrapper.BEANS_WRAPPER);
+        if (isStreamingRender()) {
+            configuration.setObjectWrapper(new ControlObjectWrapper());
+        } else {
+            configuration.setObjectWrapper(ObjectWrapper.BEANS_WRAPPER);
+        }
 
         String charset = configService.getCharset();
         if (charset != null) {
@@ -312,4 +340,76 @@ public class FreemarkerTemplateService implements TemplateService {
         this.cacheDuration = cacheDuration;
     }
 
+    /**
+     * Return true if controls can be invoked as template directives which
+     * render the control directly to the writer.
+     *
+     * @return true if controls can be rendered directly to the writer
+     */
+    public boolean isStreamingRender() {
+        return streamingRender;
+    }
+
+    /**
+     * Set whether controls can be invoked as template directives which render
+     * the control directly to the writer.
+     *
+     * @param streamingRender true if controls can be rendered directly to the
+     * writer
+     */
+    public void setStreamingRender(boolean streamingRender) {
+        this.streamingRender = streamingRender;
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Provides a beans wrapper which wraps controls in a model that can be
+     * invoked as a template directive, rendering the control directly to the
+     * template writer.
+     */
+    public static class ControlObjectWrapper extends BeansWrapper {
+
+        /**
+         * @see BeansWrapper#wrap(Object)
+         *
+         * @param object the object to wrap
+         * @return the template model for the object
+         * @throws TemplateModelException if the object cannot be wrapped
+         */
+        @Override
+        public TemplateModel wrap(Object object) throws TemplateModelException {
+            if (object instanceof Control) {
+                Control control = (Control) object;
+                if (ClickUtils.isStreamingRenderSupported(control)) {
+                    return new ControlModel(control, this);
+                }
+            }
+            return super.wrap(object);
+        }
+    }
+
+    /**
+     * Provides a control model which renders the control as a string, or
+     * directly to the template writer when invoked as a directive.
+     */
+    private static class ControlModel extends StringModel
+        implements TemplateDirectiveModel {
+
+        /** The control to render. */
+        private final Control control;
+
+        ControlModel(Control control, BeansWrapper wrapper) {
+            super(control, wrapper);
+            this.control = control;
+        }
+
+        @SuppressWarnings("rawtypes")
+        public void execute(Environment env, Map params, TemplateModel[] loopVars,
+            TemplateDirectiveBody body) throws IOException {
+
+            ClickUtils.renderControl(control, env.getOut());
+        }
+    }
+
 }
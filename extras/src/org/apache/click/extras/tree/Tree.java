@@ -26,6 +26,8 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -33,9 +35,13 @@ import java.util.Set;
 import java.util.StringTokenizer;
 
 import org.apache.click.ActionListener;
+import org.apache.click.ActionResult;
 import org.apache.click.Context;
 import org.apache.click.Control;
 import org.apache.click.ActionEventDispatcher;
+import org.apache.click.ControlRegistry;
+import org.apache.click.Stateful;
+import org.apache.click.ajax.DefaultAjaxBehavior;
 import org.apache.click.control.AbstractControl;
 import org.apache.click.control.ActionLink;
 import org.apache.click.control.Decorator;
@@ -165,7 +171,7 @@ import org.apache.commons.lang.StringUtils;
  *      <li>images/item.png</li>
  * </ul>
  */
-public class Tree extends AbstractControl {
+public class Tree extends AbstractControl implements Stateful {
 
     // Constants --------------------------------------------------------------
 
@@ -175,6 +181,9 @@ public class Tree extends AbstractControl {
     /** The tree's select/deselect parameter name: <tt>"selectTreeNode"</tt>. */
     public static final String SELECT_TREE_NODE_PARAM = "selectTreeNode";
 
+    /** The tree's Ajax subtree parameter name: <tt>"subtreeNode"</tt>. */
+    public static final String SUBTREE_NODE_PARAM = "subtreeNode";
+
     /** Indicator for using cookies to implement client side behavior. */
     public final static int JAVASCRIPT_COOKIE_POLICY = 1;
 
@@ -210,6 +219,12 @@ public class Tree extends AbstractControl {
     /** The tree node expand / collapse link. */
     protected ActionLink expandLink;
 
+    /** The provider of the children of nodes which are not loaded. */
+    protected TreeDataProvider dataProvider;
+
+    /** The behavior rendering subtrees requested with Ajax. */
+    protected SubtreeBehavior subtreeBehavior;
+
     /** Callback provider for users to decorate tree nodes. */
     private transient Decorator decorator;
 
@@ -347,6 +362,36 @@ public class Tree extends AbstractControl {
         this.rootNode = rootNode;
     }
 
+    /**
+     * Return the tree's data provider.
+     *
+     * @return the tree's data provider
+     */
+    public TreeDataProvider getDataProvider() {
+        return dataProvider;
+    }
+
+    /**
+     * Set the tree's data provider, which loads the children of nodes as
+     * they are expanded.
+     * <p/>
+     * Nodes whose children should be loaded by the provider must be marked as
+     * not loaded with {@link TreeNode#setChildrenLoaded(boolean)}. The root
+     * node is loaded before the tree is rendered, so a tree can start with
+     * an unloaded root node only.
+     * <p/>
+     * When javascript is enabled, the children of a collapsed unloaded node
+     * are loaded with an Ajax request the first time the node is expanded in
+     * the browser. The request contains the ids of the path to the node, so
+     * the subtree can be loaded whether the tree is kept in the session or
+     * created for each request.
+     *
+     * @param dataProvider the tree's data provider
+     */
+    public void setDataProvider(TreeDataProvider dataProvider) {
+        this.dataProvider = dataProvider;
+    }
+
     /**
      * Get the tree's decorator.
      *
@@ -811,6 +856,110 @@ public class Tree extends AbstractControl {
         return currentlySelected;
     }
 
+    /**
+     * Return the Tree state. The following state is returned:
+     * <ul>
+     * <li>the ids of the {@link #getExpandedNodes(boolean) expanded nodes}</li>
+     * <li>the ids of the {@link #getSelectedNodes(boolean) selected nodes}</li>
+     * </ul>
+     *
+     * @return the Tree state
+     */
+    public Object getState() {
+        if (getRootNode() == null) {
+            return null;
+        }
+
+        String[] expandedIds = getNodeIds(getExpandedNodes(true));
+        String[] selectedIds = getNodeIds(getSelectedNodes(true));
+        if (expandedIds == null && selectedIds == null) {
+            return null;
+        }
+
+        return new Object[] { expandedIds, selectedIds };
+    }
+
+    /**
+     * Set the Tree state. The nodes are expanded and selected without
+     * notifying the tree listeners.
+     *
+     * @param state the Tree state to set
+     */
+    public void setState(Object state) {
+        if (state == null || getRootNode() == null) {
+            return;
+        }
+
+        Object[] treeState = (Object[]) state;
+
+        loadChildren(getRootNode());
+
+        String[] expandedIds = (String[]) treeState[0];
+        if (expandedIds != null) {
+            // Ids are in breadth first order, so the parents are expanded
+            // and their children loaded first
+            for (String id : expandedIds) {
+                TreeNode node = find(id);
+                if (node != null) {
+                    loadChildren(node);
+                    node.setExpanded(true);
+                }
+            }
+        }
+
+        String[] selectedIds = (String[]) treeState[1];
+        if (selectedIds != null) {
+            for (String id : selectedIds) {
+                TreeNode node = find(id);
+                if (node != null) {
+                    node.setSelected(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the Tree state from the session for the given request context.
+     *
+     * @param context the request context
+     *
+     * @see #saveState(org.apache.click.Context)
+     * @see #restoreState(org.apache.click.Context)
+     */
+    public void removeState(Context context) {
+        ClickUtils.removeState(this, getName(), context);
+    }
+
+    /**
+     * Restore the Tree state from the session for the given request context.
+     * <p/>
+     * This method delegates to {@link #setState(java.lang.Object)} to set the
+     * tree restored state.
+     *
+     * @param context the request context
+     *
+     * @see #saveState(org.apache.click.Context)
+     * @see #removeState(org.apache.click.Context)
+     */
+    public void restoreState(Context context) {
+        ClickUtils.restoreState(this, getName(), context);
+    }
+
+    /**
+     * Save the Tree state to the session for the given request context.
+     * <p/>
+     * This method delegates to {@link #getState()} to retrieve the tree state
+     * to save.
+     *
+     * @see #restoreState(org.apache.click.Context)
+     * @see #removeState(org.apache.click.Context)
+     *
+     * @param context the request context
+     */
+    public void saveState(Context context) {
+        ClickUtils.saveState(this, getName(), context);
+    }
+
     /**
      * Provides a TreeNode callback interface.
      */
@@ -849,6 +998,9 @@ public class Tree extends AbstractControl {
 
     /**
      * Finds and returns the first node that matches the id.
+     * <p/>
+     * The node is looked up in the id index kept by the root node, see
+     * {@link TreeNode}, so the tree is not traversed for each lookup.
      *
      * @param id identifier of the node to find
      * @return TreeNode the first node matching the id.
@@ -876,6 +1028,27 @@ public class Tree extends AbstractControl {
         bindSelectOrDeselectValues();
     }
 
+    /**
+     * Initialize the tree. If a data provider is set, this method adds the
+     * Ajax behavior which renders the subtree of nodes expanded in the
+     * browser.
+     *
+     * @see org.apache.click.Control#onInit()
+     */
+    @Override
+    public void onInit() {
+        super.onInit();
+        if (dataProvider != null) {
+            if (subtreeBehavior == null) {
+                subtreeBehavior = new SubtreeBehavior();
+                addBehavior(subtreeBehavior);
+            } else {
+                // The behavior of a stateful tree must be registered for each request
+                ControlRegistry.registerAjaxTarget(this);
+            }
+        }
+    }
+
     /**
      * Processes user request to change state of the tree.
      * This implementation processes any expand/collapse and select/deselect
@@ -904,6 +1077,10 @@ public class Tree extends AbstractControl {
                 return postProcess();
             }
         });
+
+        if (hasBehaviors()) {
+            ActionEventDispatcher.dispatchAjaxBehaviors(this);
+        }
         return true;
     }
 
@@ -1005,6 +1182,8 @@ public class Tree extends AbstractControl {
 
         buffer.append(">\n");
 
+        loadChildren(getRootNode());
+
         if (isRootNodeDisplayed()) {
             TreeNode temp = new TreeNode();
 
@@ -1105,7 +1284,7 @@ public class Tree extends AbstractControl {
      * false otherwise
      */
     protected boolean shouldRenderChildren(TreeNode treeNode) {
-        if (treeNode.isLeaf()) {
+        if (treeNode.isLeaf() || !treeNode.isChildrenLoaded()) {
             return false;
         }
         if (treeNode.isExpanded()) {
@@ -1287,7 +1466,7 @@ public class Tree extends AbstractControl {
         StringBuilder sb = new StringBuilder();
         if (isExpandedParent(treeNode)) {
             sb.append("expanded");
-        } else if (treeNode.getChildren().size() > 0) {
+        } else if (treeNode.hasChildren()) {
             sb.append("collapsed");
         } else {
             sb.append("leaf");
@@ -1393,6 +1572,9 @@ public class Tree extends AbstractControl {
      * @param newValue specifies the new expand state
      */
     protected void setExpandState(TreeNode node, boolean newValue) {
+        if (newValue) {
+            loadChildren(node);
+        }
         boolean oldValue = node.isExpanded();
         node.setExpanded(newValue);
         if (isNotifyListeners()) {
@@ -1404,6 +1586,59 @@ public class Tree extends AbstractControl {
         }
     }
 
+    /**
+     * Load the children of the specified node from the tree's data provider,
+     * if the node's children are not loaded yet.
+     * <p/>
+     * Loaded children which support children but have none, are marked as not
+     * loaded so they are loaded when expanded in turn.
+     *
+     * @param node the node to load the children of
+     */
+    protected void loadChildren(TreeNode node) {
+        if (node == null || node.isChildrenLoaded() || dataProvider == null) {
+            return;
+        }
+        node.setChildrenLoaded(true);
+
+        List<TreeNode> children = dataProvider.getChildren(node);
+        if (children == null) {
+            return;
+        }
+        for (TreeNode child : children) {
+            if (child.isChildrenSupported() && child.getChildren().isEmpty()) {
+                child.setChildrenLoaded(false);
+            }
+            node.add(child);
+        }
+    }
+
+    /**
+     * Return the href of the Ajax request which renders the subtree of the
+     * specified node. The request contains the comma separated ids of the
+     * path from the top level node to the specified node.
+     *
+     * @param treeNode the node to render the subtree of
+     * @return the href of the Ajax subtree request
+     */
+    protected String getSubtreeHref(TreeNode treeNode) {
+        TreeNode[] path = getPathToRoot(treeNode);
+        StringBuilder sb = new StringBuilder();
+
+        // Skip the root node at the end of the path
+        for (int i = path.length - 2; i >= 0; i--) {
+            sb.append(path[i].getId());
+            if (i > 0) {
+                sb.append(",");
+            }
+        }
+
+        Map<String, String> parameters = new LinkedHashMap<String, String>();
+        parameters.put(getId(), "1");
+        parameters.put(SUBTREE_NODE_PARAM, sb.toString());
+        return getHref(parameters);
+    }
+
     /**
      * Swaps the expand state of all TreeNodes with specified id's.
      * Thus if a node's expand state is currently 'true', calling
@@ -1557,13 +1792,13 @@ public class Tree extends AbstractControl {
      * @return TreeNode the first node matching the id or null if no match was found.
      */
     protected TreeNode find(TreeNode node, String id) {
-        for (Iterator<TreeNode> it = iterator(node); it.hasNext();) {
-            TreeNode result = it.next();
-            if (result.getId().equals(id)) {
-                return result;
+        if (node == null) {
+            node = getRootNode();
+            if (node == null) {
+                return null;
             }
         }
-        return null;
+        return node.findNode(id);
     }
 
     /**
@@ -1657,6 +1892,67 @@ public class Tree extends AbstractControl {
 
     // Inner classes ----------------------------------------------------------
 
+    /**
+     * Provides the Ajax behavior which renders the subtree of a node expanded
+     * in the browser, whose children were not loaded when the tree was
+     * rendered.
+     * <p/>
+     * The request parameter {@link #SUBTREE_NODE_PARAM} holds the comma
+     * separated ids of the path from the top level node to the expanded node.
+     * The nodes on the path are loaded in turn, and the children of the last
+     * node are returned as a HTML list to be appended to the node in the
+     * browser.
+     */
+    protected class SubtreeBehavior extends DefaultAjaxBehavior implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Return true if the request contains the subtree parameter.
+         *
+         * @param context the request context
+         * @return true if the request contains the subtree parameter
+         */
+        @Override
+        public boolean isAjaxTarget(Context context) {
+            return context.hasRequestParameter(SUBTREE_NODE_PARAM);
+        }
+
+        /**
+         * Load and render the subtree of the requested node.
+         *
+         * @param source the tree the behavior is added to
+         * @return the HTML of the subtree, or an empty result if the node was
+         * not found
+         */
+        @Override
+        public ActionResult onAction(Control source) {
+            TreeNode node = getRootNode();
+            StringTokenizer tokenizer =
+                new StringTokenizer(getRequestValue(SUBTREE_NODE_PARAM), ",");
+            while (node != null && tokenizer.hasMoreTokens()) {
+                loadChildren(node);
+                node = find(node, tokenizer.nextToken());
+            }
+
+            if (node == null || node.isRoot()) {
+                return new ActionResult("", ActionResult.HTML);
+            }
+
+            // The browser tracks the expand state of the node
+            loadChildren(node);
+            node.setExpanded(true);
+
+            HtmlStringBuffer buffer = new HtmlStringBuffer();
+            int indentation = node.getLevel();
+            if (isRootNodeDisplayed()) {
+                indentation++;
+            }
+            renderTree(buffer, node, indentation);
+            return new ActionResult(buffer.toString(), ActionResult.HTML);
+        }
+    }
+
     /**
      * Iterate over all the nodes in the tree in a breadth first manner.
      *
@@ -1681,7 +1977,7 @@ public class Tree extends AbstractControl {
     static class BreadthTreeIterator implements Iterator<TreeNode> {
 
         /**queue for storing node's. */
-        private List<TreeNode> queue = new ArrayList<TreeNode>();
+        private LinkedList<TreeNode> queue = new LinkedList<TreeNode>();
 
         /** indicator to iterate collapsed node's. */
         private boolean iterateCollapsedNodes = true;
@@ -1730,18 +2026,17 @@ public class Tree extends AbstractControl {
          * @exception NoSuchElementException iteration has no more node.
          */
         public TreeNode next() {
-            try {
-                //remove from the end of queue
-                TreeNode node = queue.remove(queue.size() - 1);
-                if (node.hasChildren()) {
-                    if (iterateCollapsedNodes || node.isExpanded()) {
-                        push(node.getChildren());
-                    }
-                }
-                return node;
-            } catch (IndexOutOfBoundsException e) {
+            if (queue.isEmpty()) {
                 throw new NoSuchElementException("There is  no more node's to iterate");
             }
+            //remove from the start of queue
+            TreeNode node = queue.removeFirst();
+            if (node.hasChildren()) {
+                if (iterateCollapsedNodes || node.isExpanded()) {
+                    push(node.getChildren());
+                }
+            }
+            return node;
         }
 
         /**
@@ -1755,13 +2050,13 @@ public class Tree extends AbstractControl {
         }
 
         /**
-         * Pushes the specified list of node's to push on the beginning of the queue.
+         * Pushes the specified list of node's on the end of the queue.
          *
-         * @param children list of node's to push on the beginning of the queue
+         * @param children list of node's to push on the end of the queue
          */
         private void push(List<TreeNode> children) {
             for (TreeNode child : children) {
-                queue.add(0, child); //add to the beginning of queue
+                queue.addLast(child);
             }
         }
     }
@@ -1787,6 +2082,23 @@ public class Tree extends AbstractControl {
         return true;
     }
 
+    /**
+     * Return the ids of the specified nodes, or null if the list is empty.
+     *
+     * @param nodes the nodes to return the ids of
+     * @return the ids of the specified nodes
+     */
+    private String[] getNodeIds(List<TreeNode> nodes) {
+        if (nodes.isEmpty()) {
+            return null;
+        }
+        String[] ids = new String[nodes.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = nodes.get(i).getId();
+        }
+        return ids;
+    }
+
     /**
      * Returns an array of all the nodes in the hierarchy, starting from the specified
      * node up to and including the root node.
@@ -1917,6 +2229,9 @@ public class Tree extends AbstractControl {
         /** holds the javascript call to expand or collapse the node. */
         protected String nodeExpansionString;
 
+        /** holds the href of the Ajax subtree request of an unloaded node. */
+        protected String subtreeHref;
+
         /**
          * @see #init(TreeNode)
          *
@@ -1926,6 +2241,11 @@ public class Tree extends AbstractControl {
         public void init(TreeNode treeNode) {
             expandId = buildString("e_", treeNode.getId(), "");
             iconId = buildString("i_", treeNode.getId(), "");
+            if (treeNode.isChildrenLoaded() || getDataProvider() == null) {
+                subtreeHref = null;
+            } else {
+                subtreeHref = getSubtreeHref(treeNode);
+            }
         }
 
         /**
@@ -1945,7 +2265,14 @@ public class Tree extends AbstractControl {
          * @param buffer string buffer containing the markup
          */
         public void renderExpandAndCollapseAction(HtmlStringBuffer buffer) {
-            getExpandLink().setAttribute("onclick", nodeExpansionString);
+            if (subtreeHref != null) {
+                String loadSubtree = buildString("loadSubtree('", expandId, "','");
+                loadSubtree = buildString(loadSubtree, subtreeHref, "'); ");
+                getExpandLink().setAttribute("onclick",
+                    buildString(loadSubtree, nodeExpansionString, ""));
+            } else {
+                getExpandLink().setAttribute("onclick", nodeExpansionString);
+            }
         }
 
         /**
@@ -1989,6 +2316,9 @@ public class Tree extends AbstractControl {
         /** Name of the cookie holding the collapsed nodes id's. */
         private String collapsedCookieName;
 
+        /** Name of the cookie holding the expand and collapse changes. */
+        private String deltaCookieName;
+
         /**
          * Default constructor.
          *
@@ -2000,6 +2330,17 @@ public class Tree extends AbstractControl {
             this.expandedCookieName = expandedCookieName;
         }
 
+        /**
+         * Create a renderer which records the expand and collapse changes of
+         * the nodes in a single delta cookie.
+         *
+         * @param deltaCookieName name of the cookie holding the expand and
+         * collapse changes
+         */
+        public CookieRenderer(String deltaCookieName) {
+            this.deltaCookieName = deltaCookieName;
+        }
+
         /**
          *@see #init(TreeNode)
          *
@@ -2011,10 +2352,16 @@ public class Tree extends AbstractControl {
             super.init(treeNode);
             StringBuilder sb = new StringBuilder();
             sb.append("handleNodeExpansion(this,event,'").append(expandId).append("','");
-            sb.append(iconId).append("'); handleCookie(this,event,'").append(expandId).append("','");
-            sb.append(treeNode.getId()).append("','");
-            sb.append(expandedCookieName).append("','");
-            sb.append(collapsedCookieName).append("'); return false;");
+            if (deltaCookieName != null) {
+                sb.append(iconId).append("'); handleCookieDelta(this,event,'").append(expandId).append("','");
+                sb.append(treeNode.getId()).append("','");
+                sb.append(deltaCookieName).append("'); return false;");
+            } else {
+                sb.append(iconId).append("'); handleCookie(this,event,'").append(expandId).append("','");
+                sb.append(treeNode.getId()).append("','");
+                sb.append(expandedCookieName).append("','");
+                sb.append(collapsedCookieName).append("'); return false;");
+            }
             nodeExpansionString = sb.toString();
         }
     }
@@ -2101,12 +2448,18 @@ public class Tree extends AbstractControl {
      * of the nodes. When a request is made to the server the cookies
      * is processed and the state of the nodes are modified accordingly.
      * <p/>
-     * There are two cookies used to track the state:
+     * The browser records the expand and collapse changes in a single delta
+     * cookie, as a list of node id's prefixed with <tt>*</tt> for expanded
+     * nodes and <tt>-</tt> for collapsed nodes. Only the last change of each
+     * node is kept. For example: <tt>"*node1,-node2"</tt>.
+     * <p/>
+     * The two cookies used by previous versions are also processed:
      * <ul>
      *     <li>a cookie tracking the expanded node id's
      *     <li>a cookie tracking the collapsed node id's
      * </ul>
-     * The cookies are removed between requests. New requests
+     * The changed nodes are looked up by id, so processing the cookies does
+     * not traverse the tree. The cookies are removed between requests. New requests
      * issue new cookies and update the state of the nodes
      * accordingly.
      * <p/>
@@ -2126,6 +2479,9 @@ public class Tree extends AbstractControl {
         /** Name of cookie responsible for tracking the expanded node id's. */
         protected final String collapsedCookieName = "collapsed_" + getName();
 
+        /** Name of cookie responsible for tracking the expand and collapse changes. */
+        protected final String deltaCookieName = "delta_" + getName();
+
         /** Variable holding a javascript renderer. */
         protected JavascriptRenderer javascriptRenderer;
 
@@ -2141,6 +2497,9 @@ public class Tree extends AbstractControl {
         /** Value of the cookie responsible for tracking the collapsed node id's. */
         private String collapsedNodeCookieValue = null;
 
+        /** Value of the cookie responsible for tracking the expand and collapse changes. */
+        private String deltaNodeCookieValue = null;
+
         /**
          * Creates and initializes a new CookieHandler.
          *
@@ -2149,8 +2508,10 @@ public class Tree extends AbstractControl {
         protected CookieHandler(Context context) {
             expandedNodeCookieValue = context.getCookieValue(expandedCookieName);
             collapsedNodeCookieValue = context.getCookieValue(collapsedCookieName);
+            deltaNodeCookieValue = context.getCookieValue(deltaCookieName);
             expandedNodeCookieValue = prepareCookieValue(expandedNodeCookieValue);
             collapsedNodeCookieValue = prepareCookieValue(collapsedNodeCookieValue);
+            deltaNodeCookieValue = prepareCookieValue(deltaNodeCookieValue);
         }
 
         /**
@@ -2172,19 +2533,31 @@ public class Tree extends AbstractControl {
 
             //No cookie values to digest
             if (expandedNodeCookieValue == null
-                    && collapsedNodeCookieValue == null) {
+                    && collapsedNodeCookieValue == null
+                    && deltaNodeCookieValue == null) {
                 return;
             }
 
-            //build hashes of id's for fast lookup
-            Set<String> expandHash = asSet(expandedNodeCookieValue, DELIM);
-            Set<String> collapsedHash = asSet(collapsedNodeCookieValue, DELIM);
+            //Collect the new expand state of each changed node id
+            Map<String, Boolean> changes = new LinkedHashMap<String, Boolean>();
+            for (String id : asSet(expandedNodeCookieValue, DELIM)) {
+                changes.put(id, Boolean.TRUE);
+            }
+            for (String id : asSet(collapsedNodeCookieValue, DELIM)) {
+                if (!changes.containsKey(id)) {
+                    changes.put(id, Boolean.FALSE);
+                }
+            }
+            putDeltaChanges(deltaNodeCookieValue, changes);
 
-            for (Iterator<TreeNode> it = iterator(getRootNode()); it.hasNext();) {
-                TreeNode currentNode = it.next();
+            for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+                TreeNode currentNode = find(getRootNode(), change.getKey());
+                if (currentNode == null) {
+                    continue;
+                }
 
                 //If currentNode was expanded by user in browser
-                if (expandHash.contains(currentNode.getId())) {
+                if (change.getValue().booleanValue()) {
 
                     //If currentNode's state is collapsed
                     if (!currentNode.isExpanded()) {
@@ -2198,7 +2571,7 @@ public class Tree extends AbstractControl {
                         //Instead we update the expandTracker directly.
                         expandTracker.add(currentNode.getId());
                     }
-                } else if (collapsedHash.contains(currentNode.getId())) {
+                } else {
                     //If currentNode was collapsed by user in browser
 
                     if (currentNode.isExpanded()) {
@@ -2238,6 +2611,11 @@ public class Tree extends AbstractControl {
 
             //Remove  collapsed cookie.
             setCookie(null, collapsedCookieName);
+
+            //Remove delta cookie.
+            if (deltaNodeCookieValue != null) {
+                setCookie(null, deltaCookieName);
+            }
         }
 
         /**
@@ -2247,7 +2625,7 @@ public class Tree extends AbstractControl {
          */
         public JavascriptRenderer getJavascriptRenderer() {
             if (javascriptRenderer == null) {
-                javascriptRenderer = new CookieRenderer(expandedCookieName, collapsedCookieName);
+                javascriptRenderer = new CookieRenderer(deltaCookieName);
             }
             return javascriptRenderer;
         }
@@ -2362,6 +2740,35 @@ public class Tree extends AbstractControl {
             }
             return set;
         }
+
+        /**
+         * Put the expand and collapse changes of the specified delta cookie
+         * value in the given map. Each change is a node id prefixed with
+         * <tt>*</tt> if the node was expanded or <tt>-</tt> if the node was
+         * collapsed. A change replaces any earlier change of the same node.
+         *
+         * @param value the delta cookie value
+         * @param changes the map of node id's to their new expand state
+         */
+        protected void putDeltaChanges(String value, Map<String, Boolean> changes) {
+            if (value == null) {
+                return;
+            }
+
+            StringTokenizer tokenizer = new StringTokenizer(value, DELIM);
+            while (tokenizer.hasMoreTokens()) {
+                String change = tokenizer.nextToken();
+                if (change.length() < 2) {
+                    continue;
+                }
+                char operation = change.charAt(0);
+                if (operation == '*') {
+                    changes.put(change.substring(1), Boolean.TRUE);
+                } else if (operation == '-') {
+                    changes.put(change.substring(1), Boolean.FALSE);
+                }
+            }
+        }
     }
 
     /**
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.extras.tree;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Provides the children of tree nodes on demand, so that a
+ * {@link Tree} only holds the nodes the user has expanded.
+ * <p/>
+ * A node is loaded by the provider when it is expanded and its children are
+ * not loaded, see {@link TreeNode#isChildrenLoaded()}. The children of the
+ * root node are loaded before the tree is first rendered. Children
+ * returned by the provider which support children but have none, are marked
+ * as not loaded, so they in turn are loaded when expanded.
+ * <p/>
+ * With javascript enabled the children of a collapsed node are not sent to
+ * the browser. Instead the subtree is requested with an Ajax call when the
+ * node is first expanded in the browser, see {@link Tree#setDataProvider(TreeDataProvider)}.
+ * <p/>
+ * For example:
+ *
+ * <pre class="prettyprint">
+ * tree.setDataProvider(new TreeDataProvider() {
+ *     public List&lt;TreeNode&gt; getChildren(TreeNode node) {
+ *         List&lt;TreeNode&gt; children = new ArrayList&lt;TreeNode&gt;();
+ *         for (File file : new File(node.getId()).listFiles()) {
+ *             children.add(new TreeNode(file.getName(), file.getPath(), file.isDirectory()));
+ *         }
+ *         return children;
+ *     }
+ * }); </pre>
+ */
+public interface TreeDataProvider extends Serializable {
+
+    /**
+     * Return the children of the specified node.
+     *
+     * @param node the node to load the children of
+     * @return the children of the specified node
+     */
+    public List<TreeNode> getChildren(TreeNode node);
+}
@@ -21,8 +21,10 @@ package org.apache.click.extras.tree;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 /**
@@ -53,6 +55,16 @@ import java.util.Random;
  * the constructors. Id's are generated by an instance of {@link java.util.Random}.
  * The current implementation generates a Long using random.nextLong(). This
  * means a total of 2 <sup>64</sup> numbers can be generated.
+ * <p/>
+ * The root node of a tree keeps an index of the tree's nodes by id, which is
+ * used by {@link Tree#find(java.lang.String)} to find nodes without
+ * traversing the tree. The index is built on the first lookup and is kept up
+ * to date as nodes are added, removed or their ids changed.
+ * <p/>
+ * A node can be marked as not having its children loaded, see
+ * {@link #setChildrenLoaded(boolean)}. Such a node is rendered as a collapsed
+ * parent, and its children are loaded by the tree's
+ * {@link TreeDataProvider} when the node is first expanded.
  */
 public class TreeNode implements Serializable {
 
@@ -81,6 +93,9 @@ public class TreeNode implements Serializable {
      * differentiate between files and directories with no children. */
     private boolean childrenSupported = true;
 
+    /** Indicates if this node's children have been loaded. */
+    private boolean childrenLoaded = true;
+
     /** User provided value of this node. */
     private Object value;
 
@@ -96,6 +111,9 @@ public class TreeNode implements Serializable {
     /** A custom icon the Tree will render for this node. */
     private String icon;
 
+    /** The index of the tree's nodes by id, only held by the root node. */
+    private transient Map<String, TreeNode> nodeIndex;
+
     // Public Constructors ----------------------------------------------------
 
     /**
@@ -227,9 +245,34 @@ public class TreeNode implements Serializable {
      * @return true if this node is a leaf node, false otherwise.
      */
     public boolean isLeaf() {
+        if (!childrenLoaded) {
+            return !isChildrenSupported();
+        }
         return getChildren().isEmpty();
     }
 
+    /**
+     * Returns true if this node's children have been loaded, false otherwise.
+     * By default this value is true.
+     *
+     * @return true if this node's children have been loaded, false otherwise
+     */
+    public boolean isChildrenLoaded() {
+        return childrenLoaded;
+    }
+
+    /**
+     * Sets whether this node's children have been loaded or not. A node
+     * which supports children but whose children are not loaded is not a
+     * leaf node, and its children are loaded by the tree's
+     * {@link TreeDataProvider} when the node is expanded.
+     *
+     * @param childrenLoaded whether this node's children have been loaded
+     */
+    public void setChildrenLoaded(boolean childrenLoaded) {
+        this.childrenLoaded = childrenLoaded;
+    }
+
     /**
      * Returns true if this node supports children, false otherwise.
      *
@@ -271,6 +314,15 @@ public class TreeNode implements Serializable {
      * @param id this node's new id value
      */
     public void setId(String id) {
+        Map<String, TreeNode> index = getRoot().nodeIndex;
+        if (index != null) {
+            if (this.id != null && index.get(this.id) == this) {
+                index.remove(this.id);
+            }
+            if (id != null && !index.containsKey(id)) {
+                index.put(id, this);
+            }
+        }
         this.id = id;
     }
 
@@ -408,6 +460,13 @@ public class TreeNode implements Serializable {
             return;
         }
         getMutableChildren().add(index, child);
+
+        // Add the child's nodes to the index of this tree
+        Map<String, TreeNode> nodes = getRoot().nodeIndex;
+        if (nodes != null) {
+            indexNodes(child, nodes);
+        }
+        child.nodeIndex = null;
     }
 
     /**
@@ -424,7 +483,21 @@ public class TreeNode implements Serializable {
         if (getMutableChildren() == null) {
             children = new ArrayList<TreeNode>();
         }
-        getMutableChildren().remove(child);
+        int index = getMutableChildren().indexOf(child);
+        if (index != -1) {
+            TreeNode removed = getMutableChildren().remove(index);
+
+            // Remove the child's nodes from the index of this tree
+            Map<String, TreeNode> nodes = getRoot().nodeIndex;
+            if (nodes != null) {
+                for (Iterator<TreeNode> it = new Tree.BreadthTreeIterator(removed); it.hasNext();) {
+                    TreeNode node = it.next();
+                    if (node.getId() != null && nodes.get(node.getId()) == node) {
+                        nodes.remove(node.getId());
+                    }
+                }
+            }
+        }
         child.setParent(null);
     }
 
@@ -614,8 +687,67 @@ public class TreeNode implements Serializable {
         this.expanded = expanded;
     }
 
+    /**
+     * Return the node with the specified id in the subtree of this node, or
+     * null if no match was found. The node is looked up in the index of the
+     * tree, which is built by the first lookup.
+     *
+     * @param id the id of the node to find
+     * @return the node with the specified id, or null if no match was found
+     */
+    TreeNode findNode(String id) {
+        TreeNode root = getRoot();
+        if (root.nodeIndex == null) {
+            root.nodeIndex = new HashMap<String, TreeNode>();
+            indexNodes(root, root.nodeIndex);
+        }
+
+        TreeNode node = root.nodeIndex.get(id);
+        if (node == null) {
+            return null;
+        }
+
+        // Check the node is in the subtree of this node
+        for (TreeNode current = node; current != null; current = current.getParent()) {
+            if (current == this) {
+                return node;
+            }
+        }
+        return null;
+    }
+
     // Private Behavior -------------------------------------------------------
 
+    /**
+     * Return the root node of the tree this node belongs to.
+     *
+     * @return the root node of this node's tree
+     */
+    private TreeNode getRoot() {
+        TreeNode root = this;
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        return root;
+    }
+
+    /**
+     * Add the nodes of the specified subtree to the index, in breadth first
+     * order. A node is not added if its id is already indexed.
+     *
+     * @param node the root of the subtree to index
+     * @param index the index to add the nodes to
+     */
+    private static void indexNodes(TreeNode node, Map<String, TreeNode> index) {
+        for (Iterator<TreeNode> it = new Tree.BreadthTreeIterator(node); it.hasNext();) {
+            TreeNode current = it.next();
+            String currentId = current.getId();
+            if (currentId != null && !index.containsKey(currentId)) {
+                index.put(currentId, current);
+            }
+        }
+    }
+
     /**
      * Returns the list of mutable children of this node.
      *
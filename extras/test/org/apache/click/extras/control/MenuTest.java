@@ -18,10 +18,13 @@
  */
 package org.apache.click.extras.control;
 
+import java.util.Arrays;
 import java.util.Collections;
+import javax.servlet.http.HttpServletRequest;
 import junit.framework.TestCase;
 import org.apache.click.MockContext;
 import org.apache.click.Page;
+import org.apache.click.extras.security.AccessController;
 import org.apache.click.extras.security.RoleAccessController;
 import org.apache.click.servlet.MockPrincipal;
 import org.apache.click.servlet.MockRequest;
@@ -101,6 +104,90 @@ public class MenuTest extends TestCase {
         assertTrue(menu.isUserInRoles());
     }
 
+    /**
+     * Check that the menu index selects the same menus as scanning the menu
+     * children, and is removed when a menu is added.
+     */
+    public void testMenuIndex() {
+        MockContext context = MockContext.initContext();
+        context.getMockRequest().setServletPath("/user/user-2.htm");
+
+        Menu rootMenu = new Menu("root");
+        Menu home = rootMenu.add(new Menu("home"));
+        home.setPath("home.htm");
+        Menu user = rootMenu.add(new Menu("user"));
+        user.setPath("user/home.htm");
+        Menu user1 = user.add(new Menu("user1"));
+        user1.setPath("user/user-1.htm");
+        Menu user2 = user.add(new Menu("user2"));
+        user2.setPath("/user/user-2.htm");
+        Menu admin = rootMenu.add(new Menu("admin"));
+        admin.getPages().add("/user/user-2.htm");
+
+        Menu[] menus = { rootMenu, home, user, user1, user2, admin };
+        boolean[] expected = { true, false, true, false, true, true };
+
+        for (int i = 0; i < menus.length; i++) {
+            assertEquals(expected[i], menus[i].isSelected());
+        }
+
+        MenuIndex index = new MenuIndex(rootMenu);
+        rootMenu.setMenuIndex(index);
+        assertSame(index, user2.getMenuIndex());
+
+        for (int i = 0; i < menus.length; i++) {
+            assertEquals(expected[i], menus[i].isSelected());
+        }
+        assertSame(user, rootMenu.getSelectedChild());
+        assertEquals(Arrays.asList(rootMenu, user, user2, admin),
+            index.getSelectedMenus("/user/user-2.htm"));
+        assertTrue(index.getSelectedMenus("/unknown.htm").isEmpty());
+
+        // Adding a menu removes the index from the tree
+        Menu user3 = user.add(new Menu("user3"));
+        assertNull(rootMenu.getMenuIndex());
+        assertNull(user2.getMenuIndex());
+
+        user3.setPath("user/user-3.htm");
+        context.getMockRequest().setServletPath("/user/user-3.htm");
+        assertTrue(user.isSelected());
+        assertTrue(user3.isSelected());
+        assertFalse(user2.isSelected());
+    }
+
+    /**
+     * Check that the access controller is invoked once per role for each
+     * request.
+     */
+    public void testRoleDecisionsCached() {
+        MockContext.initContext();
+
+        final int[] checks = new int[1];
+        AccessController controller = new AccessController() {
+            public boolean hasAccess(HttpServletRequest request, String resource) {
+                checks[0]++;
+                return "user".equals(resource);
+            }
+        };
+
+        Menu rootMenu = new Menu("root");
+        rootMenu.setAccessController(controller);
+        for (int i = 0; i < 10; i++) {
+            Menu menu = rootMenu.add(new Menu("menu" + i));
+            menu.setAccessController(controller);
+            menu.setRoles(Arrays.asList("admin", "user"));
+        }
+
+        assertTrue(rootMenu.isUserInChildMenuRoles());
+        rootMenu.toString();
+        assertEquals(2, checks[0]);
+
+        // A new request checks the roles again
+        MockContext.initContext();
+        assertTrue(rootMenu.getChildren().get(0).isUserInRoles());
+        assertEquals(4, checks[0]);
+    }
+
     public class MyMenu extends Menu {
         private static final long serialVersionUID = 1L;
 
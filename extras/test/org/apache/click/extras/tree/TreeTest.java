@@ -19,8 +19,12 @@
 package org.apache.click.extras.tree;
 
 import junit.framework.*;
+import java.util.ArrayList;
 import java.util.List;
+import javax.servlet.http.Cookie;
+import org.apache.click.ActionResult;
 import org.apache.click.MockContext;
+import org.apache.click.ajax.AjaxBehavior;
 import org.apache.click.control.ActionLink;
 import org.apache.click.servlet.MockRequest;
 
@@ -121,6 +125,150 @@ public class TreeTest extends TestCase {
         assertTrue("Expected 4. Found " + result.size(), result.size() == 4);
     }
 
+    /**
+     * Test that nodes are found by id as nodes are added, removed and their
+     * ids changed.
+     */
+    public void testFindIndexedNodes() {
+        TreeNode root = tree.getRootNode();
+        assertSame(root, tree.find("root"));
+        assertEquals("3.1.2", tree.find("3.1.2").getId());
+        assertNull(tree.find("unknown"));
+
+        // Find within a subtree
+        TreeNode three = tree.find("three");
+        assertSame(tree.find("3.1.1"), tree.find(three, "3.1.1"));
+        assertNull(tree.find(three, "4.1"));
+
+        // Add a subtree
+        TreeNode five = new TreeNode("five", "five");
+        five.add(new TreeNode("5.1", "5.1"));
+        root.add(five);
+        assertSame(five, tree.find("five"));
+        assertEquals("5.1", tree.find("5.1").getId());
+
+        // Remove a subtree
+        TreeNode four = tree.find("four");
+        root.remove(four);
+        assertNull(tree.find("four"));
+        assertNull(tree.find("4.1.1"));
+        assertSame(four, tree.find(four, "four"));
+        assertEquals("4.1.1", tree.find(four, "4.1.1").getId());
+
+        // Change an id
+        TreeNode node = tree.find("3.2");
+        node.setId("3.2.new");
+        assertNull(tree.find("3.2"));
+        assertSame(node, tree.find("3.2.new"));
+    }
+
+    /**
+     * Test that the expand and collapse changes of the delta cookie are
+     * applied to the nodes.
+     */
+    public void testCookieDelta() {
+        MockRequest mockRequest = mockContext.getMockRequest();
+        mockRequest.addCookie(new Cookie("delta_tree", "\"*three,*3.1,-3.1,*four,-unknown\""));
+
+        tree.setJavascriptEnabled(true, Tree.JAVASCRIPT_COOKIE_POLICY);
+        tree.onProcess();
+        mockContext.executeActionListeners();
+
+        assertTrue(tree.find("three").isExpanded());
+        assertFalse(tree.find("3.1").isExpanded());
+        assertTrue(tree.find("four").isExpanded());
+        assertFalse(tree.find("one").isExpanded());
+
+        assertTrue(tree.toString().indexOf("handleCookieDelta(this,event,'e_one','one','delta_tree')") > 0);
+    }
+
+    /**
+     * Test that the children of unloaded nodes are loaded from the data
+     * provider when the tree is rendered and when nodes are expanded.
+     */
+    public void testDataProviderLoadsChildren() {
+        Tree lazyTree = buildLazyTree();
+        TreeNode root = lazyTree.getRootNode();
+
+        String html = lazyTree.toString();
+        assertTrue(root.isChildrenLoaded());
+        assertEquals(2, root.getChildren().size());
+        assertTrue(html.indexOf("n2") > 0);
+
+        TreeNode node = lazyTree.find("n1");
+        assertFalse(node.isChildrenLoaded());
+        assertFalse(node.isLeaf());
+        assertTrue(node.hasChildren());
+        assertNull(lazyTree.find("n1.1"));
+
+        lazyTree.expand("n1");
+        assertTrue(node.isChildrenLoaded());
+        assertEquals(2, node.getChildren().size());
+        assertFalse(lazyTree.find("n1.1").isChildrenLoaded());
+        assertTrue(lazyTree.toString().indexOf("n1.2") > 0);
+    }
+
+    /**
+     * Test that the subtree of an unloaded node is rendered by the Ajax
+     * behavior of a tree created for the request.
+     */
+    public void testSubtreeBehavior() {
+        Tree lazyTree = buildLazyTree();
+        lazyTree.setJavascriptEnabled(true);
+        lazyTree.onInit();
+        assertTrue(lazyTree.hasBehaviors());
+
+        String html = lazyTree.toString();
+        assertTrue(html.indexOf("loadSubtree('e_n1','") > 0);
+        assertTrue(html.indexOf(Tree.SUBTREE_NODE_PARAM + "=n1") > 0);
+        assertNull(lazyTree.find("n1.1"));
+
+        MockRequest mockRequest = mockContext.getMockRequest();
+        mockRequest.setParameter("tree", "1");
+        mockRequest.setParameter(Tree.SUBTREE_NODE_PARAM, "n1,n1.2");
+
+        Tree requestTree = buildLazyTree();
+        requestTree.setJavascriptEnabled(true);
+        requestTree.onInit();
+        requestTree.onProcess();
+
+        AjaxBehavior behavior = (AjaxBehavior) requestTree.getBehaviors().iterator().next();
+        assertTrue(behavior.isAjaxTarget(mockContext));
+
+        ActionResult result = behavior.onAction(requestTree);
+        assertEquals(ActionResult.HTML, result.getContentType());
+        String subtree = result.getContent();
+        assertTrue(subtree.startsWith("<ul class=\"level3"));
+        assertTrue(subtree.indexOf("e_n1.2.1") > 0);
+        assertTrue(subtree.indexOf("e_n1.1.1") == -1);
+        assertTrue(requestTree.find("n1.2").isExpanded());
+    }
+
+    /**
+     * Test that the expanded and selected nodes are saved to and restored
+     * from the session, including the nodes loaded from a data provider.
+     */
+    public void testSaveAndRestoreState() {
+        Tree lazyTree = buildLazyTree();
+        lazyTree.toString();
+        lazyTree.expand("n1");
+        lazyTree.expand("n1.2");
+        lazyTree.select("n1.2.1");
+        lazyTree.saveState(mockContext);
+
+        Tree restoredTree = buildLazyTree();
+        restoredTree.restoreState(mockContext);
+        assertTrue(restoredTree.find("n1").isExpanded());
+        assertTrue(restoredTree.find("n1.2").isExpanded());
+        assertTrue(restoredTree.find("n1.2.1").isSelected());
+        assertFalse(restoredTree.find("n1.1").isExpanded());
+
+        restoredTree.removeState(mockContext);
+        Tree emptyTree = buildLazyTree();
+        emptyTree.restoreState(mockContext);
+        assertNull(emptyTree.find("n1"));
+    }
+
     // ------------------------------------------------------ Protected Methods
 
     protected Tree createTree() {
@@ -162,6 +310,15 @@ public class TreeTest extends TestCase {
 
     // -------------------------------------------------------- Private Methods
 
+    private Tree buildLazyTree() {
+        Tree lazyTree = createTree();
+        TreeNode root = new TreeNode("root", "root");
+        root.setChildrenLoaded(false);
+        lazyTree.setRootNode(root);
+        lazyTree.setDataProvider(new TestDataProvider());
+        return lazyTree;
+    }
+
     private void buildTestIds() {
         testIds = new String[] {
             "one",
@@ -196,4 +353,23 @@ public class TreeTest extends TestCase {
             assertTrue("IsExpanded must be " + !expected,node.isSelected() == !expected);
         }
     }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Provides two children for each node, three levels deep.
+     */
+    static class TestDataProvider implements TreeDataProvider {
+
+        private static final long serialVersionUID = 1L;
+
+        public List<TreeNode> getChildren(TreeNode node) {
+            List<TreeNode> children = new ArrayList<TreeNode>();
+            String prefix = node.isRoot() ? "n" : node.getId() + ".";
+            boolean leaves = node.getLevel() == 2;
+            children.add(new TreeNode(prefix + "1", prefix + "1", !leaves));
+            children.add(new TreeNode(prefix + "2", prefix + "2", !leaves));
+            return children;
+        }
+    }
 }
\ No newline at end of file
@@ -92,6 +92,12 @@ public class ActionEventDispatcher {
     /** The application log service. */
     LogService logger;
 
+    /**
+     * The total time in nanoseconds spent firing the action events and
+     * AjaxBehaviors of the request, or -1 if none were fired.
+     */
+    long actionEventsTime = -1;
+
     // Constructors -----------------------------------------------------------
 
     /**
@@ -177,7 +183,14 @@ public class ActionEventDispatcher {
             return true;
         }
 
-        return fireActionEvents(context, getEventSourceList(), getEventListenerList());
+        long startTime = System.nanoTime();
+
+        boolean continueProcessing =
+            fireActionEvents(context, getEventSourceList(), getEventListenerList());
+
+        addActionEventsTime(startTime);
+
+        return continueProcessing;
     }
 
     /**
@@ -196,7 +209,14 @@ public class ActionEventDispatcher {
             return true;
         }
 
-        return fireAjaxBehaviors(context, getAjaxBehaviorSourceSet());
+        long startTime = System.nanoTime();
+
+        boolean continueProcessing =
+            fireAjaxBehaviors(context, getAjaxBehaviorSourceSet());
+
+        addActionEventsTime(startTime);
+
+        return continueProcessing;
     }
 
     // Protected Methods ------------------------------------------------------
@@ -512,6 +532,21 @@ public class ActionEventDispatcher {
         return ajaxBehaviorSourceSet;
     }
 
+    /**
+     * Add the time spent firing action events since the given start time to
+     * the request total. The ClickServlet records the total once per request.
+     *
+     * @param startTime the start time in nanoseconds
+     */
+    void addActionEventsTime(long startTime) {
+        long duration = System.nanoTime() - startTime;
+        if (actionEventsTime < 0) {
+            actionEventsTime = duration;
+        } else {
+            actionEventsTime += duration;
+        }
+    }
+
     /**
      * Adds the specified ActionEventDispatcher on top of the dispatcher stack.
      *
@@ -23,12 +23,15 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Writer;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletContext;
@@ -41,11 +44,15 @@ import javax.servlet.http.HttpSession;
 
 import org.apache.click.service.ConfigService;
 import org.apache.click.service.ConfigService.AutoBinding;
+import org.apache.click.service.LogMessage;
 import org.apache.click.service.LogService;
+import org.apache.click.service.MetricsService;
+import org.apache.click.service.MetricsService.RequestPhase;
 import org.apache.click.service.PropertyService;
 import org.apache.click.service.ResourceService;
 import org.apache.click.service.TemplateException;
 import org.apache.click.service.XmlConfigService;
+import org.apache.click.util.ClassLoaderCache;
 import org.apache.click.util.ClickUtils;
 import org.apache.click.util.ErrorPage;
 import org.apache.click.util.HtmlStringBuffer;
@@ -133,6 +140,42 @@ public class ClickServlet extends HttpServlet {
      */
     protected final static String CONFIG_SERVICE_CLASS = "config-service-class";
 
+    /**
+     * The maximum number of idle pooled page instances per page class and
+     * locale init parameter name: &nbsp; "<tt>page-pool-size</tt>".
+     */
+    protected final static String PAGE_POOL_SIZE = "page-pool-size";
+
+    /**
+     * The maximum time in milliseconds a request waits for a stateful page
+     * init parameter name: &nbsp; "<tt>stateful-page-timeout</tt>". A
+     * negative value waits until the page is available. By default requests
+     * wait until the page is available.
+     */
+    protected final static String STATEFUL_PAGE_TIMEOUT = "stateful-page-timeout";
+
+    /**
+     * The maximum number of requests waiting for a stateful page init
+     * parameter name: &nbsp; "<tt>stateful-page-max-waiting</tt>". A negative
+     * value does not limit the number of waiting requests. By default the
+     * number of waiting requests is not limited.
+     */
+    protected final static String STATEFUL_PAGE_MAX_WAITING = "stateful-page-max-waiting";
+
+    /**
+     * The <tt>Retry-After</tt> seconds of rejected stateful page requests init
+     * parameter name: &nbsp; "<tt>stateful-page-retry-after</tt>".
+     */
+    protected final static String STATEFUL_PAGE_RETRY_AFTER = "stateful-page-retry-after";
+
+    /**
+     * The stateful page snapshot init parameter name: &nbsp;
+     * "<tt>stateful-page-snapshot</tt>". If <tt>true</tt> read only Ajax
+     * requests for a busy stateful page are executed against a copy of the
+     * page state saved by the last completed request.
+     */
+    protected final static String STATEFUL_PAGE_SNAPSHOT = "stateful-page-snapshot";
+
     /**
      * The forwarded request marker attribute: &nbsp; "<tt>click-forward</tt>".
      */
@@ -154,10 +197,40 @@ public class ClickServlet extends HttpServlet {
     /** The application resource service. */
     protected ResourceService resourceService;
 
+    /** The application request metrics service. */
+    protected MetricsService metricsService;
+
     /** The thread local page listeners. */
     private static final ThreadLocal<List<PageInterceptor>>
         THREAD_LOCAL_INTERCEPTORS = new ThreadLocal<List<PageInterceptor>>();
 
+    /** The thread local stateful pages locked by the current request. */
+    private static final ThreadLocal<List<Page>>
+        THREAD_LOCAL_STATEFUL_PAGES = new ThreadLocal<List<Page>>();
+
+    /** The thread local flag indicating the requested page is initialized. */
+    private static final ThreadLocal<Boolean>
+        THREAD_LOCAL_REQUEST_PAGE = new ThreadLocal<Boolean>();
+
+    /** The binding plans of the requested page classes. */
+    private final Map<Class<? extends Page>, PageBindingPlan> pageBindingPlans =
+        new ConcurrentHashMap<Class<? extends Page>, PageBindingPlan>();
+
+    /** The pool of idle pooled page instances. */
+    private PagePool pagePool = new PagePool(PagePool.DEFAULT_MAX_IDLE);
+
+    /** The maximum time in milliseconds a request waits for a stateful page. */
+    private long statefulPageTimeout = -1;
+
+    /** The maximum number of requests waiting for a stateful page. */
+    private int statefulPageMaxWaiting = -1;
+
+    /** The Retry-After seconds of rejected stateful page requests. */
+    private int statefulPageRetryAfter = 1;
+
+    /** The flag indicating read only Ajax requests may use a page snapshot. */
+    private boolean statefulPageSnapshot;
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -186,6 +259,30 @@ public class ClickServlet extends HttpServlet {
 
             resourceService = configService.getResourceService();
 
+            metricsService = configService.getMetricsService();
+
+            String poolSize = getInitParameter(PAGE_POOL_SIZE);
+            if (StringUtils.isNotBlank(poolSize)) {
+                pagePool = new PagePool(Integer.parseInt(poolSize.trim()));
+            }
+
+            String value = getInitParameter(STATEFUL_PAGE_TIMEOUT);
+            if (StringUtils.isNotBlank(value)) {
+                statefulPageTimeout = Long.parseLong(value.trim());
+            }
+            value = getInitParameter(STATEFUL_PAGE_MAX_WAITING);
+            if (StringUtils.isNotBlank(value)) {
+                statefulPageMaxWaiting = Integer.parseInt(value.trim());
+            }
+            value = getInitParameter(STATEFUL_PAGE_RETRY_AFTER);
+            if (StringUtils.isNotBlank(value)) {
+                statefulPageRetryAfter = Integer.parseInt(value.trim());
+            }
+            value = getInitParameter(STATEFUL_PAGE_SNAPSHOT);
+            if (StringUtils.isNotBlank(value)) {
+                statefulPageSnapshot = Boolean.valueOf(value.trim()).booleanValue();
+            }
+
         } catch (Throwable e) {
             // In mock mode this exception can occur if click.xml is not
             // available.
@@ -232,6 +329,10 @@ public class ClickServlet extends HttpServlet {
         } finally {
             // Dereference the application config service
             configService = null;
+            pagePool.clear();
+
+            // Remove the cached values referring to the application classes
+            ClassLoaderCache.removeAll();
         }
 
         super.destroy();
@@ -299,6 +400,7 @@ public class ClickServlet extends HttpServlet {
         }
 
         long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
 
         if (logger.isDebugEnabled()) {
             HtmlStringBuffer buffer = new HtmlStringBuffer(200);
@@ -314,9 +416,11 @@ public class ClickServlet extends HttpServlet {
 
         // Handle click page requests
         Page page = null;
+        ActionEventDispatcher eventDispatcher = null;
+        int lockedPageCount = getThreadLocalStatefulPages().size();
         try {
 
-            ActionEventDispatcher eventDispatcher = createActionEventDispatcher();
+            eventDispatcher = createActionEventDispatcher();
             // Bind ActionEventDispatcher to current thread
             ActionEventDispatcher.pushThreadLocalDispatcher(eventDispatcher);
 
@@ -345,24 +449,20 @@ public class ClickServlet extends HttpServlet {
                 }
             }
 
+            long createStartTime = System.nanoTime();
+
             page = createPage(context);
 
+            recordPhase(request, RequestPhase.CREATE_PAGE,
+                System.nanoTime() - createStartTime);
+
             // If no page created, then an PageInterceptor has aborted processing
+            // or the stateful page request was rejected
             if (page == null) {
                 return;
             }
 
-            if (page.isStateful()) {
-                synchronized (page) {
-                    processPage(page);
-                    processPageOnDestroy(page, startTime);
-                    // Mark page as already destroyed for finally block
-                    page = null;
-                }
-
-            } else {
-                processPage(page);
-            }
+            processPage(page);
 
         } catch (Exception e) {
             Class<? extends Page> pageClass =
@@ -382,15 +482,14 @@ public class ClickServlet extends HttpServlet {
         } finally {
 
             try {
-                if (page != null) {
-                    if (page.isStateful()) {
-                        synchronized (page) {
-                            processPageOnDestroy(page, startTime);
-                        }
-
-                    } else {
+                try {
+                    if (page != null) {
                         processPageOnDestroy(page, startTime);
                     }
+
+                } finally {
+                    // Let the next request of the stateful pages execute
+                    unlockStatefulPages(lockedPageCount);
                 }
 
                 for (PageInterceptor interceptor : getThreadLocalInterceptors()) {
@@ -399,6 +498,20 @@ public class ClickServlet extends HttpServlet {
 
                 setThreadLocalInterceptors(null);
 
+                if (page != null && page.isPooled()) {
+                    releasePooledPage(page);
+                }
+
+                // Action events and AjaxBehaviors can be fired more than once
+                // per request, their total time is recorded once
+                if (eventDispatcher != null && eventDispatcher.actionEventsTime >= 0) {
+                    recordPhase(request, RequestPhase.ACTION_EVENTS,
+                        eventDispatcher.actionEventsTime);
+                }
+
+                recordPhase(request, RequestPhase.REQUEST,
+                    System.nanoTime() - startNanos);
+
             } finally {
                 // Only clear the context when running in normal mode.
                 if (request.getAttribute(MOCK_MODE_ENABLED) == null) {
@@ -481,17 +594,7 @@ public class ClickServlet extends HttpServlet {
                 }
             });
 
-            if (errorPage.isStateful()) {
-                synchronized (errorPage) {
-                    processPage(errorPage);
-                    processPageOnDestroy(errorPage, 0);
-                    // Mark page as already destroyed for finally block
-                    finalizeRef = null;
-                }
-
-            } else {
-                processPage(errorPage);
-            }
+            processPage(errorPage);
 
         } catch (Exception ex) {
             String message =
@@ -505,18 +608,40 @@ public class ClickServlet extends HttpServlet {
 
         } finally {
             if (finalizeRef != null) {
-                if (finalizeRef.isStateful()) {
-                    synchronized (finalizeRef) {
-                        processPageOnDestroy(finalizeRef, 0);
-                    }
-
-                } else {
-                    processPageOnDestroy(finalizeRef, 0);
-                }
+                processPageOnDestroy(finalizeRef, 0);
             }
         }
     }
 
+    /**
+     * Reject the request for the given stateful page, because the page was not
+     * available within the <tt>stateful-page-timeout</tt> or too many requests
+     * were already waiting for it.
+     * <p/>
+     * This method sends a <tt>503 Service Unavailable</tt> response with a
+     * <tt>Retry-After</tt> header. Subclasses can override this method to
+     * send a different response.
+     *
+     * @param page the busy stateful page
+     * @param context the request context
+     */
+    protected void rejectStatefulPageRequest(Page page, Context context) {
+        HttpServletResponse response = context.getResponse();
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("rejected request for busy stateful page: "
+                + page.getClass().getName());
+        }
+
+        try {
+            response.setHeader("Retry-After", String.valueOf(statefulPageRetryAfter));
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+
+        } catch (IOException ioe) {
+            logger.error(ioe.toString(), ioe);
+        }
+    }
+
     /**
      * Process the given page invoking its "on" event callback methods
      * and directing the response.
@@ -608,8 +733,13 @@ public class ClickServlet extends HttpServlet {
      * @return true if processing should continue, false otherwise
      */
     protected boolean performOnSecurityCheck(Page page, Context context) {
+        long startTime = System.nanoTime();
+
         boolean continueProcessing = page.onSecurityCheck();
 
+        recordPhase(context.getRequest(), RequestPhase.ON_SECURITY_CHECK,
+            System.nanoTime() - startTime);
+
         if (logger.isTraceEnabled()) {
             logger.trace("   invoked: "
                 + ClassUtils.getShortClassName(page.getClass())
@@ -652,6 +782,8 @@ public class ClickServlet extends HttpServlet {
      * @param context the request context
      */
     protected void performOnInit(Page page, Context context) {
+        long startTime = System.nanoTime();
+
         page.onInit();
 
         if (logger.isTraceEnabled()) {
@@ -667,15 +799,14 @@ public class ClickServlet extends HttpServlet {
                 control.onInit();
 
                 if (logger.isTraceEnabled()) {
-                    String controlClassName = control.getClass().getName();
-                    controlClassName = controlClassName.substring(
-                        controlClassName.lastIndexOf('.') + 1);
-                    String msg = "   invoked: '" + control.getName() + "' "
-                        + controlClassName + ".onInit()";
-                    logger.trace(msg);
+                    logger.trace(new LogMessage("   invoked: '{}' {}.onInit()",
+                        control.getName(), ClassUtils.getShortClassName(control.getClass())));
                 }
             }
         }
+
+        recordPhase(context.getRequest(), RequestPhase.ON_INIT,
+            System.nanoTime() - startTime);
     }
 
     /**
@@ -690,6 +821,8 @@ public class ClickServlet extends HttpServlet {
     protected boolean performOnProcess(Page page, Context context,
         ActionEventDispatcher eventDispatcher) {
 
+        long startTime = System.nanoTime();
+
         boolean continueProcessing = true;
 
         // Make sure don't process a forwarded request
@@ -710,11 +843,9 @@ public class ClickServlet extends HttpServlet {
                 }
 
                 if (logger.isTraceEnabled()) {
-                    String controlClassName = ClassUtils.getShortClassName(control.getClass());
-
-                    String msg = "   invoked: '" + control.getName() + "' "
-                        + controlClassName + ".onProcess() : " + onProcessResult;
-                    logger.trace(msg);
+                    logger.trace(new LogMessage("   invoked: '{}' {}.onProcess() : {}",
+                        control.getName(), ClassUtils.getShortClassName(control.getClass()),
+                        Boolean.valueOf(onProcessResult)));
 
                     if (initialListenerCount != eventDispatcher.getEventSourceList().size()) {
                         logger.trace("   listener was registered while processing control");
@@ -734,6 +865,9 @@ public class ClickServlet extends HttpServlet {
             }
         }
 
+        recordPhase(context.getRequest(), RequestPhase.ON_PROCESS,
+            System.nanoTime() - startTime);
+
         return continueProcessing;
     }
 
@@ -770,6 +904,8 @@ public class ClickServlet extends HttpServlet {
      * @param context the request context
      */
     protected void performOnRender(Page page, Context context) {
+        long startTime = System.nanoTime();
+
         page.onRender();
 
         if (logger.isTraceEnabled()) {
@@ -785,15 +921,14 @@ public class ClickServlet extends HttpServlet {
                 control.onRender();
 
                 if (logger.isTraceEnabled()) {
-                    String controlClassName = control.getClass().getName();
-                    controlClassName = controlClassName.substring(controlClassName.
-                        lastIndexOf('.') + 1);
-                    String msg = "   invoked: '" + control.getName() + "' "
-                        + controlClassName + ".onRender()";
-                    logger.trace(msg);
+                    logger.trace(new LogMessage("   invoked: '{}' {}.onRender()",
+                        control.getName(), ClassUtils.getShortClassName(control.getClass())));
                 }
             }
         }
+
+        recordPhase(context.getRequest(), RequestPhase.ON_RENDER,
+            System.nanoTime() - startTime);
     }
 
     /**
@@ -914,7 +1049,7 @@ public class ClickServlet extends HttpServlet {
      */
     protected void renderTemplate(Page page) throws Exception {
 
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
 
         final Map<String, Object> model = createTemplateModel(page);
 
@@ -933,6 +1068,9 @@ public class ClickServlet extends HttpServlet {
 
         configService.getTemplateService().renderTemplate(page, model, writer);
 
+        long duration = System.nanoTime() - startTime;
+        recordPhase(context.getRequest(), RequestPhase.RENDER, duration);
+
         if (!configService.isProductionMode()) {
             HtmlStringBuffer buffer = new HtmlStringBuffer(50);
             if (logger.isTraceEnabled()) {
@@ -945,7 +1083,7 @@ public class ClickServlet extends HttpServlet {
             }
             buffer.append(page.getTemplate());
             buffer.append(" - ");
-            buffer.append(System.currentTimeMillis() - startTime);
+            buffer.append(duration / 1000000);
             buffer.append(" ms");
             logger.info(buffer);
         }
@@ -959,7 +1097,7 @@ public class ClickServlet extends HttpServlet {
      */
     protected void renderJSP(Page page) throws Exception {
 
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
 
         HttpServletRequest request = page.getContext().getRequest();
 
@@ -984,6 +1122,9 @@ public class ClickServlet extends HttpServlet {
 
         dispatcher.forward(request, response);
 
+        long duration = System.nanoTime() - startTime;
+        recordPhase(request, RequestPhase.RENDER, duration);
+
         if (!configService.isProductionMode()) {
             HtmlStringBuffer buffer = new HtmlStringBuffer(50);
             buffer.append("renderJSP: ");
@@ -993,7 +1134,7 @@ public class ClickServlet extends HttpServlet {
             }
             buffer.append(page.getForward());
             buffer.append(" - ");
-            buffer.append(System.currentTimeMillis() - startTime);
+            buffer.append(duration / 1000000);
             buffer.append(" ms");
             logger.info(buffer);
         }
@@ -1012,10 +1153,13 @@ public class ClickServlet extends HttpServlet {
             return;
         }
 
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
 
         actionResult.render(context);
 
+        long duration = System.nanoTime() - startTime;
+        recordPhase(context.getRequest(), RequestPhase.RENDER, duration);
+
         if (!configService.isProductionMode()) {
             HtmlStringBuffer buffer = new HtmlStringBuffer(50);
             if (logger.isTraceEnabled()) {
@@ -1031,7 +1175,7 @@ public class ClickServlet extends HttpServlet {
                 buffer.append(template);
             }
             buffer.append(" - ");
-            buffer.append(System.currentTimeMillis() - startTime);
+            buffer.append(duration / 1000000);
             buffer.append(" ms");
             logger.info(buffer);
         }
@@ -1044,7 +1188,8 @@ public class ClickServlet extends HttpServlet {
      *
      * @param context the page request context
      * @return a new Page instance for the given request, or null if an
-     * PageInterceptor has aborted page creation
+     * PageInterceptor has aborted page creation or the request for the
+     * stateful page was rejected
      */
     protected Page createPage(Context context) {
 
@@ -1061,12 +1206,20 @@ public class ClickServlet extends HttpServlet {
         if (request.getAttribute(FORWARD_PAGE) != null) {
             Page forwardPage = (Page) request.getAttribute(FORWARD_PAGE);
 
+            request.removeAttribute(FORWARD_PAGE);
+
+            // Wait for the stateful page before processing it
+            if (forwardPage.isStateful()) {
+                forwardPage = lockStatefulPage(forwardPage, request, false);
+                if (forwardPage == null) {
+                    return null;
+                }
+            }
+
             if (forwardPage.getFormat() == null) {
                 forwardPage.setFormat(configService.createFormat());
             }
 
-            request.removeAttribute(FORWARD_PAGE);
-
             return forwardPage;
         }
 
@@ -1086,7 +1239,21 @@ public class ClickServlet extends HttpServlet {
             }
         }
 
-        final Page page = initPage(path, pageClass, request);
+        // Only the requested page waits for a stateful page in initPage, not
+        // the pages created through Context.createPage()
+        final Page page;
+        THREAD_LOCAL_REQUEST_PAGE.set(Boolean.TRUE);
+        try {
+            page = initPage(path, pageClass, request);
+
+        } finally {
+            THREAD_LOCAL_REQUEST_PAGE.remove();
+        }
+
+        // If the stateful page request was rejected
+        if (page == null) {
+            return null;
+        }
 
         if (page.getFormat() == null) {
             page.setFormat(configService.createFormat());
@@ -1111,6 +1278,8 @@ public class ClickServlet extends HttpServlet {
      */
     @SuppressWarnings("deprecation")
     protected void processPageOnDestroy(Page page, long startTime) {
+        long destroyStartTime = System.nanoTime();
+
         Context context = page.getContext();
         if (page.hasControls()) {
 
@@ -1126,11 +1295,8 @@ public class ClickServlet extends HttpServlet {
                     control.onDestroy();
 
                     if (logger.isTraceEnabled()) {
-                        String controlClassName = control.getClass().getName();
-                        controlClassName = controlClassName.substring(controlClassName.lastIndexOf('.') + 1);
-                        String msg =  "   invoked: '" + control.getName()
-                        + "' " + controlClassName + ".onDestroy()";
-                        logger.trace(msg);
+                        logger.trace(new LogMessage("   invoked: '{}' {}.onDestroy()",
+                            control.getName(), ClassUtils.getShortClassName(control.getClass())));
                     }
                 } catch (Throwable error) {
                     logger.error(error.toString(), error);
@@ -1161,7 +1327,10 @@ public class ClickServlet extends HttpServlet {
         try {
             page.onDestroy();
 
-            if (page.isStateful()) {
+            if (StatefulPageQueue.isSnapshotCopy(page)) {
+                // The snapshot copy of a stateful page is discarded
+
+            } else if (page.isStateful()) {
                 context.setSessionAttribute(page.getClass().getName(), page);
             } else {
                 context.removeSessionAttribute(page.getClass().getName());
@@ -1186,6 +1355,9 @@ public class ClickServlet extends HttpServlet {
         } finally {
             // Nullify PageImports
             page.setPageImports(null);
+
+            recordPhase(context.getRequest(), RequestPhase.ON_DESTROY,
+                System.nanoTime() - destroyStartTime);
         }
     }
 
@@ -1222,14 +1394,25 @@ public class ClickServlet extends HttpServlet {
      *     }
      * } </pre>
      *
+     * When the requested page is a stateful page stored in the session, this
+     * method waits for the page before modifying it, see
+     * {@link Page#setStateful(boolean)}. Stateful pages created through
+     * {@link Context#createPage(Class)} are not waited for, they are waited
+     * for when a forward to the page is processed.
+     *
      * @param path the page path
      * @param pageClass the page class
      * @param request the page request
-     * @return initialized page
+     * @return initialized page, or null if the request for the stateful page
+     * was rejected
      */
     protected Page initPage(String path, Class<? extends Page> pageClass,
             HttpServletRequest request) {
 
+        // Pages created while initializing the requested page are not queued
+        boolean requestPage = THREAD_LOCAL_REQUEST_PAGE.get() != null;
+        THREAD_LOCAL_REQUEST_PAGE.remove();
+
         try {
             Page newPage = null;
 
@@ -1239,6 +1422,20 @@ public class ClickServlet extends HttpServlet {
                 newPage = (Page) session.getAttribute(pageClass.getName());
             }
 
+            // Wait for the stateful page before modifying it
+            if (requestPage && newPage != null && newPage.isStateful()) {
+                newPage = lockStatefulPage(newPage, request, true);
+                if (newPage == null) {
+                    return null;
+                }
+            }
+
+            // Reuse an idle pooled page instance for the request locale
+            Locale locale = Context.getThreadLocalContext().getLocale();
+            if (newPage == null) {
+                newPage = pagePool.acquire(pageClass, locale);
+            }
+
             if (newPage == null) {
                 newPage = newPageInstance(path, pageClass, request);
 
@@ -1272,7 +1469,10 @@ public class ClickServlet extends HttpServlet {
             // Bind to final variable to enable callback processing
             final Page page = newPage;
 
-            if (configService.getAutoBindingMode() != AutoBinding.NONE) {
+            boolean autoBinding =
+                configService.getAutoBindingMode() != AutoBinding.NONE;
+
+            if (autoBinding) {
 
                 processPageFields(newPage, new FieldCallback() {
                     public void processField(String fieldName, Object fieldValue) {
@@ -1288,7 +1488,15 @@ public class ClickServlet extends HttpServlet {
                         }
                     }
                 });
+            }
 
+            // Capture the constructed state of a new pooled page before the
+            // request parameters are bound
+            if (newPage.isPooled() && !newPage.isStateful()) {
+                pagePool.capture(newPage, getPageBindingPlan(pageClass), locale);
+            }
+
+            if (autoBinding) {
                 processPageRequestParams(page);
             }
 
@@ -1309,43 +1517,36 @@ public class ClickServlet extends HttpServlet {
      * fields with the same name which are "primitive" types. These types
      * include string, numbers and booleans.
      * <p/>
-     * Type conversion is performed using the <tt>TypeConverter</tt>
-     * of the <tt>PropertyService</tt>.
+     * The fields are bound by the page class binding plan, which converts
+     * the request parameter values the same way as the <tt>TypeConverter</tt>
+     * of the default <tt>PropertyService</tt>. If the application configures
+     * another <tt>PropertyService</tt> the values are bound through it.
      *
      * @param page the page whose fields are to be processed
      */
     protected void processPageRequestParams(Page page) {
 
-        if (configService.getPageFields(page.getClass()).isEmpty()) {
+        PageBindingPlan.ParameterBinder[] binders =
+            getPageBindingPlan(page.getClass()).getBinders();
+
+        if (binders.length == 0) {
             return;
         }
 
-        ConfigService configService = ClickUtils.getConfigService();
         PropertyService propertyService = configService.getPropertyService();
         HttpServletRequest request = page.getContext().getRequest();
 
-        for (Enumeration<?> e = request.getParameterNames(); e.hasMoreElements();) {
-            String name = e.nextElement().toString();
+        for (int i = 0; i < binders.length; i++) {
+            PageBindingPlan.ParameterBinder binder = binders[i];
+            String name = binder.getName();
             String value = request.getParameter(name);
 
             if (StringUtils.isNotBlank(value)) {
 
-                Field field = configService.getPageField(page.getClass(), name);
-
-                if (field != null) {
-                    Class<?> type = field.getType();
-
-                    if (type.isPrimitive()
-                        || String.class.isAssignableFrom(type)
-                        || Number.class.isAssignableFrom(type)
-                        || Boolean.class.isAssignableFrom(type)) {
-
-                        propertyService.setValue(page, name, value);
+                binder.bind(page, value, propertyService);
 
-                        if (logger.isTraceEnabled()) {
-                            logger.trace("   auto bound variable: " + name + "=" + value);
-                        }
-                    }
+                if (logger.isTraceEnabled()) {
+                    logger.trace("   auto bound variable: " + name + "=" + value);
                 }
             }
         }
@@ -2025,24 +2226,173 @@ public class ClickServlet extends HttpServlet {
      * @param callback the fields iterator callback
      */
     void processPageFields(Page page, FieldCallback callback) {
+        getPageBindingPlan(page.getClass()).processFields(page, callback);
+    }
 
-        Field[] fields = configService.getPageFieldArray(page.getClass());
+    /**
+     * Return the binding plan of the given page class. The plan is created
+     * when the page class is first requested.
+     *
+     * @param pageClass the page class
+     * @return the binding plan of the page class
+     */
+    PageBindingPlan getPageBindingPlan(Class<? extends Page> pageClass) {
+        PageBindingPlan plan = pageBindingPlans.get(pageClass);
 
-        if (fields != null) {
-            for (int i = 0; i < fields.length; i++) {
-                Field field = fields[i];
+        if (plan == null) {
+            Field[] fields = configService.getPageFieldArray(pageClass);
+            plan = new PageBindingPlan(pageClass, fields);
 
-                try {
-                    Object fieldValue = field.get(page);
+            // Only cache plans of configured page classes
+            if (fields != null) {
+                pageBindingPlans.put(pageClass, plan);
+            }
+        }
 
-                    if (fieldValue != null) {
-                        callback.processField(field.getName(), fieldValue);
-                    }
+        return plan;
+    }
+
+    /**
+     * Record the duration of the given request phase of the requested page
+     * path with the application {@link MetricsService}.
+     *
+     * @param request the page request
+     * @param phase the request phase
+     * @param durationNanos the duration of the phase in nanoseconds
+     */
+    void recordPhase(HttpServletRequest request, RequestPhase phase,
+        long durationNanos) {
+
+        if (metricsService != null && metricsService.isEnabled()) {
+            metricsService.record(ClickUtils.getResourcePath(request), phase,
+                durationNanos);
+        }
+    }
+
+    /**
+     * Wait for the given stateful page and lock it for the current request.
+     * <p/>
+     * If stateful page snapshots are enabled, a read only Ajax request which
+     * finds the page busy is executed against a copy of the page snapshot
+     * instead of waiting. If the page is not available within the timeout,
+     * or too many requests are already waiting, the request is rejected.
+     *
+     * @param page the stateful page stored in the session
+     * @param request the page request
+     * @param snapshotAllowed true if the request may be executed against a
+     * copy of the page snapshot
+     * @return the page to execute the request against, or null if the
+     * request was rejected
+     */
+    Page lockStatefulPage(Page page, HttpServletRequest request,
+        boolean snapshotAllowed) {
+
+        StatefulPageQueue queue = StatefulPageQueue.getQueue(page);
+        Context context = Context.getThreadLocalContext();
+
+        boolean readOnly = snapshotAllowed && statefulPageSnapshot
+            && context.isAjaxRequest() && !context.isPost();
 
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
+        try {
+            boolean locked = queue.lock(readOnly ? 0 : statefulPageTimeout,
+                statefulPageMaxWaiting);
+
+            if (!locked && readOnly) {
+                Page copy = queue.copySnapshot();
+                if (copy != null) {
+                    return copy;
                 }
+                locked = queue.lock(statefulPageTimeout, statefulPageMaxWaiting);
             }
+
+            if (locked) {
+                List<Page> lockedPages = THREAD_LOCAL_STATEFUL_PAGES.get();
+                if (lockedPages == null) {
+                    lockedPages = new ArrayList<Page>(2);
+                    THREAD_LOCAL_STATEFUL_PAGES.set(lockedPages);
+                }
+                lockedPages.add(page);
+                return page;
+            }
+
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+
+        } catch (Exception e) {
+            // The snapshot could not be copied, the request is rejected
+            logger.error(e.toString(), e);
+        }
+
+        rejectStatefulPageRequest(page, context);
+        return null;
+    }
+
+    /**
+     * Unlock the stateful pages locked by the current request, starting after
+     * the given number of pages locked by enclosing requests, for example
+     * the request forwarding to the current request.
+     *
+     * @param lockedPageCount the number of pages locked by enclosing requests
+     */
+    void unlockStatefulPages(int lockedPageCount) {
+        List<Page> lockedPages = getThreadLocalStatefulPages();
+
+        for (int i = lockedPages.size() - 1; i >= lockedPageCount; i--) {
+            Page page = lockedPages.remove(i);
+            StatefulPageQueue queue = StatefulPageQueue.getQueue(page);
+
+            try {
+                if (statefulPageSnapshot && page.isStateful()) {
+                    queue.saveSnapshot(page);
+                }
+
+            } catch (Throwable error) {
+                // Read only requests wait for the page instead
+                logger.warn("could not snapshot stateful page "
+                    + page.getClass().getName() + ": " + error);
+
+            } finally {
+                if (queue.isLockedByCurrentThread()) {
+                    queue.unlock();
+                }
+            }
+        }
+
+        if (lockedPages.isEmpty()) {
+            THREAD_LOCAL_STATEFUL_PAGES.set(null);
+        }
+    }
+
+    List<Page> getThreadLocalStatefulPages() {
+        List<Page> lockedPages = THREAD_LOCAL_STATEFUL_PAGES.get();
+
+        if (lockedPages != null) {
+            return lockedPages;
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Restore the given pooled page to its constructed state and return it to
+     * the page pool, so it can be reused by a later request.
+     *
+     * @param page the pooled page to release
+     */
+    void releasePooledPage(Page page) {
+        try {
+            if (pagePool.release(page, getPageBindingPlan(page.getClass()))
+                && logger.isTraceEnabled()) {
+
+                String shortClassName = page.getClass().getName();
+                shortClassName =
+                    shortClassName.substring(shortClassName.lastIndexOf('.') + 1);
+                logger.trace("   released: " + shortClassName + " to page pool");
+            }
+
+        } catch (Throwable error) {
+            // The page could not be restored and is not reused
+            logger.error(error.toString(), error);
         }
     }
 
@@ -203,6 +203,12 @@ public class Page implements Serializable {
      */
     protected boolean stateful;
 
+    /**
+     * The page is pooled and its instances are reused by subsequent requests,
+     * default value is false.
+     */
+    protected boolean pooled;
+
     /** The path of the page border template to render.*/
     protected String template;
 
@@ -212,6 +218,12 @@ public class Page implements Serializable {
      */
     protected boolean includeControlHeadElements = true;
 
+    /** The constructed state of a pooled page, captured by the PagePool. */
+    transient PagePool.Snapshot poolSnapshot;
+
+    /** The request queue of a stateful page, see StatefulPageQueue. */
+    transient volatile StatefulPageQueue requestQueue;
+
     // Event Handlers ---------------------------------------------------------
 
     /**
@@ -989,9 +1001,16 @@ public class Page implements Serializable {
      * Set whether the page is stateful and should be saved in the users
      * HttpSession between requests.
      * <p/>
-     * Click will synchronize on the page instance. This ensures that if
+     * Click queues the requests for the page instance. This ensures that if
      * multiple requests arrive from the same user for the page, only one
-     * request can access the page at a time.
+     * request can access the page at a time, in the order the requests
+     * arrived. By default requests wait until the page is available. If the
+     * ClickServlet <tt>stateful-page-timeout</tt> or
+     * <tt>stateful-page-max-waiting</tt> init parameters are set, a request
+     * which waits longer than the timeout, or which finds too many requests
+     * already waiting, is rejected with a <tt>503 Service Unavailable</tt>
+     * response, see
+     * {@link ClickServlet#rejectStatefulPageRequest(Page, Context)}.
      * <p/>
      * Stateful pages are stored in the HttpSession using the key
      * <tt>page.getClass().getName()</tt>.
@@ -1015,6 +1034,67 @@ public class Page implements Serializable {
         }
     }
 
+    /**
+     * Return true if the page is pooled and its instances are reused by
+     * subsequent requests, default value is false.
+     *
+     * @return true if the page is pooled and its instances are reused by
+     * subsequent requests
+     */
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    /**
+     * Set whether the page is pooled and its instances are reused by
+     * subsequent requests.
+     * <p/>
+     * By default a new page instance is created for every request, which
+     * rebuilds the page controls created in the page constructor. When a page
+     * is pooled, Click returns the page instance to a pool at the end of the
+     * request and reuses it for a later request, so the controls created in
+     * the constructor are only built once per pooled instance. A pooled page
+     * instance is only used by one request at a time.
+     * <p/>
+     * When a pooled page is returned to the pool Click restores the page to
+     * the state it had after it was constructed:
+     * <ul>
+     * <li>the page model, controls, headers, head elements and template</li>
+     * <li>the values of the bindable page fields</li>
+     * <li>the values and errors of the Forms and Fields, the parameters of
+     * the links, and the page number, sort order and rows of the Tables
+     * added to the page</li>
+     * </ul>
+     * The page should therefore create its controls in the constructor
+     * without using the request, and should not keep request data in other
+     * fields. Controls added in {@link #onInit()} are created per request as
+     * usual. Pooled page instances are kept per request locale, as the page
+     * and control messages are localized.
+     * <p/>
+     * A page which is also {@link #isStateful() stateful} is not pooled.
+     * <p/>
+     * An example pooled page is provided below:
+     *
+     * <pre class="prettyprint">
+     * public class CustomerSearchPage extends Page {
+     *
+     *     public Form form = new Form();
+     *
+     *     public CustomerSearchPage() {
+     *         setPooled(true);
+     *
+     *         form.add(new TextField("name"));
+     *         form.add(new Submit("search"));
+     *     }
+     * } </pre>
+     *
+     * @param pooled the flag indicating whether the page instances are reused
+     *         by subsequent requests
+     */
+    public void setPooled(boolean pooled) {
+        this.pooled = pooled;
+    }
+
     /**
      * Return true if the Control head elements should be included in the page
      * template, false otherwise. Default value is true.
@@ -0,0 +1,389 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.click.ClickServlet.FieldCallback;
+import org.apache.click.service.CompiledPropertyService;
+import org.apache.click.service.OGNLPropertyService;
+import org.apache.click.service.PropertyService;
+
+/**
+ * Provides the binding plan of a page class, which is built once when the
+ * page class is first requested and shared by all requests.
+ * <p/>
+ * The plan holds the bindable fields of the page class, see
+ * {@link org.apache.click.service.ConfigService#getPageFieldArray(Class)},
+ * with their names, and a {@link ParameterBinder} for each field which can be
+ * bound to a request parameter. A binder resolves the setter method and the
+ * type conversion of its field when the plan is built, so binding request
+ * parameters does not look up fields or parse property expressions.
+ * <p/>
+ * When the application {@link PropertyService} is the default
+ * {@link OGNLPropertyService} or the {@link CompiledPropertyService}, request
+ * parameters are converted directly, the same way as their
+ * <tt>OGNLTypeConverter</tt>. Fields of other <tt>Number</tt> types, and all
+ * fields when the application uses another PropertyService, are bound through
+ * the application PropertyService so its conversion rules apply.
+ */
+final class PageBindingPlan {
+
+    // -------------------------------------------------------------- Constants
+
+    /** The type of a field bound through the PropertyService. */
+    private static final int TYPE_PROPERTY_SERVICE = 0;
+
+    /** The String type. */
+    private static final int TYPE_STRING = 1;
+
+    /** The boolean and Boolean types. */
+    private static final int TYPE_BOOLEAN = 2;
+
+    /** The byte and Byte types. */
+    private static final int TYPE_BYTE = 3;
+
+    /** The short and Short types. */
+    private static final int TYPE_SHORT = 4;
+
+    /** The int and Integer types. */
+    private static final int TYPE_INTEGER = 5;
+
+    /** The long and Long types. */
+    private static final int TYPE_LONG = 6;
+
+    /** The float and Float types. */
+    private static final int TYPE_FLOAT = 7;
+
+    /** The double and Double types. */
+    private static final int TYPE_DOUBLE = 8;
+
+    /** The char and Character types. */
+    private static final int TYPE_CHARACTER = 9;
+
+    /** The BigInteger type. */
+    private static final int TYPE_BIG_INTEGER = 10;
+
+    /** The BigDecimal type. */
+    private static final int TYPE_BIG_DECIMAL = 11;
+
+    // ----------------------------------------------------- Instance Variables
+
+    /** The bindable fields of the page class. */
+    private final Field[] fields;
+
+    /** The names of the bindable fields. */
+    private final String[] fieldNames;
+
+    /** The binders of the fields which can be bound to request parameters. */
+    private final ParameterBinder[] binders;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Create the binding plan for the given page class and bindable fields.
+     *
+     * @param pageClass the page class
+     * @param fields the bindable fields of the page class, or null if the
+     * page class is not configured
+     */
+    PageBindingPlan(Class<? extends Page> pageClass, Field[] fields) {
+        if (fields == null) {
+            fields = new Field[0];
+        }
+        this.fields = fields;
+
+        fieldNames = new String[fields.length];
+        List<ParameterBinder> binderList = new ArrayList<ParameterBinder>();
+
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
+            fieldNames[i] = field.getName();
+
+            Class<?> type = field.getType();
+            if (type.isPrimitive()
+                || String.class.isAssignableFrom(type)
+                || Number.class.isAssignableFrom(type)
+                || Boolean.class.isAssignableFrom(type)) {
+
+                binderList.add(new ParameterBinder(pageClass, field));
+            }
+        }
+
+        binders = binderList.toArray(new ParameterBinder[binderList.size()]);
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Invoke the callback for each bindable field of the given page which has
+     * a non null value.
+     *
+     * @param page the page to process the fields of
+     * @param callback the fields iterator callback
+     */
+    void processFields(Page page, FieldCallback callback) {
+        for (int i = 0; i < fields.length; i++) {
+            Object fieldValue = null;
+            try {
+                fieldValue = fields[i].get(page);
+
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            if (fieldValue != null) {
+                callback.processField(fieldNames[i], fieldValue);
+            }
+        }
+    }
+
+    /**
+     * Return the values of the bindable fields of the given page.
+     *
+     * @param page the page to return the field values of
+     * @return the values of the bindable fields of the page
+     */
+    Object[] getFieldValues(Page page) {
+        Object[] values = new Object[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            try {
+                values[i] = fields[i].get(page);
+
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Set the values of the bindable fields of the given page, as returned by
+     * {@link #getFieldValues(Page)}. Final fields are not set.
+     *
+     * @param page the page to set the field values of
+     * @param values the values of the bindable fields
+     */
+    void setFieldValues(Page page, Object[] values) {
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
+            if (Modifier.isFinal(field.getModifiers())) {
+                continue;
+            }
+            try {
+                field.set(page, values[i]);
+
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Return the binders of the fields which can be bound to request
+     * parameters.
+     *
+     * @return the binders of the fields which can be bound to request
+     * parameters
+     */
+    ParameterBinder[] getBinders() {
+        return binders;
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Binds a request parameter value to a page field of a "primitive" type,
+     * which includes strings, numbers and booleans.
+     */
+    static final class ParameterBinder {
+
+        /** The field to bind. */
+        private final Field field;
+
+        /** The public setter method of the field, or null if not defined. */
+        private final Method setter;
+
+        /** The conversion type of the field. */
+        private final int type;
+
+        /**
+         * Create a binder for the given page class field.
+         *
+         * @param pageClass the page class
+         * @param field the field to bind
+         */
+        ParameterBinder(Class<?> pageClass, Field field) {
+            this.field = field;
+            this.setter = findSetter(pageClass, field);
+            this.type = getConversionType(field.getType());
+        }
+
+        /**
+         * Return the name of the field, which is also the name of the request
+         * parameter bound to the field.
+         *
+         * @return the name of the field
+         */
+        String getName() {
+            return field.getName();
+        }
+
+        /**
+         * Bind the given request parameter value to the field of the page.
+         *
+         * @param page the page to bind the value to
+         * @param value the request parameter value
+         * @param propertyService the application property service
+         */
+        void bind(Page page, String value, PropertyService propertyService) {
+            if (type == TYPE_PROPERTY_SERVICE || !isConvertedDirectly(propertyService)) {
+                propertyService.setValue(page, field.getName(), value);
+                return;
+            }
+
+            Object fieldValue = null;
+            try {
+                fieldValue = convert(value);
+
+            } catch (NumberFormatException nfe) {
+                String msg = "Could not convert request parameter "
+                    + field.getName() + "=" + value + " to " + field.getType();
+                throw new RuntimeException(msg, nfe);
+            }
+
+            try {
+                if (setter != null) {
+                    setter.invoke(page, fieldValue);
+                } else {
+                    field.set(page, fieldValue);
+                }
+
+            } catch (InvocationTargetException ite) {
+                throw new RuntimeException(ite.getTargetException());
+
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Return the given request parameter value converted to the field
+         * type. Numbers are parsed from the trimmed value.
+         *
+         * @param value the request parameter value
+         * @return the value converted to the field type
+         */
+        private Object convert(String value) {
+            switch (type) {
+            case TYPE_BOOLEAN:
+                return Boolean.valueOf(value);
+            case TYPE_BYTE:
+                return Byte.valueOf((byte) Long.parseLong(value.trim()));
+            case TYPE_SHORT:
+                return Short.valueOf((short) Long.parseLong(value.trim()));
+            case TYPE_INTEGER:
+                return Integer.valueOf((int) Long.parseLong(value.trim()));
+            case TYPE_LONG:
+                return Long.valueOf(Long.parseLong(value.trim()));
+            case TYPE_FLOAT:
+                return Float.valueOf((float) Double.parseDouble(value.trim()));
+            case TYPE_DOUBLE:
+                return Double.valueOf(Double.parseDouble(value.trim()));
+            case TYPE_CHARACTER:
+                return Character.valueOf((char) Long.parseLong(value.trim()));
+            case TYPE_BIG_INTEGER:
+                return new BigInteger(value.trim());
+            case TYPE_BIG_DECIMAL:
+                return new BigDecimal(value.trim());
+            default:
+                return value;
+            }
+        }
+
+        /**
+         * Return true if the given property service converts values the same
+         * way as the binder. Subclasses of the property services may change
+         * the conversion, so only the exact classes are matched.
+         *
+         * @param propertyService the application property service
+         * @return true if the binder can convert the values directly
+         */
+        private static boolean isConvertedDirectly(PropertyService propertyService) {
+            Class<?> serviceClass = propertyService.getClass();
+            return serviceClass == OGNLPropertyService.class
+                || serviceClass == CompiledPropertyService.class;
+        }
+
+        private static int getConversionType(Class<?> type) {
+            if (type == String.class) {
+                return TYPE_STRING;
+            } else if (type == Boolean.class || type == Boolean.TYPE) {
+                return TYPE_BOOLEAN;
+            } else if (type == Byte.class || type == Byte.TYPE) {
+                return TYPE_BYTE;
+            } else if (type == Short.class || type == Short.TYPE) {
+                return TYPE_SHORT;
+            } else if (type == Integer.class || type == Integer.TYPE) {
+                return TYPE_INTEGER;
+            } else if (type == Long.class || type == Long.TYPE) {
+                return TYPE_LONG;
+            } else if (type == Float.class || type == Float.TYPE) {
+                return TYPE_FLOAT;
+            } else if (type == Double.class || type == Double.TYPE) {
+                return TYPE_DOUBLE;
+            } else if (type == Character.class || type == Character.TYPE) {
+                return TYPE_CHARACTER;
+            } else if (type == BigInteger.class) {
+                return TYPE_BIG_INTEGER;
+            } else if (type == BigDecimal.class) {
+                return TYPE_BIG_DECIMAL;
+            } else {
+                return TYPE_PROPERTY_SERVICE;
+            }
+        }
+
+        private static Method findSetter(Class<?> pageClass, Field field) {
+            String name = field.getName();
+            String setterName = "set" + Character.toUpperCase(name.charAt(0))
+                + name.substring(1);
+            try {
+                Method method = pageClass.getMethod(setterName, field.getType());
+                if (Modifier.isStatic(method.getModifiers())) {
+                    return null;
+                }
+                method.setAccessible(true);
+                return method;
+
+            } catch (NoSuchMethodException nsme) {
+                return null;
+
+            } catch (SecurityException se) {
+                return null;
+            }
+        }
+    }
+}
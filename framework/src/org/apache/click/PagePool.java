@@ -0,0 +1,403 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.click.control.AbstractLink;
+import org.apache.click.control.Container;
+import org.apache.click.control.Field;
+import org.apache.click.control.Form;
+import org.apache.click.control.Table;
+import org.apache.click.element.Element;
+
+/**
+ * Provides the pool of idle {@link Page#isPooled() pooled} page instances.
+ * <p/>
+ * When a pooled page instance is first created its constructed state is
+ * captured in a {@link Snapshot}. When the request completes the page is
+ * restored to its constructed state and returned to the pool, from where it
+ * is reused by a later request for the same page class and locale. The pool
+ * keeps at most <tt>maxIdle</tt> idle instances per page class and locale,
+ * further instances are discarded.
+ * <p/>
+ * A page instance is removed from the pool when it is acquired, so an
+ * instance is only used by one request at a time.
+ */
+final class PagePool {
+
+    // -------------------------------------------------------------- Constants
+
+    /** The default maximum number of idle instances per page class and locale. */
+    static final int DEFAULT_MAX_IDLE = 16;
+
+    // ----------------------------------------------------- Instance Variables
+
+    /** The maximum number of idle instances per page class and locale. */
+    private final int maxIdle;
+
+    /** The idle page instances keyed by page class and locale. */
+    private final ConcurrentMap<PoolKey, Bucket> buckets =
+        new ConcurrentHashMap<PoolKey, Bucket>();
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Create a page pool with the given maximum number of idle instances per
+     * page class and locale.
+     *
+     * @param maxIdle the maximum number of idle instances per page class and
+     * locale
+     */
+    PagePool(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Return an idle instance of the given page class for the given locale,
+     * or null if the pool has no idle instance.
+     *
+     * @param pageClass the page class
+     * @param locale the request locale
+     * @return an idle page instance, or null if the pool has no idle instance
+     */
+    Page acquire(Class<? extends Page> pageClass, Locale locale) {
+        Bucket bucket = buckets.get(new PoolKey(pageClass, locale));
+        if (bucket == null) {
+            return null;
+        }
+
+        Page page = bucket.pages.poll();
+        if (page != null) {
+            bucket.size.decrementAndGet();
+        }
+        return page;
+    }
+
+    /**
+     * Capture the constructed state of the given page, unless the state of
+     * the page has already been captured.
+     *
+     * @param page the pooled page
+     * @param plan the binding plan of the page class
+     * @param locale the request locale
+     */
+    void capture(Page page, PageBindingPlan plan, Locale locale) {
+        if (page.poolSnapshot == null) {
+            page.poolSnapshot = new Snapshot(page, plan, locale);
+        }
+    }
+
+    /**
+     * Restore the given page to its constructed state and return it to the
+     * pool. Pages which are not pooled, are stateful or whose state has not
+     * been captured are ignored.
+     *
+     * @param page the page to release
+     * @param plan the binding plan of the page class
+     * @return true if the page was returned to the pool
+     */
+    @SuppressWarnings("deprecation")
+    boolean release(Page page, PageBindingPlan plan) {
+        Snapshot snapshot = page.poolSnapshot;
+        if (snapshot == null || !page.isPooled() || page.isStateful()) {
+            return false;
+        }
+
+        snapshot.restore(page, plan);
+
+        PoolKey key = new PoolKey(page.getClass(), snapshot.locale);
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new Bucket();
+            Bucket existing = buckets.putIfAbsent(key, bucket);
+            if (existing != null) {
+                bucket = existing;
+            }
+        }
+
+        if (bucket.size.incrementAndGet() > maxIdle) {
+            bucket.size.decrementAndGet();
+            return false;
+        }
+
+        bucket.pages.offer(page);
+        return true;
+    }
+
+    /**
+     * Discard all the idle page instances.
+     */
+    void clear() {
+        buckets.clear();
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Provides the constructed state of a pooled page instance.
+     */
+    static final class Snapshot {
+
+        /** The locale of the page messages. */
+        final Locale locale;
+
+        /** The page model. */
+        private final Map<String, Object> model;
+
+        /** The page controls, or null if the page has no controls. */
+        private final List<Control> controls;
+
+        /** The page headers, or null if the page has no headers. */
+        private final Map<String, Object> headers;
+
+        /** The page head elements, or null if not created. */
+        private final List<Element> headElements;
+
+        /** The page template. */
+        private final String template;
+
+        /** The include control head elements flag. */
+        private final boolean includeControlHeadElements;
+
+        /** The values of the bindable page fields. */
+        private final Object[] fieldValues;
+
+        /** The page controls and nested controls to reset. */
+        private final Control[] resetControls;
+
+        /** The state of the controls to reset. */
+        private final Object[] resetStates;
+
+        /**
+         * Capture the constructed state of the given page.
+         *
+         * @param page the page to capture
+         * @param plan the binding plan of the page class
+         * @param locale the request locale
+         */
+        Snapshot(Page page, PageBindingPlan plan, Locale locale) {
+            this.locale = locale;
+            model = new HashMap<String, Object>(page.model);
+            controls = copyList(page.controls);
+            headers = (page.headers != null)
+                ? new LinkedHashMap<String, Object>(page.headers) : null;
+            headElements = copyList(page.headElements);
+            template = page.template;
+            includeControlHeadElements = page.includeControlHeadElements;
+            fieldValues = plan.getFieldValues(page);
+
+            List<Control> resetList = new ArrayList<Control>();
+            if (controls != null) {
+                for (Control control : controls) {
+                    addResetControl(control, resetList);
+                }
+            }
+            resetControls = resetList.toArray(new Control[resetList.size()]);
+
+            resetStates = new Object[resetControls.length];
+            for (int i = 0; i < resetControls.length; i++) {
+                Control control = resetControls[i];
+                if (control instanceof Stateful) {
+                    resetStates[i] = copyState(((Stateful) control).getState());
+                }
+            }
+        }
+
+        /**
+         * Restore the given page to the captured state.
+         *
+         * @param page the page to restore
+         * @param plan the binding plan of the page class
+         */
+        void restore(Page page, PageBindingPlan plan) {
+            page.model.clear();
+            page.model.putAll(model);
+            page.controls = copyList(controls);
+            page.headers = (headers != null)
+                ? new LinkedHashMap<String, Object>(headers) : null;
+            page.headElements = copyList(headElements);
+            page.template = template;
+            page.includeControlHeadElements = includeControlHeadElements;
+            plan.setFieldValues(page, fieldValues);
+
+            for (int i = 0; i < resetControls.length; i++) {
+                Control control = resetControls[i];
+                resetControl(control);
+
+                if (resetStates[i] != null) {
+                    ((Stateful) control).setState(copyState(resetStates[i]));
+                }
+            }
+        }
+
+        // ---------------------------------------------------- Private Methods
+
+        /**
+         * Add the given control and its nested controls to the list of
+         * controls to reset. The fields of a Form are reset by the Form.
+         */
+        private static void addResetControl(Control control, List<Control> resetList) {
+            resetList.add(control);
+
+            if (control instanceof Container && !(control instanceof Form)) {
+                for (Control child : ((Container) control).getControls()) {
+                    addResetControl(child, resetList);
+                }
+            }
+        }
+
+        /**
+         * Clear the per request state of the given control.
+         */
+        private static void resetControl(Control control) {
+            if (control instanceof Form) {
+                Form form = (Form) control;
+                form.clearErrors();
+                form.clearValues();
+
+            } else if (control instanceof Field) {
+                Field field = (Field) control;
+                field.setError(null);
+                field.setValue(null);
+
+            } else if (control instanceof AbstractLink) {
+                AbstractLink link = (AbstractLink) control;
+                if (link.hasParameters()) {
+                    link.getParameters().clear();
+                }
+
+            } else if (control instanceof Table) {
+                Table table = (Table) control;
+                table.setPageNumber(0);
+                table.setSortedColumn(null);
+                table.setSortedAscending(true);
+                table.setRowList(null);
+                if (table.getControlLink().hasParameters()) {
+                    table.getControlLink().getParameters().clear();
+                }
+            }
+        }
+
+        /**
+         * Return a copy of the given control state, so the captured state is
+         * not changed by the controls it is restored to.
+         */
+        @SuppressWarnings("unchecked")
+        private static Object copyState(Object state) {
+            if (state instanceof Map) {
+                Map<Object, Object> copy = new HashMap<Object, Object>();
+                for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) state).entrySet()) {
+                    copy.put(entry.getKey(), copyState(entry.getValue()));
+                }
+                return copy;
+
+            } else if (state instanceof List) {
+                List<Object> copy = new ArrayList<Object>();
+                for (Object item : (List<Object>) state) {
+                    copy.add(copyState(item));
+                }
+                return copy;
+
+            } else if (state instanceof Object[]) {
+                Object[] copy = ((Object[]) state).clone();
+                for (int i = 0; i < copy.length; i++) {
+                    copy[i] = copyState(copy[i]);
+                }
+                return copy;
+            }
+            return state;
+        }
+
+        private static <T> List<T> copyList(List<T> list) {
+            return (list != null) ? new ArrayList<T>(list) : null;
+        }
+    }
+
+    /**
+     * Provides the idle page instances of a page class and locale.
+     */
+    private static final class Bucket {
+
+        /** The idle page instances. */
+        final ConcurrentLinkedQueue<Page> pages = new ConcurrentLinkedQueue<Page>();
+
+        /** The number of idle page instances. */
+        final AtomicInteger size = new AtomicInteger();
+    }
+
+    /**
+     * Provides the pool key of a page class and locale.
+     */
+    private static final class PoolKey {
+
+        private final Class<? extends Page> pageClass;
+
+        private final Locale locale;
+
+        private final int hashCode;
+
+        PoolKey(Class<? extends Page> pageClass, Locale locale) {
+            this.pageClass = pageClass;
+            this.locale = locale;
+            this.hashCode = 31 * pageClass.hashCode()
+                + ((locale != null) ? locale.hashCode() : 0);
+        }
+
+        /**
+         * @see Object#equals(Object)
+         *
+         * @param obj the object to compare
+         * @return true if the object is the same page class and locale
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PoolKey)) {
+                return false;
+            }
+            PoolKey that = (PoolKey) obj;
+            return pageClass == that.pageClass
+                && (locale == null ? that.locale == null : locale.equals(that.locale));
+        }
+
+        /**
+         * @see Object#hashCode()
+         *
+         * @return the hash code of the page class and locale
+         */
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
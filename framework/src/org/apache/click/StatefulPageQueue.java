@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.click.util.ClickUtils;
+
+/**
+ * Provides the request queue of a {@link Page#isStateful() stateful} page
+ * instance.
+ * <p/>
+ * Requests for a stateful page are executed one at a time, in the order they
+ * arrive. A request waits at most a given timeout for the page, and is
+ * rejected straight away if too many requests are already waiting, so
+ * concurrent requests from the same user do not pile up behind a long
+ * running request.
+ * <p/>
+ * The queue optionally holds a serialized snapshot of the page, taken at the
+ * end of each request. Read only requests which find the page busy can be
+ * executed against a private copy of the snapshot instead of waiting.
+ */
+final class StatefulPageQueue {
+
+    // ----------------------------------------------------- Instance Variables
+
+    /** The fair lock queueing the requests of the page. */
+    private final ReentrantLock lock = new ReentrantLock(true);
+
+    /** The flag indicating the queue belongs to a snapshot copy of a page. */
+    private final boolean snapshotCopy;
+
+    /** The serialized snapshot of the page, or null if not available. */
+    private volatile byte[] snapshot;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Create a request queue.
+     *
+     * @param snapshotCopy the flag indicating the queue belongs to a snapshot
+     * copy of a page
+     */
+    private StatefulPageQueue(boolean snapshotCopy) {
+        this.snapshotCopy = snapshotCopy;
+    }
+
+    // --------------------------------------------------------- Static Methods
+
+    /**
+     * Return the request queue of the given page, creating it if the page
+     * does not have a queue yet.
+     *
+     * @param page the stateful page
+     * @return the request queue of the page
+     */
+    static StatefulPageQueue getQueue(Page page) {
+        StatefulPageQueue queue = page.requestQueue;
+        if (queue == null) {
+            // Only contended the first time a page instance is queued, for
+            // example after the session was deserialized
+            synchronized (StatefulPageQueue.class) {
+                queue = page.requestQueue;
+                if (queue == null) {
+                    queue = new StatefulPageQueue(false);
+                    page.requestQueue = queue;
+                }
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Return true if the given page is a snapshot copy of a stateful page,
+     * which must not be stored in the session.
+     *
+     * @param page the page to check
+     * @return true if the given page is a snapshot copy of a stateful page
+     */
+    static boolean isSnapshotCopy(Page page) {
+        StatefulPageQueue queue = page.requestQueue;
+        return queue != null && queue.snapshotCopy;
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Wait for the page to become available and lock it for the current
+     * thread. The request is rejected without waiting if <tt>maxWaiting</tt>
+     * or more requests are already waiting for the page.
+     *
+     * @param timeout the maximum time to wait in milliseconds, a negative
+     * value waits until the page is available
+     * @param maxWaiting the maximum number of waiting requests, a negative
+     * value does not limit the number of waiting requests
+     * @return true if the page was locked, or false if the request was
+     * rejected or timed out
+     * @throws InterruptedException if the current thread is interrupted
+     * while waiting
+     */
+    boolean lock(long timeout, int maxWaiting) throws InterruptedException {
+        // Honor the queue order, unlike tryLock()
+        if (lock.tryLock(0, TimeUnit.MILLISECONDS)) {
+            return true;
+        }
+
+        if (maxWaiting >= 0 && lock.getQueueLength() >= maxWaiting) {
+            return false;
+        }
+
+        if (timeout < 0) {
+            lock.lockInterruptibly();
+            return true;
+        }
+
+        return lock.tryLock(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Return true if the page is locked by the current thread.
+     *
+     * @return true if the page is locked by the current thread
+     */
+    boolean isLockedByCurrentThread() {
+        return lock.isHeldByCurrentThread();
+    }
+
+    /**
+     * Unlock the page, letting the next waiting request execute.
+     */
+    void unlock() {
+        lock.unlock();
+    }
+
+    /**
+     * Store a serialized snapshot of the given page. This method must be
+     * invoked while the page is locked.
+     *
+     * @param page the page to snapshot
+     * @throws IOException if the page could not be serialized
+     */
+    void saveSnapshot(Page page) throws IOException {
+        ByteArrayOutputStream bos = null;
+        ObjectOutputStream oos = null;
+
+        try {
+            snapshot = null;
+
+            bos = new ByteArrayOutputStream();
+            oos = new ObjectOutputStream(bos);
+
+            oos.writeObject(page);
+            oos.flush();
+
+            snapshot = bos.toByteArray();
+
+        } finally {
+            ClickUtils.close(oos);
+            ClickUtils.close(bos);
+        }
+    }
+
+    /**
+     * Return a new copy of the page from the stored snapshot, or null if no
+     * snapshot is available. The copy is not stored in the session when its
+     * request completes.
+     *
+     * @return a new copy of the page, or null if no snapshot is available
+     * @throws IOException if the snapshot could not be deserialized
+     * @throws ClassNotFoundException if the class of a serialized object
+     * could not be found
+     */
+    Page copySnapshot() throws IOException, ClassNotFoundException {
+        byte[] data = snapshot;
+        if (data == null) {
+            return null;
+        }
+
+        ByteArrayInputStream bis = null;
+        ObjectInputStream ois = null;
+
+        try {
+            bis = new ByteArrayInputStream(data);
+            ois = new ObjectInputStream(bis);
+
+            Page copy = (Page) ois.readObject();
+            copy.requestQueue = new StatefulPageQueue(true);
+            return copy;
+
+        } finally {
+            ClickUtils.close(ois);
+            ClickUtils.close(bis);
+        }
+    }
+}
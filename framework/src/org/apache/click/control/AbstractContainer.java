@@ -27,6 +27,7 @@ import org.apache.click.Control;
 import org.apache.click.util.ClickUtils;
 import org.apache.click.util.ContainerUtils;
 import org.apache.click.util.HtmlStringBuffer;
+import org.apache.click.util.HtmlStringBufferPool;
 
 /**
  * Provides a default implementation of the {@link Container} interface
@@ -360,9 +361,14 @@ public abstract class AbstractContainer extends AbstractControl implements
      */
     @Override
     public String toString() {
-        HtmlStringBuffer buffer = new HtmlStringBuffer(getControlSizeEst());
-        render(buffer);
-        return buffer.toString();
+        HtmlStringBuffer buffer = HtmlStringBufferPool.acquire(getControlSizeEst());
+        try {
+            render(buffer);
+            return buffer.toString();
+
+        } finally {
+            HtmlStringBufferPool.release(buffer);
+        }
     }
 
     // Protected Methods ------------------------------------------------------
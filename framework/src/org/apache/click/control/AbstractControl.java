@@ -20,6 +20,7 @@ package org.apache.click.control;
 
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -43,6 +44,8 @@ import org.apache.click.Page;
 import org.apache.click.element.Element;
 import org.apache.click.util.ClickUtils;
 import org.apache.click.util.HtmlStringBuffer;
+import org.apache.click.util.HtmlStringBufferPool;
+import org.apache.click.util.MessagesResolver;
 
 /**
  * Provides a default implementation of the {@link Control} interface
@@ -134,6 +137,13 @@ public abstract class AbstractControl implements Control {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The marker of messages which are not resolved by {@link MessagesResolver},
+     * in which case the parent hierarchy is searched for each message.
+     */
+    private static final Map<String, String> UNRESOLVED_MESSAGES =
+        Collections.unmodifiableMap(new HashMap<String, String>(0));
+
     // Instance Variables -----------------------------------------------------
 
     /** The control's action listener. */
@@ -174,6 +184,16 @@ public abstract class AbstractControl implements Control {
     /** The listener method name. */
     protected String listenerMethod;
 
+    /**
+     * The flattened messages of the control and its parent hierarchy, which
+     * are resolved once after the control is initialized and cleared when the
+     * control or one of its parent containers is added to a new parent.
+     */
+    private transient Map<String, String> resolvedMessages;
+
+    /** The flag indicating the control's parent hierarchy is initialized. */
+    private transient boolean resolveMessages;
+
     // Constructors -----------------------------------------------------------
 
     /**
@@ -476,6 +496,13 @@ public abstract class AbstractControl implements Control {
      * through the method {@link #getMessages()}.
      * <p/>
      * If still not found, this method will return null.
+     * <p/>
+     * The parent and control messages are looked up in the flattened message
+     * table of {@link MessagesResolver#getMessages(Control)}, if the messages
+     * are provided by {@link org.apache.click.util.MessagesMap} instances.
+     * Once the control is initialized by {@link #onInit()} the table is
+     * resolved only once, until the control or one of its parent containers
+     * is added to a new parent.
      *
      * @param name the name of the message resource
      * @return the named localized message for the control, or null if not found
@@ -485,6 +512,20 @@ public abstract class AbstractControl implements Control {
             throw new IllegalArgumentException("Null name parameter");
         }
 
+        Map<String, String> table = resolvedMessages;
+        if (table == null) {
+            table = MessagesResolver.getMessages(this);
+            if (table == null) {
+                table = UNRESOLVED_MESSAGES;
+            }
+            if (resolveMessages) {
+                resolvedMessages = table;
+            }
+        }
+        if (table != UNRESOLVED_MESSAGES) {
+            return table.get(name);
+        }
+
         String message = null;
 
         message = ClickUtils.getParentMessage(this, name);
@@ -541,6 +582,10 @@ public abstract class AbstractControl implements Control {
     }
 
     /**
+     * Set the parent of the Control. The resolved messages of the control,
+     * and of the child controls of a container, are cleared as they depend on
+     * the parent hierarchy, see {@link #getMessage(String)}.
+     *
      * @see org.apache.click.Control#setParent(Object)
      *
      * @param parent the parent of the Control
@@ -552,6 +597,7 @@ public abstract class AbstractControl implements Control {
             throw new IllegalArgumentException("Cannot set parent to itself");
         }
         this.parent = parent;
+        clearResolvedMessages(this);
     }
 
    /**
@@ -590,12 +636,18 @@ public abstract class AbstractControl implements Control {
     }
 
     /**
-     * This method does nothing. Subclasses may override this method to perform
-     * initialization.
+     * Subclasses may override this method to perform initialization, and
+     * should invoke <tt>super.onInit()</tt>.
+     * <p/>
+     * This method marks the parent hierarchy of the control as initialized,
+     * so that the control's messages are resolved only once by
+     * {@link #getMessage(String)}.
      *
      * @see org.apache.click.Control#onInit()
      */
     public void onInit() {
+        resolvedMessages = null;
+        resolveMessages = true;
     }
 
     /**
@@ -909,9 +961,14 @@ public abstract class AbstractControl implements Control {
         if (getTag() == null) {
             return "";
         }
-        HtmlStringBuffer buffer = new HtmlStringBuffer(getControlSizeEst());
-        render(buffer);
-        return buffer.toString();
+        HtmlStringBuffer buffer = HtmlStringBufferPool.acquire(getControlSizeEst());
+        try {
+            render(buffer);
+            return buffer.toString();
+
+        } finally {
+            HtmlStringBufferPool.release(buffer);
+        }
     }
 
     // Protected Methods ------------------------------------------------------
@@ -1016,6 +1073,30 @@ public abstract class AbstractControl implements Control {
 
     // Private Methods --------------------------------------------------------
 
+    /**
+     * Clear the resolved messages of the given control and its child controls.
+     *
+     * @param control the control to clear the resolved messages of
+     */
+    private static void clearResolvedMessages(Control control) {
+        if (control instanceof AbstractControl) {
+            AbstractControl abstractControl = (AbstractControl) control;
+            if (!abstractControl.resolveMessages) {
+                // Messages are not resolved before the control is initialized
+                return;
+            }
+            abstractControl.resolvedMessages = null;
+        }
+        if (control instanceof Container) {
+            Container container = (Container) control;
+            if (container.hasControls()) {
+                for (Control child : container.getControls()) {
+                    clearResolvedMessages(child);
+                }
+            }
+        }
+    }
+
     /**
      * Parse the specified string of style attributes and return a Map
      * of key/value pairs. Invalid key/value pairs will not be added to
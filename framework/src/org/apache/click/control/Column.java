@@ -30,6 +30,7 @@ import org.apache.click.Context;
 import org.apache.click.service.ConfigService;
 import org.apache.click.service.PropertyService;
 import org.apache.click.util.ClickUtils;
+import org.apache.click.util.FormatRegistry;
 import org.apache.click.util.HtmlStringBuffer;
 import org.apache.commons.lang.math.NumberUtils;
 
@@ -1168,7 +1169,7 @@ public class Column implements Serializable {
 
         if (getMessageFormat() == null && getFormat() != null) {
             Locale locale = context.getLocale();
-            setMessageFormat(new MessageFormat(getFormat(), locale));
+            setMessageFormat(FormatRegistry.newMessageFormat(getFormat(), locale));
         }
 
         buffer.elementStart("td");
@@ -1205,7 +1206,7 @@ public class Column implements Serializable {
     public void renderTableHeader(HtmlStringBuffer buffer, Context context) {
         buffer.elementStart("th");
 
-        boolean isSortable = getSortable() && !getTable().getRowList().isEmpty();
+        boolean isSortable = getSortable() && getTable().hasRows();
         boolean sortedColumn = getName().equals(getTable().getSortedColumn());
         boolean ascending = getTable().isSortedAscending();
 
@@ -27,6 +27,7 @@ import org.apache.click.Control;
 import org.apache.click.util.ClickUtils;
 import org.apache.click.util.ContainerUtils;
 import org.apache.click.util.HtmlStringBuffer;
+import org.apache.click.util.HtmlStringBufferPool;
 
 /**
  * Provides a FieldSet container control: &nbsp; &lt;fieldset&gt;.
@@ -1046,9 +1047,14 @@ public class FieldSet extends Field implements Container {
      */
     @Override
     public String toString() {
-        HtmlStringBuffer buffer = new HtmlStringBuffer(getControlSizeEst());
-        render(buffer);
-        return buffer.toString();
+        HtmlStringBuffer buffer = HtmlStringBufferPool.acquire(getControlSizeEst());
+        try {
+            render(buffer);
+            return buffer.toString();
+
+        } finally {
+            HtmlStringBufferPool.release(buffer);
+        }
     }
 
     // Protected methods -------------------------------------------------------
@@ -40,6 +40,7 @@ import org.apache.click.service.LogService;
 import org.apache.click.util.ClickUtils;
 import org.apache.click.util.ContainerUtils;
 import org.apache.click.util.HtmlStringBuffer;
+import org.apache.click.util.HtmlStringBufferPool;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.FileUploadBase.FileSizeLimitExceededException;
 import org.apache.commons.fileupload.FileUploadBase.SizeLimitExceededException;
@@ -2237,11 +2238,14 @@ public class Form extends AbstractContainer implements Stateful {
 
         int bufferSize = getFormSizeEst(formFields);
 
-        HtmlStringBuffer buffer = new HtmlStringBuffer(bufferSize);
+        HtmlStringBuffer buffer = HtmlStringBufferPool.acquire(bufferSize);
+        try {
+            renderHeader(buffer, formFields);
+            return buffer.toString();
 
-        renderHeader(buffer, formFields);
-
-        return buffer.toString();
+        } finally {
+            HtmlStringBufferPool.release(buffer);
+        }
     }
 
     /**
@@ -2251,13 +2255,16 @@ public class Form extends AbstractContainer implements Stateful {
      * @return the rendered form end tag
      */
     public String endTag() {
-        HtmlStringBuffer buffer = new HtmlStringBuffer();
-
         List<Field> formFields = ContainerUtils.getInputFields(this);
 
-        renderTagEnd(formFields, buffer);
+        HtmlStringBuffer buffer = HtmlStringBufferPool.acquire(128);
+        try {
+            renderTagEnd(formFields, buffer);
+            return buffer.toString();
 
-        return buffer.toString();
+        } finally {
+            HtmlStringBufferPool.release(buffer);
+        }
     }
 
     /**
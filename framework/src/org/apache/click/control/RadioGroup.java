@@ -30,6 +30,7 @@ import org.apache.click.service.ConfigService;
 import org.apache.click.service.PropertyService;
 import org.apache.click.util.ClickUtils;
 import org.apache.click.util.HtmlStringBuffer;
+import org.apache.click.util.HtmlStringBufferPool;
 
 /**
  * Provides a RadioGroup control.
@@ -540,9 +541,14 @@ public class RadioGroup extends Field {
      */
     @Override
     public String toString() {
-        HtmlStringBuffer buffer = new HtmlStringBuffer(getControlSizeEst());
-        render(buffer);
-        return buffer.toString();
+        HtmlStringBuffer buffer = HtmlStringBufferPool.acquire(getControlSizeEst());
+        try {
+            render(buffer);
+            return buffer.toString();
+
+        } finally {
+            HtmlStringBufferPool.release(buffer);
+        }
     }
 
     /**
@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -35,8 +36,11 @@ import org.apache.click.element.CssStyle;
 import org.apache.click.element.Element;
 import org.apache.click.util.ClickUtils;
 import org.apache.click.dataprovider.DataProvider;
+import org.apache.click.dataprovider.DataQuery;
 import org.apache.click.util.HtmlStringBuffer;
+import org.apache.click.util.HtmlStringBufferPool;
 import org.apache.click.dataprovider.PagingDataProvider;
+import org.apache.click.dataprovider.QueryDataProvider;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
 
@@ -281,6 +285,32 @@ import org.apache.commons.lang.math.NumberUtils;
  * For a live demonstration see the
  * <a href="http://click.avoka.com/click-examples/table/large-dataset-demo.htm">Large Dataset Demo</a>.
  * <p/>
+ * If a {@link org.apache.click.dataprovider.DataProvider} returns an
+ * <tt>Iterable</tt> which is not a <tt>List</tt>, for example a wrapper of a
+ * JDBC cursor, set the table {@link #setStreamingRows(boolean) streamingRows}
+ * property to avoid copying all the rows into the table row list. See
+ * {@link #setStreamingRows(boolean)} for details.
+ * <p/>
+ * Alternatively use a {@link org.apache.click.dataprovider.QueryDataProvider},
+ * which is passed the first row, page size, sorted column, sort order and
+ * {@link #setDataFilter(Object) data filter} of the table as a
+ * {@link org.apache.click.dataprovider.DataQuery}. This allows the
+ * sorting and paging to be pushed down into a SQL, Cayenne or Hibernate
+ * query:
+ *
+ * <pre class="prettyprint">
+ *     table.setDataProvider(new AbstractQueryDataProvider() {
+ *
+ *         public List getData(DataQuery query) {
+ *             return getCustomerService().getCustomersForPage(query.getFirstRow(),
+ *                 query.getPageSize(), query.getSortColumn(), query.isAscending());
+ *         }
+ *
+ *         public int size(DataQuery query) {
+ *             return getCustomerService().getNumberOfCustomers();
+ *         }
+ *     }); </pre>
+ * <p/>
  *
  * See the W3C HTML reference
  * <a class="external" target="_blank" title="W3C HTML 4.01 Specification"
@@ -409,6 +439,9 @@ public class Table extends AbstractControl implements Stateful {
     @SuppressWarnings("unchecked")
     protected DataProvider dataProvider;
 
+    /** The application defined filter passed to a QueryDataProvider. */
+    protected Object dataFilter;
+
     /**
      * The total possible number of rows of the table. This value
      * could be much larger than the number of entries in the {@link #rowList},
@@ -490,9 +523,24 @@ public class Table extends AbstractControl implements Stateful {
     /** The name of the sorted column. */
     protected String sortedColumn;
 
+    /**
+     * The stream rows from a data provider Iterable which is not a List flag.
+     * By default streamingRows is false.
+     */
+    protected boolean streamingRows;
+
     /** The table HTML &lt;td&gt; width attribute. */
     protected String width;
 
+    /** The row list only holds the streamed rows of the current page flag. */
+    private transient boolean streamedPage;
+
+    /** The table body rows are streamed while rendering flag. */
+    private transient boolean streamingBody;
+
+    /** The iterator of the rows streamed while rendering the table body. */
+    private transient Iterator<?> rowIterator;
+
     // Constructors -----------------------------------------------------------
 
     /**
@@ -891,6 +939,29 @@ public class Table extends AbstractControl implements Stateful {
         }
     }
 
+    /**
+     * Return the application defined filter passed to a
+     * {@link org.apache.click.dataprovider.QueryDataProvider} in the
+     * {@link #createDataQuery() data query}.
+     *
+     * @return the application defined data filter, or null if not defined
+     */
+    public Object getDataFilter() {
+        return dataFilter;
+    }
+
+    /**
+     * Set the application defined filter passed to a
+     * {@link org.apache.click.dataprovider.QueryDataProvider} in the
+     * {@link #createDataQuery() data query}, for example a search criteria
+     * object. The Table does not interpret the filter.
+     *
+     * @param dataFilter the application defined data filter
+     */
+    public void setDataFilter(Object dataFilter) {
+        this.dataFilter = dataFilter;
+    }
+
     /**
      * Return the table HTML &lt;td&gt; height attribute.
      *
@@ -1184,6 +1255,9 @@ public class Table extends AbstractControl implements Stateful {
     @SuppressWarnings("unchecked")
     public void setRowList(List rowList) {
         this.rowList = rowList;
+        this.streamedPage = false;
+        this.streamingBody = false;
+        this.rowIterator = null;
         if (this.rowList == null) {
             this.rowCount = 0;
         } else {
@@ -1363,6 +1437,52 @@ public class Table extends AbstractControl implements Stateful {
         }
     }
 
+    /**
+     * Return true if the rows of a data provider <tt>Iterable</tt> which is
+     * not a <tt>List</tt> are streamed rather than copied into the row list.
+     *
+     * @see #setStreamingRows(boolean)
+     *
+     * @return true if the rows of a data provider Iterable are streamed
+     */
+    public boolean isStreamingRows() {
+        return streamingRows;
+    }
+
+    /**
+     * Set whether the rows of a data provider <tt>Iterable</tt> which is not a
+     * <tt>List</tt> are streamed rather than copied into the row list. By
+     * default the table copies every row of the Iterable into a new row list
+     * before rendering.
+     * <p/>
+     * When streaming rows the Iterable is iterated only once:
+     * <ul>
+     * <li>if a {@link #setPageSize(int) page size} is set, the rows before the
+     * {@link #getFirstRow() first row} are skipped, only the rows of the current
+     * page are kept in the row list, and the remaining rows are counted for
+     * the table paginator</li>
+     * <li>if no page size is set, the rows are rendered directly from the
+     * Iterable as they are produced and are not kept in the row list. The
+     * {@link #getRowList() row list} is empty, the
+     * {@link #getRowCount() row count} is only known after the table body
+     * is rendered, and the rows can only be rendered once per request</li>
+     * </ul>
+     * As the table does not have access to all the rows, the data provider is
+     * responsible for sorting the rows, see {@link #getSortedColumn()} and
+     * {@link #isSortedAscending()}. This property does not apply to a
+     * {@link org.apache.click.dataprovider.PagingDataProvider} or to a
+     * DataProvider returning a <tt>List</tt>.
+     * <p/>
+     * To keep the memory used for large tables flat, render the table to a
+     * {@link org.apache.click.util.HtmlWriterBuffer}, see
+     * {@link ClickUtils#renderControl(Control, java.io.Writer)}.
+     *
+     * @param streamingRows true to stream the rows of a data provider Iterable
+     */
+    public void setStreamingRows(boolean streamingRows) {
+        this.streamingRows = streamingRows;
+    }
+
     /**
      * Return the table HTML &lt;td&gt; width attribute.
      *
@@ -1545,7 +1665,8 @@ public class Table extends AbstractControl implements Stateful {
                 ClickUtils.getLogService().error("onDestroy error", t);
             }
         }
-        if (getNullifyRowListOnDestroy()) {
+        // Streamed rows are only valid for the current request
+        if (getNullifyRowListOnDestroy() || streamedPage || streamingBody) {
             setRowList(null);
         }
     }
@@ -1694,6 +1815,13 @@ public class Table extends AbstractControl implements Stateful {
     /**
      * Create a new table row list. If a {@link #getDataProvider() dataProvider}
      * is specified the new row list will be populated from the data provider.
+     * <p/>
+     * If the data provider is a {@link QueryDataProvider} the rows are
+     * loaded with the {@link #createDataQuery() data query} of the table.
+     * <p/>
+     * If {@link #isStreamingRows() streamingRows} is true and the data
+     * provider returns an Iterable which is not a List, the rows are streamed
+     * by {@link #createStreamingRowList(Iterable)}.
      *
      * @return a new table row list
      */
@@ -1712,13 +1840,6 @@ public class Table extends AbstractControl implements Stateful {
             }
 
             if (isPaginating) {
-                // rowCount is provided by the paging data provider. Its
-                // important to set the rowCount *before* invoking dp.getData
-                // since the getData implementation could have a dependency
-                // on the methods getFirstRow, getLastRow etc all of which
-                // depends on the rowCount value
-                this.rowCount = ((PagingDataProvider<?>) dp).size();
-
                 // paginated datasets cannot be sorted by the table since it
                 // has access to only a limited number of rows. The dataset has
                 // to be sorted by a database or other means. Set the sorted
@@ -1727,12 +1848,35 @@ public class Table extends AbstractControl implements Stateful {
                 setSorted(true);
             }
 
-            Iterable<?> iterableData = dp.getData();
+            Iterable<?> iterableData = null;
+            if (dp instanceof QueryDataProvider<?>) {
+                // The query data provider loads only the rows of the current
+                // page, sorted by the sorted column
+                QueryDataProvider<?> queryDataProvider = (QueryDataProvider<?>) dp;
+                DataQuery query = createDataQuery();
+                this.rowCount = queryDataProvider.size(query);
+                iterableData = queryDataProvider.getData(query);
+
+            } else {
+                if (isPaginating) {
+                    // rowCount is provided by the paging data provider. Its
+                    // important to set the rowCount *before* invoking dp.getData
+                    // since the getData implementation could have a dependency
+                    // on the methods getFirstRow, getLastRow etc all of which
+                    // depends on the rowCount value
+                    this.rowCount = ((PagingDataProvider<?>) dp).size();
+                }
+                iterableData = dp.getData();
+            }
 
             // If dataProvider returns a list, use that as the rowList
             if (iterableData instanceof List<?>) {
                 rowList = (List<Object>) iterableData;
 
+            } else if (isStreamingRows() && !isPaginating && iterableData != null) {
+                // Stream the rows, which sets the rowCount
+                return createStreamingRowList(iterableData);
+
             } else {
 
                 // Create and populate the rowList from the Iterable data
@@ -1758,6 +1902,82 @@ public class Table extends AbstractControl implements Stateful {
         return rowList;
     }
 
+    /**
+     * Create a new table row list from the given data provider Iterable
+     * without copying all the rows, see {@link #setStreamingRows(boolean)}.
+     * The Iterable is iterated only once.
+     * <p/>
+     * If a page size is set, the returned list contains only the rows of the
+     * current page and the remaining rows are counted to set the row count.
+     * Otherwise an empty list is returned and the rows are rendered from the
+     * Iterable by {@link #renderBodyRows(HtmlStringBuffer)}.
+     *
+     * @param iterableData the rows returned by the data provider
+     * @return a new table row list of the current page rows
+     */
+    protected List<Object> createStreamingRowList(Iterable<?> iterableData) {
+        List<Object> pageRows = new ArrayList<Object>();
+
+        // The table only has access to the streamed rows, so the data
+        // provider has to sort the rows
+        setSorted(true);
+
+        Iterator<?> iterator = iterableData.iterator();
+
+        if (getPageSize() > 0) {
+            int firstRow = getFirstRow();
+            int lastRow = firstRow + getPageSize();
+
+            int index = 0;
+            while (iterator.hasNext()) {
+                Object row = iterator.next();
+                if (index >= firstRow && index < lastRow) {
+                    pageRows.add(row);
+                }
+                index++;
+            }
+
+            this.rowCount = index;
+            this.streamedPage = true;
+
+        } else {
+            // The rows are rendered as they are produced
+            this.rowCount = 0;
+            this.streamingBody = true;
+            this.rowIterator = iterator;
+        }
+
+        return pageRows;
+    }
+
+    /**
+     * Create the {@link DataQuery} passed to a {@link QueryDataProvider},
+     * from the table {@link #getFirstRow() first row},
+     * {@link #getPageSize() page size}, {@link #getSortedColumn() sorted column},
+     * {@link #isSortedAscending() sort order} and
+     * {@link #getDataFilter() data filter}.
+     * <p/>
+     * The sorted column is only passed to the data provider if it is the name
+     * of a sortable table column, as the column name is typically used in the
+     * query.
+     *
+     * @return the data query for the table rows to load
+     */
+    protected DataQuery createDataQuery() {
+        String sortColumn = null;
+
+        String columnName = getSortedColumn();
+        if (StringUtils.isNotBlank(columnName)) {
+            Column column = getColumns().get(columnName);
+            if (column != null && column.getSortable()) {
+                sortColumn = columnName;
+            }
+        }
+
+        return new DataQuery(Math.max(getFirstRow(), 0), Math.max(getPageSize(), 0),
+            sortColumn, isSortedAscending(), getDataFilter());
+    }
+
     /**
      * Render the table header row of column names.
      *
@@ -1805,14 +2025,17 @@ public class Table extends AbstractControl implements Stateful {
         int firstRow = 0;
         int lastRow = 0;
 
-        if (getDataProvider() instanceof PagingDataProvider) {
+        if (getDataProvider() instanceof PagingDataProvider || streamedPage) {
             lastRow = getRowList().size();
         } else {
             firstRow = getFirstRow();
             lastRow = getLastRow();
         }
 
-        if (lastRow == 0) {
+        if (streamingBody) {
+            renderStreamingBodyRows(buffer);
+
+        } else if (lastRow == 0) {
             renderBodyNoRows(buffer);
         } else {
             List tableRows = getRowList();
@@ -1822,60 +2045,7 @@ public class Table extends AbstractControl implements Stateful {
             for (int i = firstRow; i < lastRow; i++) {
                 Object row = getRowList().get(i);
 
-                buffer.append("<tr");
-
-                // Calculate if row is odd or even
-                boolean even = (i + 1) % 2 == 0;
-                String hoverClass = null;
-                if (even) {
-                    hoverClass = "even";
-                } else {
-                    hoverClass = "odd";
-                }
-
-                // Empty the row attributes
-                rowAttributes.clear();
-
-                // Allow user to add row attributes
-                addRowAttributes(rowAttributes, row, i);
-
-                if (!rowAttributes.isEmpty()) {
-                    // Append id attribute if it was set
-                    buffer.appendAttribute("id", rowAttributes.get("id"));
-
-                    // Remove class attribute and append hoverClass to the value
-                    String cls = (String) rowAttributes.remove("class");
-
-                    // Open class attribute
-                    buffer.append(" class=\"");
-                    if (cls != null) {
-                        buffer.append(cls).append(" ");
-                    }
-                    buffer.append(hoverClass);
-
-                    // Close class attribute
-                    buffer.append("\"");
-
-                    // Render other attributes set by user.
-                    buffer.appendAttributes(rowAttributes);
-                } else {
-                    // If attributes was not set by user, render hoverClass
-                    // attribute
-                    buffer.append(" class=\"").append(hoverClass).append("\"");
-                }
-
-                if (getHoverRows()) {
-                    buffer.append(" onmouseover=\"this.className='hover';\"");
-                    buffer.append(" onmouseout=\"this.className='");
-                    if (even) {
-                        buffer.append("even");
-                    } else {
-                        buffer.append("odd");
-                    }
-                    buffer.append("';\"");
-                }
-
-                buffer.append(">\n");
+                renderBodyRowStart(buffer, row, i, rowAttributes);
 
                 renderBodyRowColumns(buffer, i);
 
@@ -1904,6 +2074,43 @@ public class Table extends AbstractControl implements Stateful {
         buffer.append("</tbody>");
     }
 
+    /**
+     * Render the table body rows as they are produced by the streamed
+     * data provider Iterable, see {@link #setStreamingRows(boolean)}. The row
+     * count is incremented for each row rendered.
+     *
+     * @param buffer the StringBuffer to render the table body rows in
+     */
+    @SuppressWarnings("unchecked")
+    protected void renderStreamingBodyRows(HtmlStringBuffer buffer) {
+        Iterator<?> iterator = rowIterator;
+        rowIterator = null;
+
+        if (iterator == null || !iterator.hasNext()) {
+            renderBodyNoRows(buffer);
+            return;
+        }
+
+        Map rowAttributes = new HashMap(3);
+
+        int i = 0;
+        while (iterator.hasNext()) {
+            Object row = iterator.next();
+
+            renderBodyRowStart(buffer, row, i, rowAttributes);
+
+            renderBodyRowColumns(buffer, row, i);
+
+            buffer.append("</tr>");
+            if (iterator.hasNext()) {
+                buffer.append("\n");
+            }
+
+            i++;
+            this.rowCount = i;
+        }
+    }
+
     /**
      * Override this method to set HTML attributes for each Table row.
      * <p/>
@@ -1994,7 +2201,19 @@ public class Table extends AbstractControl implements Stateful {
      * @param rowIndex the 0-based index in tableRows to render
      */
     protected void renderBodyRowColumns(HtmlStringBuffer buffer, int rowIndex) {
-        Object row = getRowList().get(rowIndex);
+        renderBodyRowColumns(buffer, getRowList().get(rowIndex), rowIndex);
+    }
+
+    /**
+     * Render the given table body row cells. This method is invoked directly
+     * for rows streamed from the data provider, which are not in the row list.
+     *
+     * @param buffer the StringBuffer to render the table row cells in
+     * @param row the domain object currently being rendered
+     * @param rowIndex the 0-based index of the row
+     */
+    protected void renderBodyRowColumns(HtmlStringBuffer buffer, Object row,
+        int rowIndex) {
 
         List<Column> tableColumns = getColumnList();
 
@@ -2120,7 +2339,7 @@ public class Table extends AbstractControl implements Stateful {
             }
 
             HtmlStringBuffer pagesBuffer =
-                new HtmlStringBuffer(getNumberPages() * 70);
+                HtmlStringBufferPool.acquire(Math.min(getNumberPages(), 10) * 70);
 
             // Create sliding window of paging links
             int lowerBound = Math.max(0, getPageNumber() - 5);
@@ -2146,6 +2365,7 @@ public class Table extends AbstractControl implements Stateful {
                 }
             }
             String pageLinks = pagesBuffer.toString();
+            HtmlStringBufferPool.release(pagesBuffer);
 
             if (getPageNumber() < getNumberPages() - 1) {
                 link.setLabel(nextLabel);
@@ -2186,8 +2406,96 @@ public class Table extends AbstractControl implements Stateful {
         }
     }
 
+    // Package Private Methods ------------------------------------------------
+
+    /**
+     * Return true if the table has rows to render. Unlike
+     * <tt>!getRowList().isEmpty()</tt> this method also checks the rows
+     * streamed while rendering, see {@link #setStreamingRows(boolean)}.
+     *
+     * @return true if the table has rows to render
+     */
+    boolean hasRows() {
+        List<?> list = getRowList();
+        if (streamingBody) {
+            if (rowIterator != null) {
+                return rowIterator.hasNext();
+            }
+            return rowCount > 0;
+        }
+        return !list.isEmpty();
+    }
+
     // Private Methods --------------------------------------------------------
 
+    /**
+     * Render the table body row start tag and row attributes.
+     *
+     * @param buffer the StringBuffer to render the row start tag in
+     * @param row the domain object currently being rendered
+     * @param i the rows index
+     * @param rowAttributes the reusable row attributes map
+     */
+    @SuppressWarnings("unchecked")
+    private void renderBodyRowStart(HtmlStringBuffer buffer, Object row, int i,
+        Map rowAttributes) {
+
+        buffer.append("<tr");
+
+        // Calculate if row is odd or even
+        boolean even = (i + 1) % 2 == 0;
+        String hoverClass = null;
+        if (even) {
+            hoverClass = "even";
+        } else {
+            hoverClass = "odd";
+        }
+
+        // Empty the row attributes
+        rowAttributes.clear();
+
+        // Allow user to add row attributes
+        addRowAttributes(rowAttributes, row, i);
+
+        if (!rowAttributes.isEmpty()) {
+            // Append id attribute if it was set
+            buffer.appendAttribute("id", rowAttributes.get("id"));
+
+            // Remove class attribute and append hoverClass to the value
+            String cls = (String) rowAttributes.remove("class");
+
+            // Open class attribute
+            buffer.append(" class=\"");
+            if (cls != null) {
+                buffer.append(cls).append(" ");
+            }
+            buffer.append(hoverClass);
+
+            // Close class attribute
+            buffer.append("\"");
+
+            // Render other attributes set by user.
+            buffer.appendAttributes(rowAttributes);
+        } else {
+            // If attributes was not set by user, render hoverClass
+            // attribute
+            buffer.append(" class=\"").append(hoverClass).append("\"");
+        }
+
+        if (getHoverRows()) {
+            buffer.append(" onmouseover=\"this.className='hover';\"");
+            buffer.append(" onmouseout=\"this.className='");
+            if (even) {
+                buffer.append("even");
+            } else {
+                buffer.append("odd");
+            }
+            buffer.append("';\"");
+        }
+
+        buffer.append(">\n");
+    }
+
     /**
      * Return true if a dark table style is selected, false otherwise.
      *
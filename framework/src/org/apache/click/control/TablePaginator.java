@@ -19,6 +19,7 @@
 package org.apache.click.control;
 
 import org.apache.click.util.HtmlStringBuffer;
+import org.apache.click.util.HtmlStringBufferPool;
 
 /**
  * Provides the default Table Paginator.
@@ -87,14 +88,14 @@ public class TablePaginator implements Renderable {
             String rowCountStr = String.valueOf(rowCount);
 
             String firstRow = null;
-            if (table.getRowList().isEmpty()) {
+            if (!table.hasRows()) {
                 firstRow = String.valueOf(0);
             } else {
                 firstRow = String.valueOf(table.getFirstRow() + 1);
             }
 
             String lastRow = null;
-            if (table.getRowList().isEmpty()) {
+            if (!table.hasRows()) {
                 lastRow = String.valueOf(0);
             } else {
                 lastRow = String.valueOf(table.getLastRow());
@@ -145,7 +146,7 @@ public class TablePaginator implements Renderable {
             }
 
             HtmlStringBuffer pagesBuffer =
-                new HtmlStringBuffer(table.getNumberPages() * 70);
+                HtmlStringBufferPool.acquire(Math.min(table.getNumberPages(), 10) * 70);
 
             // Create sliding window of paging links
             int lowerBound = Math.max(0, table.getPageNumber() - 5);
@@ -171,6 +172,7 @@ public class TablePaginator implements Renderable {
                 }
             }
             String pageLinks = pagesBuffer.toString();
+            HtmlStringBufferPool.release(pagesBuffer);
 
             if (table.getPageNumber() < table.getNumberPages() - 1) {
                 controlLink.setLabel(nextLabel);
@@ -208,11 +210,14 @@ public class TablePaginator implements Renderable {
      */
     @Override
     public String toString() {
-        HtmlStringBuffer buffer = new HtmlStringBuffer();
+        HtmlStringBuffer buffer = HtmlStringBufferPool.acquire(128);
+        try {
+            render(buffer);
+            return buffer.toString();
 
-        render(buffer);
-
-        return buffer.toString();
+        } finally {
+            HtmlStringBufferPool.release(buffer);
+        }
     }
 
 }
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.dataprovider;
+
+/**
+ * Provides an abstract {@link QueryDataProvider} which implements the
+ * {@link PagingDataProvider} methods by delegating to the query methods with
+ * an unsorted, unpaginated and unfiltered {@link DataQuery}.
+ * <p/>
+ * Subclasses only need to implement {@link #getData(DataQuery)} and
+ * {@link #size(DataQuery)}.
+ */
+public abstract class AbstractQueryDataProvider<T> implements QueryDataProvider<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Return all the data items, by invoking {@link #getData(DataQuery)} with
+     * an unsorted and unpaginated query.
+     *
+     * @see DataProvider#getData()
+     *
+     * @return the iterable collection of all data items
+     */
+    public Iterable<T> getData() {
+        return getData(new DataQuery(0, 0, null, true, null));
+    }
+
+    /**
+     * Return the total number of results, by invoking {@link #size(DataQuery)}
+     * with an unfiltered query.
+     *
+     * @see PagingDataProvider#size()
+     *
+     * @return the total number of results represented by this DataProvider
+     */
+    public int size() {
+        return size(new DataQuery(0, 0, null, true, null));
+    }
+}
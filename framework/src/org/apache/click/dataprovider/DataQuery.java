@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.dataprovider;
+
+import java.io.Serializable;
+
+/**
+ * Provides an immutable description of the rows a control requests from a
+ * {@link QueryDataProvider}: the range of rows to load, the column to sort
+ * the rows by and an optional application defined filter.
+ * <p/>
+ * A DataQuery is created by the control for each data request, for example
+ * see {@link org.apache.click.control.Table#createDataQuery()}.
+ */
+public class DataQuery implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Variables --------------------------------------------------------------
+
+    /** The index of the first row to load, starting from 0. */
+    private final int firstRow;
+
+    /** The maximum number of rows to load, or 0 to load all rows. */
+    private final int pageSize;
+
+    /** The name of the column to sort by, or null if not sorted. */
+    private final String sortColumn;
+
+    /** The ascending sort order flag. */
+    private final boolean ascending;
+
+    /** The application defined filter, or null if not filtered. */
+    private final Object filter;
+
+    // Constructors -----------------------------------------------------------
+
+    /**
+     * Create a DataQuery for the given row range, sort order and filter.
+     *
+     * @param firstRow the index of the first row to load, starting from 0
+     * @param pageSize the maximum number of rows to load, or 0 to load all rows
+     * @param sortColumn the name of the column to sort by, or null if not sorted
+     * @param ascending the ascending sort order flag
+     * @param filter the application defined filter, or null if not filtered
+     */
+    public DataQuery(int firstRow, int pageSize, String sortColumn,
+        boolean ascending, Object filter) {
+
+        if (firstRow < 0) {
+            throw new IllegalArgumentException("Negative firstRow parameter: " + firstRow);
+        }
+        if (pageSize < 0) {
+            throw new IllegalArgumentException("Negative pageSize parameter: " + pageSize);
+        }
+        this.firstRow = firstRow;
+        this.pageSize = pageSize;
+        this.sortColumn = sortColumn;
+        this.ascending = ascending;
+        this.filter = filter;
+    }
+
+    // Public Methods ---------------------------------------------------------
+
+    /**
+     * Return the index of the first row to load, starting from 0.
+     *
+     * @return the index of the first row to load
+     */
+    public int getFirstRow() {
+        return firstRow;
+    }
+
+    /**
+     * Return the maximum number of rows to load, or 0 if all rows from the
+     * {@link #getFirstRow() first row} should be loaded.
+     *
+     * @return the maximum number of rows to load, or 0 to load all rows
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Return true if the number of rows to load is limited by the
+     * {@link #getPageSize() page size}.
+     *
+     * @return true if the number of rows to load is limited
+     */
+    public boolean isPaginated() {
+        return pageSize > 0;
+    }
+
+    /**
+     * Return the name of the column to sort the rows by, or null if the rows
+     * do not need to be sorted. For a Table this is the
+     * {@link org.apache.click.control.Column#getName() column name}, which
+     * is typically the row property name.
+     *
+     * @return the name of the column to sort by, or null if not sorted
+     */
+    public String getSortColumn() {
+        return sortColumn;
+    }
+
+    /**
+     * Return true if the rows should be sorted in ascending order.
+     *
+     * @return true if the rows should be sorted in ascending order
+     */
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    /**
+     * Return true if the rows should be sorted by a
+     * {@link #getSortColumn() sort column}.
+     *
+     * @return true if the rows should be sorted
+     */
+    public boolean isSorted() {
+        return sortColumn != null;
+    }
+
+    /**
+     * Return the application defined filter, or null if the rows are not
+     * filtered. The filter is passed through unchanged from the control, for
+     * example see {@link org.apache.click.control.Table#setDataFilter(Object)}.
+     *
+     * @return the application defined filter, or null if not filtered
+     */
+    public Object getFilter() {
+        return filter;
+    }
+
+    /**
+     * Return a string representation of the query.
+     *
+     * @see Object#toString()
+     *
+     * @return a string representation of the query
+     */
+    @Override
+    public String toString() {
+        return getClass().getName() + "[firstRow=" + firstRow + ",pageSize="
+            + pageSize + ",sortColumn=" + sortColumn + ",ascending=" + ascending
+            + ",filter=" + filter + "]";
+    }
+}
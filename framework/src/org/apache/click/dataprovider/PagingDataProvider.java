@@ -88,6 +88,9 @@ package org.apache.click.dataprovider;
  *         });
  *     }
  * } </pre>
+ *
+ * To have the sort order and row range passed to the data provider, rather
+ * than reading them from the Table, use a {@link QueryDataProvider}.
  */
 public interface PagingDataProvider<T> extends DataProvider<T> {
 
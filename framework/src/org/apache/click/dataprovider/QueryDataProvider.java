@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.dataprovider;
+
+/**
+ * An interface to provide sorted and paginated data on demand to controls,
+ * which passes the rows to load and their sort order to the data provider as
+ * a {@link DataQuery}. This allows the sorting, paging and filtering of rows
+ * to be performed by a database query, so only the rows displayed are loaded.
+ * <p/>
+ * Controls supporting a QueryDataProvider, e.g. Tables, invoke
+ * {@link #size(DataQuery)} and {@link #getData(DataQuery)} instead of the
+ * {@link PagingDataProvider} methods. The {@link AbstractQueryDataProvider}
+ * class implements the PagingDataProvider methods for other controls.
+ * <p/>
+ * Example usage:
+ *
+ * <pre class="prettyprint">
+ * public class MyPage extends Page {
+ *
+ *     private Table table = new Table("table");
+ *
+ *     public MyPage() {
+ *
+ *         ...
+ *
+ *         table.setDataProvider(new AbstractQueryDataProvider&lt;Customer&gt;() {
+ *
+ *             // Return the customers of the current page in the sort order
+ *             public List&lt;Customer&gt; getData(DataQuery query) {
+ *
+ *                 return getCustomerService().getCustomers(query.getFirstRow(),
+ *                     query.getPageSize(), query.getSortColumn(), query.isAscending());
+ *             }
+ *
+ *             // Return the total number of customers to page over
+ *             public int size(DataQuery query) {
+ *                 return getCustomerService().getNumberOfCustomers();
+ *             }
+ *         });
+ *     }
+ * } </pre>
+ */
+public interface QueryDataProvider<T> extends PagingDataProvider<T> {
+
+    /**
+     * Return the iterable collection of data items for the given query. The
+     * data items must be limited to the query row range and sorted in the
+     * query sort order, as the control does not sort the data items.
+     *
+     * @param query the rows to load and their sort order
+     * @return the iterable collection of data items for the given query
+     */
+    public Iterable<T> getData(DataQuery query);
+
+    /**
+     * Return the total number of results represented by this DataProvider for
+     * the given query. The query {@link DataQuery#getFilter() filter}
+     * should be applied, however the row range should be ignored.
+     *
+     * @param query the rows to load and their sort order
+     * @return the total number of results for the given query
+     */
+    public int size(DataQuery query);
+}
@@ -24,6 +24,7 @@ import java.util.Map;
 
 import org.apache.click.Context;
 import org.apache.click.util.HtmlStringBuffer;
+import org.apache.click.util.HtmlStringBufferPool;
 
 /**
  * Provides a base class for rendering HTML elements, for example
@@ -179,9 +180,14 @@ public class Element implements Serializable {
         if (getTag() == null) {
             return "";
         }
-        HtmlStringBuffer buffer = new HtmlStringBuffer(getElementSizeEst());
-        render(buffer);
-        return buffer.toString();
+        HtmlStringBuffer buffer = HtmlStringBufferPool.acquire(getElementSizeEst());
+        try {
+            render(buffer);
+            return buffer.toString();
+
+        } finally {
+            HtmlStringBufferPool.release(buffer);
+        }
     }
 
     // Protected Methods ------------------------------------------------------
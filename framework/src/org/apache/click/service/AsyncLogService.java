@@ -0,0 +1,578 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.servlet.ServletContext;
+
+/**
+ * Provides a Log Service class which logs messages to the console or
+ * <tt>System.out</tt> from a background writer thread.
+ * <p/>
+ * Log events are put into a bounded lock free ring buffer, and the writer
+ * thread writes them in batches. The request thread therefore only checks
+ * the logging level and puts the event into the buffer, it does not format
+ * the message or wait for <tt>System.out</tt>. Messages which are a
+ * <tt>String</tt> or a {@link LogMessage} are formatted by the writer thread,
+ * other message objects are converted to a string when they are logged, as
+ * they may be modified after the log method returns.
+ * <p/>
+ * When the buffer is full the event is handled according to the overflow
+ * policy:
+ * <ul>
+ * <li><tt>drop</tt> - the event is dropped and counted, see
+ * {@link #getDroppedCount()}. The writer thread logs a warning with the number
+ * of dropped events. This is the default policy.</li>
+ * <li><tt>block</tt> - the request thread waits until the writer thread has
+ * made room in the buffer.</li>
+ * </ul>
+ * Events logged before the service is initialized or after it is destroyed
+ * are written by the calling thread.
+ *
+ * <h3>Configuration</h3>
+ * To use this service add the following element to your
+ * <tt>click.xml</tt> configuration file.
+ *
+ * <pre class="codeConfig">
+ * &lt;<span class="red">log-service</span> classname="<span class="blue">org.apache.click.service.AsyncLogService</span>"&gt;
+ *     &lt;property name="<span class="blue">bufferSize</span>" value="<span class="red">8192</span>"/&gt;
+ *     &lt;property name="<span class="blue">overflowPolicy</span>" value="<span class="red">drop</span>"/&gt;
+ * &lt;/log-service&gt; </pre>
+ *
+ * The logging level is set by the application mode, in the same way as the
+ * {@link ConsoleLogService}.
+ */
+public class AsyncLogService extends ConsoleLogService {
+
+    // -------------------------------------------------------------- Constants
+
+    /** The drop overflow policy: &nbsp; "<tt>drop</tt>". */
+    public static final String DROP_POLICY = "drop";
+
+    /** The block overflow policy: &nbsp; "<tt>block</tt>". */
+    public static final String BLOCK_POLICY = "block";
+
+    /** The time a blocked request thread waits for room in the buffer. */
+    private static final long BLOCK_NANOS = 100000L;
+
+    // ----------------------------------------------------- Instance Variables
+
+    /** The number of events the buffer can hold, default value is 8192. */
+    protected int bufferSize = 8192;
+
+    /** The overflow policy, default value is "drop". */
+    protected String overflowPolicy = DROP_POLICY;
+
+    /** The stream the events are written to. */
+    PrintStream out = System.out;
+
+    /** The ring buffer of the events, or null if the service is not running. */
+    private volatile RingBuffer buffer;
+
+    /** The writer thread. */
+    private volatile Thread writerThread;
+
+    /** The flag indicating the writer thread is waiting for events. */
+    private volatile boolean writerWaiting;
+
+    /** The number of dropped events. */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /** The number of dropped events reported by the writer thread. */
+    private long reportedDroppedCount;
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Start the writer thread.
+     *
+     * @see LogService#onInit(ServletContext)
+     *
+     * @param servletContext the application servlet context
+     * @throws Exception if an error occurs while initializing the LogService
+     */
+    @Override
+    public void onInit(ServletContext servletContext) throws Exception {
+        if (!DROP_POLICY.equals(overflowPolicy) && !BLOCK_POLICY.equals(overflowPolicy)) {
+            throw new IllegalArgumentException("Invalid overflow policy: "
+                + overflowPolicy + ", use 'drop' or 'block'");
+        }
+
+        buffer = new RingBuffer(bufferSize);
+
+        writerThread = new Thread(new LogWriter(), "Click-AsyncLogService-Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Stop the writer thread after it has written the buffered events.
+     *
+     * @see LogService#onDestroy()
+     */
+    @Override
+    public void onDestroy() {
+        Thread thread = writerThread;
+        if (thread == null) {
+            return;
+        }
+
+        buffer = null;
+        writerThread = null;
+
+        LockSupport.unpark(thread);
+        try {
+            thread.join(5000);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Return the number of events the buffer can hold.
+     *
+     * @return the number of events the buffer can hold
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Set the number of events the buffer can hold. The size is rounded up to
+     * a power of two.
+     *
+     * @param bufferSize the number of events the buffer can hold
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Return the overflow policy <tt>[ "drop" | "block" ]</tt>.
+     *
+     * @return the overflow policy
+     */
+    public String getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Set the overflow policy <tt>[ "drop" | "block" ]</tt>.
+     *
+     * @param overflowPolicy the overflow policy
+     */
+    public void setOverflowPolicy(String overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Return the number of events dropped because the buffer was full.
+     *
+     * @return the number of dropped events
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @see LogService#debug(Object)
+     *
+     * @param message the message to log
+     */
+    @Override
+    public void debug(Object message) {
+        logEvent(DEBUG_LEVEL, message, null);
+    }
+
+    /**
+     * @see LogService#debug(Object, Throwable)
+     *
+     * @param message the message to log
+     * @param error the error to log
+     */
+    @Override
+    public void debug(Object message, Throwable error) {
+        logEvent(DEBUG_LEVEL, message, error);
+    }
+
+    /**
+     * @see LogService#error(Object)
+     *
+     * @param message the message to log
+     */
+    @Override
+    public void error(Object message) {
+        logEvent(ERROR_LEVEL, message, null);
+    }
+
+    /**
+     * @see LogService#error(Object, Throwable)
+     *
+     * @param message the message to log
+     * @param error the error to log
+     */
+    @Override
+    public void error(Object message, Throwable error) {
+        logEvent(ERROR_LEVEL, message, error);
+    }
+
+    /**
+     * @see LogService#info(Object)
+     *
+     * @param message the message to log
+     */
+    @Override
+    public void info(Object message) {
+        logEvent(INFO_LEVEL, message, null);
+    }
+
+    /**
+     * @see LogService#info(Object, Throwable)
+     *
+     * @param message the message to log
+     * @param error the error to log
+     */
+    @Override
+    public void info(Object message, Throwable error) {
+        logEvent(INFO_LEVEL, message, error);
+    }
+
+    /**
+     * @see LogService#trace(Object)
+     *
+     * @param message the message to log
+     */
+    @Override
+    public void trace(Object message) {
+        logEvent(TRACE_LEVEL, message, null);
+    }
+
+    /**
+     * @see LogService#trace(Object, Throwable)
+     *
+     * @param message the message to log
+     * @param error the error to log
+     */
+    @Override
+    public void trace(Object message, Throwable error) {
+        logEvent(TRACE_LEVEL, message, error);
+    }
+
+    /**
+     * @see LogService#warn(Object)
+     *
+     * @param message the message to log
+     */
+    @Override
+    public void warn(Object message) {
+        logEvent(WARN_LEVEL, message, null);
+    }
+
+    /**
+     * @see LogService#warn(Object, Throwable)
+     *
+     * @param message the message to log
+     * @param error the error to log
+     */
+    @Override
+    public void warn(Object message, Throwable error) {
+        logEvent(WARN_LEVEL, message, error);
+    }
+
+    // ------------------------------------------------------ Protected Methods
+
+    /**
+     * Put the given message and optional error into the buffer of the writer
+     * thread, if the specified logging level is enabled.
+     *
+     * @see ConsoleLogService#log(int, String, Throwable)
+     *
+     * @param level the logging level
+     * @param message the message to log
+     * @param error the optional error to log
+     */
+    @Override
+    protected void log(int level, String message, Throwable error) {
+        logEvent(level, message, error);
+    }
+
+    /**
+     * Write the given message and optional error at the specified logging
+     * level to the given buffer. This method is invoked by the writer thread.
+     *
+     * @param level the logging level
+     * @param message the message to write
+     * @param error the optional error to write
+     * @param buffer the buffer to write the message to
+     */
+    protected void write(int level, Object message, Throwable error,
+        StringBuilder buffer) {
+
+        buffer.append("[");
+        buffer.append(name);
+        buffer.append("]");
+
+        buffer.append(LEVELS[level + 1]);
+        buffer.append(String.valueOf(message));
+
+        if (error != null) {
+            StringWriter stackTrace = new StringWriter();
+            error.printStackTrace(new PrintWriter(stackTrace));
+            buffer.append(stackTrace.toString());
+
+        } else {
+            buffer.append(System.getProperty("line.separator"));
+        }
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    private void logEvent(int level, Object message, Throwable error) {
+        if (level < logLevel) {
+            return;
+        }
+
+        if (!(message instanceof String) && !(message instanceof LogMessage)) {
+            message = String.valueOf(message);
+        }
+
+        LogEvent event = new LogEvent(level, message, error);
+
+        RingBuffer ringBuffer = buffer;
+        while (ringBuffer != null) {
+            if (ringBuffer.offer(event)) {
+                wakeWriter();
+                return;
+            }
+
+            if (!BLOCK_POLICY.equals(overflowPolicy)) {
+                droppedCount.incrementAndGet();
+                wakeWriter();
+                return;
+            }
+
+            LockSupport.parkNanos(BLOCK_NANOS);
+            ringBuffer = buffer;
+        }
+
+        // The service is not running, write the event on the calling thread
+        StringBuilder line = new StringBuilder();
+        write(level, message, error, line);
+        synchronized (this) {
+            out.print(line);
+            out.flush();
+        }
+    }
+
+    /**
+     * Unpark the writer thread if it is waiting for events.
+     */
+    private void wakeWriter() {
+        if (writerWaiting) {
+            Thread thread = writerThread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Writes the buffered events in batches until the service is destroyed.
+     */
+    private class LogWriter implements Runnable {
+
+        /** The buffer of the service. */
+        private final RingBuffer ringBuffer = buffer;
+
+        /** The lines written in a batch. */
+        private final StringBuilder lines = new StringBuilder(4096);
+
+        /**
+         * @see Runnable#run()
+         */
+        public void run() {
+            while (buffer == ringBuffer) {
+                if (!writeBatch()) {
+                    // Wait until an event is logged or the service is destroyed.
+                    // The buffer is checked again after the flag is set, so an
+                    // event offered before the flag was seen is not missed
+                    writerWaiting = true;
+                    if (ringBuffer.isEmpty() && buffer == ringBuffer
+                        && droppedCount.get() == reportedDroppedCount) {
+                        LockSupport.park();
+                    }
+                    writerWaiting = false;
+                }
+            }
+
+            // Write the events buffered before the service was destroyed
+            while (writeBatch()) {
+            }
+        }
+
+        /**
+         * Write the buffered events and return true if any event was written.
+         */
+        private boolean writeBatch() {
+            lines.setLength(0);
+
+            long dropped = droppedCount.get();
+            if (dropped != reportedDroppedCount) {
+                write(WARN_LEVEL, "AsyncLogService dropped "
+                    + (dropped - reportedDroppedCount) + " log events", null, lines);
+                reportedDroppedCount = dropped;
+            }
+
+            LogEvent event = ringBuffer.poll();
+            while (event != null) {
+                try {
+                    write(event.level, event.message, event.error, lines);
+
+                } catch (Throwable t) {
+                    lines.append(t.toString()).append(System.getProperty("line.separator"));
+                }
+
+                if (lines.length() >= 65536) {
+                    break;
+                }
+                event = ringBuffer.poll();
+            }
+
+            if (lines.length() == 0) {
+                return false;
+            }
+
+            synchronized (AsyncLogService.this) {
+                out.print(lines);
+                out.flush();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Provides a logged event.
+     */
+    private static final class LogEvent {
+
+        final int level;
+
+        final Object message;
+
+        final Throwable error;
+
+        LogEvent(int level, Object message, Throwable error) {
+            this.level = level;
+            this.message = message;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Provides a bounded lock free ring buffer with multiple producers and a
+     * single consumer. Each slot has a sequence number which tells producers
+     * and the consumer whether the slot is free or holds an event.
+     */
+    private static final class RingBuffer {
+
+        private final int mask;
+
+        private final AtomicReferenceArray<LogEvent> slots;
+
+        private final AtomicLongArray sequences;
+
+        /** The position of the next event to offer. */
+        private final AtomicLong tail = new AtomicLong();
+
+        /** The position of the next event to poll, only used by the consumer. */
+        private long head;
+
+        RingBuffer(int size) {
+            int capacity = 1;
+            while (capacity < size) {
+                capacity <<= 1;
+            }
+
+            mask = capacity - 1;
+            slots = new AtomicReferenceArray<LogEvent>(capacity);
+            sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+        }
+
+        /**
+         * Offer the event and return false if the buffer is full.
+         */
+        boolean offer(LogEvent event) {
+            long position = tail.get();
+            while (true) {
+                int index = (int) (position & mask);
+                long sequence = sequences.get(index);
+
+                if (sequence == position) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        slots.set(index, event);
+                        sequences.set(index, position + 1);
+                        return true;
+                    }
+
+                } else if (sequence < position) {
+                    // The slot still holds the event of the previous round
+                    return false;
+                }
+
+                position = tail.get();
+            }
+        }
+
+        /**
+         * Return true if the buffer holds no event, only used by the consumer.
+         */
+        boolean isEmpty() {
+            return sequences.get((int) (head & mask)) != head + 1;
+        }
+
+        /**
+         * Return the next event, or null if the buffer is empty.
+         */
+        LogEvent poll() {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                return null;
+            }
+
+            LogEvent event = slots.get(index);
+            slots.set(index, null);
+            sequences.set(index, head + mask + 1);
+            head++;
+            return event;
+        }
+    }
+}
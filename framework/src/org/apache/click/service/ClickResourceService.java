@@ -18,13 +18,25 @@
  */
 package org.apache.click.service;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
@@ -32,6 +44,8 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.click.util.ClickUtils;
 import org.apache.click.util.HtmlStringBuffer;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
 /**
@@ -42,18 +56,94 @@ import org.apache.commons.io.IOUtils;
  * <p/>
  * This service is useful for application servers which do not allow Click to
  * automatically deploy resources to the web root directory.
+ *
+ * <h3>Caching</h3>
+ * Resources are cached in memory. The cache is bounded by the
+ * {@link #setCacheSize(long) cacheSize} byte budget, and the least recently
+ * used resources are evicted when the budget is exceeded. Resources larger than
+ * {@link #setMaxEntrySize(int) maxEntrySize} are not held in memory. Only
+ * their ETag, modified date and location are cached, and they are streamed
+ * directly from the file system or their URL when rendered.
+ * <p/>
+ * In <tt>production</tt> and <tt>profile</tt> modes cached resources are
+ * never reloaded. In the development modes a cached resource is reloaded when
+ * its modified date changes.
+ * <p/>
+ * Every resource is served with a strong <tt>ETag</tt> and a
+ * <tt>Last-Modified</tt> header, computed once when the resource is loaded.
+ * Conditional <tt>If-None-Match</tt> and <tt>If-Modified-Since</tt> requests
+ * for an unchanged resource are answered with a <tt>304 Not Modified</tt>
+ * status and no content.
+ * <p/>
+ *
+ * <h3>Compression</h3>
+ * Text resources such as JavaScript and CSS files are GZIP compressed once
+ * when they are loaded, and the compressed copy is held in the cache next to
+ * the original. Requests with an <tt>Accept-Encoding</tt> header which
+ * includes <tt>gzip</tt> are served the compressed copy, so no compression
+ * is performed on the request thread. Resources smaller than
+ * {@link #setCompressionThreshold(int) compressionThreshold} bytes are not
+ * compressed. Resources which do not fit in
+ * {@link #setMaxEntrySize(int) maxEntrySize} together with their compressed
+ * copy are always served uncompressed.
+ * <p/>
+ * The cache and compression settings can be configured through
+ * <tt>click.xml</tt>:
+ *
+ * <pre class="codeConfig">
+ * &lt;resource-service classname="org.apache.click.service.ClickResourceService"&gt;
+ *     &lt;property name="<span class="blue">cacheSize</span>" value="<span class="red">8388608</span>"/&gt;
+ *     &lt;property name="<span class="blue">maxEntrySize</span>" value="<span class="red">524288</span>"/&gt;
+ *     &lt;property name="<span class="blue">compressionEnabled</span>" value="<span class="red">true</span>"/&gt;
+ *     &lt;property name="<span class="blue">compressionThreshold</span>" value="<span class="red">384</span>"/&gt;
+ * &lt;/resource-service&gt; </pre>
  */
 public class ClickResourceService implements ResourceService {
 
+    /** The default resource cache size in bytes: &nbsp; 4 MB. */
+    public static final long DEFAULT_CACHE_SIZE = 4 * 1024 * 1024;
+
+    /** The default maximum size in bytes of a cached resource: &nbsp; 256 KB. */
+    public static final int DEFAULT_MAX_ENTRY_SIZE = 256 * 1024;
+
+    /** The default minimum size in bytes of a compressed resource: &nbsp; 384. */
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 384;
+
     /** The click resources cache. */
     protected Map<String, byte[]> resourceCache = new ConcurrentHashMap<String, byte[]>();
 
+    /**
+     * The cached resources with their ETag and modified date, keyed by
+     * resource path. The data of the in memory resources is also held in the
+     * {@link #resourceCache}.
+     */
+    protected Map<String, CachedResource> cachedResources =
+        new ConcurrentHashMap<String, CachedResource>();
+
     /** The application log service. */
     protected LogService logService;
 
     /** The application configuration service. */
     protected ConfigService configService;
 
+    /** The maximum number of bytes held in the resource cache. */
+    protected long cacheSize = DEFAULT_CACHE_SIZE;
+
+    /** The maximum size in bytes of a resource held in the resource cache. */
+    protected int maxEntrySize = DEFAULT_MAX_ENTRY_SIZE;
+
+    /** The resource GZIP compression enabled flag. */
+    protected boolean compressionEnabled = true;
+
+    /** The minimum size in bytes of a resource to compress. */
+    protected int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+
+    /** The number of bytes held in the resource cache, guarded by the cache. */
+    private long cachedBytes;
+
+    /** The time the service was initialized, used as a default modified date. */
+    private long startupTime;
+
     /**
      * @see ResourceService#onInit(ServletContext)
      *
@@ -64,13 +154,20 @@ public class ClickResourceService implements ResourceService {
 
         configService = ClickUtils.getConfigService(servletContext);
         logService = configService.getLogService();
+
+        // HTTP dates have a resolution of one second
+        startupTime = (System.currentTimeMillis() / 1000) * 1000;
     }
 
     /**
      * @see ResourceService#onDestroy()
      */
     public void onDestroy() {
-        resourceCache.clear();
+        synchronized (cachedResources) {
+            cachedResources.clear();
+            resourceCache.clear();
+            cachedBytes = 0;
+        }
     }
 
     /**
@@ -99,16 +196,19 @@ public class ClickResourceService implements ResourceService {
 
         String resourcePath = ClickUtils.getResourcePath(request);
 
-        byte[] resourceData = resourceCache.get(resourcePath);
+        CachedResource resource = getCachedResource(resourcePath);
 
-        if (resourceData == null) {
+        if (resource == null) {
             // Lazily load resource
-            resourceData = loadResourceData(resourcePath);
+            resource = loadResource(resourcePath);
 
-            if (resourceData == null) {
+            if (resource == null) {
                 response.sendError(HttpServletResponse.SC_NOT_FOUND);
                 return;
             }
+
+        } else {
+            resource.lastAccessed = System.currentTimeMillis();
         }
 
         String mimeType = ClickUtils.getMimeType(resourcePath);
@@ -124,7 +224,103 @@ public class ClickResourceService implements ResourceService {
             buffer.append(request.getRequestURL());
             logService.debug(buffer);
         }
-        renderResource(response, resourceData);
+
+        boolean gzip = false;
+        if (resource.getGzipData() != null) {
+            response.setHeader("Vary", "Accept-Encoding");
+            gzip = isGzipAccepted(request);
+        }
+
+        String etag = gzip ? resource.getGzipETag() : resource.getETag();
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", resource.getLastModified());
+
+        if (isNotModified(request, etag, resource.getLastModified())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+            renderResource(response, resource.getGzipData());
+
+        } else {
+            renderResource(response, resource);
+        }
+    }
+
+    /**
+     * Return the maximum number of bytes held in the resource cache.
+     *
+     * @return the maximum number of bytes held in the resource cache
+     */
+    public long getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Set the maximum number of bytes held in the resource cache. When the
+     * cache exceeds this size the least recently used resources are evicted.
+     *
+     * @param cacheSize the maximum number of bytes held in the resource cache
+     */
+    public void setCacheSize(long cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Return the maximum size in bytes of a resource held in the cache.
+     *
+     * @return the maximum size in bytes of a resource held in the cache
+     */
+    public int getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Set the maximum size in bytes of a resource held in the cache. Larger
+     * resources are not held in memory.
+     *
+     * @param maxEntrySize the maximum size in bytes of a cached resource
+     */
+    public void setMaxEntrySize(int maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * Return true if text resources are GZIP compressed when loaded.
+     *
+     * @return true if text resources are GZIP compressed when loaded
+     */
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    /**
+     * Set whether text resources are GZIP compressed when loaded.
+     *
+     * @param compressionEnabled the resource compression enabled flag
+     */
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    /**
+     * Return the minimum size in bytes of a resource to compress.
+     *
+     * @return the minimum size in bytes of a resource to compress
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Set the minimum size in bytes of a resource to compress.
+     *
+     * @param compressionThreshold the minimum size of a resource to compress
+     */
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
     }
 
     // ------------------------------------------------------ Protected Methods
@@ -195,16 +391,130 @@ public class ClickResourceService implements ResourceService {
     // Private Methods --------------------------------------------------------
 
     /**
-     * Store the resource under the given resource path.
+     * Return the cached resource for the given resource path, or null if the
+     * resource is not cached. Resource data stored in the {@link #resourceCache}
+     * by a subclass takes precedence over the cached resource. In the
+     * development modes null is returned if the resource was modified since
+     * it was cached.
+     *
+     * @param resourcePath the path of the resource
+     * @return the cached resource, or null if the resource is not cached
+     * @throws IOException if the resource modified date could not be read
+     */
+    private CachedResource getCachedResource(String resourcePath) throws IOException {
+        CachedResource resource = cachedResources.get(resourcePath);
+
+        if (resource == null || resource.getData() != null) {
+            byte[] resourceData = resourceCache.get(resourcePath);
+            if (resourceData == null) {
+                return null;
+            }
+
+            if (resource == null || resource.getData() != resourceData) {
+                // The resource data was stored by a subclass
+                resource = new CachedResource(resourceData, startupTime);
+                storeResource(resourcePath, resource);
+                return resource;
+            }
+        }
+
+        if (!configService.isProductionMode() && !configService.isProfileMode()
+            && resource.sourceModified != getSourceModified(resource)) {
+            return null;
+        }
+
+        return resource;
+    }
+
+    /**
+     * Return the modified time of the file or URL the given resource was
+     * loaded from, or 0 if the resource was not loaded by this service or
+     * the modified time is not known.
+     *
+     * @param resource the cached resource
+     * @return the modified time of the resource source
+     * @throws IOException if the modified time could not be read
+     */
+    private long getSourceModified(CachedResource resource) throws IOException {
+        if (resource.getFile() != null) {
+            return resource.getFile().lastModified();
+        }
+        if (resource.getURL() != null) {
+            return resource.getURL().openConnection().getLastModified();
+        }
+        return 0;
+    }
+
+    /**
+     * Store the resource under the given resource path, evicting the least
+     * recently used resources if the cache exceeds its byte budget. Resources
+     * without data only hold their metadata and do not count towards the
+     * budget.
      *
      * @param resourcePath the path to store the resource under
-     * @param data the resource byte array
+     * @param resource the resource to store
+     */
+    private void storeResource(String resourcePath, CachedResource resource) {
+        synchronized (cachedResources) {
+            CachedResource previous = cachedResources.put(resourcePath, resource);
+            if (resource.getData() != null) {
+                resourceCache.put(resourcePath, resource.getData());
+            } else {
+                resourceCache.remove(resourcePath);
+            }
+
+            cachedBytes += resource.getCachedSize();
+            if (previous != null) {
+                cachedBytes -= previous.getCachedSize();
+            }
+
+            while (cachedBytes > cacheSize && evictLeastRecentlyUsed(resourcePath)) {
+                // Evict until the cache is within its byte budget
+            }
+        }
+    }
+
+    /**
+     * Remove the least recently used resource holding data from the cache.
+     * The newly stored resource is only evicted if it is the last resource
+     * holding data in the cache. This method must be called while holding the
+     * resource cache lock.
+     *
+     * @param storedPath the path of the newly stored resource
+     * @return true if a resource was evicted
      */
-    private void storeResourceData(String resourcePath, byte[] data) {
-        // Only cache in production modes
-        if (configService.isProductionMode() || configService.isProfileMode()) {
-            resourceCache.put(resourcePath, data);
+    private boolean evictLeastRecentlyUsed(String storedPath) {
+        String eldestPath = null;
+        long eldestAccess = Long.MAX_VALUE;
+
+        for (Iterator<Map.Entry<String, CachedResource>> it =
+            cachedResources.entrySet().iterator(); it.hasNext();) {
+
+            Map.Entry<String, CachedResource> entry = it.next();
+            if (entry.getValue().getCachedSize() > 0
+                && !entry.getKey().equals(storedPath)
+                && entry.getValue().lastAccessed < eldestAccess) {
+                eldestAccess = entry.getValue().lastAccessed;
+                eldestPath = entry.getKey();
+            }
+        }
+
+        if (eldestPath == null) {
+            CachedResource stored = cachedResources.get(storedPath);
+            if (stored == null || stored.getCachedSize() == 0) {
+                return false;
+            }
+            eldestPath = storedPath;
+        }
+
+        CachedResource evicted = cachedResources.remove(eldestPath);
+        resourceCache.remove(eldestPath);
+        cachedBytes -= evicted.getCachedSize();
+
+        if (logService.isTraceEnabled()) {
+            logService.trace("evicted cached resource: " + eldestPath);
         }
+        return true;
     }
 
     /**
@@ -213,87 +523,356 @@ public class ClickResourceService implements ResourceService {
      * classpath under the folder 'META-INF/resources'.
      *
      * @param resourcePath the path to the resource to load
-     * @return the resource as a byte array
+     * @return the loaded resource or null if not found
      * @throws IOException if the resources cannot be loaded
      */
-    private byte[] loadResourceData(String resourcePath) throws IOException {
-
-        byte[] resourceData = null;
+    private CachedResource loadResource(String resourcePath) throws IOException {
 
         ServletContext servletContext = configService.getServletContext();
 
-        resourceData = getServletResourceData(servletContext, resourcePath);
-        if (resourceData != null) {
-            storeResourceData(resourcePath, resourceData);
-        } else {
-            resourceData = getClasspathResourceData("META-INF/resources"
-                + resourcePath);
+        URL url = null;
+        File file = null;
+        try {
+            url = servletContext.getResource(resourcePath);
+        } catch (MalformedURLException mue) {
+            // Not a servlet resource
+        }
 
-            if (resourceData != null) {
-                storeResourceData(resourcePath, resourceData);
+        if (url != null) {
+            String realPath = servletContext.getRealPath(resourcePath);
+            if (realPath != null && new File(realPath).isFile()) {
+                file = new File(realPath);
+            }
+
+        } else {
+            url = getClasspathResource("META-INF/resources" + resourcePath);
+            if (url == null) {
+                return null;
             }
+
+            // Resources in classpath directories are read as files
+            file = FileUtils.toFile(url);
         }
 
-        return resourceData;
+        CachedResource resource = loadResource(resourcePath, url, file);
+
+        storeResource(resourcePath, resource);
+
+        return resource;
     }
 
     /**
-     * Load the resource for the given resourcePath from the servlet context.
+     * Load the resource from the given file, or from the given URL if the
+     * resource is not a file. The ETag of the resource is computed, and text
+     * resources are compressed, when the resource is loaded.
+     * <p/>
+     * Resources larger than the maximum entry size are not held in memory.
+     * Only their metadata is loaded, and they are streamed from their file or
+     * URL when rendered. The compressed copy of a resource is only kept if it
+     * fits in the maximum entry size together with the resource data.
      *
-     * @param servletContext the application servlet context
      * @param resourcePath the path of the resource to load
-     * @return the byte array for the given resource path
+     * @param url the URL of the resource
+     * @param file the resource file, or null if the resource is not a file
+     * @return the loaded resource
      * @throws IOException if the resource could not be loaded
      */
-    private byte[] getServletResourceData(ServletContext servletContext,
-        String resourcePath) throws IOException {
+    private CachedResource loadResource(String resourcePath, URL url, File file)
+        throws IOException {
+
+        URLConnection connection = null;
+        long sourceModified = 0;
+        long length = 0;
+
+        if (file != null) {
+            sourceModified = file.lastModified();
+            length = file.length();
+
+        } else {
+            connection = url.openConnection();
+            sourceModified = connection.getLastModified();
+            length = connection.getContentLength();
+        }
+
+        long lastModified = getLastModified(sourceModified);
 
         InputStream inputStream = null;
         try {
-            inputStream = servletContext.getResourceAsStream(resourcePath);
-
-            if (inputStream != null) {
-                return IOUtils.toByteArray(inputStream);
+            if (file != null) {
+                inputStream = new FileInputStream(file);
             } else {
-                return null;
+                inputStream = connection.getInputStream();
+            }
+
+            if (length > maxEntrySize) {
+                String md5Hash = DigestUtils.md5Hex(inputStream);
+                return new CachedResource(null, null, file, url, md5Hash,
+                    lastModified, sourceModified);
+            }
+
+            byte[] data = IOUtils.toByteArray(inputStream);
+            String md5Hash = DigestUtils.md5Hex(data);
+
+            // The content length is not known for all URLs
+            if (data.length > maxEntrySize) {
+                return new CachedResource(null, null, file, url, md5Hash,
+                    lastModified, sourceModified);
+            }
+
+            byte[] gzipData = null;
+            if (isCompressible(resourcePath, data)) {
+                gzipData = compress(data);
+
+                // Only keep the compressed copy if it is smaller and fits in
+                // the cache entry
+                if (gzipData.length >= data.length
+                    || data.length + gzipData.length > maxEntrySize) {
+                    gzipData = null;
+                }
             }
 
+            return new CachedResource(data, gzipData, file, url, md5Hash,
+                lastModified, sourceModified);
+
         } finally {
             ClickUtils.close(inputStream);
         }
     }
 
     /**
-     * Load the resource for the given resourcePath from the classpath.
+     * Return the URL of the given resource on the classpath, or null if not
+     * found.
      *
-     * @param resourcePath the path of the resource to load
-     * @return the byte array for the given resource path
-     * @throws IOException if the resource could not be loaded
+     * @param resourcePath the path of the resource
+     * @return the URL of the resource or null if not found
      */
-    private byte[] getClasspathResourceData(String resourcePath) throws IOException {
+    private URL getClasspathResource(String resourcePath) {
 
         ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
 
-        InputStream inputStream = classLoader.getResourceAsStream(resourcePath);
-        if (inputStream == null) {
-            inputStream = getClass().getResourceAsStream(resourcePath);
+        URL url = classLoader.getResource(resourcePath);
+        if (url == null) {
+            url = getClass().getResource(resourcePath);
+        }
+
+        return url;
+    }
+
+     * Return true if the given resource should be stored with a GZIP
+     * compressed copy. Only text resources larger than the compression
+     * threshold are compressed.
+     *
+     * @param resourcePath the path of the resource
+     * @param data the loaded resource data
+     * @return true if the resource should be compressed
+     */
+    private boolean isCompressible(String resourcePath, byte[] data) {
+        if (!compressionEnabled || data.length < compressionThreshold) {
+            return false;
         }
 
+        String mimeType = ClickUtils.getMimeType(resourcePath);
+        if (mimeType == null) {
+            return false;
+        }
+
+        return mimeType.startsWith("text/")
+            || mimeType.indexOf("javascript") != -1
+            || mimeType.indexOf("json") != -1
+            || mimeType.indexOf("xml") != -1;
+    }
+
+    /**
+     * Return the GZIP compressed copy of the given data.
+     *
+     * @param data the data to compress
+     * @return the GZIP compressed data
+     * @throws IOException if the data could not be compressed
+     */
+    private byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream(data.length / 3);
+        GZIPOutputStream gzipStream = new GZIPOutputStream(byteStream);
         try {
+            gzipStream.write(data);
 
-            if (inputStream != null) {
-                return IOUtils.toByteArray(inputStream);
-            } else {
-                return null;
+        } finally {
+            gzipStream.close();
+        }
+        return byteStream.toByteArray();
+    }
+
+    /**
+     * Return true if the request Accept-Encoding header includes gzip.
+     *
+     * @param request the servlet request
+     * @return true if the client accepts GZIP encoded content
+     */
+    private boolean isGzipAccepted(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        StringTokenizer tokenizer = new StringTokenizer(acceptEncoding, ",");
+        while (tokenizer.hasMoreTokens()) {
+            String coding = tokenizer.nextToken().trim();
+            int index = coding.indexOf(';');
+            String name = (index != -1) ? coding.substring(0, index).trim() : coding;
+
+            if ("gzip".equalsIgnoreCase(name)) {
+                if (index == -1) {
+                    return true;
+                }
+
+                // A zero quality value means gzip is not acceptable
+                String param = coding.substring(index + 1).trim();
+                if (!param.startsWith("q=")) {
+                    return true;
+                }
+                try {
+                    return Float.parseFloat(param.substring(2).trim()) > 0;
+
+                } catch (NumberFormatException nfe) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the given modified time rounded down to whole seconds, or the
+     * service startup time if the modified time is not known.
+     *
+     * @param lastModified the resource modified time, or 0 if not known
+     * @return the resource modified time in whole seconds
+     */
+    private long getLastModified(long lastModified) {
+        if (lastModified <= 0) {
+            return startupTime;
+        }
+        return (lastModified / 1000) * 1000;
+    }
+
+    /**
+     * Return true if the request is a conditional request and the client
+     * already holds the current version of the given resource.
+     *
+     * @param request the servlet request
+     * @param etag the entity tag of the resource representation
+     * @param lastModified the resource modified date
+     * @return true if the resource has not been modified
+     */
+    private boolean isNotModified(HttpServletRequest request, String etag,
+        long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            if (ifNoneMatch.trim().equals("*")) {
+                return true;
+            }
+            StringTokenizer tokenizer = new StringTokenizer(ifNoneMatch, ",");
+            while (tokenizer.hasMoreTokens()) {
+                if (tokenizer.nextToken().trim().equals(etag)) {
+                    return true;
+                }
             }
+            // If-Modified-Since is ignored when If-None-Match is present
+            return false;
+        }
+
+        try {
+            long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            if (ifModifiedSince != -1) {
+                return lastModified <= ifModifiedSince;
+            }
+
+        } catch (IllegalArgumentException iae) {
+            // Ignore invalid dates
+        }
+
+        return false;
+    }
+
+    /**
+     * Render the given resource to the response. Resources which do not hold
+     * their data are transferred from their file channel or URL rather than
+     * copied into memory.
+     *
+     * @param response the response object
+     * @param resource the resource to render
+     * @throws IOException if the resource data could not be rendered
+     */
+    private void renderResource(HttpServletResponse response,
+        CachedResource resource) throws IOException {
+
+        if (resource.getData() != null) {
+            renderResource(response, resource.getData());
+            return;
+        }
+
+        if (resource.getFile() == null) {
+            renderResource(response, resource.getURL());
+            return;
+        }
+
+        FileInputStream inputStream = null;
+        OutputStream outputStream = null;
+        try {
+            inputStream = new FileInputStream(resource.getFile());
+            FileChannel fileChannel = inputStream.getChannel();
+            long size = fileChannel.size();
+
+            response.setContentLength((int) size);
+
+            outputStream = response.getOutputStream();
+            WritableByteChannel outputChannel = Channels.newChannel(outputStream);
+
+            long position = 0;
+            while (position < size) {
+                position += fileChannel.transferTo(position, size - position, outputChannel);
+            }
+            outputStream.flush();
 
         } finally {
             ClickUtils.close(inputStream);
+            ClickUtils.close(outputStream);
         }
     }
 
     /**
-     * Render the given resourceData byte array to the response.
+     * Render the resource at the given URL to the response, streaming the
+     * resource data rather than copying it into memory.
+     *
+     * @param response the response object
+     * @param url the URL of the resource
+     * @throws IOException if the resource could not be rendered
+     */
+    private void renderResource(HttpServletResponse response, URL url)
+        throws IOException {
+
+        InputStream inputStream = null;
+        OutputStream outputStream = null;
+        try {
+            URLConnection connection = url.openConnection();
+            inputStream = connection.getInputStream();
+
+            int length = connection.getContentLength();
+            if (length >= 0) {
+                response.setContentLength(length);
+            }
+
+            outputStream = response.getOutputStream();
+            IOUtils.copy(inputStream, outputStream);
+            outputStream.flush();
+
+        } finally {
+            ClickUtils.close(inputStream);
+            ClickUtils.close(outputStream);
+        }
+    }
+
+    /**
+     * Render the given resource data byte array to the response.
      *
      * @param response the response object
      * @param resourceData the resource byte array
@@ -314,4 +893,178 @@ public class ClickResourceService implements ResourceService {
             ClickUtils.close(outputStream);
         }
     }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Provides a cached resource holding the resource data, or the file or URL
+     * the resource is streamed from, together with its ETag and modified date.
+     * Text resources also hold a GZIP compressed copy of the data.
+     */
+    protected static class CachedResource {
+
+        /** The resource data, or null if the resource is file backed. */
+        private final byte[] data;
+
+        /** The GZIP compressed resource data, or null if not compressed. */
+        private final byte[] gzipData;
+
+        /** The resource file, or null if the resource is not a file. */
+        private final File file;
+
+        /** The resource URL, or null if the resource was not loaded from a URL. */
+        private final URL url;
+
+        /** The resource strong entity tag. */
+        private final String etag;
+
+        /** The compressed resource strong entity tag. */
+        private final String gzipETag;
+
+        /** The resource modified date in milliseconds. */
+        private final long lastModified;
+
+        /** The modified time of the resource file or URL when it was loaded. */
+        final long sourceModified;
+
+        /** The time the resource was last accessed from the cache. */
+        volatile long lastAccessed = System.currentTimeMillis();
+
+        /**
+         * Create a resource for the given data, computing its ETag.
+         *
+         * @param data the resource data
+         * @param lastModified the resource modified date
+         */
+        public CachedResource(byte[] data, long lastModified) {
+            this(data, lastModified, null);
+        }
+
+        /**
+         * Create a resource for the given data and its GZIP compressed copy,
+         * computing their ETags.
+         *
+         * @param data the resource data
+         * @param lastModified the resource modified date
+         * @param gzipData the GZIP compressed resource data, or null
+         */
+        public CachedResource(byte[] data, long lastModified, byte[] gzipData) {
+            this(data, gzipData, null, null, DigestUtils.md5Hex(data),
+                lastModified, 0);
+        }
+
+        /**
+         * Create a resource backed by the given file.
+         *
+         * @param file the resource file
+         * @param md5Hash the hex encoded MD5 hash of the file content
+         * @param lastModified the resource modified date
+         */
+        public CachedResource(File file, String md5Hash, long lastModified) {
+            this(null, null, file, null, md5Hash, lastModified, 0);
+        }
+
+        /**
+         * Create a resource loaded from the given file or URL.
+         *
+         * @param data the resource data, or null if the resource is streamed
+         * from its file or URL
+         * @param gzipData the GZIP compressed resource data, or null
+         * @param file the resource file, or null
+         * @param url the resource URL, or null
+         * @param md5Hash the hex encoded MD5 hash of the resource data
+         * @param lastModified the resource modified date
+         * @param sourceModified the modified time of the file or URL
+         */
+        CachedResource(byte[] data, byte[] gzipData, File file, URL url,
+            String md5Hash, long lastModified, long sourceModified) {
+            this.data = data;
+            this.gzipData = gzipData;
+            this.file = file;
+            this.url = url;
+            this.etag = "\"" + md5Hash + "\"";
+            this.gzipETag = (gzipData != null) ? "\"" + md5Hash + "-gzip\"" : null;
+            this.lastModified = lastModified;
+            this.sourceModified = sourceModified;
+        }
+
+        /**
+         * Return the resource data, or null if the resource is file backed.
+         *
+         * @return the resource data
+         */
+        public byte[] getData() {
+            return data;
+        }
+
+        /**
+         * Return the GZIP compressed resource data, or null if the resource
+         * is not compressed.
+         *
+         * @return the GZIP compressed resource data
+         */
+        public byte[] getGzipData() {
+            return gzipData;
+        }
+
+        /**
+         * Return the resource file, or null if the resource is not a file.
+         *
+         * @return the resource file
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Return the resource URL, or null if the resource was not loaded
+         * from a URL.
+         *
+         * @return the resource URL
+         */
+        public URL getURL() {
+            return url;
+        }
+
+        /**
+         * Return the resource strong entity tag, including the quotes.
+         *
+         * @return the resource entity tag
+         */
+        public String getETag() {
+            return etag;
+        }
+
+        /**
+         * Return the compressed resource strong entity tag, including the
+         * quotes, or null if the resource is not compressed.
+         *
+         * @return the compressed resource entity tag
+         */
+        public String getGzipETag() {
+            return gzipETag;
+        }
+
+        /**
+         * Return the resource modified date in milliseconds.
+         *
+         * @return the resource modified date
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Return the number of bytes this resource holds in memory.
+         *
+         * @return the number of bytes held in memory
+         */
+        public int getCachedSize() {
+            int size = (data != null) ? data.length : 0;
+            if (gzipData != null) {
+                size += gzipData.length;
+            }
+            return size;
+        }
+    }
 }
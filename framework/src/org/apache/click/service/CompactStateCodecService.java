@@ -0,0 +1,692 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.servlet.ServletContext;
+
+import org.apache.click.util.ClickUtils;
+
+/**
+ * Provides a state codec service which encodes state in a compact, versioned
+ * binary format. This is the default {@link StateCodecService}.
+ * <p/>
+ * The values used by the state of the Click controls, such as
+ * {@link org.apache.click.control.Table}, {@link org.apache.click.control.Form}
+ * and {@link org.apache.click.control.Select}, are written as a type tag
+ * followed by the value: strings, booleans, integers, longs, doubles,
+ * <tt>Object</tt> and <tt>String</tt> arrays, <tt>ArrayList</tt>,
+ * <tt>HashSet</tt>, <tt>HashMap</tt> and <tt>LinkedHashMap</tt>. Other
+ * <tt>Serializable</tt> values are embedded using Java serialization.
+ * <p/>
+ * Encoded state of at least {@link #getCompressionThreshold()} bytes is
+ * compressed using a pooled <tt>Deflater</tt>, so small state is not
+ * penalized by the compression overhead.
+ *
+ * <h4>Format</h4>
+ * The encoded bytes start with a header of a marker byte, the
+ * {@link #FORMAT_VERSION format version} and a flags byte. Decoding checks the
+ * format version, so encoded state written by an older version of this codec,
+ * for example in a replicated session or a rendered hidden field, can still
+ * be read. Subclasses adding type tags should override
+ * {@link #writeValue(DataOutputStream, Object)} and
+ * {@link #readValue(DataInputStream, int, int)}.
+ * <p/>
+ * For backward compatibility the codec also decodes GZIP compressed Java
+ * serialized state written by the {@link JavaStateCodecService}.
+ *
+ * <h3>Configuration</h3>
+ * This is the default state codec service. The compression threshold and the
+ * compressor pool size can be configured by adding the following element to
+ * your <tt>click.xml</tt> configuration file.
+ *
+ * <pre class="codeConfig">
+ * &lt;<span class="red">state-codec-service</span> classname="<span class="blue">org.apache.click.service.CompactStateCodecService</span>"&gt;
+ *     &lt;property name="<span class="blue">compressionThreshold</span>" value="<span class="red">512</span>"/&gt;
+ *     &lt;property name="<span class="blue">poolSize</span>" value="<span class="red">16</span>"/&gt;
+ * &lt;/state-codec-service&gt; </pre>
+ */
+public class CompactStateCodecService implements StateCodecService {
+
+    // -------------------------------------------------------------- Constants
+
+    /** The format version written by this codec: &nbsp; <tt>1</tt>. */
+    public static final int FORMAT_VERSION = 1;
+
+    /** The default compression threshold in bytes: &nbsp; <tt>256</tt>. */
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 256;
+
+    /** The default compressor pool size: &nbsp; <tt>8</tt>. */
+    public static final int DEFAULT_POOL_SIZE = 8;
+
+    /** The first byte of the encoded state. */
+    protected static final int MARKER = 0xC5;
+
+    /** The header flag indicating the state is deflated. */
+    protected static final int FLAG_DEFLATED = 0x01;
+
+    /** The type tag of a null value. */
+    protected static final int TYPE_NULL = 0;
+
+    /** The type tag of a String. */
+    protected static final int TYPE_STRING = 1;
+
+    /** The type tag of Boolean.TRUE. */
+    protected static final int TYPE_TRUE = 2;
+
+    /** The type tag of Boolean.FALSE. */
+    protected static final int TYPE_FALSE = 3;
+
+    /** The type tag of an Integer. */
+    protected static final int TYPE_INTEGER = 4;
+
+    /** The type tag of a Long. */
+    protected static final int TYPE_LONG = 5;
+
+    /** The type tag of a Double. */
+    protected static final int TYPE_DOUBLE = 6;
+
+    /** The type tag of an Object array. */
+    protected static final int TYPE_OBJECT_ARRAY = 7;
+
+    /** The type tag of a String array. */
+    protected static final int TYPE_STRING_ARRAY = 8;
+
+    /** The type tag of an ArrayList. */
+    protected static final int TYPE_LIST = 9;
+
+    /** The type tag of a HashSet. */
+    protected static final int TYPE_SET = 10;
+
+    /** The type tag of a HashMap. */
+    protected static final int TYPE_MAP = 11;
+
+    /** The type tag of a LinkedHashMap. */
+    protected static final int TYPE_LINKED_MAP = 12;
+
+    /** The type tag of a Java serialized object. */
+    protected static final int TYPE_SERIALIZED = 13;
+
+    /** The first byte of a GZIP stream. */
+    private static final int GZIP_MAGIC_1 = 0x1f;
+
+    /** The second byte of a GZIP stream. */
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
+    /** The maximum compression ratio of the deflate format. */
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    /** The header length in bytes. */
+    private static final int HEADER_LENGTH = 3;
+
+    // ----------------------------------------------------- Instance Variables
+
+    /** The minimum state length in bytes which is compressed. */
+    protected int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+
+    /** The maximum number of pooled deflaters and inflaters. */
+    protected int poolSize = DEFAULT_POOL_SIZE;
+
+    /** The pool of idle deflaters. */
+    private volatile BlockingQueue<Deflater> deflaterPool =
+        new ArrayBlockingQueue<Deflater>(DEFAULT_POOL_SIZE);
+
+    /** The pool of idle inflaters. */
+    private volatile BlockingQueue<Inflater> inflaterPool =
+        new ArrayBlockingQueue<Inflater>(DEFAULT_POOL_SIZE);
+
+    /** The codec decoding legacy Java serialized state. */
+    private final JavaStateCodecService javaCodec = new JavaStateCodecService();
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Initialize the deflater and inflater pools with the configured
+     * {@link #getPoolSize() pool size}.
+     *
+     * @see StateCodecService#onInit(ServletContext)
+     *
+     * @param servletContext the application servlet context
+     * @throws Exception if an error occurs initializing the service
+     */
+    public void onInit(ServletContext servletContext) throws Exception {
+        if (poolSize != DEFAULT_POOL_SIZE) {
+            int size = Math.max(poolSize, 1);
+            deflaterPool = new ArrayBlockingQueue<Deflater>(size);
+            inflaterPool = new ArrayBlockingQueue<Inflater>(size);
+        }
+    }
+
+    /**
+     * Release the native resources of the pooled deflaters and inflaters.
+     *
+     * @see StateCodecService#onDestroy()
+     */
+    public void onDestroy() {
+        Deflater deflater = null;
+        while ((deflater = deflaterPool.poll()) != null) {
+            deflater.end();
+        }
+        Inflater inflater = null;
+        while ((inflater = inflaterPool.poll()) != null) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Return the minimum state length in bytes which is compressed.
+     *
+     * @return the minimum state length in bytes which is compressed
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Set the minimum state length in bytes which is compressed. State
+     * shorter than the threshold is stored uncompressed.
+     *
+     * @param compressionThreshold the minimum state length which is compressed
+     */
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * Return the maximum number of pooled deflaters and inflaters.
+     *
+     * @return the maximum number of pooled deflaters and inflaters
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Set the maximum number of pooled deflaters and inflaters. The pool size
+     * is applied when the service is initialized.
+     *
+     * @param poolSize the maximum number of pooled deflaters and inflaters
+     */
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * Return the compact encoding of the given state object.
+     *
+     * @see StateCodecService#encode(Object)
+     *
+     * @param state the state object to encode
+     * @return the encoded bytes of the state object
+     * @throws IOException if the state object could not be encoded
+     */
+    public byte[] encode(Object state) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(64);
+        bos.write(MARKER);
+        bos.write(FORMAT_VERSION);
+        bos.write(0);
+
+        DataOutputStream out = new DataOutputStream(bos);
+        writeValue(out, state);
+        out.flush();
+
+        byte[] data = bos.toByteArray();
+        int length = data.length - HEADER_LENGTH;
+        if (length < compressionThreshold) {
+            return data;
+        }
+
+        byte[] deflated = deflate(data, HEADER_LENGTH, length);
+        if (deflated == null) {
+            return data;
+        }
+
+        deflated[0] = (byte) MARKER;
+        deflated[1] = (byte) FORMAT_VERSION;
+        deflated[2] = (byte) FLAG_DEFLATED;
+        writeInt(deflated, HEADER_LENGTH, length);
+        return deflated;
+    }
+
+    /**
+     * Return the state object decoded from the given bytes.
+     *
+     * @see StateCodecService#decode(byte[])
+     *
+     * @param data the bytes returned by {@link #encode(Object)}
+     * @return the decoded state object
+     * @throws IOException if the data could not be decoded
+     * @throws ClassNotFoundException if the class of a serialized object could
+     * not be found
+     */
+    public Object decode(byte[] data) throws IOException, ClassNotFoundException {
+        if (data == null) {
+            throw new IllegalArgumentException("Null data parameter");
+        }
+
+        if (data.length >= 2
+            && (data[0] & 0xff) == GZIP_MAGIC_1
+            && (data[1] & 0xff) == GZIP_MAGIC_2) {
+
+            return javaCodec.decode(data);
+        }
+
+        if (data.length < HEADER_LENGTH || (data[0] & 0xff) != MARKER) {
+            throw new IOException("unknown state encoding");
+        }
+
+        int version = data[1] & 0xff;
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new IOException("unsupported state format version: " + version);
+        }
+
+        int flags = data[2] & 0xff;
+
+        byte[] payload = data;
+        int offset = HEADER_LENGTH;
+        int length = data.length - HEADER_LENGTH;
+        if ((flags & FLAG_DEFLATED) != 0) {
+            length = readInt(data, HEADER_LENGTH);
+            if (length < 0 || length > (long) data.length * MAX_DEFLATE_RATIO) {
+                throw new IOException("invalid state length: " + length);
+            }
+            payload = inflate(data, HEADER_LENGTH + 4, length);
+            offset = 0;
+        }
+
+        DataInputStream in =
+            new DataInputStream(new ByteArrayInputStream(payload, offset, length));
+
+        return readValue(in, in.readUnsignedByte(), version);
+    }
+
+    // ------------------------------------------------------ Protected Methods
+
+    /**
+     * Write the type tag and value of the given object to the output stream.
+     *
+     * @param out the output stream to write to
+     * @param value the value to write
+     * @throws IOException if the value could not be written
+     */
+    protected void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.write(TYPE_NULL);
+            return;
+        }
+
+        Class<?> type = value.getClass();
+
+        if (type == String.class) {
+            out.write(TYPE_STRING);
+            writeString(out, (String) value);
+
+        } else if (type == Boolean.class) {
+            out.write(((Boolean) value).booleanValue() ? TYPE_TRUE : TYPE_FALSE);
+
+        } else if (type == Integer.class) {
+            out.write(TYPE_INTEGER);
+            writeVarLong(out, zigZag(((Integer) value).intValue()));
+
+        } else if (type == Long.class) {
+            out.write(TYPE_LONG);
+            writeVarLong(out, zigZag(((Long) value).longValue()));
+
+        } else if (type == Double.class) {
+            out.write(TYPE_DOUBLE);
+            out.writeDouble(((Double) value).doubleValue());
+
+        } else if (type == String[].class) {
+            String[] array = (String[]) value;
+            out.write(TYPE_STRING_ARRAY);
+            writeVarLong(out, array.length);
+            for (int i = 0; i < array.length; i++) {
+                if (array[i] == null) {
+                    out.write(TYPE_NULL);
+                } else {
+                    out.write(TYPE_STRING);
+                    writeString(out, array[i]);
+                }
+            }
+
+        } else if (type == Object[].class) {
+            Object[] array = (Object[]) value;
+            out.write(TYPE_OBJECT_ARRAY);
+            writeVarLong(out, array.length);
+            for (int i = 0; i < array.length; i++) {
+                writeValue(out, array[i]);
+            }
+
+        } else if (type == ArrayList.class || type == HashSet.class) {
+            Iterable<?> collection = (Iterable<?>) value;
+            out.write(type == ArrayList.class ? TYPE_LIST : TYPE_SET);
+            writeVarLong(out, ((Collection<?>) value).size());
+            for (Object element : collection) {
+                writeValue(out, element);
+            }
+
+        } else if (type == HashMap.class || type == LinkedHashMap.class) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.write(type == HashMap.class ? TYPE_MAP : TYPE_LINKED_MAP);
+            writeVarLong(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+
+        } else if (value instanceof Serializable) {
+            out.write(TYPE_SERIALIZED);
+            byte[] bytes = serialize(value);
+            writeVarLong(out, bytes.length);
+            out.write(bytes);
+
+        } else {
+            throw new NotSerializableException(type.getName());
+        }
+    }
+
+    /**
+     * Return the value of the given type tag read from the input stream.
+     *
+     * @param in the input stream to read from
+     * @param type the type tag of the value
+     * @param version the format version of the encoded state
+     * @return the value read from the input stream
+     * @throws IOException if the value could not be read
+     * @throws ClassNotFoundException if the class of a serialized object could
+     * not be found
+     */
+    @SuppressWarnings("unchecked")
+    protected Object readValue(DataInputStream in, int type, int version)
+        throws IOException, ClassNotFoundException {
+
+        switch (type) {
+        case TYPE_NULL:
+            return null;
+
+        case TYPE_STRING:
+            return readString(in);
+
+        case TYPE_TRUE:
+            return Boolean.TRUE;
+
+        case TYPE_FALSE:
+            return Boolean.FALSE;
+
+        case TYPE_INTEGER:
+            return Integer.valueOf((int) unZigZag(readVarLong(in)));
+
+        case TYPE_LONG:
+            return Long.valueOf(unZigZag(readVarLong(in)));
+
+        case TYPE_DOUBLE:
+            return Double.valueOf(in.readDouble());
+
+        case TYPE_STRING_ARRAY: {
+            String[] array = new String[readLength(in)];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = (String) readValue(in, in.readUnsignedByte(), version);
+            }
+            return array;
+        }
+
+        case TYPE_OBJECT_ARRAY: {
+            Object[] array = new Object[readLength(in)];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = readValue(in, in.readUnsignedByte(), version);
+            }
+            return array;
+        }
+
+        case TYPE_LIST:
+        case TYPE_SET: {
+            int size = readLength(in);
+            Collection<Object> collection = null;
+            if (type == TYPE_LIST) {
+                collection = new ArrayList<Object>(size);
+            } else {
+                collection = new HashSet<Object>(capacity(size));
+            }
+            for (int i = 0; i < size; i++) {
+                collection.add(readValue(in, in.readUnsignedByte(), version));
+            }
+            return collection;
+        }
+
+        case TYPE_MAP:
+        case TYPE_LINKED_MAP: {
+            int size = readLength(in);
+            Map<Object, Object> map = null;
+            if (type == TYPE_MAP) {
+                map = new HashMap<Object, Object>(capacity(size));
+            } else {
+                map = new LinkedHashMap<Object, Object>(capacity(size));
+            }
+            for (int i = 0; i < size; i++) {
+                Object key = readValue(in, in.readUnsignedByte(), version);
+                map.put(key, readValue(in, in.readUnsignedByte(), version));
+            }
+            return map;
+        }
+
+        case TYPE_SERIALIZED: {
+            byte[] bytes = new byte[readLength(in)];
+            in.readFully(bytes);
+            return deserialize(bytes);
+        }
+
+        default:
+            throw new IOException("unknown state type tag: " + type);
+        }
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    private byte[] deflate(byte[] data, int offset, int length) {
+        Deflater deflater = deflaterPool.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+
+        try {
+            deflater.setInput(data, offset, length);
+            deflater.finish();
+
+            // Leave room for the header and the uncompressed length
+            int start = HEADER_LENGTH + 4;
+            byte[] buffer = new byte[start + length];
+            int count = start;
+            while (!deflater.finished() && count < buffer.length) {
+                count += deflater.deflate(buffer, count, buffer.length - count);
+            }
+
+            if (!deflater.finished()) {
+                // Compressed state is not smaller than the uncompressed state
+                return null;
+            }
+
+            byte[] result = new byte[count];
+            System.arraycopy(buffer, 0, result, 0, count);
+            return result;
+
+        } finally {
+            deflater.reset();
+            if (!deflaterPool.offer(deflater)) {
+                deflater.end();
+            }
+        }
+    }
+
+    private byte[] inflate(byte[] data, int offset, int length) throws IOException {
+        Inflater inflater = inflaterPool.poll();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+
+        try {
+            // A raw inflater requires an extra input byte to finish
+            byte[] input = new byte[data.length - offset + 1];
+            System.arraycopy(data, offset, input, 0, input.length - 1);
+            inflater.setInput(input);
+
+            byte[] result = new byte[length];
+            int count = 0;
+            while (count < length && !inflater.finished()) {
+                int inflated = inflater.inflate(result, count, length - count);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                count += inflated;
+            }
+
+            if (count != length) {
+                throw new IOException("truncated state data");
+            }
+            return result;
+
+        } catch (DataFormatException dfe) {
+            IOException ioe = new IOException("invalid compressed state data");
+            ioe.initCause(dfe);
+            throw ioe;
+
+        } finally {
+            inflater.reset();
+            if (!inflaterPool.offer(inflater)) {
+                inflater.end();
+            }
+        }
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = null;
+        try {
+            oos = new ObjectOutputStream(bos);
+            oos.writeObject(value);
+
+        } finally {
+            ClickUtils.close(oos);
+        }
+        return bos.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes)
+        throws IOException, ClassNotFoundException {
+
+        ObjectInputStream ois = null;
+        try {
+            ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            return ois.readObject();
+
+        } finally {
+            ClickUtils.close(ois);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value)
+        throws IOException {
+
+        byte[] bytes = value.getBytes("UTF-8");
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value)
+        throws IOException {
+
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed variable length integer");
+    }
+
+    private static int readLength(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0 || length > in.available()) {
+            throw new IOException("invalid state length: " + length);
+        }
+        return (int) length;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int capacity(int size) {
+        return Math.max((int) (size / .75f) + 1, 16);
+    }
+
+    private static void writeInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] data, int offset) throws IOException {
+        if (data.length < offset + 4) {
+            throw new IOException("truncated state data");
+        }
+        return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16)
+            | ((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+import java.io.IOException;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.ServletContext;
+
+import org.apache.click.util.ClassLoaderCache;
+import org.apache.click.util.ClickUtils;
+import org.apache.click.util.PropertyAccessor;
+import org.apache.click.util.PropertyUtils;
+import org.apache.commons.lang.ClassUtils;
+
+/**
+ * Provides a property service which compiles each target class and property
+ * path into a cached setter.
+ * <p/>
+ * The first time a property path is set on a target class, the path is
+ * resolved into a getter chain for the parent object and a setter method
+ * (or field) for the last path segment. Subsequent calls perform two
+ * lookups in concurrent caches and invoke the resolved methods directly,
+ * without parsing expressions or creating evaluation contexts.
+ * <p/>
+ * Values are converted to the property type using the same rules as
+ * {@link OGNLPropertyService}, see {@link OGNLTypeConverter}. Values
+ * which are already an instance of the property type are not converted.
+ * If no public setter method is found, a field of the same name is set
+ * directly, matching the private member access of the OGNL property service.
+ * <p/>
+ * If the target object, or the parent object of the last path segment, is a
+ * <tt>Map</tt>, the value is put in the map using the property name as the
+ * key.
+ *
+ * <h3>Configuration</h3>
+ * To use this service add the following element to your
+ * <tt>click.xml</tt> configuration file.
+ *
+ * <pre class="codeConfig">
+ * &lt;<span class="red">property-service</span> classname="<span class="blue">org.apache.click.service.CompiledPropertyService</span>"/&gt; </pre>
+ */
+public class CompiledPropertyService implements PropertyService {
+
+    // Compiled setter cache with support for multiple classloader caching
+    private static final ClassLoaderCache<Map<Class<?>, Map<String, PropertySetter>>>
+        SETTER_CL_CACHE = new ClassLoaderCache<Map<Class<?>, Map<String, PropertySetter>>>();
+
+    // Protected Variables ---------------------------------------------------
+
+    /** The data marshalling type converter. */
+    protected OGNLTypeConverter typeConverter;
+
+    //Public Methods  --------------------------------------------------------
+
+    /**
+     * @see PropertyService#onInit(ServletContext)
+     *
+     * @param servletContext the application servlet context
+     * @throws IOException if an IO error occurs initializing the service
+     */
+    public void onInit(ServletContext servletContext) throws IOException {
+    }
+
+    /**
+     * @see PropertyService#onDestroy()
+     */
+    public void onDestroy() {
+    }
+
+    /**
+     * Return the property value for the given object and property name.
+     *
+     * @see PropertyService#getValue(Object, String)
+     *
+     * @param source the source object
+     * @param name the name of the property
+     * @return the property value for the given source object and property name
+     */
+    public Object getValue(Object source, String name) {
+        return PropertyUtils.getValue(source, name);
+    }
+
+    /**
+     * Return the property value for the given object and property name.
+     *
+     * @see PropertyService#getValue(Object, String, Map)
+     *
+     * @param source the source object
+     * @param name the name of the property
+     * @param cache the cache of reflected property Method objects, do NOT modify
+     * this cache
+     * @return the property value for the given source object and property name
+     */
+    public Object getValue(Object source, String name, Map<?, ?> cache) {
+        return PropertyUtils.getValue(source, name, cache);
+    }
+
+    /**
+     * Set the named property value on the target object using a compiled
+     * setter.
+     *
+     * @see PropertyService#setValue(Object, String, Object)
+     *
+     * @param target the target object to set the property of
+     * @param name the name of the property to set
+     * @param value the property value to set
+     */
+    @SuppressWarnings("unchecked")
+    public void setValue(Object target, String name, Object value) {
+        if (target == null) {
+            throw new IllegalArgumentException("Null target parameter");
+        }
+        if (name == null) {
+            throw new IllegalArgumentException("Null name parameter");
+        }
+
+        if (target instanceof Map) {
+            ((Map<Object, Object>) target).put(name, value);
+            return;
+        }
+
+        Map<String, PropertySetter> setterCache = getSetterCache(target.getClass());
+
+        PropertySetter setter = setterCache.get(name);
+        if (setter == null) {
+            setter = new PropertySetter(name, getTypeConverter());
+            setterCache.put(name, setter);
+        }
+
+        setter.setValue(target, value);
+    }
+
+    // Protected Methods ------------------------------------------------------
+
+    /**
+     * Return the data marshalling type converter instance.
+     *
+     * @return the data marshalling type converter instance
+     */
+    protected OGNLTypeConverter getTypeConverter() {
+        if (typeConverter == null) {
+            typeConverter = new OGNLTypeConverter();
+        }
+
+        return typeConverter;
+    }
+
+    // Private Methods --------------------------------------------------------
+
+    private static Map<String, PropertySetter> getSetterCache(Class<?> targetClass) {
+        Map<Class<?>, Map<String, PropertySetter>> classCache = SETTER_CL_CACHE.get();
+        if (classCache == null) {
+            classCache = new ConcurrentHashMap<Class<?>, Map<String, PropertySetter>>();
+            SETTER_CL_CACHE.put(classCache);
+        }
+
+        Map<String, PropertySetter> setterCache = classCache.get(targetClass);
+        if (setterCache == null) {
+            setterCache = new ConcurrentHashMap<String, PropertySetter>();
+            classCache.put(targetClass, setterCache);
+        }
+
+        return setterCache;
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Provides a compiled setter for a property path. The setter caches the
+     * member resolved for each parent class, and checks the class of the last
+     * parent object it was invoked on first.
+     */
+    private static final class PropertySetter {
+
+        /** The property path. */
+        final String path;
+
+        /** The name of the last property path segment. */
+        final String name;
+
+        /** The accessor of the parent object, or null for a simple property. */
+        final PropertyAccessor parentAccessor;
+
+        /** The value type converter. */
+        final OGNLTypeConverter typeConverter;
+
+        /** The members resolved for each parent class, keyed by class. */
+        final Map<Class<?>, Member> members = new ConcurrentHashMap<Class<?>, Member>(4);
+
+        /** The member resolved for the last parent class. */
+        volatile Member member;
+
+        PropertySetter(String path, OGNLTypeConverter typeConverter) {
+            this.path = path;
+            this.typeConverter = typeConverter;
+
+            int index = path.lastIndexOf('.');
+            if (index == -1) {
+                name = path;
+                parentAccessor = null;
+            } else {
+                name = path.substring(index + 1);
+                parentAccessor = new PropertyAccessor(path.substring(0, index));
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void setValue(Object target, Object value) {
+            Object parent = target;
+            if (parentAccessor != null) {
+                parent = parentAccessor.getValue(target);
+
+                if (parent == null) {
+                    String msg = "Error setting property '" + path + "' on "
+                        + target.getClass() + ": '" + parentAccessor.getPath()
+                        + "' is null";
+                    throw new RuntimeException(msg);
+                }
+
+                if (parent instanceof Map) {
+                    ((Map<Object, Object>) parent).put(name, value);
+                    return;
+                }
+            }
+
+            Class<?> parentClass = parent.getClass();
+
+            Member cachedMember = member;
+            if (cachedMember == null || cachedMember.owner != parentClass) {
+                cachedMember = members.get(parentClass);
+                if (cachedMember == null) {
+                    cachedMember = resolveMember(parentClass);
+                    members.put(parentClass, cachedMember);
+                }
+                member = cachedMember;
+            }
+
+            try {
+                cachedMember.setValue(parent, value, typeConverter);
+
+            } catch (InvocationTargetException ite) {
+                String msg = "Error setting property '" + path + "' on "
+                    + target.getClass();
+                throw new RuntimeException(msg, ite.getTargetException());
+
+            } catch (Exception e) {
+                String msg = "Error setting property '" + path + "' on "
+                    + target.getClass();
+                throw new RuntimeException(msg, e);
+            }
+        }
+
+        private Member resolveMember(Class<?> parentClass) {
+            String setterName = ClickUtils.toSetterName(name);
+
+            List<Method> setters = new ArrayList<Method>(1);
+            Method[] methods = parentClass.getMethods();
+            for (int i = 0; i < methods.length; i++) {
+                Method method = methods[i];
+                if (method.getParameterTypes().length == 1
+                    && method.getName().equals(setterName)) {
+
+                    setAccessible(method);
+                    setters.add(method);
+                }
+            }
+
+            if (!setters.isEmpty()) {
+                return new Member(parentClass, setters.toArray(new Method[setters.size()]));
+            }
+
+            for (Class<?> type = parentClass; type != null; type = type.getSuperclass()) {
+                try {
+                    Field field = type.getDeclaredField(name);
+                    setAccessible(field);
+                    return new Member(parentClass, field);
+
+                } catch (NoSuchFieldException nsfe) {
+                    // Continue with the superclass
+                }
+            }
+
+            String msg = "No matching setter method found for property '"
+                + name + "' on class " + parentClass.getName();
+            throw new RuntimeException(msg);
+        }
+
+        private static void setAccessible(AccessibleObject object) {
+            try {
+                // Skip the access check on each invocation where permitted
+                object.setAccessible(true);
+            } catch (RuntimeException re) {
+                // Ignore, the member is still invoked with an access check
+            }
+        }
+    }
+
+    /**
+     * Provides the immutable setter methods, or field, resolved for a class.
+     */
+    private static final class Member {
+
+        /** The class the member was resolved for. */
+        final Class<?> owner;
+
+        /** The candidate setter methods, or null if a field is set. */
+        final Method[] methods;
+
+        /** The parameter types of the setter methods. */
+        final Class<?>[] types;
+
+        /** The field to set, or null if a setter method is invoked. */
+        final Field field;
+
+        Member(Class<?> owner, Method[] methods) {
+            this.owner = owner;
+            this.methods = methods;
+            this.field = null;
+            this.types = new Class<?>[methods.length];
+            for (int i = 0; i < methods.length; i++) {
+                types[i] = methods[i].getParameterTypes()[0];
+            }
+        }
+
+        Member(Class<?> owner, Field field) {
+            this.owner = owner;
+            this.methods = null;
+            this.field = field;
+            this.types = new Class<?>[] { field.getType() };
+        }
+
+        void setValue(Object target, Object value, OGNLTypeConverter converter)
+            throws Exception {
+
+            // Prefer the overloaded setter accepting the value unconverted
+            int index = 0;
+            if (types.length > 1 && value != null) {
+                for (int i = 0; i < types.length; i++) {
+                    if (isInstance(types[i], value)) {
+                        index = i;
+                        break;
+                    }
+                }
+            }
+
+            Class<?> type = types[index];
+            if (!isInstance(type, value)) {
+                value = converter.convertValue(value, type);
+            }
+
+            if (field != null) {
+                field.set(target, value);
+            } else {
+                methods[index].invoke(target, value);
+            }
+        }
+
+        private static boolean isInstance(Class<?> type, Object value) {
+            if (value == null) {
+                return !type.isPrimitive();
+            }
+            if (type.isPrimitive()) {
+                return ClassUtils.primitiveToWrapper(type) == value.getClass();
+            }
+            return type.isInstance(value);
+        }
+    }
+}
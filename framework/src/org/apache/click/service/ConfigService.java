@@ -189,6 +189,27 @@ public interface ConfigService {
      */
     public MessagesMapService getMessagesMapService();
 
+    /**
+     * Return the application state codec service.
+     *
+     * @return the application state codec service
+     */
+    public StateCodecService getStateCodecService();
+
+    /**
+     * Return the application page state service.
+     *
+     * @return the application page state service
+     */
+    public PageStateService getPageStateService();
+
+    /**
+     * Return the application request metrics service.
+     *
+     * @return the application request metrics service
+     */
+    public MetricsService getMetricsService();
+
     /**
      * Return the Click application mode value: &nbsp;
      * <tt>["production", "profile", "development", "debug", "trace"]</tt>.
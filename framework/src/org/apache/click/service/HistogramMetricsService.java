@@ -0,0 +1,453 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.ServletContext;
+
+import org.apache.click.util.ClickUtils;
+
+/**
+ * Provides a metrics service which records the durations of the request
+ * phases in lock free histograms. This is the default {@link MetricsService}.
+ * <p/>
+ * A histogram is kept for each page path and {@link MetricsService.RequestPhase
+ * request phase}. Recording a duration only uses atomic operations, so the
+ * service can be left enabled in production. To bound the memory used by the
+ * histograms, at most <tt>maxPagePaths</tt> page paths are recorded; the
+ * durations of further page paths are recorded under the path
+ * <tt>"{@value #OTHER_PAGE_PATHS}"</tt>.
+ * <p/>
+ * The service registers a {@link HistogramMetricsServiceMBean} with the
+ * platform MBeanServer under the name
+ * <tt>org.apache.click:type=Metrics,application=&lt;servlet context name&gt;</tt>.
+ * The recorded metrics can also be viewed in the plain text format of
+ * {@link #writeMetrics(Writer)} by mapping the
+ * {@link org.apache.click.util.MetricsPage} to a page path.
+ *
+ * <h3>Configuration</h3>
+ * This is the default metrics service. The service is configured with the
+ * following properties:
+ * <ul>
+ * <li><tt>enabled</tt> - record the request phases, default value is
+ * true</li>
+ * <li><tt>jmxEnabled</tt> - register the MBean, default value is true</li>
+ * <li><tt>maxPagePaths</tt> - the maximum number of recorded page paths,
+ * default value is 1000</li>
+ * </ul>
+ *
+ * <pre class="codeConfig">
+ * &lt;<span class="red">metrics-service</span> classname="<span class="blue">org.apache.click.service.HistogramMetricsService</span>"&gt;
+ *     &lt;property name="<span class="blue">jmxEnabled</span>" value="<span class="red">false</span>"/&gt;
+ * &lt;/metrics-service&gt; </pre>
+ */
+public class HistogramMetricsService implements MetricsService,
+    HistogramMetricsServiceMBean {
+
+    // -------------------------------------------------------------- Constants
+
+    /** The page path the durations of unrecorded page paths are recorded under. */
+    public static final String OTHER_PAGE_PATHS = "*";
+
+    /** The recorded percentiles of the plain text format. */
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    /** The phases of the request. */
+    private static final RequestPhase[] PHASES = RequestPhase.values();
+
+    // ----------------------------------------------------- Instance Variables
+
+    /** The flag indicating whether the request phases are recorded. */
+    private volatile boolean enabled = true;
+
+    /** The flag indicating whether the MBean is registered. */
+    private boolean jmxEnabled = true;
+
+    /** The maximum number of recorded page paths. */
+    private int maxPagePaths = 1000;
+
+    /** The histograms of the request phases, keyed by page path. */
+    private final ConcurrentMap<String, AtomicReferenceArray<LatencyHistogram>> histograms =
+        new ConcurrentHashMap<String, AtomicReferenceArray<LatencyHistogram>>();
+
+    /** The name of the registered MBean, or null if not registered. */
+    private ObjectName objectName;
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Register the MBean of the service if JMX is enabled.
+     *
+     * @see MetricsService#onInit(ServletContext)
+     *
+     * @param servletContext the application servlet context
+     * @throws Exception if an error occurs initializing the service
+     */
+    public void onInit(ServletContext servletContext) throws Exception {
+        if (!isJmxEnabled()) {
+            return;
+        }
+
+        String application = servletContext.getServletContextName();
+        if (application == null) {
+            application = "click";
+        }
+
+        ObjectName name = new ObjectName("org.apache.click:type=Metrics,application="
+            + ObjectName.quote(application));
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, name);
+            objectName = name;
+
+        } catch (Exception e) {
+            LogService logService =
+                ClickUtils.getConfigService(servletContext).getLogService();
+            logService.warn("could not register metrics MBean " + name + ": " + e);
+        }
+    }
+
+    /**
+     * Unregister the MBean of the service.
+     *
+     * @see MetricsService#onDestroy()
+     */
+    public void onDestroy() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+
+            } catch (Exception e) {
+                // The MBean was already unregistered
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     * @see MetricsService#isEnabled()
+     *
+     * @return true if the request phases are recorded
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set whether the request phases are recorded.
+     *
+     * @param enabled the flag indicating whether the request phases are
+     * recorded
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Return true if the MBean of the service is registered, default value is
+     * true.
+     *
+     * @return true if the MBean of the service is registered
+     */
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+
+    /**
+     * Set whether the MBean of the service is registered.
+     *
+     * @param jmxEnabled the flag indicating whether the MBean of the service
+     * is registered
+     */
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+
+    /**
+     * Return the maximum number of recorded page paths, default value is 1000.
+     *
+     * @return the maximum number of recorded page paths
+     */
+    public int getMaxPagePaths() {
+        return maxPagePaths;
+    }
+
+    /**
+     * Set the maximum number of recorded page paths.
+     *
+     * @param maxPagePaths the maximum number of recorded page paths
+     */
+    public void setMaxPagePaths(int maxPagePaths) {
+        this.maxPagePaths = maxPagePaths;
+    }
+
+    /**
+     * @see MetricsService#record(String, MetricsService.RequestPhase, long)
+     *
+     * @param pagePath the requested page path
+     * @param phase the request phase
+     * @param durationNanos the duration of the phase in nanoseconds
+     */
+    public void record(String pagePath, RequestPhase phase, long durationNanos) {
+        if (!enabled || pagePath == null) {
+            return;
+        }
+
+        AtomicReferenceArray<LatencyHistogram> pathHistograms =
+            getPathHistograms(pagePath);
+
+        int index = phase.ordinal();
+        LatencyHistogram histogram = pathHistograms.get(index);
+        if (histogram == null) {
+            pathHistograms.compareAndSet(index, null, new LatencyHistogram());
+            histogram = pathHistograms.get(index);
+        }
+
+        histogram.record(durationNanos);
+    }
+
+    /**
+     * Write the recorded metrics in the plain text exposition format of
+     * Prometheus. For each recorded page path and phase the 50th, 90th and
+     * 99th percentile, the sum and the count of the durations are written as
+     * a summary, and the maximum duration as a gauge. For example:
+     *
+     * <pre class="codeHtml">
+     * click_request_phase_nanos{path="/home.htm",phase="onInit",quantile="0.5"} 20479
+     * click_request_phase_nanos_sum{path="/home.htm",phase="onInit"} 1085530
+     * click_request_phase_nanos_count{path="/home.htm",phase="onInit"} 52 </pre>
+     *
+     * @see MetricsService#writeMetrics(Writer)
+     *
+     * @param writer the writer to write the metrics to
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeMetrics(Writer writer) throws IOException {
+        Set<String> pagePaths = new TreeSet<String>(histograms.keySet());
+
+        writer.write("# HELP click_request_phase_nanos Click request phase durations in nanoseconds.\n");
+        writer.write("# TYPE click_request_phase_nanos summary\n");
+
+        for (String pagePath : pagePaths) {
+            AtomicReferenceArray<LatencyHistogram> pathHistograms = histograms.get(pagePath);
+
+            for (int i = 0; i < PHASES.length; i++) {
+                LatencyHistogram histogram = pathHistograms.get(i);
+                if (histogram == null) {
+                    continue;
+                }
+
+                String labels = getLabels(pagePath, PHASES[i]);
+
+                for (double percentile : PERCENTILES) {
+                    writer.write("click_request_phase_nanos{");
+                    writer.write(labels);
+                    writer.write(",quantile=\"");
+                    writer.write(String.valueOf(percentile / 100));
+                    writer.write("\"} ");
+                    writer.write(String.valueOf(histogram.getValueAtPercentile(percentile)));
+                    writer.write('\n');
+                }
+
+                writer.write("click_request_phase_nanos_sum{");
+                writer.write(labels);
+                writer.write("} ");
+                writer.write(String.valueOf(histogram.getSum()));
+                writer.write('\n');
+
+                writer.write("click_request_phase_nanos_count{");
+                writer.write(labels);
+                writer.write("} ");
+                writer.write(String.valueOf(histogram.getCount()));
+                writer.write('\n');
+            }
+        }
+
+        writer.write("# HELP click_request_phase_max_nanos Click request phase maximum duration in nanoseconds.\n");
+        writer.write("# TYPE click_request_phase_max_nanos gauge\n");
+
+        for (String pagePath : pagePaths) {
+            AtomicReferenceArray<LatencyHistogram> pathHistograms = histograms.get(pagePath);
+
+            for (int i = 0; i < PHASES.length; i++) {
+                LatencyHistogram histogram = pathHistograms.get(i);
+                if (histogram != null) {
+                    writer.write("click_request_phase_max_nanos{");
+                    writer.write(getLabels(pagePath, PHASES[i]));
+                    writer.write("} ");
+                    writer.write(String.valueOf(histogram.getMax()));
+                    writer.write('\n');
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------- MBean Methods
+
+    /**
+     * @see HistogramMetricsServiceMBean#getPagePaths()
+     *
+     * @return the recorded page paths
+     */
+    public String[] getPagePaths() {
+        Set<String> pagePaths = new TreeSet<String>(histograms.keySet());
+        return pagePaths.toArray(new String[pagePaths.size()]);
+    }
+
+    /**
+     * @see HistogramMetricsServiceMBean#getCount(String, String)
+     *
+     * @param pagePath the page path
+     * @param phase the name of the request phase
+     * @return the number of recorded durations
+     */
+    public long getCount(String pagePath, String phase) {
+        LatencyHistogram histogram = getHistogram(pagePath, phase);
+        return (histogram != null) ? histogram.getCount() : 0;
+    }
+
+    /**
+     * @see HistogramMetricsServiceMBean#getMean(String, String)
+     *
+     * @param pagePath the page path
+     * @param phase the name of the request phase
+     * @return the mean duration in nanoseconds
+     */
+    public double getMean(String pagePath, String phase) {
+        LatencyHistogram histogram = getHistogram(pagePath, phase);
+        return (histogram != null) ? histogram.getMean() : 0;
+    }
+
+    /**
+     * @see HistogramMetricsServiceMBean#getMax(String, String)
+     *
+     * @param pagePath the page path
+     * @param phase the name of the request phase
+     * @return the maximum duration in nanoseconds
+     */
+    public long getMax(String pagePath, String phase) {
+        LatencyHistogram histogram = getHistogram(pagePath, phase);
+        return (histogram != null) ? histogram.getMax() : 0;
+    }
+
+    /**
+     * @see HistogramMetricsServiceMBean#getPercentile(String, String, double)
+     *
+     * @param pagePath the page path
+     * @param phase the name of the request phase
+     * @param percentile the percentile, from 0 to 100
+     * @return the duration in nanoseconds at the given percentile
+     */
+    public long getPercentile(String pagePath, String phase, double percentile) {
+        LatencyHistogram histogram = getHistogram(pagePath, phase);
+        return (histogram != null) ? histogram.getValueAtPercentile(percentile) : 0;
+    }
+
+    /**
+     * @see HistogramMetricsServiceMBean#getMetrics()
+     *
+     * @return the recorded metrics in a plain text format
+     */
+    public String getMetrics() {
+        StringWriter writer = new StringWriter();
+        try {
+            writeMetrics(writer);
+
+        } catch (IOException e) {
+            // A StringWriter does not throw IOExceptions
+            throw new RuntimeException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * @see HistogramMetricsServiceMBean#reset()
+     */
+    public void reset() {
+        histograms.clear();
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    private AtomicReferenceArray<LatencyHistogram> getPathHistograms(String pagePath) {
+        AtomicReferenceArray<LatencyHistogram> pathHistograms = histograms.get(pagePath);
+
+        if (pathHistograms == null) {
+            if (histograms.size() >= getMaxPagePaths()) {
+                pagePath = OTHER_PAGE_PATHS;
+                pathHistograms = histograms.get(pagePath);
+            }
+
+            if (pathHistograms == null) {
+                pathHistograms =
+                    new AtomicReferenceArray<LatencyHistogram>(PHASES.length);
+                AtomicReferenceArray<LatencyHistogram> existing =
+                    histograms.putIfAbsent(pagePath, pathHistograms);
+                if (existing != null) {
+                    pathHistograms = existing;
+                }
+            }
+        }
+
+        return pathHistograms;
+    }
+
+    private LatencyHistogram getHistogram(String pagePath, String phase) {
+        AtomicReferenceArray<LatencyHistogram> pathHistograms = histograms.get(pagePath);
+        if (pathHistograms == null) {
+            return null;
+        }
+
+        for (int i = 0; i < PHASES.length; i++) {
+            if (PHASES[i].getName().equals(phase)) {
+                return pathHistograms.get(i);
+            }
+        }
+        return null;
+    }
+
+    private static String getLabels(String pagePath, RequestPhase phase) {
+        StringBuilder buffer = new StringBuilder(pagePath.length() + 32);
+        buffer.append("path=\"");
+        for (int i = 0, size = pagePath.length(); i < size; i++) {
+            char c = pagePath.charAt(i);
+            if (c == '\\' || c == '"') {
+                buffer.append('\\').append(c);
+            } else if (c == '\n') {
+                buffer.append("\\n");
+            } else {
+                buffer.append(c);
+            }
+        }
+        buffer.append("\",phase=\"").append(phase.getName()).append('"');
+        return buffer.toString();
+    }
+}
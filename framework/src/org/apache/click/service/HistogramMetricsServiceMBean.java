@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+/**
+ * Provides the JMX management interface of the {@link HistogramMetricsService}.
+ * <p/>
+ * Phases are named by their {@link MetricsService.RequestPhase#getName() name},
+ * for example <tt>"onInit"</tt>, and durations are returned in nanoseconds.
+ */
+public interface HistogramMetricsServiceMBean {
+
+    /**
+     * Return true if the request phases are recorded.
+     *
+     * @return true if the request phases are recorded
+     */
+    public boolean isEnabled();
+
+    /**
+     * Set whether the request phases are recorded.
+     *
+     * @param enabled the flag indicating whether the request phases are
+     * recorded
+     */
+    public void setEnabled(boolean enabled);
+
+    /**
+     * Return the recorded page paths in alphabetical order.
+     *
+     * @return the recorded page paths
+     */
+    public String[] getPagePaths();
+
+    /**
+     * Return the number of recorded durations of the given page path and
+     * phase.
+     *
+     * @param pagePath the page path
+     * @param phase the name of the request phase
+     * @return the number of recorded durations
+     */
+    public long getCount(String pagePath, String phase);
+
+    /**
+     * Return the mean duration in nanoseconds of the given page path and
+     * phase.
+     *
+     * @param pagePath the page path
+     * @param phase the name of the request phase
+     * @return the mean duration in nanoseconds
+     */
+    public double getMean(String pagePath, String phase);
+
+    /**
+     * Return the maximum duration in nanoseconds of the given page path and
+     * phase.
+     *
+     * @param pagePath the page path
+     * @param phase the name of the request phase
+     * @return the maximum duration in nanoseconds
+     */
+    public long getMax(String pagePath, String phase);
+
+    /**
+     * Return the duration in nanoseconds at the given percentile of the given
+     * page path and phase.
+     *
+     * @param pagePath the page path
+     * @param phase the name of the request phase
+     * @param percentile the percentile, from 0 to 100
+     * @return the duration in nanoseconds at the given percentile
+     */
+    public long getPercentile(String pagePath, String phase, double percentile);
+
+    /**
+     * Return the recorded metrics in a plain text format.
+     *
+     * @return the recorded metrics in a plain text format
+     */
+    public String getMetrics();
+
+    /**
+     * Clear the recorded metrics.
+     */
+    public void reset();
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletContext;
+
+import org.apache.click.util.ClickUtils;
+
+/**
+ * Provides a state codec service which encodes state using Java serialization
+ * and GZIP compression. This was the encoding of
+ * {@link ClickUtils#encode(Object)} prior to the introduction of the
+ * {@link StateCodecService}.
+ *
+ * <h3>Configuration</h3>
+ * To use this service add the following element to your
+ * <tt>click.xml</tt> configuration file.
+ *
+ * <pre class="codeConfig">
+ * &lt;<span class="red">state-codec-service</span> classname="<span class="blue">org.apache.click.service.JavaStateCodecService</span>"/&gt; </pre>
+ */
+public class JavaStateCodecService implements StateCodecService {
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * @see StateCodecService#onInit(ServletContext)
+     *
+     * @param servletContext the application servlet context
+     * @throws Exception if an error occurs initializing the service
+     */
+    public void onInit(ServletContext servletContext) throws Exception {
+    }
+
+    /**
+     * @see StateCodecService#onDestroy()
+     */
+    public void onDestroy() {
+    }
+
+    /**
+     * Return the serialized and GZIP compressed bytes of the given state
+     * object.
+     *
+     * @see StateCodecService#encode(Object)
+     *
+     * @param state the state object to encode
+     * @return the encoded bytes of the state object
+     * @throws IOException if the state object could not be serialized
+     */
+    public byte[] encode(Object state) throws IOException {
+        if (state != null && !(state instanceof Serializable)) {
+            throw new IllegalArgumentException("parameter not Serializable");
+        }
+
+        ByteArrayOutputStream bos = null;
+        GZIPOutputStream gos = null;
+        ObjectOutputStream oos = null;
+
+        try {
+            bos = new ByteArrayOutputStream();
+            gos = new GZIPOutputStream(bos);
+            oos = new ObjectOutputStream(gos);
+
+            oos.writeObject(state);
+
+        } finally {
+            ClickUtils.close(oos);
+            ClickUtils.close(gos);
+            ClickUtils.close(bos);
+        }
+
+        return bos.toByteArray();
+    }
+
+    /**
+     * Return the state object deserialized from the given GZIP compressed
+     * bytes.
+     *
+     * @see StateCodecService#decode(byte[])
+     *
+     * @param data the bytes returned by {@link #encode(Object)}
+     * @return the decoded state object
+     * @throws IOException if the data could not be deserialized
+     * @throws ClassNotFoundException if the class of a serialized object could
+     * not be found
+     */
+    public Object decode(byte[] data) throws IOException, ClassNotFoundException {
+        ByteArrayInputStream bis = null;
+        GZIPInputStream gis = null;
+        ObjectInputStream ois = null;
+        try {
+            bis = new ByteArrayInputStream(data);
+            gis = new GZIPInputStream(bis);
+            ois = new ObjectInputStream(gis);
+
+            return ois.readObject();
+
+        } finally {
+            ClickUtils.close(ois);
+            ClickUtils.close(gis);
+            ClickUtils.close(bis);
+        }
+    }
+}
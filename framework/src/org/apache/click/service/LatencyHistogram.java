@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Provides a lock free histogram of durations in nanoseconds.
+ * <p/>
+ * Recorded values are counted in log-linear buckets, in the style of a
+ * High Dynamic Range histogram. Values below 16 have their own bucket, larger
+ * values are counted in 8 buckets per power of two, so the value reported for
+ * a percentile is within 12.5% of the recorded value. Values above about 36
+ * minutes are counted in the last bucket. The maximum, sum and count of the
+ * recorded values are exact.
+ * <p/>
+ * Values are recorded with atomic operations only, so recording never blocks.
+ * Values read while other threads are recording are approximate.
+ */
+final class LatencyHistogram {
+
+    // -------------------------------------------------------------- Constants
+
+    /** The number of bits of the value which select a sub bucket. */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /** The number of sub buckets per power of two. */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** The values below this limit each have their own bucket. */
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKET_COUNT;
+
+    /** The largest value which is counted in its own bucket. */
+    static final long MAX_BUCKET_VALUE = (1L << 41) - 1;
+
+    /** The number of buckets. */
+    static final int BUCKET_COUNT = getBucketIndex(MAX_BUCKET_VALUE) + 1;
+
+    // ----------------------------------------------------- Instance Variables
+
+    /** The bucket counts. */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /** The number of recorded values. */
+    private final AtomicLong count = new AtomicLong();
+
+    /** The sum of the recorded values. */
+    private final AtomicLong sum = new AtomicLong();
+
+    /** The maximum recorded value. */
+    private final AtomicLong max = new AtomicLong();
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Record the given value. Negative values are recorded as zero.
+     *
+     * @param value the value to record
+     */
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        buckets.incrementAndGet(getBucketIndex(Math.min(value, MAX_BUCKET_VALUE)));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Return the number of recorded values.
+     *
+     * @return the number of recorded values
+     */
+    long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Return the sum of the recorded values.
+     *
+     * @return the sum of the recorded values
+     */
+    long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Return the maximum recorded value, or 0 if no value is recorded.
+     *
+     * @return the maximum recorded value
+     */
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Return the mean of the recorded values, or 0 if no value is recorded.
+     *
+     * @return the mean of the recorded values
+     */
+    double getMean() {
+        long currentCount = count.get();
+        if (currentCount == 0) {
+            return 0;
+        }
+        return (double) sum.get() / currentCount;
+    }
+
+    /**
+     * Return the value at the given percentile of the recorded values, or 0 if
+     * no value is recorded. The value returned is the largest value counted in
+     * the bucket of the percentile, but not larger than the maximum value.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the value at the given percentile
+     */
+    long getValueAtPercentile(double percentile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        double fraction = Math.min(Math.max(percentile, 0), 100) / 100;
+        long target = Math.max(1, (long) Math.ceil(fraction * total));
+
+        long accumulated = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            accumulated += counts[i];
+            if (accumulated >= target) {
+                return Math.min(getBucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Clear the recorded values.
+     */
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    // ------------------------------------------------ Package Private Methods
+
+    /**
+     * Return the index of the bucket counting the given value.
+     *
+     * @param value the value, from 0 to {@link #MAX_BUCKET_VALUE}
+     * @return the index of the bucket counting the value
+     */
+    static int getBucketIndex(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS));
+
+        return LINEAR_LIMIT
+            + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT
+            + (mantissa - SUB_BUCKET_COUNT);
+    }
+
+    /**
+     * Return the largest value counted in the given bucket.
+     *
+     * @param index the index of the bucket
+     * @return the largest value counted in the bucket
+     */
+    static long getBucketUpperBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+
+        int offset = index - LINEAR_LIMIT;
+        int exponent = offset / SUB_BUCKET_COUNT + SUB_BUCKET_BITS + 1;
+        long mantissa = offset % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+
+        return ((mantissa + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+/**
+ * Provides a parameterized log message which is only formatted when it is
+ * logged.
+ * <p/>
+ * The message pattern uses <tt>{}</tt> placeholders which are replaced by the
+ * string values of the arguments in order. The message is formatted by its
+ * {@link #toString()} method, so a {@link LogService} formats the message when
+ * it writes the message. The {@link AsyncLogService} formats the message on
+ * its writer thread, off the request thread. For example:
+ *
+ * <pre class="prettyprint">
+ * if (logger.isDebugEnabled()) {
+ *     logger.debug(new LogMessage("bound {} to {}", name, value));
+ * } </pre>
+ *
+ * As the message may be formatted after the log method returns, the
+ * arguments should not be modified after the message is logged.
+ */
+public final class LogMessage {
+
+    // ----------------------------------------------------- Instance Variables
+
+    /** The message pattern. */
+    private final String pattern;
+
+    /** The message arguments. */
+    private final Object[] args;
+
+    /** The formatted message, or null if not formatted yet. */
+    private String message;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Create a log message for the given pattern and arguments.
+     *
+     * @param pattern the message pattern with <tt>{}</tt> placeholders
+     * @param args the message arguments
+     */
+    public LogMessage(String pattern, Object... args) {
+        this.pattern = pattern;
+        this.args = args;
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Return the formatted message. Placeholders without a matching argument
+     * are left in the message.
+     *
+     * @return the formatted message
+     */
+    @Override
+    public String toString() {
+        if (message == null) {
+            message = format();
+        }
+        return message;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    private String format() {
+        if (pattern == null) {
+            return "null";
+        }
+        if (args == null || args.length == 0) {
+            return pattern;
+        }
+
+        StringBuilder buffer = new StringBuilder(pattern.length() + 16 * args.length);
+        int start = 0;
+        for (int i = 0; i < args.length; i++) {
+            int index = pattern.indexOf("{}", start);
+            if (index == -1) {
+                break;
+            }
+            buffer.append(pattern, start, index);
+            buffer.append(String.valueOf(args[i]));
+            start = index + 2;
+        }
+        buffer.append(pattern, start, pattern.length());
+
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+
+import org.apache.click.Context;
+
+/**
+ * Provides a page state service which stores encoded control state off heap,
+ * in direct <tt>ByteBuffer</tt>s keyed by the HttpSession id.
+ * <p/>
+ * Control state stored by this service is not part of the HttpSession, so
+ * it does not add to the session size and is never replicated. This service
+ * is intended for applications deployed on a single node, or on a cluster
+ * with sticky sessions where losing the control state on fail over is
+ * acceptable.
+ * <p/>
+ * The encoded <tt>byte[]</tt> state of the {@link StateCodecService} is
+ * stored off heap, and is only written again when its content changes. State
+ * which could not be encoded is stored in the HttpSession by the
+ * {@link SessionPageStateService}.
+ * <p/>
+ * The state of a session is released when the session is invalidated or
+ * expires, using a <tt>HttpSessionBindingListener</tt> session attribute.
+ *
+ * <h3>Configuration</h3>
+ * To use this service add the following element to your
+ * <tt>click.xml</tt> configuration file.
+ *
+ * <pre class="codeConfig">
+ * &lt;<span class="red">page-state-service</span> classname="<span class="blue">org.apache.click.service.MemoryPageStateService</span>"/&gt; </pre>
+ */
+public class MemoryPageStateService extends SessionPageStateService {
+
+    // -------------------------------------------------------------- Constants
+
+    /**
+     * The session attribute releasing the session state when the session is
+     * invalidated.
+     */
+    static final String SESSION_BINDING_ATTRIBUTE =
+        MemoryPageStateService.class.getName() + ".binding";
+
+    // ----------------------------------------------------- Instance Variables
+
+    /** The control states of the sessions, keyed by session id. */
+    private final ConcurrentMap<String, ConcurrentMap<String, ByteBuffer>> sessionStates =
+        new ConcurrentHashMap<String, ConcurrentMap<String, ByteBuffer>>();
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Release the stored control state of all sessions.
+     *
+     * @see PageStateService#onDestroy()
+     */
+    @Override
+    public void onDestroy() {
+        sessionStates.clear();
+    }
+
+    /**
+     * @see PageStateService#getState(String, String, Context)
+     *
+     * @param pagePath the path of the page the control belongs to
+     * @param controlName the name of the control
+     * @param context the request context
+     * @return the stored control state, or null if no state is stored
+     */
+    @Override
+    public Object getState(String pagePath, String controlName, Context context) {
+        if (!context.hasSession()) {
+            return null;
+        }
+
+        ConcurrentMap<String, ByteBuffer> states =
+            sessionStates.get(context.getSession().getId());
+
+        if (states != null) {
+            ByteBuffer buffer = states.get(getKey(pagePath, controlName));
+            if (buffer != null) {
+                byte[] data = new byte[buffer.capacity()];
+                buffer.duplicate().get(data);
+                return data;
+            }
+        }
+
+        return super.getState(pagePath, controlName, context);
+    }
+
+    /**
+     * Store the encoded control state off heap if its content differs from
+     * the stored state. State which is not a <tt>byte[]</tt> is stored in the
+     * HttpSession.
+     *
+     * @see PageStateService#saveState(String, String, Object, Context)
+     *
+     * @param pagePath the path of the page the control belongs to
+     * @param controlName the name of the control
+     * @param state the control state to store
+     * @param context the request context
+     */
+    @Override
+    public void saveState(String pagePath, String controlName, Object state,
+        Context context) {
+
+        if (!(state instanceof byte[])) {
+            removeMemoryState(pagePath, controlName, context);
+            super.saveState(pagePath, controlName, state, context);
+            return;
+        }
+
+        byte[] data = (byte[]) state;
+        ConcurrentMap<String, ByteBuffer> states = getSessionStates(context.getSession());
+        String key = getKey(pagePath, controlName);
+
+        ByteBuffer stored = states.get(key);
+        if (stored != null && stored.equals(ByteBuffer.wrap(data))) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data);
+        buffer.flip();
+        states.put(key, buffer.asReadOnlyBuffer());
+
+        if (stored == null) {
+            // State could have been stored in the session before it could be
+            // encoded
+            super.removeState(pagePath, controlName, context);
+        }
+    }
+
+    /**
+     * @see PageStateService#removeState(String, String, Context)
+     *
+     * @param pagePath the path of the page the control belongs to
+     * @param controlName the name of the control
+     * @param context the request context
+     */
+    @Override
+    public void removeState(String pagePath, String controlName, Context context) {
+        removeMemoryState(pagePath, controlName, context);
+        super.removeState(pagePath, controlName, context);
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    private void removeMemoryState(String pagePath, String controlName,
+        Context context) {
+
+        if (!context.hasSession()) {
+            return;
+        }
+
+        ConcurrentMap<String, ByteBuffer> states =
+            sessionStates.get(context.getSession().getId());
+
+        if (states != null) {
+            states.remove(getKey(pagePath, controlName));
+        }
+    }
+
+    private ConcurrentMap<String, ByteBuffer> getSessionStates(HttpSession session) {
+        String sessionId = session.getId();
+
+        ConcurrentMap<String, ByteBuffer> states = sessionStates.get(sessionId);
+        if (states == null) {
+            states = new ConcurrentHashMap<String, ByteBuffer>();
+            ConcurrentMap<String, ByteBuffer> existing =
+                sessionStates.putIfAbsent(sessionId, states);
+
+            if (existing != null) {
+                states = existing;
+            } else {
+                session.setAttribute(SESSION_BINDING_ATTRIBUTE,
+                    new SessionBinding(this, sessionId));
+            }
+        }
+        return states;
+    }
+
+    private static String getKey(String pagePath, String controlName) {
+        return pagePath + '#' + controlName;
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Releases the stored control state of a session when the session is
+     * invalidated or expires.
+     */
+    static class SessionBinding implements HttpSessionBindingListener, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The page state service, which is not replicated with the session. */
+        private final transient MemoryPageStateService service;
+
+        /** The id of the session. */
+        private final String sessionId;
+
+        SessionBinding(MemoryPageStateService service, String sessionId) {
+            this.service = service;
+            this.sessionId = sessionId;
+        }
+
+        /**
+         * @see HttpSessionBindingListener#valueBound(HttpSessionBindingEvent)
+         *
+         * @param event the session binding event
+         */
+        public void valueBound(HttpSessionBindingEvent event) {
+        }
+
+        /**
+         * Release the stored control state of the session.
+         *
+         * @see HttpSessionBindingListener#valueUnbound(HttpSessionBindingEvent)
+         *
+         * @param event the session binding event
+         */
+        public void valueUnbound(HttpSessionBindingEvent event) {
+            if (service != null) {
+                service.sessionStates.remove(sessionId);
+            }
+        }
+    }
+}
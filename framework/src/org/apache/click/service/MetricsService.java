@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.servlet.ServletContext;
+
+/**
+ * Provides a request metrics service for the Click runtime. The metrics
+ * service records the duration of the phases of each page request, such as
+ * creating the page, the page <tt>onInit</tt> and <tt>onProcess</tt> events,
+ * firing the control action listeners and rendering the page template.
+ * <p/>
+ * Durations are recorded in nanoseconds per page path and
+ * {@link RequestPhase}. The metrics service is invoked on every request in
+ * all application modes, so implementations must be thread safe and should
+ * record durations without locking.
+ *
+ * <h3>Configuration</h3>
+ * The default {@link MetricsService} implementation is
+ * {@link HistogramMetricsService}, which records durations in lock free
+ * histograms and exposes them through JMX.
+ * <p/>
+ * You can instruct Click to use a different implementation by adding
+ * the following element to your <tt>click.xml</tt> configuration file.
+ *
+ * <pre class="codeConfig">
+ * &lt;?xml version="1.0" encoding="UTF-8" standalone="yes"?&gt;
+ * &lt;click-app charset="UTF-8"&gt;
+ *
+ *     &lt;pages package="org.apache.click.examples.page"/&gt;
+ *
+ *     &lt;<span class="red">metrics-service</span> classname="<span class="blue">com.mycorp.CustomMetricsService</span>"/&gt;
+ *
+ * &lt;/click-app&gt; </pre>
+ *
+ * The recorded metrics can be viewed by mapping the
+ * {@link org.apache.click.util.MetricsPage} to a page path.
+ */
+public interface MetricsService {
+
+    /**
+     * Provides the request phases recorded by the metrics service.
+     */
+    public enum RequestPhase {
+
+        /** Creating and initializing the page instance. */
+        CREATE_PAGE("createPage"),
+
+        /** The page <tt>onSecurityCheck</tt> event. */
+        ON_SECURITY_CHECK("onSecurityCheck"),
+
+        /** The page and controls <tt>onInit</tt> events. */
+        ON_INIT("onInit"),
+
+        /** The controls <tt>onProcess</tt> events and action listeners. */
+        ON_PROCESS("onProcess"),
+
+        /** Firing the control action listeners and Ajax behaviors. */
+        ACTION_EVENTS("actionEvents"),
+
+        /** The page and controls <tt>onRender</tt> events. */
+        ON_RENDER("onRender"),
+
+        /** Rendering the page template, JSP or action result. */
+        RENDER("render"),
+
+        /** The page and controls <tt>onDestroy</tt> events. */
+        ON_DESTROY("onDestroy"),
+
+        /** The complete page request. */
+        REQUEST("request");
+
+        /** The name of the phase. */
+        private final String name;
+
+        private RequestPhase(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Return the name of the phase, for example <tt>"onInit"</tt>.
+         *
+         * @return the name of the phase
+         */
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * Initialize the MetricsService with the given application servlet
+     * context.
+     * <p/>
+     * This method is invoked after the MetricsService has been constructed.
+     *
+     * @param servletContext the application servlet context
+     * @throws Exception if an error occurs initializing the MetricsService
+     */
+    public void onInit(ServletContext servletContext) throws Exception;
+
+    /**
+     * Destroy the MetricsService.
+     */
+    public void onDestroy();
+
+    /**
+     * Return true if the metrics service records request phases. When false
+     * the Click runtime does not time the request phases.
+     *
+     * @return true if the metrics service records request phases
+     */
+    public boolean isEnabled();
+
+    /**
+     * Record the duration of the given request phase of the given page path.
+     *
+     * @param pagePath the requested page path
+     * @param phase the request phase
+     * @param durationNanos the duration of the phase in nanoseconds
+     */
+    public void record(String pagePath, RequestPhase phase, long durationNanos);
+
+    /**
+     * Write the recorded metrics to the given writer in a plain text format.
+     *
+     * @param writer the writer to write the metrics to
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeMetrics(Writer writer) throws IOException;
+}
@@ -0,0 +1,361 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.click.util.ClickUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Provides an index of the page templates of a web application, and of the
+ * automapped page classes found for each template, generated when the
+ * application is built.
+ * <p/>
+ * When the web application contains the index file
+ * <tt>/WEB-INF/click-page-index.properties</tt>, {@link XmlConfigService}
+ * loads the page class listed in the index for each indexed template, instead
+ * of probing the classpath for each template's page class. Page headers and
+ * bindable fields are still configured from <tt>click.xml</tt> and the
+ * indexed page classes.
+ * <p/>
+ * In <tt>production</tt> and <tt>profile</tt> modes the templates to map at
+ * startup are also taken from the index, so the web application is not
+ * scanned for templates. Templates which are not in the index are not mapped,
+ * so the index must be generated when the deployed application is built.
+ * Setting the system property <tt>click.page.index.verify</tt> to
+ * <tt>true</tt> scans the web application at startup and fails the startup
+ * if a template is not in the index.
+ * <p/>
+ * In development modes templates are often added after the index was built,
+ * so the web application is still scanned for templates at startup.
+ * Templates which are not in the index are automapped by probing the
+ * classpath as before, and a warning is logged that the index is out of
+ * date.
+ * <p/>
+ * The index is generated by running this class with the web application
+ * directory as argument, and the application's page classes on the
+ * classpath. For example with Ant:
+ *
+ * <pre class="codeConfig">
+ * &lt;<span class="red">java</span> classname="<span class="blue">org.apache.click.service.PageIndex</span>" fork="true" failonerror="true"&gt;
+ *     &lt;classpath&gt;
+ *         &lt;pathelement location="${dir.webapp}/WEB-INF/classes"/&gt;
+ *         &lt;path refid="classpath"/&gt;
+ *     &lt;/classpath&gt;
+ *     &lt;arg value="${dir.webapp}"/&gt;
+ * &lt;/<span class="red">java</span>&gt; </pre>
+ *
+ * The index must be generated again when templates or page classes are added,
+ * renamed or removed.
+ */
+public class PageIndex {
+
+    // -------------------------------------------------------------- Constants
+
+    /**
+     * The page index resource path: &nbsp;
+     * "<tt>/WEB-INF/click-page-index.properties</tt>".
+     */
+    public static final String PAGE_INDEX_PATH = "/WEB-INF/click-page-index.properties";
+
+    // ----------------------------------------------------- Instance Variables
+
+    /** The page class names found for each template, keyed on template path. */
+    private final Map<String, Set<String>> templateMap =
+        new TreeMap<String, Set<String>>();
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Add the specified template to the index.
+     *
+     * @param path the template path
+     */
+    public void addTemplate(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Null path parameter");
+        }
+        if (!templateMap.containsKey(path)) {
+            templateMap.put(path, new TreeSet<String>());
+        }
+    }
+
+    /**
+     * Add the specified page class name found for the template to the index.
+     *
+     * @param path the template path
+     * @param className the page class name
+     */
+    public void addPageClass(String path, String className) {
+        if (className == null) {
+            throw new IllegalArgumentException("Null className parameter");
+        }
+        addTemplate(path);
+        templateMap.get(path).add(className);
+    }
+
+    /**
+     * Return true if the specified template is in the index.
+     *
+     * @param path the template path
+     * @return true if the template is in the index
+     */
+    public boolean containsTemplate(String path) {
+        return templateMap.containsKey(path);
+    }
+
+    /**
+     * Return true if the specified page class was found for the template.
+     *
+     * @param path the template path
+     * @param className the page class name
+     * @return true if the page class was found for the template
+     */
+    public boolean containsPageClass(String path, String className) {
+        Set<String> classNames = templateMap.get(path);
+        return classNames != null && classNames.contains(className);
+    }
+
+    /**
+     * Return the sorted list of indexed template paths.
+     *
+     * @return the sorted list of indexed template paths
+     */
+    public List<String> getTemplates() {
+        return new ArrayList<String>(templateMap.keySet());
+    }
+
+    /**
+     * Write the index to the specified output stream in properties format.
+     * Each template path is a key, with the comma separated page class names
+     * found for the template as value.
+     *
+     * @param outputStream the stream to write the index to
+     * @throws IOException if an error occurs writing the index
+     */
+    public void store(OutputStream outputStream) throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, Set<String>> entry : templateMap.entrySet()) {
+            StringBuilder buffer = new StringBuilder();
+            for (Iterator<String> i = entry.getValue().iterator(); i.hasNext();) {
+                buffer.append(i.next());
+                if (i.hasNext()) {
+                    buffer.append(",");
+                }
+            }
+            properties.setProperty(entry.getKey(), buffer.toString());
+        }
+        properties.store(outputStream, "Click page index");
+    }
+
+    /**
+     * Load an index from the specified input stream.
+     *
+     * @see #store(OutputStream)
+     *
+     * @param inputStream the stream to read the index from
+     * @return the loaded page index
+     * @throws IOException if an error occurs reading the index
+     */
+    public static PageIndex load(InputStream inputStream) throws IOException {
+        Properties properties = new Properties();
+        properties.load(inputStream);
+
+        PageIndex index = new PageIndex();
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            String path = entry.getKey().toString();
+            index.addTemplate(path);
+
+            StringTokenizer tokenizer = new StringTokenizer(entry.getValue().toString(), ",");
+            while (tokenizer.hasMoreTokens()) {
+                index.addPageClass(path, tokenizer.nextToken().trim());
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Create the page index of the specified web application directory.
+     * <p/>
+     * The templates are found by scanning the directory, excluding
+     * <tt>WEB-INF</tt>. The page packages are read from the
+     * <tt>WEB-INF/click.xml</tt> file, or from <tt>click.xml</tt> on the
+     * classpath. For each template and automapped package, the page class
+     * names are looked up as class files of the class loader, so no classes
+     * are loaded or initialized.
+     *
+     * @param webappDir the web application root directory
+     * @param classLoader the class loader of the application's page classes
+     * @return the page index of the web application
+     * @throws IOException if an error occurs reading the configuration
+     */
+    public static PageIndex create(File webappDir, ClassLoader classLoader)
+        throws IOException {
+
+        if (!webappDir.isDirectory()) {
+            throw new IOException("web application directory not found: " + webappDir);
+        }
+
+        XmlConfigService configService = new XmlConfigService();
+
+        List<String> templates = new ArrayList<String>();
+        File[] files = webappDir.listFiles();
+        for (File file : files) {
+            if (file.isDirectory()) {
+                if (!file.getName().equalsIgnoreCase("WEB-INF")) {
+                    addTemplates(configService, file, "/" + file.getName() + "/", templates);
+                }
+            } else if (configService.isTemplate(file.getName())) {
+                templates.add("/" + file.getName());
+            }
+        }
+        Collections.sort(templates);
+
+        List<String> pagePackages = getPagePackages(configService, webappDir, classLoader);
+
+        PageIndex index = new PageIndex();
+        for (String path : templates) {
+            index.addTemplate(path);
+
+            for (String pagesPackage : pagePackages) {
+                String className = XmlConfigService.getPageClassName(path, pagesPackage);
+                if (isClassAvailable(className, classLoader)) {
+                    index.addPageClass(path, className);
+
+                } else if (!className.endsWith("Page")
+                    && isClassAvailable(className + "Page", classLoader)) {
+                    index.addPageClass(path, className + "Page");
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Generate the page index of a web application.
+     * <p/>
+     * The first argument is the web application root directory. The optional
+     * second argument is the index file to write, which defaults to
+     * <tt>WEB-INF/click-page-index.properties</tt> in the web application
+     * directory.
+     *
+     * @param args the web application directory and optional index file
+     * @throws IOException if an error occurs generating the index
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: PageIndex <webapp-dir> [<index-file>]");
+            System.exit(1);
+        }
+
+        File webappDir = new File(args[0]);
+        File indexFile = (args.length > 1)
+            ? new File(args[1]) : new File(webappDir, PAGE_INDEX_PATH.substring(1));
+
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = PageIndex.class.getClassLoader();
+        }
+
+        PageIndex index = create(webappDir, classLoader);
+
+        indexFile.getParentFile().mkdirs();
+        OutputStream outputStream = new FileOutputStream(indexFile);
+        try {
+            index.store(outputStream);
+        } finally {
+            ClickUtils.close(outputStream);
+        }
+
+        System.out.println("indexed " + index.getTemplates().size()
+            + " templates to " + indexFile);
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    private static void addTemplates(XmlConfigService configService, File dir,
+        String dirPath, List<String> templates) {
+
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addTemplates(configService, file, dirPath + file.getName() + "/", templates);
+
+            } else if (configService.isTemplate(file.getName())) {
+                templates.add(dirPath + file.getName());
+            }
+        }
+    }
+
+    private static List<String> getPagePackages(XmlConfigService configService,
+        File webappDir, ClassLoader classLoader) throws IOException {
+
+        InputStream inputStream = null;
+        File configFile = new File(webappDir, ClickUtils.DEFAULT_APP_CONFIG.substring(1));
+        if (configFile.isFile()) {
+            inputStream = new FileInputStream(configFile);
+        } else {
+            inputStream = classLoader.getResourceAsStream("click.xml");
+            if (inputStream == null) {
+                throw new IOException("could not find click app configuration file: "
+                    + configFile + " or click.xml on classpath");
+            }
+        }
+
+        try {
+            Document document = ClickUtils.buildDocument(inputStream, configService);
+
+            List<String> pagePackages = new ArrayList<String>();
+            Element rootElm = document.getDocumentElement();
+            for (Element pagesElm : ClickUtils.getChildren(rootElm, "pages")) {
+                if (!"false".equalsIgnoreCase(pagesElm.getAttribute("automapping"))) {
+                    pagePackages.add(XmlConfigService.getPagesPackage(pagesElm));
+                }
+            }
+            return pagePackages;
+
+        } finally {
+            ClickUtils.close(inputStream);
+        }
+    }
+
+    private static boolean isClassAvailable(String className, ClassLoader classLoader) {
+        return classLoader.getResource(className.replace('.', '/') + ".class") != null;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+import javax.servlet.ServletContext;
+
+import org.apache.click.Context;
+
+/**
+ * Provides a page state service for the Click runtime. The page state service
+ * stores the state of stateful controls, which is saved and restored by
+ * {@link org.apache.click.util.ClickUtils#saveState(org.apache.click.Stateful, String, org.apache.click.Context)}
+ * and
+ * {@link org.apache.click.util.ClickUtils#restoreState(org.apache.click.Stateful, String, org.apache.click.Context)}.
+ * <p/>
+ * Control state is stored per page path and control name. The state passed to
+ * the service is usually the encoded bytes returned by the application
+ * {@link StateCodecService}. Implementations should only write the state back
+ * to the underlying store when it differs from the stored state, so unchanged
+ * state does not cause session replication traffic.
+ *
+ * <h3>Configuration</h3>
+ * The default {@link PageStateService} implementation is
+ * {@link SessionPageStateService}, which stores control state in the
+ * HttpSession. The {@link MemoryPageStateService} stores control state off
+ * heap, keyed by the session id.
+ * <p/>
+ * You can instruct Click to use a different implementation by adding
+ * the following element to your <tt>click.xml</tt> configuration file.
+ *
+ * <pre class="codeConfig">
+ * &lt;?xml version="1.0" encoding="UTF-8" standalone="yes"?&gt;
+ * &lt;click-app charset="UTF-8"&gt;
+ *
+ *     &lt;pages package="org.apache.click.examples.page"/&gt;
+ *
+ *     &lt;<span class="red">page-state-service</span> classname="<span class="blue">org.apache.click.service.MemoryPageStateService</span>"/&gt;
+ *
+ * &lt;/click-app&gt; </pre>
+ *
+ * A page state service is shared by all requests, so implementations must be
+ * thread safe.
+ */
+public interface PageStateService {
+
+    /**
+     * Initialize the PageStateService with the given application servlet
+     * context.
+     * <p/>
+     * This method is invoked after the PageStateService has been constructed.
+     *
+     * @param servletContext the application servlet context
+     * @throws Exception if an error occurs initializing the PageStateService
+     */
+    public void onInit(ServletContext servletContext) throws Exception;
+
+    /**
+     * Destroy the PageStateService.
+     */
+    public void onDestroy();
+
+    /**
+     * Return the stored state of the named control on the given page path, or
+     * null if no state is stored.
+     *
+     * @param pagePath the path of the page the control belongs to
+     * @param controlName the name of the control
+     * @param context the request context
+     * @return the stored control state, or null if no state is stored
+     */
+    public Object getState(String pagePath, String controlName, Context context);
+
+    /**
+     * Store the state of the named control on the given page path. A null
+     * state removes the stored state.
+     *
+     * @param pagePath the path of the page the control belongs to
+     * @param controlName the name of the control
+     * @param state the control state to store
+     * @param context the request context
+     */
+    public void saveState(String pagePath, String controlName, Object state,
+        Context context);
+
+    /**
+     * Remove the stored state of the named control on the given page path.
+     *
+     * @param pagePath the path of the page the control belongs to
+     * @param controlName the name of the control
+     * @param context the request context
+     */
+    public void removeState(String pagePath, String controlName, Context context);
+}
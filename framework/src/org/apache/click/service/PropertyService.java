@@ -28,8 +28,9 @@ import javax.servlet.ServletContext;
  *
  * <h3>Configuration</h3>
  * The default {@link PropertyService} implementation is {@link OGNLPropertyService} for
- * backward compatibility reasons. Please note {@link MVELPropertyService} provides
- * better property write performance than the OGNL property service.
+ * backward compatibility reasons. Please note {@link MVELPropertyService} and
+ * {@link CompiledPropertyService} provide better property write performance than
+ * the OGNL property service.
  * <p/>
  * You can instruct Click to use a different implementation by adding
  * the following element to your <tt>click.xml</tt> configuration file.
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletContext;
+
+import org.apache.click.Context;
+
+/**
+ * Provides a page state service which stores control state in the
+ * HttpSession. This is the default {@link PageStateService}.
+ * <p/>
+ * The state of the controls of a page is stored in a <tt>Map</tt> session
+ * attribute named after the page path. The session attribute is only set
+ * again, forcing session replication in a cluster, when the state of a
+ * control is {@link #isModified(Object, Object) modified}. For example
+ * paging through a {@link org.apache.click.control.Table} on subsequent
+ * requests with the same page number does not replicate the page state.
+ *
+ * <h3>Configuration</h3>
+ * This is the default page state service. To explicitly configure it add the
+ * following element to your <tt>click.xml</tt> configuration file.
+ *
+ * <pre class="codeConfig">
+ * &lt;<span class="red">page-state-service</span> classname="<span class="blue">org.apache.click.service.SessionPageStateService</span>"/&gt; </pre>
+ */
+public class SessionPageStateService implements PageStateService {
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * @see PageStateService#onInit(ServletContext)
+     *
+     * @param servletContext the application servlet context
+     * @throws Exception if an error occurs initializing the service
+     */
+    public void onInit(ServletContext servletContext) throws Exception {
+    }
+
+    /**
+     * @see PageStateService#onDestroy()
+     */
+    public void onDestroy() {
+    }
+
+    /**
+     * @see PageStateService#getState(String, String, Context)
+     *
+     * @param pagePath the path of the page the control belongs to
+     * @param controlName the name of the control
+     * @param context the request context
+     * @return the stored control state, or null if no state is stored
+     */
+    public Object getState(String pagePath, String controlName, Context context) {
+        Map pageMap = getPageMap(pagePath, context);
+        if (pageMap == null) {
+            return null;
+        }
+        return pageMap.get(controlName);
+    }
+
+    /**
+     * Store the control state in the page state session attribute. The session
+     * attribute is only set if the state is modified.
+     *
+     * @see PageStateService#saveState(String, String, Object, Context)
+     *
+     * @param pagePath the path of the page the control belongs to
+     * @param controlName the name of the control
+     * @param state the control state to store
+     * @param context the request context
+     */
+    @SuppressWarnings("unchecked")
+    public void saveState(String pagePath, String controlName, Object state,
+        Context context) {
+
+        if (state == null) {
+            removeState(pagePath, controlName, context);
+            return;
+        }
+
+        Map pageMap = getPageMap(pagePath, context);
+        if (pageMap == null) {
+            pageMap = new HashMap();
+
+        } else if (!isModified(pageMap.get(controlName), state)) {
+            return;
+        }
+
+        pageMap.put(controlName, state);
+        // After control state has been added to the page state, set the
+        // session attribute to force session replication in a cluster
+        context.setSessionAttribute(pagePath, pageMap);
+    }
+
+    /**
+     * @see PageStateService#removeState(String, String, Context)
+     *
+     * @param pagePath the path of the page the control belongs to
+     * @param controlName the name of the control
+     * @param context the request context
+     */
+    public void removeState(String pagePath, String controlName, Context context) {
+        Map pageMap = getPageMap(pagePath, context);
+        if (pageMap == null) {
+            return;
+        }
+
+        Object pop = pageMap.remove(controlName);
+
+        if (pageMap.isEmpty()) {
+            // If this was the last state for the page, remove the page state map
+            context.removeSessionAttribute(pagePath);
+
+        } else if (pop != null) {
+            // If control state was removed, set session attribute to force
+            // session replication in a cluster
+            context.setSessionAttribute(pagePath, pageMap);
+        }
+    }
+
+    // ------------------------------------------------------ Protected Methods
+
+    /**
+     * Return true if the given state differs from the stored state. Encoded
+     * <tt>byte[]</tt> state is compared by content, any other state is always
+     * considered modified as it may have been changed in place.
+     *
+     * @param storedState the stored control state
+     * @param state the control state to store
+     * @return true if the given state differs from the stored state
+     */
+    protected boolean isModified(Object storedState, Object state) {
+        if (storedState instanceof byte[] && state instanceof byte[]) {
+            return !Arrays.equals((byte[]) storedState, (byte[]) state);
+        }
+        return true;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    private Map getPageMap(String pagePath, Context context) {
+        return (Map) context.getSessionAttribute(pagePath);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+import java.io.IOException;
+
+import javax.servlet.ServletContext;
+
+/**
+ * Provides a state codec service for the Click runtime. The state codec
+ * converts control state to and from bytes. It is used by
+ * {@link org.apache.click.util.ClickUtils#encode(Object)} and
+ * {@link org.apache.click.util.ClickUtils#decode(String)}, for example to
+ * render the value of a {@link org.apache.click.control.HiddenField}, and by
+ * {@link org.apache.click.util.ClickUtils#saveState(org.apache.click.Stateful, String, org.apache.click.Context)}
+ * to store the state of stateful controls in the session.
+ *
+ * <h3>Configuration</h3>
+ * The default {@link StateCodecService} implementation is
+ * {@link CompactStateCodecService}, which writes the state of the Click
+ * controls in a compact binary format. The {@link JavaStateCodecService}
+ * writes state using Java serialization.
+ * <p/>
+ * You can instruct Click to use a different implementation by adding
+ * the following element to your <tt>click.xml</tt> configuration file.
+ *
+ * <pre class="codeConfig">
+ * &lt;?xml version="1.0" encoding="UTF-8" standalone="yes"?&gt;
+ * &lt;click-app charset="UTF-8"&gt;
+ *
+ *     &lt;pages package="org.apache.click.examples.page"/&gt;
+ *
+ *     &lt;<span class="red">state-codec-service</span> classname="<span class="blue">org.apache.click.service.JavaStateCodecService</span>"/&gt;
+ *
+ * &lt;/click-app&gt; </pre>
+ *
+ * A state codec is shared by all requests, so implementations must be
+ * thread safe.
+ */
+public interface StateCodecService {
+
+    /**
+     * Initialize the StateCodecService with the given application servlet
+     * context.
+     * <p/>
+     * This method is invoked after the StateCodecService has been constructed.
+     *
+     * @param servletContext the application servlet context
+     * @throws Exception if an error occurs initializing the StateCodecService
+     */
+    public void onInit(ServletContext servletContext) throws Exception;
+
+    /**
+     * Destroy the StateCodecService.
+     */
+    public void onDestroy();
+
+    /**
+     * Return the encoded bytes of the given state object.
+     *
+     * @param state the state object to encode
+     * @return the encoded bytes of the state object
+     * @throws IOException if the state object could not be encoded
+     */
+    public byte[] encode(Object state) throws IOException;
+
+    /**
+     * Return the state object decoded from the given bytes.
+     *
+     * @param data the bytes returned by {@link #encode(Object)}
+     * @return the decoded state object
+     * @throws IOException if the data could not be decoded
+     * @throws ClassNotFoundException if the class of a serialized object could
+     * not be found
+     */
+    public Object decode(byte[] data) throws IOException, ClassNotFoundException;
+}
@@ -31,6 +31,7 @@ import java.util.TreeMap;
 import javax.servlet.ServletContext;
 
 import org.apache.click.Context;
+import org.apache.click.Control;
 import org.apache.click.Page;
 
 import org.apache.click.util.ClickUtils;
@@ -39,10 +40,13 @@ import org.apache.commons.lang.Validate;
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.app.event.ReferenceInsertionEventHandler;
+import org.apache.velocity.context.InternalContextAdapter;
 import org.apache.velocity.exception.ParseErrorException;
 import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.exception.TemplateInitException;
 import org.apache.velocity.io.VelocityWriter;
+import org.apache.velocity.runtime.Renderable;
 import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.RuntimeServices;
 import org.apache.velocity.runtime.log.LogChute;
@@ -122,6 +126,28 @@ import org.apache.velocity.util.SimplePool;
  * under your web application's root directory. At startup Click will first check to see
  * if this file exists, and if it does it will use it instead of <tt>click/VM_global_library.vm</tt>.
  *
+ * <h4>Streaming Control Rendering</h4>
+ *
+ * By default a control referenced in a template, for example <tt>$table</tt>,
+ * is rendered by calling its <tt>toString()</tt> method, which renders the
+ * control into a <tt>String</tt> before Velocity writes it to the response.
+ * For large controls such as a <tt>Table</tt> with thousands of rows, this
+ * creates several copies of the markup in memory.
+ * <p/>
+ * When the <tt>streamingRender</tt> property is enabled, controls referenced
+ * in templates are rendered directly to the Velocity writer in chunks, see
+ * {@link ClickUtils#renderControl(Control, Writer)}. This uses a Velocity
+ * <tt>ReferenceInsertionEventHandler</tt>, {@link ControlRenderHandler}.
+ *
+ * <pre class="codeConfig">
+ * &lt;template-service classname="org.apache.click.service.VelocityTemplateService"&gt;
+ *   &lt;property name="<span class="blue">streamingRender</span>" value="<span class="red">true</span>"/&gt;
+ * &lt;/template-service&gt; </pre>
+ *
+ * Note if you define your own <tt>eventhandler.referenceinsertion.class</tt>
+ * property in <tt>velocity.properties</tt>, include the ControlRenderHandler
+ * class in its value to keep streaming enabled.
+ *
  * <h3>Application Modes and Caching</h3>
  *
  * <h4>Production and Profile Mode</h4>
@@ -239,6 +265,9 @@ public class VelocityTemplateService implements TemplateService {
     /** Cache of velocity writers. */
     protected SimplePool writerPool = new SimplePool(40);
 
+    /** The controls are rendered directly to the writer. */
+    protected boolean streamingRender;
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -345,6 +374,27 @@ public class VelocityTemplateService implements TemplateService {
         internalRenderTemplate(templatePath, null, model, writer);
     }
 
+    /**
+     * Return true if controls referenced in templates are rendered directly to
+     * the writer.
+     *
+     * @return true if controls are rendered directly to the writer
+     */
+    public boolean isStreamingRender() {
+        return streamingRender;
+    }
+
+    /**
+     * Set whether controls referenced in templates are rendered directly to
+     * the writer, instead of through their <tt>toString()</tt> method.
+     *
+     * @param streamingRender true if controls are rendered directly to the
+     * writer
+     */
+    public void setStreamingRender(boolean streamingRender) {
+        this.streamingRender = streamingRender;
+    }
+
     // Protected Methods ------------------------------------------------------
 
     /**
@@ -408,6 +458,11 @@ public class VelocityTemplateService implements TemplateService {
 
         velProps.put("directive.if.tostring.nullcheck", "false");
 
+        if (isStreamingRender()) {
+            velProps.put(RuntimeConstants.EVENTHANDLER_REFERENCEINSERTION,
+                         ControlRenderHandler.class.getName());
+        }
+
         // Use 'macro.vm' exists set it as default VM library
         ServletContext servletContext = configService.getServletContext();
         URL macroURL = servletContext.getResource("/" + MACRO_VM_FILE_NAME);
@@ -631,6 +686,62 @@ public class VelocityTemplateService implements TemplateService {
 
     // Inner Classes ----------------------------------------------------------
 
+    /**
+     * Provides a Velocity <tt>ReferenceInsertionEventHandler</tt> which
+     * renders controls referenced in templates directly to the Velocity writer.
+     * <p/>
+     * Please see the {@link VelocityTemplateService} class for more details on
+     * streaming control rendering.
+     */
+    public static class ControlRenderHandler implements ReferenceInsertionEventHandler {
+
+        /**
+         * Return a Velocity <tt>Renderable</tt> for controls which can be
+         * rendered directly to a writer, otherwise return the given value.
+         *
+         * @see ReferenceInsertionEventHandler#referenceInsert(String, Object)
+         *
+         * @param reference the template reference
+         * @param value the reference value
+         * @return the value to insert in the template
+         */
+        public Object referenceInsert(String reference, Object value) {
+            if (value instanceof Control) {
+                Control control = (Control) value;
+                if (ClickUtils.isStreamingRenderSupported(control)) {
+                    return new ControlRenderable(control);
+                }
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Provides a Velocity <tt>Renderable</tt> which renders a control to the
+     * Velocity writer.
+     */
+    private static class ControlRenderable implements Renderable {
+
+        /** The control to render. */
+        private final Control control;
+
+        ControlRenderable(Control control) {
+            this.control = control;
+        }
+
+        public boolean render(InternalContextAdapter context, Writer writer)
+            throws IOException {
+
+            ClickUtils.renderControl(control, writer);
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return control.toString();
+        }
+    }
+
     /**
      * Provides a Velocity <tt>LogChute</tt> adapter class around the application
      * log service to enable the Velocity Runtime to log to the application
@@ -723,19 +834,19 @@ public class VelocityTemplateService implements TemplateService {
             }
 
             if (level == TRACE_ID) {
-                logger.trace(MSG_PREFIX + message);
+                logger.trace(new LogMessage(MSG_PREFIX + "{}", message));
 
             } else if (level == DEBUG_ID) {
-                logger.debug(MSG_PREFIX + message);
+                logger.debug(new LogMessage(MSG_PREFIX + "{}", message));
 
             } else if (level == INFO_ID) {
-                logger.info(MSG_PREFIX + message);
+                logger.info(new LogMessage(MSG_PREFIX + "{}", message));
 
             } else if (level == WARN_ID) {
-                logger.warn(MSG_PREFIX + message);
+                logger.warn(new LogMessage(MSG_PREFIX + "{}", message));
 
             } else if (level == ERROR_ID) {
-                logger.error(MSG_PREFIX + message);
+                logger.error(new LogMessage(MSG_PREFIX + "{}", message));
 
             } else {
                 throw new IllegalArgumentException("Invalid log level: " + level);
@@ -760,19 +871,19 @@ public class VelocityTemplateService implements TemplateService {
             }
 
             if (level == TRACE_ID) {
-                logger.trace(MSG_PREFIX + message, error);
+                logger.trace(new LogMessage(MSG_PREFIX + "{}", message), error);
 
             } else if (level == DEBUG_ID) {
-                logger.debug(MSG_PREFIX + message, error);
+                logger.debug(new LogMessage(MSG_PREFIX + "{}", message), error);
 
             } else if (level == INFO_ID) {
-                logger.info(MSG_PREFIX + message, error);
+                logger.info(new LogMessage(MSG_PREFIX + "{}", message), error);
 
             } else if (level == WARN_ID) {
-                logger.warn(MSG_PREFIX + message, error);
+                logger.warn(new LogMessage(MSG_PREFIX + "{}", message), error);
 
             } else if (level == ERROR_ID) {
-                logger.error(MSG_PREFIX + message, error);
+                logger.error(new LogMessage(MSG_PREFIX + "{}", message), error);
 
             } else {
                 throw new IllegalArgumentException("Invalid log level: " + level);
@@ -18,6 +18,7 @@
  */
 package org.apache.click.service;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
@@ -30,12 +31,22 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletContext;
 
@@ -46,6 +57,7 @@ import org.apache.click.util.Bindable;
 import org.apache.click.util.ClickUtils;
 import org.apache.click.util.Format;
 import org.apache.click.util.HtmlStringBuffer;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
 import org.w3c.dom.Document;
@@ -65,6 +77,12 @@ import org.xml.sax.SAXException;
  * Configuring Click through the <tt>click.xml</tt> file is the most common
  * technique.
  * <p/>
+ * The deployment of resources, the loading of pages and the loading of the
+ * other services are independent, and are run in parallel on up to 4 threads.
+ * The number of threads can be set with the system property
+ * <tt>click.init.threads</tt>, where 1 runs the stages sequentially. The time
+ * of each stage is logged when the service is initialized.
+ * <p/>
  * However you can instruct Click to use a different service implementation.
  * Please see {@link ConfigService} for more details.
  */
@@ -76,6 +94,18 @@ public class XmlConfigService implements ConfigService, EntityResolver {
     /** The click deployment directory path: &nbsp; "/click". */
     static final String CLICK_PATH = "/click";
 
+    /**
+     * The system property defining the number of threads initializing the
+     * application: &nbsp; "<tt>click.init.threads</tt>".
+     */
+    static final String INIT_THREADS_PROPERTY = "click.init.threads";
+
+    /**
+     * The system property enabling the verification of the page index in
+     * production and profile modes: &nbsp; "<tt>click.page.index.verify</tt>".
+     */
+    static final String PAGE_INDEX_VERIFY_PROPERTY = "click.page.index.verify";
+
     /** The default common page headers. */
     static final Map<String, Object> DEFAULT_HEADERS;
 
@@ -124,6 +154,15 @@ public class XmlConfigService implements ConfigService, EntityResolver {
      */
     static final String VELOCITY_LOGGER = "org.apache.velocity";
 
+    /** The maximum number of paths held in the unmapped path cache. */
+    static final int UNMAPPED_PATH_CACHE_SIZE = 1000;
+
+    /**
+     * The number of milliseconds a path which does not map to a page is
+     * cached for, before auto mapping is attempted again.
+     */
+    static final long UNMAPPED_PATH_CACHE_TIMEOUT = 2000;
+
     /**
      * The global Velocity macro file name: &nbsp;
      * "<tt>VM_global_library.vm</tt>".
@@ -148,15 +187,39 @@ public class XmlConfigService implements ConfigService, EntityResolver {
     /** The page automapping override page class for path list. */
     final List excludesList = new ArrayList();
 
-    /** The map of ClickApp.PageElm keyed on path. */
-    final Map pageByPathMap = new HashMap();
+    /**
+     * The map of ClickApp.PageElm keyed on path. This map is safe for
+     * concurrent reads, new entries are only added under the page load lock.
+     */
+    final Map pageByPathMap = new ConcurrentHashMap();
+
+    /**
+     * The map of ClickApp.PageElm keyed on class. Where a class maps to
+     * multiple pages the value is a List, which is never modified after it is
+     * published, see {@link #addToClassMap(PageElm)}.
+     */
+    final Map pageByClassMap = new ConcurrentHashMap();
 
-    /** The map of ClickApp.PageElm keyed on class. */
-    final Map pageByClassMap = new HashMap();
+    /**
+     * The map of paths which could not be auto mapped to a page, with the time
+     * the lookup was made. Used in development modes to avoid repeatedly
+     * probing the servlet context and classpath for the same missing path.
+     */
+    final Map<String, Long> unmappedPathMap = new ConcurrentHashMap<String, Long>();
 
     /** The list of page packages. */
     final List pagePackages = new ArrayList();
 
+    /** The time in milliseconds taken by each initialization stage. */
+    final Map<String, Long> initStageTimes =
+        Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+
+    /**
+     * The page index generated with the application, or null if the
+     * application does not include a page index.
+     */
+    PageIndex pageIndex;
+
     // -------------------------------------------------------- Private Members
 
     /** The automatically bind controls, request parameters and models flag. */
@@ -202,9 +265,27 @@ public class XmlConfigService implements ConfigService, EntityResolver {
     /** The application TemplateService. */
     private MessagesMapService messagesMapService;
 
+    /** The application StateCodecService. */
+    private StateCodecService stateCodecService;
+
+    /** The application PageStateService. */
+    private PageStateService pageStateService;
+
+    /** The application MetricsService. */
+    private MetricsService metricsService;
+
     /** Flag indicating whether Click is running on Google App Engine. */
     private boolean onGoogleAppEngine = false;
 
+    /**
+     * The executor running the initialization stages, or null if the stages
+     * are run sequentially.
+     */
+    private ExecutorService initExecutor;
+
+    /** The number of threads of the init executor, see click.init.threads. */
+    private int initThreads = 1;
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -225,68 +306,132 @@ public class XmlConfigService implements ConfigService, EntityResolver {
         logService = new ConsoleLogService();
         messagesMapService = new DefaultMessagesMapService();
 
+        long startTime = System.currentTimeMillis();
+
         InputStream inputStream = ClickUtils.getClickConfig(servletContext);
 
+        byte[] config = null;
         try {
-            Document document = ClickUtils.buildDocument(inputStream, this);
+            config = IOUtils.toByteArray(inputStream);
 
-            Element rootElm = document.getDocumentElement();
+        } finally {
+            ClickUtils.close(inputStream);
+        }
 
-            // Load the log service
-            loadLogService(rootElm);
+        Element rootElm = buildRootElement(config);
 
-            // Load the application mode and set the logger levels
-            loadMode(rootElm);
+        // Load the log service
+        loadLogService(rootElm);
 
-            if (logService.isInfoEnabled()) {
-                logService.info("***  Initializing Click " + ClickUtils.getClickVersion()
-                    + " in " + getApplicationMode() + " mode  ***");
+        // Load the application mode and set the logger levels
+        loadMode(rootElm);
 
-                String msg = "initialized LogService: " + logService.getClass().getName();
-                getLogService().info(msg);
-            }
+        if (logService.isInfoEnabled()) {
+            logService.info("***  Initializing Click " + ClickUtils.getClickVersion()
+                + " in " + getApplicationMode() + " mode  ***");
 
-            // Deploy click resources
-            deployFiles(rootElm);
+            String msg = "initialized LogService: " + logService.getClass().getName();
+            getLogService().info(msg);
+        }
+
+        // Load the format class
+        loadFormatClass(rootElm);
 
-            // Load the format class
-            loadFormatClass(rootElm);
+        // Load the common headers
+        loadHeaders(rootElm);
 
-            // Load the common headers
-            loadHeaders(rootElm);
+        // The resources, pages and services stages are independent and are
+        // run in parallel. As DOM trees are not safe for concurrent reads,
+        // each stage reads its own copy of the configuration.
+        initExecutor = createInitExecutor();
+        try {
+            final Element deployElm = buildRootElement(config);
+            Future<Object> deployStage = submitInitStage("deploy resources", new Callable<Object>() {
+                public Object call() throws Exception {
+                    // Deploy click resources
+                    deployFiles(deployElm);
+                    return null;
+                }
+            });
+
+            final Element pagesElm = buildRootElement(config);
+            Future<Object> pagesStage = submitInitStage("load pages", new Callable<Object>() {
+                public Object call() throws Exception {
+                    // Load the pages
+                    loadPages(pagesElm);
+
+                    // Load the error and not-found pages
+                    loadDefaultPages();
+                    return null;
+                }
+            });
 
-            // Load the pages
-            loadPages(rootElm);
+            final Element servicesElm = rootElm;
+            Future<Object> servicesStage = submitInitStage("load services", new Callable<Object>() {
+                public Object call() throws Exception {
+                    // Load the charset
+                    loadCharset(servicesElm);
 
-            // Load the error and not-found pages
-            loadDefaultPages();
+                    // Load the locale
+                    loadLocale(servicesElm);
 
-            // Load the charset
-            loadCharset(rootElm);
+                    // Load the Property service
+                    loadPropertyService(servicesElm);
 
-            // Load the locale
-            loadLocale(rootElm);
+                    // Load the File Upload service
+                    loadFileUploadService(servicesElm);
 
-            // Load the Property service
-            loadPropertyService(rootElm);
+                    // Load the Templating service
+                    loadTemplateService(servicesElm);
 
-            // Load the File Upload service
-            loadFileUploadService(rootElm);
+                    // Load the Resource service
+                    loadResourceService(servicesElm);
 
-            // Load the Templating service
-            loadTemplateService(rootElm);
+                    // Load the Messages Map service
+                    loadMessagesMapService(servicesElm);
 
-            // Load the Resource service
-            loadResourceService(rootElm);
+                    // Load the State Codec service
+                    loadStateCodecService(servicesElm);
 
-            // Load the Messages Map service
-            loadMessagesMapService(rootElm);
+                    // Load the Page State service
+                    loadPageStateService(servicesElm);
 
-            // Load the PageInterceptors
-            loadPageInterceptors(rootElm);
+                    // Load the Metrics service
+                    loadMetricsService(servicesElm);
+
+                    // Load the PageInterceptors
+                    loadPageInterceptors(servicesElm);
+                    return null;
+                }
+            });
+
+            waitForInitStage(deployStage);
+            waitForInitStage(pagesStage);
+            waitForInitStage(servicesStage);
 
         } finally {
-            ClickUtils.close(inputStream);
+            if (initExecutor != null) {
+                initExecutor.shutdown();
+                initExecutor = null;
+            }
+        }
+
+        if (logService.isInfoEnabled()) {
+            HtmlStringBuffer buffer = new HtmlStringBuffer();
+            buffer.append("initialized configuration in ");
+            buffer.append(System.currentTimeMillis() - startTime).append(" ms (");
+            synchronized (initStageTimes) {
+                for (Iterator<Map.Entry<String, Long>> i = initStageTimes.entrySet().iterator(); i.hasNext();) {
+                    Map.Entry<String, Long> entry = i.next();
+                    buffer.append(entry.getKey()).append(": ");
+                    buffer.append(entry.getValue()).append(" ms");
+                    if (i.hasNext()) {
+                        buffer.append(", ");
+                    }
+                }
+            }
+            buffer.append(")");
+            logService.info(buffer.toString());
         }
     }
 
@@ -309,6 +454,15 @@ public class XmlConfigService implements ConfigService, EntityResolver {
         if (getMessagesMapService() != null) {
             getMessagesMapService().onDestroy();
         }
+        if (getStateCodecService() != null) {
+            getStateCodecService().onDestroy();
+        }
+        if (getPageStateService() != null) {
+            getPageStateService().onDestroy();
+        }
+        if (getMetricsService() != null) {
+            getMetricsService().onDestroy();
+        }
         if (getLogService() != null) {
             getLogService().onDestroy();
         }
@@ -390,6 +544,33 @@ public class XmlConfigService implements ConfigService, EntityResolver {
         return messagesMapService;
     }
 
+    /**
+     * @see ConfigService#getStateCodecService()
+     *
+     * @return the state codec service
+     */
+    public StateCodecService getStateCodecService() {
+        return stateCodecService;
+    }
+
+    /**
+     * @see ConfigService#getPageStateService()
+     *
+     * @return the page state service
+     */
+    public PageStateService getPageStateService() {
+        return pageStateService;
+    }
+
+    /**
+     * @see ConfigService#getMetricsService()
+     *
+     * @return the request metrics service
+     */
+    public MetricsService getMetricsService() {
+        return metricsService;
+    }
+
     /**
      * @see ConfigService#createFormat()
      *
@@ -554,67 +735,66 @@ public class XmlConfigService implements ConfigService, EntityResolver {
      */
     public Class<? extends Page> getPageClass(String path) {
 
-        // If in production or profile mode.
-        if (mode <= PROFILE) {
-            PageElm page = (PageElm) pageByPathMap.get(path);
-            if (page == null) {
-                String jspPath = StringUtils.replace(path, ".htm", ".jsp");
-                page = (PageElm) pageByPathMap.get(jspPath);
-            }
+        PageElm page = getPageElm(path);
+        if (page != null) {
+            return page.getPageClass();
+        }
 
-            if (page != null) {
-                return page.getPageClass();
-            } else {
-                return null;
-            }
+        // If in production or profile mode, pages are not lazily mapped
+        if (mode <= PROFILE) {
+            return null;
+        }
 
         // Else in development, debug or trace mode
-        } else {
-
-            synchronized (PAGE_LOAD_LOCK) {
-                PageElm page = (PageElm) pageByPathMap.get(path);
-                if (page == null) {
-                    String jspPath = StringUtils.replace(path, ".htm", ".jsp");
-                    page = (PageElm) pageByPathMap.get(jspPath);
-                }
+        if (isUnmappedPath(path)) {
+            return null;
+        }
 
-                if (page != null) {
-                    return page.getPageClass();
-                }
+        synchronized (PAGE_LOAD_LOCK) {
 
-                Class pageClass = null;
+            // Check whether another thread has mapped the page in the meantime
+            page = getPageElm(path);
+            if (page != null) {
+                return page.getPageClass();
+            }
 
-                try {
-                    URL resource = servletContext.getResource(path);
-                    if (resource != null) {
-                        for (int i = 0; i < pagePackages.size(); i++) {
-                            String pagesPackage = pagePackages.get(i).toString();
+            Class pageClass = null;
 
-                            pageClass = getPageClass(path, pagesPackage);
+            try {
+                URL resource = servletContext.getResource(path);
+                if (resource != null) {
+                    for (int i = 0; i < pagePackages.size(); i++) {
+                        String pagesPackage = pagePackages.get(i).toString();
 
-                            if (pageClass != null) {
-                                page = new PageElm(path,
-                                                   pageClass,
-                                                   commonHeaders,
-                                                   autobinding);
+                        pageClass = getPageClass(path, pagesPackage);
 
-                                pageByPathMap.put(page.getPath(), page);
-                                addToClassMap(page);
+                        if (pageClass != null) {
+                            page = new PageElm(path,
+                                               pageClass,
+                                               commonHeaders,
+                                               autobinding);
 
-                                if (logService.isDebugEnabled()) {
-                                    String msg = path + " -> " + pageClass.getName();
-                                    logService.debug(msg);
-                                }
+                            addToClassMap(page);
+                            pageByPathMap.put(page.getPath(), page);
 
-                                break;
+                            if (logService.isDebugEnabled()) {
+                                String msg = path + " -> " + pageClass.getName();
+                                logService.debug(msg);
                             }
+
+                            break;
                         }
                     }
-                } catch (MalformedURLException e) {
-                    //ignore
                 }
-                return pageClass;
+            } catch (MalformedURLException e) {
+                //ignore
             }
+
+            if (pageClass == null) {
+                addUnmappedPath(path);
+            }
+
+            return pageClass;
         }
     }
 
@@ -678,11 +858,7 @@ public class XmlConfigService implements ConfigService, EntityResolver {
      * @return a Map of headers for the given page path
      */
     public Map<String, Object> getPageHeaders(String path) {
-        PageElm page = (PageElm) pageByPathMap.get(path);
-        if (page == null) {
-            String jspPath = StringUtils.replace(path, ".htm", ".jsp");
-            page = (PageElm) pageByPathMap.get(jspPath);
-        }
+        PageElm page = getPageElm(path);
 
         if (page != null) {
             return page.getHeaders();
@@ -854,20 +1030,6 @@ public class XmlConfigService implements ConfigService, EntityResolver {
      * @return the page class for the specified pagePath and pagesPackage
      */
     protected Class<? extends  Page> getPageClass(String pagePath, String pagesPackage) {
-        // To understand this method lets walk through an example as the
-        // code plays out. Imagine this method is called with the arguments:
-        // pagePath='/pages/edit-customer.htm'
-        // pagesPackage='org.apache.click'
-
-        String packageName = "";
-        if (StringUtils.isNotBlank(pagesPackage)) {
-            // Append period after package
-            // packageName = 'org.apache.click.'
-            packageName = pagesPackage + ".";
-        }
-
-        String className = "";
-
         // Strip off extension.
         // path = '/pages/edit-customer'
         String path = pagePath.substring(0, pagePath.lastIndexOf("."));
@@ -878,36 +1040,15 @@ public class XmlConfigService implements ConfigService, EntityResolver {
             return excludePageClass;
         }
 
-        // Build complete packageName.
-        // packageName = 'org.apache.click.pages.'
-        // className = 'edit-customer'
-        if (path.indexOf("/") != -1) {
-            StringTokenizer tokenizer = new StringTokenizer(path, "/");
-            while (tokenizer.hasMoreTokens()) {
-                String token = tokenizer.nextToken();
-                if (tokenizer.hasMoreTokens()) {
-                    packageName = packageName + token + ".";
-                } else {
-                    className = token;
-                }
-            }
-        } else {
-            className = path;
-        }
+        // className = 'org.apache.click.pages.EditCustomer'
+        String className = getPageClassName(pagePath, pagesPackage);
 
-        // CamelCase className.
-        // className = 'EditCustomer'
-        StringTokenizer tokenizer = new StringTokenizer(className, "_-");
-        className = "";
-        while (tokenizer.hasMoreTokens()) {
-            String token = tokenizer.nextToken();
-            token = Character.toUpperCase(token.charAt(0)) + token.substring(1);
-            className += token;
+        // If the page index covers the path, load the indexed class rather
+        // than probing the classpath for classes which may not exist
+        if (pageIndex != null && pageIndex.containsTemplate(pagePath)) {
+            return getIndexedPageClass(pagePath, className);
         }
 
-        // className = 'org.apache.click.pages.EditCustomer'
-        className = packageName + className;
-
         Class pageClass = null;
         try {
             // Attempt to load class.
@@ -982,6 +1123,66 @@ public class XmlConfigService implements ConfigService, EntityResolver {
 
     // ------------------------------------------------ Package Private Methods
 
+    /**
+     * Return the automapped page class name for the specified pagePath and
+     * pagesPackage, without the optional <tt>"Page"</tt> suffix.
+     *
+     * @see #getPageClass(String, String)
+     *
+     * @param pagePath the path used for matching against a page class name
+     * @param pagesPackage the package of the page class
+     * @return the page class name for the specified pagePath and pagesPackage
+     */
+    static String getPageClassName(String pagePath, String pagesPackage) {
+        // To understand this method lets walk through an example as the
+        // code plays out. Imagine this method is called with the arguments:
+        // pagePath='/pages/edit-customer.htm'
+        // pagesPackage='org.apache.click'
+
+        String packageName = "";
+        if (StringUtils.isNotBlank(pagesPackage)) {
+            // Append period after package
+            // packageName = 'org.apache.click.'
+            packageName = pagesPackage + ".";
+        }
+
+        String className = "";
+
+        // Strip off extension.
+        // path = '/pages/edit-customer'
+        String path = pagePath.substring(0, pagePath.lastIndexOf("."));
+
+        // Build complete packageName.
+        // packageName = 'org.apache.click.pages.'
+        // className = 'edit-customer'
+        if (path.indexOf("/") != -1) {
+            StringTokenizer tokenizer = new StringTokenizer(path, "/");
+            while (tokenizer.hasMoreTokens()) {
+                String token = tokenizer.nextToken();
+                if (tokenizer.hasMoreTokens()) {
+                    packageName = packageName + token + ".";
+                } else {
+                    className = token;
+                }
+            }
+        } else {
+            className = path;
+        }
+
+        // CamelCase className.
+        // className = 'EditCustomer'
+        StringTokenizer tokenizer = new StringTokenizer(className, "_-");
+        className = "";
+        while (tokenizer.hasMoreTokens()) {
+            String token = tokenizer.nextToken();
+            token = Character.toUpperCase(token.charAt(0)) + token.substring(1);
+            className += token;
+        }
+
+        // className = 'org.apache.click.pages.EditCustomer'
+        return packageName + className;
+    }
+
     /**
      * Loads all Click Pages defined in the <tt>click.xml</tt> file, including
      * manually defined Pages, auto mapped Pages and excluded Pages.
@@ -998,7 +1199,40 @@ public class XmlConfigService implements ConfigService, EntityResolver {
             throw new RuntimeException(msg);
         }
 
-        List templates = getTemplateFiles();
+        // Use the page index generated with the application if available, to
+        // avoid probing the classpath for the page classes of the templates
+        pageIndex = loadPageIndex();
+
+        List templates;
+        if (pageIndex == null) {
+            templates = getTemplateFiles();
+
+        } else if (mode <= PROFILE) {
+            // The index is generated with the deployed application, so the
+            // web application is not scanned for templates
+            templates = pageIndex.getTemplates();
+
+            if (Boolean.getBoolean(PAGE_INDEX_VERIFY_PROPERTY)) {
+                verifyPageIndex();
+            }
+
+        } else {
+            // Templates are often added after the index was built in the
+            // development modes, so scan for templates which are not indexed
+            templates = getTemplateFiles();
+
+            int unindexedCount = 0;
+            for (Object template : templates) {
+                if (!pageIndex.containsTemplate(template.toString())) {
+                    unindexedCount++;
+                }
+            }
+            if (unindexedCount > 0) {
+                logService.warn("page index " + PageIndex.PAGE_INDEX_PATH
+                    + " is out of date, " + unindexedCount
+                    + " templates are not indexed");
+            }
+        }
 
         for (Element pagesElm : pagesList) {
 
@@ -1056,16 +1290,7 @@ public class XmlConfigService implements ConfigService, EntityResolver {
             // However the way its implemented above is probably fine for backward compatibility
             // purposes, meaning the last defined autobinding wins
 
-            String pagesPackage = pagesElm.getAttribute("package");
-            if (StringUtils.isBlank(pagesPackage)) {
-                pagesPackage = "";
-            }
-
-            pagesPackage = pagesPackage.trim();
-            if (pagesPackage.endsWith(".") && pagesPackage.length() > 1) {
-                pagesPackage =
-                    pagesPackage.substring(0, pagesPackage.length() - 2);
-            }
+            String pagesPackage = getPagesPackage(pagesElm);
 
             // Add the pages package to the list of page packages
             pagePackages.add(pagesPackage);
@@ -1080,6 +1305,27 @@ public class XmlConfigService implements ConfigService, EntityResolver {
         buildClassMap();
     }
 
+    /**
+     * Return the package of the specified pages element, or an empty string
+     * if no package is defined.
+     *
+     * @param pagesElm the pages xml element
+     * @return the package of the pages element
+     */
+    static String getPagesPackage(Element pagesElm) {
+        String pagesPackage = pagesElm.getAttribute("package");
+        if (StringUtils.isBlank(pagesPackage)) {
+            pagesPackage = "";
+        }
+
+        pagesPackage = pagesPackage.trim();
+        if (pagesPackage.endsWith(".") && pagesPackage.length() > 1) {
+            pagesPackage =
+                pagesPackage.substring(0, pagesPackage.length() - 2);
+        }
+        return pagesPackage;
+    }
+
     /**
      * Add manually defined Pages to the {@link #pageByPathMap}.
      *
@@ -1191,13 +1437,16 @@ public class XmlConfigService implements ConfigService, EntityResolver {
             pageByClassMap.put(page.pageClass, page);
 
         } else if (value instanceof List) {
-            ((List) value).add(page);
+            // Publish a new list as readers may be iterating the current one
+            List list = new ArrayList((List) value);
+            list.add(page);
+            pageByClassMap.put(page.pageClass, Collections.unmodifiableList(list));
 
         } else if (value instanceof XmlConfigService.PageElm) {
             List list = new ArrayList();
             list.add(value);
             list.add(page);
-            pageByClassMap.put(page.pageClass, list);
+            pageByClassMap.put(page.pageClass, Collections.unmodifiableList(list));
 
         } else {
             // should never occur
@@ -1244,6 +1493,111 @@ public class XmlConfigService implements ConfigService, EntityResolver {
 
     // -------------------------------------------------------- Private Methods
 
+    /**
+     * Return the root element of a new DOM document of the given click.xml
+     * configuration.
+     *
+     * @param config the click.xml configuration bytes
+     * @return the root element of the configuration
+     */
+    private Element buildRootElement(byte[] config) {
+        Document document = ClickUtils.buildDocument(new ByteArrayInputStream(config), this);
+        return document.getDocumentElement();
+    }
+
+    /**
+     * Return a new executor to run the initialization stages on, or null if
+     * the stages should be run sequentially.
+     * <p/>
+     * The number of threads defaults to the number of available processors,
+     * up to 4, and can be set with the system property
+     * <tt>click.init.threads</tt>. The stages are run sequentially if the
+     * number of threads is 1, or on Google App Engine which does not allow
+     * applications to create threads.
+     *
+     * @return the initialization executor, or null to run stages sequentially
+     */
+    private ExecutorService createInitExecutor() {
+        int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+        String threadsValue = System.getProperty(INIT_THREADS_PROPERTY);
+        if (StringUtils.isNotBlank(threadsValue)) {
+            try {
+                threads = Integer.parseInt(threadsValue.trim());
+            } catch (NumberFormatException nfe) {
+                logService.error("invalid " + INIT_THREADS_PROPERTY + " value: '"
+                    + threadsValue + "' - defaulted to " + threads);
+            }
+        }
+
+        if (threads <= 1 || onGoogleAppEngine) {
+            initThreads = 1;
+            return null;
+        }
+        initThreads = threads;
+
+        // Threads inherit the context classloader of the init thread
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "click-init-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Run the named initialization stage on the init executor, or on the
+     * current thread if there is no executor, and record the time it takes.
+     *
+     * @param name the stage name
+     * @param stage the stage to run
+     * @return the future result of the stage
+     */
+    private Future<Object> submitInitStage(final String name, final Callable<Object> stage) {
+        FutureTask<Object> future = new FutureTask<Object>(new Callable<Object>() {
+            public Object call() throws Exception {
+                long startTime = System.currentTimeMillis();
+                try {
+                    return stage.call();
+                } finally {
+                    initStageTimes.put(name, Long.valueOf(System.currentTimeMillis() - startTime));
+                }
+            }
+        });
+
+        if (initExecutor != null) {
+            initExecutor.execute(future);
+        } else {
+            future.run();
+        }
+        return future;
+    }
+
+    /**
+     * Wait for the given initialization stage to complete, and rethrow the
+     * error the stage failed with.
+     *
+     * @param stage the stage to wait for
+     * @throws Exception if the stage failed
+     */
+    private void waitForInitStage(Future<Object> stage) throws Exception {
+        try {
+            stage.get();
+
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw ee;
+        }
+    }
+
     private Element getResourceRootElement(String path) throws IOException {
         Document document = null;
         InputStream inputStream = null;
@@ -1382,24 +1736,88 @@ public class XmlConfigService implements ConfigService, EntityResolver {
         // directory "META-INF/resources/", and deploy those resources
         String resourceDirectory = "META-INF/resources";
 
+        // The prefix of each resource to deploy, keyed on the deployed
+        // resource name. The first resource found for a name is deployed
+        final Map<String, String> resourcePrefixes = new LinkedHashMap<String, String>();
+
         List<String> resources = new DeployUtils(logService).findResources(resourceDirectory).getResources();
-        for (String resource : resources) {
-            deployFile(resource, resourceDirectory);
-        }
+        addDeployableResources(resources, resourceDirectory, resourcePrefixes);
 
         // For backward compatibility, find all jars and directories on the
         // classpath that contains the directory "META-INF/web/", and deploy those
         // resources
         resourceDirectory = "META-INF/web";
         resources = new DeployUtils(logService).findResources(resourceDirectory).getResources();
-        for (String resource : resources) {
-            deployFile(resource, resourceDirectory);
+        addDeployableResources(resources, resourceDirectory, resourcePrefixes);
+
+        // Deploy the resources in parallel, in one batch per init thread
+        final List<String> names = new ArrayList<String>(resourcePrefixes.keySet());
+        int batches = 1;
+        if (initExecutor != null && names.size() > 1) {
+            batches = Math.min(names.size(), initThreads);
+        }
+
+        List<Future<Object>> futures = new ArrayList<Future<Object>>(batches);
+        for (int i = 0; i < batches; i++) {
+            final int from = (names.size() * i) / batches;
+            final int to = (names.size() * (i + 1)) / batches;
+            FutureTask<Object> future = new FutureTask<Object>(new Callable<Object>() {
+                public Object call() {
+                    for (String name : names.subList(from, to)) {
+                        String prefix = resourcePrefixes.get(name);
+                        deployFile(prefix + name, prefix);
+                    }
+                    return null;
+                }
+            });
+            futures.add(future);
+
+            // Deploy the last batch on the current thread
+            if (i < batches - 1) {
+                initExecutor.execute(future);
+            } else {
+                future.run();
+            }
+        }
+
+        for (Future<Object> future : futures) {
+            try {
+                waitForInitStage(future);
+            } catch (RuntimeException re) {
+                throw re;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
         }
 
         logService.trace("deployed files from jars and folders - "
             + (System.currentTimeMillis() - startTime) + " ms");
     }
 
+    /**
+     * Add the resources found under the given resource directory to the map
+     * of resources to deploy, unless a resource with the same name was found
+     * before.
+     *
+     * @param resources the resources found under the resource directory
+     * @param prefix the resource directory
+     * @param resourcePrefixes the prefixes of the resources to deploy, keyed
+     * on the resource name
+     */
+    private void addDeployableResources(List<String> resources, String prefix,
+        Map<String, String> resourcePrefixes) {
+
+        for (String resource : resources) {
+            // Only deploy resources containing the prefix
+            if (resource.indexOf(prefix) == 0) {
+                String name = resource.substring(prefix.length());
+                if (!resourcePrefixes.containsKey(name)) {
+                    resourcePrefixes.put(name, prefix);
+                }
+            }
+        }
+    }
+
     /**
      * Deploy the specified file.
      *
@@ -1432,6 +1850,56 @@ public class XmlConfigService implements ConfigService, EntityResolver {
         }
     }
 
+    /**
+     * Return the PageElm for the given path, or for its matching JSP path,
+     * or null if the path is not mapped.
+     *
+     * @param path the page path
+     * @return the PageElm for the given path or null if not mapped
+     */
+    private PageElm getPageElm(String path) {
+        PageElm page = (PageElm) pageByPathMap.get(path);
+        if (page == null) {
+            String jspPath = StringUtils.replace(path, ".htm", ".jsp");
+            page = (PageElm) pageByPathMap.get(jspPath);
+        }
+        return page;
+    }
+
+    /**
+     * Return true if the given path was recently found not to map to a page.
+     * Expired entries are removed so that templates added while the
+     * application is running will still be auto mapped.
+     *
+     * @param path the page path
+     * @return true if the path is cached as not mapping to a page
+     */
+    private boolean isUnmappedPath(String path) {
+        Long cachedTime = unmappedPathMap.get(path);
+        if (cachedTime == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - cachedTime.longValue() < UNMAPPED_PATH_CACHE_TIMEOUT) {
+            return true;
+        }
+        unmappedPathMap.remove(path);
+        return false;
+    }
+
+    /**
+     * Add the given path to the unmapped path cache. The cache is cleared
+     * when it reaches {@link #UNMAPPED_PATH_CACHE_SIZE} entries to bound its
+     * memory usage.
+     *
+     * @param path the path which does not map to a page
+     */
+    private void addUnmappedPath(String path) {
+        if (unmappedPathMap.size() >= UNMAPPED_PATH_CACHE_SIZE) {
+            unmappedPathMap.clear();
+        }
+        unmappedPathMap.put(path, Long.valueOf(System.currentTimeMillis()));
+    }
+
     private void loadMode(Element rootElm) {
         Element modeElm = ClickUtils.getChild(rootElm, "mode");
 
@@ -1625,6 +2093,120 @@ public class XmlConfigService implements ConfigService, EntityResolver {
         messagesMapService.onInit(servletContext);
     }
 
+    private void loadStateCodecService(Element rootElm) throws Exception {
+        Element stateCodecServiceElm = ClickUtils.getChild(rootElm, "state-codec-service");
+
+        StateCodecService codecService = null;
+
+        if (stateCodecServiceElm != null) {
+            Class stateCodecServiceClass = CompactStateCodecService.class;
+
+            String classname = stateCodecServiceElm.getAttribute("classname");
+
+            if (StringUtils.isNotBlank(classname)) {
+                stateCodecServiceClass = ClickUtils.classForName(classname);
+            }
+
+            codecService = (StateCodecService) stateCodecServiceClass.newInstance();
+
+            Map<String, String> propertyMap = loadPropertyMap(stateCodecServiceElm);
+
+            for (String name : propertyMap.keySet()) {
+                String value = propertyMap.get(name).toString();
+
+                getPropertyService().setValue(codecService, name, value);
+            }
+        } else {
+            codecService = new CompactStateCodecService();
+        }
+
+        if (getLogService().isDebugEnabled()) {
+            String msg = "initializing StateCodecService: "
+                + codecService.getClass().getName();
+            getLogService().debug(msg);
+        }
+
+        codecService.onInit(servletContext);
+
+        stateCodecService = codecService;
+    }
+
+    private void loadPageStateService(Element rootElm) throws Exception {
+        Element pageStateServiceElm = ClickUtils.getChild(rootElm, "page-state-service");
+
+        PageStateService stateService = null;
+
+        if (pageStateServiceElm != null) {
+            Class pageStateServiceClass = SessionPageStateService.class;
+
+            String classname = pageStateServiceElm.getAttribute("classname");
+
+            if (StringUtils.isNotBlank(classname)) {
+                pageStateServiceClass = ClickUtils.classForName(classname);
+            }
+
+            stateService = (PageStateService) pageStateServiceClass.newInstance();
+
+            Map<String, String> propertyMap = loadPropertyMap(pageStateServiceElm);
+
+            for (String name : propertyMap.keySet()) {
+                String value = propertyMap.get(name).toString();
+
+                getPropertyService().setValue(stateService, name, value);
+            }
+        } else {
+            stateService = new SessionPageStateService();
+        }
+
+        if (getLogService().isDebugEnabled()) {
+            String msg = "initializing PageStateService: "
+                + stateService.getClass().getName();
+            getLogService().debug(msg);
+        }
+
+        stateService.onInit(servletContext);
+
+        pageStateService = stateService;
+    }
+
+    private void loadMetricsService(Element rootElm) throws Exception {
+        Element metricsServiceElm = ClickUtils.getChild(rootElm, "metrics-service");
+
+        MetricsService service = null;
+
+        if (metricsServiceElm != null) {
+            Class metricsServiceClass = HistogramMetricsService.class;
+
+            String classname = metricsServiceElm.getAttribute("classname");
+
+            if (StringUtils.isNotBlank(classname)) {
+                metricsServiceClass = ClickUtils.classForName(classname);
+            }
+
+            service = (MetricsService) metricsServiceClass.newInstance();
+
+            Map<String, String> propertyMap = loadPropertyMap(metricsServiceElm);
+
+            for (String name : propertyMap.keySet()) {
+                String value = propertyMap.get(name).toString();
+
+                getPropertyService().setValue(service, name, value);
+            }
+        } else {
+            service = new HistogramMetricsService();
+        }
+
+        if (getLogService().isDebugEnabled()) {
+            String msg = "initializing MetricsService: "
+                + service.getClass().getName();
+            getLogService().debug(msg);
+        }
+
+        service.onInit(servletContext);
+
+        metricsService = service;
+    }
+
     private void loadPageInterceptors(Element rootElm) throws Exception {
         List<Element> interceptorList =
             ClickUtils.getChildren(rootElm, "page-interceptor");
@@ -1827,6 +2409,105 @@ public class XmlConfigService implements ConfigService, EntityResolver {
         return fileList;
     }
 
+    /**
+     * Return the page index generated with the application, or null if the
+     * application does not include a page index or the index cannot be read.
+     *
+     * @return the application page index, or null if not available
+     */
+    /**
+     * Scan the web application for templates and throw an exception if any
+     * template is not in the page index.
+     *
+     * @throws RuntimeException if the page index is out of date
+     */
+    private void verifyPageIndex() {
+        List<String> unindexedTemplates = new ArrayList<String>();
+        for (Object template : getTemplateFiles()) {
+            if (!pageIndex.containsTemplate(template.toString())) {
+                unindexedTemplates.add(template.toString());
+            }
+        }
+
+        if (!unindexedTemplates.isEmpty()) {
+            String msg = "page index " + PageIndex.PAGE_INDEX_PATH
+                + " is out of date, templates are not indexed: "
+                + unindexedTemplates;
+            throw new RuntimeException(msg);
+        }
+    }
+
+    private PageIndex loadPageIndex() {
+        InputStream inputStream =
+            servletContext.getResourceAsStream(PageIndex.PAGE_INDEX_PATH);
+
+        if (inputStream == null) {
+            return null;
+        }
+
+        try {
+            PageIndex index = PageIndex.load(inputStream);
+
+            if (logService.isDebugEnabled()) {
+                logService.debug("loaded page index " + PageIndex.PAGE_INDEX_PATH
+                    + " - " + index.getTemplates().size() + " templates");
+            }
+            return index;
+
+        } catch (IOException ioe) {
+            logService.error("could not load page index "
+                + PageIndex.PAGE_INDEX_PATH + ", scanning for templates", ioe);
+            return null;
+
+        } finally {
+            ClickUtils.close(inputStream);
+        }
+    }
+
+    /**
+     * Return the page class listed in the page index for the specified
+     * pagePath and automapped className, or null if the index lists no
+     * matching class. The class name is also matched with the
+     * <tt>"Page"</tt> suffix.
+     *
+     * @param pagePath the page path
+     * @param className the automapped page class name
+     * @return the indexed page class, or null if no class is indexed
+     */
+    private Class<? extends Page> getIndexedPageClass(String pagePath, String className) {
+        String indexedClassName = null;
+        if (pageIndex.containsPageClass(pagePath, className)) {
+            indexedClassName = className;
+
+        } else if (!className.endsWith("Page")
+            && pageIndex.containsPageClass(pagePath, className + "Page")) {
+            indexedClassName = className + "Page";
+        }
+
+        if (indexedClassName == null) {
+            if (logService.isDebugEnabled()) {
+                logService.debug(pagePath + " -> CLASS NOT FOUND");
+            }
+            return null;
+        }
+
+        Class pageClass = null;
+        try {
+            pageClass = ClickUtils.classForName(indexedClassName);
+
+        } catch (ClassNotFoundException cnfe) {
+            logService.warn("page index class not found: " + indexedClassName);
+            return null;
+        }
+
+        if (!Page.class.isAssignableFrom(pageClass)) {
+            String msg = "Automapped page class " + indexedClassName
+                         + " is not a subclass of org.apache.click.Page";
+            throw new RuntimeException(msg);
+        }
+        return pageClass;
+    }
+
     private void processDirectory(String dirPath, List fileList) {
         Set resources = servletContext.getResourcePaths(dirPath);
 
@@ -18,30 +18,110 @@
  */
 package org.apache.click.util;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * Provides a classloader object map cache keyed on the current threads
  * classloader.
+ * <p/>
+ * The cache is read without locking: entries are held in a copy-on-write
+ * array which is replaced when a value is put, and the entry last read is
+ * remembered so the common case of a single application classloader is a
+ * single identity comparison. Classloaders are referenced weakly, so the
+ * cache does not prevent a redeployed application classloader from being
+ * garbage collected. Entries of collected classloaders are removed when the
+ * next value is put, or when a value is not found.
+ * <p/>
+ * Note the cached values are referenced strongly, so a value which refers to
+ * classes loaded by its classloader keeps that classloader reachable. The
+ * <tt>ClickServlet</tt> therefore calls {@link #removeAll()} when it is
+ * destroyed, removing the values of the application classloader from every
+ * cache.
  *
  * @param <E> the class to cache against the current threads classloader
  */
 public class ClassLoaderCache<E> {
 
-    // The cache map keyed by classloader
-    private Map<ClassLoader, E> classLoaderMap
-        = Collections.synchronizedMap(new HashMap<ClassLoader, E>());
+    // The empty entry array
+    private static final Entry<?>[] EMPTY_ENTRIES = new Entry<?>[0];
+
+    // The caches created, referenced weakly
+    private static final List<WeakReference<ClassLoaderCache<?>>> CACHES =
+        new ArrayList<WeakReference<ClassLoaderCache<?>>>();
+
+    // The cache entries, replaced on each put
+    private volatile Entry<?>[] entries = EMPTY_ENTRIES;
+
+    // The entry last read or put
+    private volatile Entry<E> lastEntry;
+
+    /**
+     * Create a new classloader cache.
+     */
+    public ClassLoaderCache() {
+        synchronized (CACHES) {
+            CACHES.add(new WeakReference<ClassLoaderCache<?>>(this));
+        }
+    }
+
+    // --------------------------------------------------------- Static Methods
+
+    /**
+     * Remove the cached values of the current thread classloader from every
+     * classloader cache. This method is invoked when the application is
+     * destroyed, so the cached values do not keep the application classloader
+     * reachable.
+     */
+    public static void removeAll() {
+        synchronized (CACHES) {
+            for (Iterator<WeakReference<ClassLoaderCache<?>>> it = CACHES.iterator(); it.hasNext();) {
+                ClassLoaderCache<?> cache = it.next().get();
+                if (cache == null) {
+                    it.remove();
+                } else {
+                    cache.remove();
+                }
+            }
+        }
+    }
+
+    // --------------------------------------------------------- Public Methods
 
     /**
      * Return the cached variable for the current thread classloader.
      *
      * @return the cached variable for the current thread classloader.
      */
+    @SuppressWarnings("unchecked")
     public E get() {
-         ClassLoader cl = Thread.currentThread().getContextClassLoader();
-         return classLoaderMap.get(cl);
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+
+        Entry<E> entry = lastEntry;
+        if (entry != null && entry.matches(cl)) {
+            return entry.value;
+        }
+
+        Entry<?>[] currentEntries = entries;
+        for (int i = 0; i < currentEntries.length; i++) {
+            entry = (Entry<E>) currentEntries[i];
+            if (entry.matches(cl)) {
+                lastEntry = entry;
+                return entry.value;
+            }
+        }
+
+        // Remove the entries of collected classloaders
+        for (int i = 0; i < currentEntries.length; i++) {
+            if (currentEntries[i].isCleared()) {
+                removeEntries(null, false);
+                break;
+            }
+        }
+
+        return null;
     }
 
     /**
@@ -50,15 +130,134 @@ public class ClassLoaderCache<E> {
      * @param e the cached variable for the current thread classloader.
      */
     public void put(E e) {
-         ClassLoader cl = Thread.currentThread().getContextClassLoader();
-         classLoaderMap.put(cl, e);
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        Entry<E> entry = new Entry<E>(cl, e);
+
+        synchronized (this) {
+            Entry<?>[] currentEntries = entries;
+            Entry<?>[] newEntries = new Entry<?>[currentEntries.length + 1];
+
+            // Copy the live entries of other classloaders
+            int count = 0;
+            for (int i = 0; i < currentEntries.length; i++) {
+                Entry<?> current = currentEntries[i];
+                if (!current.isCleared() && !current.matches(cl)) {
+                    newEntries[count++] = current;
+                }
+            }
+            newEntries[count++] = entry;
+
+            entries = trimEntries(newEntries, count);
+            lastEntry = entry;
+        }
+    }
+
+    /**
+     * Remove the cached variable of the current thread classloader.
+     */
+    public void remove() {
+        removeEntries(Thread.currentThread().getContextClassLoader(), true);
     }
 
     /**
      * Clear the classloader map cache.
      */
-    public void clear() {
-        classLoaderMap.clear();
+    public synchronized void clear() {
+        entries = EMPTY_ENTRIES;
+        lastEntry = null;
+    }
+
+    /**
+     * Return the number of entries in the cache, including the entries of
+     * classloaders which have been garbage collected but not yet removed.
+     *
+     * @return the number of entries in the cache
+     */
+    int size() {
+        return entries.length;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Remove the entries of collected classloaders, and the entry of the
+     * given classloader if <tt>removeClassLoader</tt> is true.
+     *
+     * @param classLoader the classloader to remove the entry of
+     * @param removeClassLoader true to remove the entry of the classloader
+     */
+    private synchronized void removeEntries(ClassLoader classLoader,
+        boolean removeClassLoader) {
+
+        Entry<?>[] currentEntries = entries;
+        Entry<?>[] newEntries = new Entry<?>[currentEntries.length];
+
+        int count = 0;
+        for (int i = 0; i < currentEntries.length; i++) {
+            Entry<?> current = currentEntries[i];
+            if (!current.isCleared()
+                && !(removeClassLoader && current.matches(classLoader))) {
+                newEntries[count++] = current;
+            }
+        }
+
+        if (count == currentEntries.length) {
+            return;
+        }
+
+        entries = trimEntries(newEntries, count);
+
+        Entry<E> entry = lastEntry;
+        if (entry != null
+            && (entry.isCleared() || (removeClassLoader && entry.matches(classLoader)))) {
+            lastEntry = null;
+        }
     }
 
+    /**
+     * Return the first count entries of the given entry array.
+     *
+     * @param newEntries the entry array
+     * @param count the number of entries to return
+     * @return an array holding the first count entries
+     */
+    private static Entry<?>[] trimEntries(Entry<?>[] newEntries, int count) {
+        if (count == newEntries.length) {
+            return newEntries;
+        }
+        Entry<?>[] trimmedEntries = new Entry<?>[count];
+        System.arraycopy(newEntries, 0, trimmedEntries, 0, count);
+        return trimmedEntries;
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Provides an immutable cache entry with a weak classloader reference.
+     */
+    private static final class Entry<E> extends WeakReference<ClassLoader> {
+
+        /** True if the entry is for the null classloader. */
+        final boolean nullKey;
+
+        /** The cached value. */
+        final E value;
+
+        Entry(ClassLoader classLoader, E value) {
+            super(classLoader);
+            this.nullKey = (classLoader == null);
+            this.value = value;
+        }
+
+        boolean matches(ClassLoader classLoader) {
+            if (nullKey) {
+                return classLoader == null;
+            }
+            return classLoader != null && get() == classLoader;
+        }
+
+        boolean isCleared() {
+            return !nullKey && get() == null;
+        }
+    }
 }
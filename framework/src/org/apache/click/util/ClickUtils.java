@@ -18,18 +18,16 @@
  */
 package org.apache.click.util;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -47,7 +45,7 @@ import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 import java.util.TreeMap;
-import java.util.zip.GZIPInputStream;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletContext;
@@ -68,8 +66,13 @@ import org.apache.click.control.ActionLink;
 import org.apache.click.control.Container;
 import org.apache.click.control.Field;
 import org.apache.click.control.Form;
+import org.apache.click.control.Label;
+import org.apache.click.service.CompactStateCodecService;
 import org.apache.click.service.ConfigService;
 import org.apache.click.service.LogService;
+import org.apache.click.service.PageStateService;
+import org.apache.click.service.SessionPageStateService;
+import org.apache.click.service.StateCodecService;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
@@ -128,6 +131,18 @@ public class ClickUtils {
     /** The cached application version indicator string. */
     private static String cachedApplicationVersionIndicator;
 
+    /** The control class toString() declaring class cache. */
+    private static final ClassLoaderCache<Map<Class<?>, Class<?>>>
+        TO_STRING_CL_CACHE = new ClassLoaderCache<Map<Class<?>, Class<?>>>();
+
+    /** The state codec service used outside of a Click request. */
+    private static final StateCodecService DEFAULT_STATE_CODEC_SERVICE =
+        new CompactStateCodecService();
+
+    /** The page state service used outside of a Click request. */
+    private static final PageStateService DEFAULT_PAGE_STATE_SERVICE =
+        new SessionPageStateService();
+
     /**
      * Character used to separate username and password in persistent cookies.
      * 0x13 == "Device Control 3" non-printing ASCII char. Unlikely to appear
@@ -1575,7 +1590,8 @@ public class ClickUtils {
             // Create files deployment directory
             File directory = new File(realTargetDir);
             if (!directory.exists()) {
-                if (!directory.mkdirs()) {
+                // The directory may be created concurrently by another thread
+                if (!directory.mkdirs() && !directory.isDirectory()) {
                     String msg =
                         "could not create deployment directory: " + directory;
                     throw new IOException(msg);
@@ -1736,11 +1752,11 @@ public class ClickUtils {
 
     /**
      * Return an encoded version of the <tt>Serializable</tt> object. The object
-     * will be serialized, compressed and Base 64 encoded.
+     * will be encoded by the application {@link StateCodecService} and Base 64
+     * encoded.
      *
      * @param object the object to encode
-     * @return a serialized, compressed and Base 64 string encoding of the
-     * given object
+     * @return a Base 64 string encoding of the given object
      * @throws IOException if an I/O error occurs
      * @throws IllegalArgumentException if the object parameter is null, or if
      *      the object is not Serializable
@@ -1753,27 +1769,12 @@ public class ClickUtils {
             throw new IllegalArgumentException("parameter not Serializable");
         }
 
-        ByteArrayOutputStream bos = null;
-        GZIPOutputStream gos = null;
-        ObjectOutputStream oos = null;
-
-        try {
-            bos = new ByteArrayOutputStream();
-            gos = new GZIPOutputStream(bos);
-            oos = new ObjectOutputStream(gos);
-
-            oos.writeObject(object);
-
-        } finally {
-            close(oos);
-            close(gos);
-            close(bos);
-        }
+        byte[] encodedData = getStateCodecService().encode(object);
 
         Base64 base64 = new Base64();
 
         try {
-            byte[] byteData = base64.encode(bos.toByteArray());
+            byte[] byteData = base64.encode(encodedData);
 
             return new String(byteData);
 
@@ -1807,21 +1808,7 @@ public class ClickUtils {
             throw new IOException(message);
         }
 
-        ByteArrayInputStream bis = null;
-        GZIPInputStream gis = null;
-        ObjectInputStream ois = null;
-        try {
-            bis = new ByteArrayInputStream(byteData);
-            gis = new GZIPInputStream(bis);
-            ois = new ObjectInputStream(gis);
-
-            return ois.readObject();
-
-        } finally {
-            close(ois);
-            close(gis);
-            close(bis);
-        }
+        return getStateCodecService().decode(byteData);
     }
 
     /**
@@ -2207,6 +2194,52 @@ public class ClickUtils {
         return ret;
     }
 
+    /**
+     * Return the application StateCodecService instance using thread local
+     * Context to perform the lookup. If there is no thread local Context, or
+     * the application ConfigService has not been initialized, a default
+     * {@link CompactStateCodecService} is returned.
+     *
+     * @return the application StateCodecService instance
+     */
+    public static StateCodecService getStateCodecService() {
+        if (Context.hasThreadLocalContext()) {
+            ServletContext servletContext =
+                Context.getThreadLocalContext().getServletContext();
+            ConfigService configService = (ConfigService)
+                servletContext.getAttribute(ConfigService.CONTEXT_NAME);
+
+            if (configService != null
+                && configService.getStateCodecService() != null) {
+                return configService.getStateCodecService();
+            }
+        }
+        return DEFAULT_STATE_CODEC_SERVICE;
+    }
+
+    /**
+     * Return the application PageStateService instance using thread local
+     * Context to perform the lookup. If there is no thread local Context, or
+     * the application ConfigService has not been initialized, a default
+     * {@link SessionPageStateService} is returned.
+     *
+     * @return the application PageStateService instance
+     */
+    public static PageStateService getPageStateService() {
+        if (Context.hasThreadLocalContext()) {
+            ServletContext servletContext =
+                Context.getThreadLocalContext().getServletContext();
+            ConfigService configService = (ConfigService)
+                servletContext.getAttribute(ConfigService.CONTEXT_NAME);
+
+            if (configService != null
+                && configService.getPageStateService() != null) {
+                return configService.getPageStateService();
+            }
+        }
+        return DEFAULT_PAGE_STATE_SERVICE;
+    }
+
     /**
      * Return the application LogService instance using thread local Context
      * to perform the lookup.
@@ -2592,6 +2625,47 @@ public class ClickUtils {
         return url;
     }
 
+    /**
+     * Render the given control to the writer.
+     * <p/>
+     * If {@link #isStreamingRenderSupported(Control)} returns true the
+     * control is rendered through a {@link HtmlWriterBuffer}, which writes the
+     * markup to the writer in chunks. Otherwise the control's
+     * <tt>toString()</tt> value is written.
+     *
+     * @param control the control to render
+     * @param writer the writer to render the control to
+     * @throws IOException if an error occurs writing to the writer
+     */
+    public static void renderControl(Control control, Writer writer)
+        throws IOException {
+
+        if (control == null) {
+            throw new IllegalArgumentException("Null control parameter");
+        }
+        if (writer == null) {
+            throw new IllegalArgumentException("Null writer parameter");
+        }
+
+        if (!isStreamingRenderSupported(control)) {
+            String value = control.toString();
+            if (value != null) {
+                writer.write(value);
+            }
+            return;
+        }
+
+        // AbstractControl.toString() renders nothing for controls without a tag
+        if (getToStringDeclaringClass(control) == AbstractControl.class
+            && ((AbstractControl) control).getTag() == null) {
+            return;
+        }
+
+        HtmlWriterBuffer buffer = new HtmlWriterBuffer(writer);
+        control.render(buffer);
+        buffer.flush();
+    }
+
     /**
      * Remove the control state from the session for the given stateful control,
      * control name and request context.
@@ -2613,22 +2687,7 @@ public class ClickUtils {
         }
 
         String resourcePath = context.getResourcePath();
-        Map pageMap = ClickUtils.getPageState(resourcePath, context);
-        if (pageMap != null) {
-            Object pop = pageMap.remove(controlName);
-
-            if (pageMap.isEmpty()) {
-                // If this was the last state for the page, remove the page state map
-                context.removeSessionAttribute(resourcePath);
-            } else {
-                // Check if control state was removed
-                if (pop != null) {
-                    // If control state was removed, set session attribute to force
-                    // session replication in a cluster
-                    context.setSessionAttribute(resourcePath, pageMap);
-                }
-            }
-        }
+        getPageStateService().removeState(resourcePath, controlName, context);
     }
 
     /**
@@ -2655,9 +2714,10 @@ public class ClickUtils {
         }
 
         String resourcePath = context.getResourcePath();
-        Map pageMap = ClickUtils.getPageState(resourcePath, context);
-        if (pageMap != null) {
-            control.setState(pageMap.get(controlName));
+        if (context.hasSession()) {
+            Object state =
+                getPageStateService().getState(resourcePath, controlName, context);
+            control.setState(decodeState(state));
         }
     }
 
@@ -2667,6 +2727,12 @@ public class ClickUtils {
      * <p/>
      * * This method delegates to {@link org.apache.click.Stateful#getState()}
      * to retrieve the control state to save.
+     * <p/>
+     * The control state is stored encoded by the application
+     * {@link StateCodecService}, which reduces the size of the session for
+     * session replication. State which cannot be encoded is stored as is.
+     * The state is stored by the application {@link PageStateService}, which
+     * only writes the state back when it is modified.
      *
      * @param control the stateful control which state to save
      * @param controlName the name of the control control which state to save
@@ -2685,22 +2751,11 @@ public class ClickUtils {
         }
 
         String resourcePath = context.getResourcePath();
-        Map pageMap = getOrCreatePageState(resourcePath, context);
         Object state = control.getState();
-        if (state == null) {
-            // Set null state to see if it differs from previous state
-            Object pop = pageMap.put(controlName, state);
-            if (pop != null) {
-                // Previous state differs from current state, so set the
-                // session attribute to force session replication in a cluster
-                context.setSessionAttribute(resourcePath, pageMap);
-            }
-        } else {
-            pageMap.put(controlName, state);
-            // After control state has been added to the page state, set the
-            // session attribute to force session replication in a cluster
-            context.setSessionAttribute(resourcePath, pageMap);
+        if (state != null) {
+            state = encodeState(state);
         }
+        getPageStateService().saveState(resourcePath, controlName, state, context);
     }
 
     /**
@@ -2924,6 +2979,35 @@ public class ClickUtils {
         }
     }
 
+    /**
+     * Return true if the given control can be rendered directly to a writer
+     * with {@link #renderControl(Control, Writer)}, producing the same markup
+     * as its <tt>toString()</tt> method.
+     * <p/>
+     * This is true for controls whose <tt>toString()</tt> method is provided
+     * by a Click framework or extras control class, which renders the control
+     * to a new HtmlStringBuffer. Controls which override <tt>toString()</tt> in
+     * application code are rendered through their <tt>toString()</tt> method.
+     *
+     * @param control the control to check
+     * @return true if the control can be rendered directly to a writer
+     */
+    public static boolean isStreamingRenderSupported(Control control) {
+        if (control == null) {
+            throw new IllegalArgumentException("Null control parameter");
+        }
+
+        Class<?> declaringClass = getToStringDeclaringClass(control);
+
+        if (declaringClass == Object.class || declaringClass == Label.class) {
+            return false;
+        }
+
+        String className = declaringClass.getName();
+        return className.startsWith("org.apache.click.control.")
+            || className.startsWith("org.apache.click.extras.");
+    }
+
     // -------------------------------------------------------- Package Methods
 
     /**
@@ -3087,6 +3171,35 @@ public class ClickUtils {
 
     // -------------------------------------------------------- Private Methods
 
+    /**
+     * Return the class declaring the toString() method of the given control.
+     *
+     * @param control the control
+     * @return the class declaring the control's toString() method
+     */
+    private static Class<?> getToStringDeclaringClass(Control control) {
+        Map<Class<?>, Class<?>> cache = TO_STRING_CL_CACHE.get();
+        if (cache == null) {
+            cache = new ConcurrentHashMap<Class<?>, Class<?>>();
+            TO_STRING_CL_CACHE.put(cache);
+        }
+
+        Class<?> controlClass = control.getClass();
+        Class<?> declaringClass = cache.get(controlClass);
+        if (declaringClass == null) {
+            try {
+                declaringClass =
+                    controlClass.getMethod("toString").getDeclaringClass();
+
+            } catch (NoSuchMethodException nsme) {
+                declaringClass = Object.class;
+            }
+            cache.put(controlClass, declaringClass);
+        }
+
+        return declaringClass;
+    }
+
     /**
      * A helper method that binds the submitted request values of all Fields
      * and Links inside the given container or child containers.
@@ -3267,39 +3380,39 @@ public class ClickUtils {
     }
 
     /**
-     * Retrieve or create the map where page state is stored in.
-     *
-     * @see #getPageState(java.lang.String, org.apache.click.Context)
+     * Return the encoded control state to store in the session, or the given
+     * state if it cannot be encoded.
      *
-     * @param pagePath the path under which the page state is stored in the
-     * session
-     * @param context the request context
-     * @return the map where page state is stored in
+     * @param state the control state to encode
+     * @return the encoded control state
      */
-    private static Map getOrCreatePageState(String pagePath, Context context) {
-                Map pageMap = getPageState(pagePath, context);
-        if (pageMap == null) {
-            pageMap = new HashMap();
+    private static Object encodeState(Object state) {
+        try {
+            return getStateCodecService().encode(state);
+
+        } catch (IOException ioe) {
+            // State which is not serializable is stored as is
+            return state;
         }
-        return pageMap;
     }
 
     /**
-     * Retrieve the map for the given pagePath from the session where page state
-     * is stored in.
+     * Return the control state decoded from the given session value.
      *
-     * @param pagePath the path under which the page state is stored in the
-     * session
-     * @param context the request context
-     * @return the map where page state is stored in
+     * @param value the control state stored in the session
+     * @return the decoded control state
      */
-    private static Map getPageState(String pagePath, Context context) {
-        Object storedPageValue = context.getSessionAttribute(pagePath);
-        Map pageMap = null;
-        if (storedPageValue != null) {
-            pageMap = (Map) storedPageValue;
+    private static Object decodeState(Object value) {
+        if (!(value instanceof byte[])) {
+            return value;
+        }
+
+        try {
+            return getStateCodecService().decode((byte[]) value);
+
+        } catch (Exception e) {
+            throw new RuntimeException("error occurred decoding control state", e);
         }
-        return pageMap;
     }
 
     /**
@@ -20,10 +20,8 @@ package org.apache.click.util;
 
 import java.io.Serializable;
 import java.text.DateFormat;
-import java.text.DecimalFormat;
 import java.text.MessageFormat;
 import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -75,6 +73,10 @@ import org.apache.commons.lang.StringUtils;
  * <p/>
  * When subclassing Format ensure it is light weight object, as a new format
  * object will be created for every new Page.
+ * <p/>
+ * The date, number and message formats used by this class are obtained from
+ * the {@link FormatRegistry}, so formatting a value does not create a new
+ * <tt>java.text</tt> format object for each call.
  *
  * @see PageImports
  */
@@ -140,7 +142,7 @@ public class Format implements Serializable {
      */
     public String currency(Number number) {
         if (number != null) {
-            NumberFormat format = NumberFormat.getCurrencyInstance(getLocale());
+            NumberFormat format = FormatRegistry.getCurrencyInstance(getLocale());
 
             return format.format(number.doubleValue());
 
@@ -156,7 +158,7 @@ public class Format implements Serializable {
      */
     public String currentDate() {
         DateFormat format =
-            DateFormat.getDateInstance(DateFormat.DEFAULT, getLocale());
+            FormatRegistry.getDateInstance(DateFormat.DEFAULT, getLocale());
 
         return format.format(new Date());
     }
@@ -175,8 +177,7 @@ public class Format implements Serializable {
             throw new IllegalArgumentException("Null pattern parameter");
         }
 
-        SimpleDateFormat format =
-            new SimpleDateFormat(pattern, getLocale());
+        DateFormat format = FormatRegistry.getDateFormat(pattern, getLocale());
 
         return format.format(new Date());
     }
@@ -305,8 +306,7 @@ public class Format implements Serializable {
                 throw new IllegalArgumentException("Null pattern parameter");
             }
 
-            SimpleDateFormat format =
-                new SimpleDateFormat(pattern, getLocale());
+            DateFormat format = FormatRegistry.getDateFormat(pattern, getLocale());
 
             return format.format(date);
 
@@ -328,7 +328,7 @@ public class Format implements Serializable {
     public String date(Date date) {
         if (date != null) {
             DateFormat format =
-                DateFormat.getDateInstance(DateFormat.DEFAULT, getLocale());
+                FormatRegistry.getDateInstance(DateFormat.DEFAULT, getLocale());
 
             return format.format(date);
 
@@ -442,7 +442,7 @@ public class Format implements Serializable {
                 pattern = pattern.replace('N', '#');
             }
 
-            DecimalFormat format = new DecimalFormat(pattern);
+            NumberFormat format = FormatRegistry.getDecimalFormat(pattern);
 
             return format.format(number.doubleValue());
 
@@ -462,7 +462,7 @@ public class Format implements Serializable {
      */
     public String decimal(Number number) {
         if (number != null) {
-            DecimalFormat format = new DecimalFormat();
+            NumberFormat format = FormatRegistry.getDecimalFormat(null);
 
             return format.format(number.doubleValue());
 
@@ -748,7 +748,7 @@ public class Format implements Serializable {
      * @return the formatted string
      */
     public String message(String pattern, Object[] arguments) {
-        MessageFormat format = new MessageFormat(pattern, getLocale());
+        MessageFormat format = FormatRegistry.getMessageFormat(pattern, getLocale());
         return format.format(arguments, new StringBuffer(), null).toString();
     }
 
@@ -776,7 +776,7 @@ public class Format implements Serializable {
      */
     public String percentage(Number number) {
         if (number != null) {
-            NumberFormat format = NumberFormat.getPercentInstance(getLocale());
+            NumberFormat format = FormatRegistry.getPercentInstance(getLocale());
 
             return format.format(number.doubleValue());
 
@@ -798,7 +798,7 @@ public class Format implements Serializable {
     public String time(Date date) {
         if (date != null) {
             DateFormat format =
-                DateFormat.getTimeInstance(DateFormat.DEFAULT, getLocale());
+                FormatRegistry.getTimeInstance(DateFormat.DEFAULT, getLocale());
 
             return format.format(date);
 
@@ -0,0 +1,480 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.util;
+
+import java.text.DateFormat;
+import java.text.DecimalFormat;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Provides a registry of cached date, number and message formats keyed on
+ * the format type, pattern and locale, shared by {@link Format},
+ * {@link org.apache.click.control.Column} and the extras DateField.
+ * <p/>
+ * The <tt>java.text</tt> formats are expensive to create, as the pattern is
+ * parsed and the locale symbols are loaded, and they are not thread safe. The
+ * registry creates a single prototype format for each key, and gives each
+ * thread its own clone of the prototype. For example:
+ *
+ * <pre class="codeJava">
+ * DateFormat format = FormatRegistry.getDateFormat(<span class="st">"dd MMM yyyy"</span>, locale);
+ * <span class="kw">return</span> format.format(date); </pre>
+ *
+ * The formats returned by the <tt>get</tt> methods are confined to the
+ * calling thread and are reused by later calls on the same thread. They must
+ * not be modified, shared with other threads or retained. Use the
+ * <tt>new</tt> methods to obtain a format which is owned by the caller, for
+ * example a format held by a control.
+ * <p/>
+ * The thread formats are held in maps per format type, locale and pattern, so
+ * a format is found without creating a key. Each thread caches at most
+ * {@link #MAX_THREAD_FORMATS} formats per format type and locale, for at most
+ * {@link #MAX_THREAD_LOCALES} locales per format type, and evicts the least
+ * recently used format or locale when a limit is reached. Only JDK classes
+ * are held in the thread local, so the cache does not keep the application
+ * classloader reachable from container threads after the application is
+ * undeployed.
+ * <p/>
+ * The registry hit and miss counts are available from {@link #getHitCount()}
+ * and {@link #getMissCount()}. A hit is a format found in the calling
+ * thread's cache. The counts are striped over threads, so counting a hit does
+ * not contend with other threads, and are summed when read.
+ */
+public final class FormatRegistry {
+
+    // -------------------------------------------------------------- Constants
+
+    /**
+     * The maximum number of formats cached per thread for each format type and
+     * locale: &nbsp; <tt>64</tt>.
+     */
+    public static final int MAX_THREAD_FORMATS = 64;
+
+    /**
+     * The maximum number of locales cached per thread for each format type:
+     * &nbsp; <tt>8</tt>.
+     */
+    public static final int MAX_THREAD_LOCALES = 8;
+
+    /**
+     * The maximum number of prototype formats: &nbsp; <tt>1024</tt>. Formats
+     * of further keys are created but not cached.
+     */
+    public static final int MAX_PROTOTYPES = 1024;
+
+    /** The date format type. */
+    private static final int DATE = 0;
+
+    /** The date style format type. */
+    private static final int DATE_STYLE = 1;
+
+    /** The time style format type. */
+    private static final int TIME_STYLE = 2;
+
+    /** The decimal format type. */
+    private static final int DECIMAL = 3;
+
+    /** The currency format type. */
+    private static final int CURRENCY = 4;
+
+    /** The percent format type. */
+    private static final int PERCENT = 5;
+
+    /** The message format type. */
+    private static final int MESSAGE = 6;
+
+    /** The number of format types. */
+    private static final int TYPE_COUNT = 7;
+
+    /** The patterns of the <tt>DateFormat</tt> styles, FULL to SHORT. */
+    private static final String[] STYLE_PATTERNS = {"0", "1", "2", "3"};
+
+    /** The prototype formats keyed on type, locale and pattern. */
+    private static final Map<String, java.text.Format> PROTOTYPES =
+        new ConcurrentHashMap<String, java.text.Format>();
+
+    /**
+     * The thread confined formats indexed by format type, and keyed on locale
+     * and pattern.
+     */
+    private static final ThreadLocal<List<Map<Locale, Map<String, java.text.Format>>>> THREAD_FORMATS =
+        new ThreadLocal<List<Map<Locale, Map<String, java.text.Format>>>>();
+
+    /** The number of formats found in the thread cache. */
+    private static final StripedCounter HIT_COUNT = new StripedCounter();
+
+    /** The number of formats not found in the thread cache. */
+    private static final StripedCounter MISS_COUNT = new StripedCounter();
+
+    // ----------------------------------------------------------- Constructors
+
+    private FormatRegistry() {
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Return the thread confined SimpleDateFormat for the given pattern and
+     * locale.
+     *
+     * @param pattern the SimpleDateFormat pattern
+     * @param locale the format locale
+     * @return the thread confined date format
+     * @throws IllegalArgumentException if the pattern is null
+     */
+    public static DateFormat getDateFormat(String pattern, Locale locale) {
+        checkPattern(pattern);
+        return (DateFormat) getFormat(DATE, pattern, locale);
+    }
+
+    /**
+     * Return a new SimpleDateFormat for the given pattern and locale, which is
+     * owned by the caller.
+     *
+     * @param pattern the SimpleDateFormat pattern
+     * @param locale the format locale
+     * @return a new date format
+     * @throws IllegalArgumentException if the pattern is null
+     */
+    public static SimpleDateFormat newDateFormat(String pattern, Locale locale) {
+        checkPattern(pattern);
+        return (SimpleDateFormat) newFormat(DATE, pattern, locale);
+    }
+
+    /**
+     * Return the thread confined date format for the given
+     * <tt>DateFormat</tt> style and locale.
+     *
+     * @see DateFormat#getDateInstance(int, Locale)
+     *
+     * @param style the DateFormat style, e.g. <tt>DateFormat.DEFAULT</tt>
+     * @param locale the format locale
+     * @return the thread confined date format
+     */
+    public static DateFormat getDateInstance(int style, Locale locale) {
+        return (DateFormat) getFormat(DATE_STYLE, getStylePattern(style), locale);
+    }
+
+    /**
+     * Return the thread confined time format for the given
+     * <tt>DateFormat</tt> style and locale.
+     *
+     * @see DateFormat#getTimeInstance(int, Locale)
+     *
+     * @param style the DateFormat style, e.g. <tt>DateFormat.DEFAULT</tt>
+     * @param locale the format locale
+     * @return the thread confined time format
+     */
+    public static DateFormat getTimeInstance(int style, Locale locale) {
+        return (DateFormat) getFormat(TIME_STYLE, getStylePattern(style), locale);
+    }
+
+    /**
+     * Return the thread confined DecimalFormat for the given pattern and the
+     * default locale, or the default DecimalFormat if the pattern is null.
+     *
+     * @param pattern the DecimalFormat pattern, or null for the default pattern
+     * @return the thread confined decimal format
+     */
+    public static NumberFormat getDecimalFormat(String pattern) {
+        return (NumberFormat) getFormat(DECIMAL, pattern, Locale.getDefault());
+    }
+
+    /**
+     * Return the thread confined currency format for the given locale.
+     *
+     * @see NumberFormat#getCurrencyInstance(Locale)
+     *
+     * @param locale the format locale
+     * @return the thread confined currency format
+     */
+    public static NumberFormat getCurrencyInstance(Locale locale) {
+        return (NumberFormat) getFormat(CURRENCY, null, locale);
+    }
+
+    /**
+     * Return the thread confined percent format for the given locale.
+     *
+     * @see NumberFormat#getPercentInstance(Locale)
+     *
+     * @param locale the format locale
+     * @return the thread confined percent format
+     */
+    public static NumberFormat getPercentInstance(Locale locale) {
+        return (NumberFormat) getFormat(PERCENT, null, locale);
+    }
+
+    /**
+     * Return the thread confined MessageFormat for the given pattern and
+     * locale.
+     *
+     * @param pattern the MessageFormat pattern
+     * @param locale the format locale
+     * @return the thread confined message format
+     * @throws IllegalArgumentException if the pattern is null
+     */
+    public static MessageFormat getMessageFormat(String pattern, Locale locale) {
+        checkPattern(pattern);
+        return (MessageFormat) getFormat(MESSAGE, pattern, locale);
+    }
+
+    /**
+     * Return a new MessageFormat for the given pattern and locale, which is
+     * owned by the caller.
+     *
+     * @param pattern the MessageFormat pattern
+     * @param locale the format locale
+     * @return a new message format
+     * @throws IllegalArgumentException if the pattern is null
+     */
+    public static MessageFormat newMessageFormat(String pattern, Locale locale) {
+        checkPattern(pattern);
+        return (MessageFormat) newFormat(MESSAGE, pattern, locale);
+    }
+
+    /**
+     * Return the number of formats found in the calling thread's cache.
+     *
+     * @return the number of format cache hits
+     */
+    public static long getHitCount() {
+        return HIT_COUNT.sum();
+    }
+
+    /**
+     * Return the number of formats not found in the calling thread's cache,
+     * which were cloned from a prototype or created.
+     *
+     * @return the number of format cache misses
+     */
+    public static long getMissCount() {
+        return MISS_COUNT.sum();
+    }
+
+    /**
+     * Clear the prototype formats, the calling thread's formats and the hit
+     * and miss counts. The formats cached by other threads are not cleared.
+     */
+    public static void clear() {
+        PROTOTYPES.clear();
+        THREAD_FORMATS.remove();
+        HIT_COUNT.reset();
+        MISS_COUNT.reset();
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    private static java.text.Format getFormat(int type, String pattern,
+        Locale locale) {
+
+        List<Map<Locale, Map<String, java.text.Format>>> typeFormats =
+            THREAD_FORMATS.get();
+        if (typeFormats == null) {
+            typeFormats = new ArrayList<Map<Locale, Map<String, java.text.Format>>>(TYPE_COUNT);
+            for (int i = 0; i < TYPE_COUNT; i++) {
+                typeFormats.add(new LinkedHashMap<Locale, Map<String, java.text.Format>>(4, 0.75f, true));
+            }
+            THREAD_FORMATS.set(typeFormats);
+        }
+
+        Map<Locale, Map<String, java.text.Format>> localeFormats = typeFormats.get(type);
+        Map<String, java.text.Format> formats = localeFormats.get(locale);
+        if (formats != null) {
+            java.text.Format format = formats.get(pattern);
+            if (format != null) {
+                HIT_COUNT.increment();
+                return format;
+            }
+
+        } else {
+            removeEldest(localeFormats, MAX_THREAD_LOCALES);
+            formats = new LinkedHashMap<String, java.text.Format>(16, 0.75f, true);
+            localeFormats.put(locale, formats);
+        }
+
+        MISS_COUNT.increment();
+
+        java.text.Format format =
+            newFormat(createKey(type, pattern, locale), type, pattern, locale);
+
+        removeEldest(formats, MAX_THREAD_FORMATS);
+        formats.put(pattern, format);
+
+        return format;
+    }
+
+    /**
+     * Remove the least recently used entry of the given access ordered map if
+     * the map holds the given maximum number of entries.
+     */
+    private static void removeEldest(Map<?, ?> map, int maxSize) {
+        if (map.size() >= maxSize) {
+            Iterator<?> iterator = map.keySet().iterator();
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static String getStylePattern(int style) {
+        if (style >= 0 && style < STYLE_PATTERNS.length) {
+            return STYLE_PATTERNS[style];
+        }
+        return String.valueOf(style);
+    }
+
+    private static java.text.Format newFormat(int type, String pattern,
+        Locale locale) {
+
+        return newFormat(createKey(type, pattern, locale), type, pattern, locale);
+    }
+
+    private static java.text.Format newFormat(String key, int type,
+        String pattern, Locale locale) {
+
+        java.text.Format prototype = PROTOTYPES.get(key);
+        if (prototype == null) {
+            prototype = createFormat(type, pattern, locale);
+            if (PROTOTYPES.size() < MAX_PROTOTYPES) {
+                PROTOTYPES.put(key, prototype);
+            }
+        }
+
+        // Cloning a prototype avoids parsing the pattern and loading the
+        // locale symbols again
+        return (java.text.Format) prototype.clone();
+    }
+
+    private static java.text.Format createFormat(int type, String pattern,
+        Locale locale) {
+
+        if (type == DATE) {
+            return new SimpleDateFormat(pattern, locale);
+
+        } else if (type == DATE_STYLE) {
+            return DateFormat.getDateInstance(Integer.parseInt(pattern), locale);
+
+        } else if (type == TIME_STYLE) {
+            return DateFormat.getTimeInstance(Integer.parseInt(pattern), locale);
+
+        } else if (type == DECIMAL) {
+            if (pattern == null) {
+                return new DecimalFormat();
+            }
+            return new DecimalFormat(pattern);
+
+        } else if (type == CURRENCY) {
+            return NumberFormat.getCurrencyInstance(locale);
+
+        } else if (type == PERCENT) {
+            return NumberFormat.getPercentInstance(locale);
+
+        } else if (type == MESSAGE) {
+            return new MessageFormat(pattern, locale);
+
+        } else {
+            throw new IllegalArgumentException("Unknown format type: " + type);
+        }
+    }
+
+    private static String createKey(int type, String pattern, Locale locale) {
+        HtmlStringBuffer buffer = new HtmlStringBuffer(
+            (pattern != null ? pattern.length() : 0) + 16);
+        buffer.append(type);
+        buffer.append('\u0000');
+        buffer.append(locale);
+        buffer.append('\u0000');
+        if (pattern != null) {
+            buffer.append(pattern);
+        }
+        return buffer.toString();
+    }
+
+    private static void checkPattern(String pattern) {
+        if (pattern == null) {
+            throw new IllegalArgumentException("Null pattern parameter");
+        }
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Provides a counter striped over threads, so that threads incrementing
+     * the counter concurrently do not contend on a single value. The stripes
+     * are summed when the counter is read.
+     */
+    private static final class StripedCounter {
+
+        /** The number of longs between stripes, to keep stripes on separate cache lines. */
+        private static final int PADDING = 8;
+
+        private final int mask;
+
+        private final AtomicLongArray stripes;
+
+        StripedCounter() {
+            int processors = Runtime.getRuntime().availableProcessors();
+            int count = 1;
+            while (count < processors * 2 && count < 64) {
+                count <<= 1;
+            }
+
+            mask = count - 1;
+            stripes = new AtomicLongArray(count * PADDING);
+        }
+
+        /**
+         * Increment the stripe of the calling thread.
+         */
+        void increment() {
+            long id = Thread.currentThread().getId();
+            int index = (int) ((id ^ (id >>> 16)) & mask);
+            stripes.incrementAndGet(index * PADDING);
+        }
+
+        /**
+         * Return the sum of the stripes.
+         */
+        long sum() {
+            long sum = 0;
+            for (int i = 0, size = stripes.length(); i < size; i += PADDING) {
+                sum += stripes.get(i);
+            }
+            return sum;
+        }
+
+        /**
+         * Reset the stripes to zero.
+         */
+        void reset() {
+            for (int i = 0, size = stripes.length(); i < size; i += PADDING) {
+                stripes.set(i, 0);
+            }
+        }
+    }
+}
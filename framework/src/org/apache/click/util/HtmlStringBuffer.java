@@ -49,6 +49,9 @@ import java.util.Map;
  * To improve performance in Click's thread safe environment this
  * class does not synchronize append operations. Internally this class uses
  * a character buffer adapted from the JDK 1.5 <tt>AbstractStringBuilder</tt>.
+ * <p/>
+ * Buffers which are only used to render a String can be obtained from the
+ * thread local {@link HtmlStringBufferPool}, to reuse their character arrays.
  */
 public class HtmlStringBuffer {
 
@@ -90,6 +93,15 @@ public class HtmlStringBuffer {
         characters = new char[128];
     }
 
+    /**
+     * Create a new HTML StringBuffer using the given character storage array.
+     *
+     * @param characters the character storage array
+     */
+    HtmlStringBuffer(char[] characters) {
+        this.characters = characters;
+    }
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -159,7 +171,7 @@ public class HtmlStringBuffer {
             expandCapacity(newCount);
         }
         string.getChars(0, length, characters, count);
-        count = newCount;
+        count += length;
 
         return this;
     }
@@ -179,7 +191,7 @@ public class HtmlStringBuffer {
             expandCapacity(newCount);
         }
         string.getChars(0, length, characters, count);
-        count = newCount;
+        count += length;
 
         return this;
     }
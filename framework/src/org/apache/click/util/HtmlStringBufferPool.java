@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.util;
+
+/**
+ * Provides a thread local pool of HtmlStringBuffer character arrays, to
+ * reduce the allocation of short lived buffers when rendering controls to a
+ * String.
+ * <p/>
+ * A buffer acquired from the pool must be released once its content has been
+ * copied, and must not be used after it is released. For example:
+ *
+ * <pre class="codeJava">
+ * <span class="kw">public</span> String toString() {
+ *     HtmlStringBuffer buffer = HtmlStringBufferPool.acquire(getControlSizeEst());
+ *     <span class="kw">try</span> {
+ *         render(buffer);
+ *         <span class="kw">return</span> buffer.toString();
+ *
+ *     } <span class="kw">finally</span> {
+ *         HtmlStringBufferPool.release(buffer);
+ *     }
+ * } </pre>
+ *
+ * Each thread keeps at most {@link #MAX_POOL_SIZE} character arrays of at
+ * most {@link #MAX_BUFFER_CAPACITY} characters. Larger buffers are left to
+ * the garbage collector. Only the character arrays are held in the thread
+ * local, so the pool does not keep the application classloader reachable
+ * from container threads after the application is undeployed.
+ */
+public final class HtmlStringBufferPool {
+
+    // -------------------------------------------------------------- Constants
+
+    /** The maximum number of pooled buffers per thread: &nbsp; <tt>4</tt>. */
+    public static final int MAX_POOL_SIZE = 4;
+
+    /**
+     * The maximum capacity in characters of a pooled buffer: &nbsp;
+     * <tt>16384</tt>.
+     */
+    public static final int MAX_BUFFER_CAPACITY = 16 * 1024;
+
+    /** The empty character array of released buffers. */
+    private static final char[] EMPTY_CHARACTERS = new char[0];
+
+    /** The thread local stack of pooled character arrays. */
+    private static final ThreadLocal<char[][]> POOL = new ThreadLocal<char[][]>();
+
+    // ----------------------------------------------------------- Constructors
+
+    private HtmlStringBufferPool() {
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Return an empty HtmlStringBuffer with at least the specified capacity,
+     * reusing a pooled character array of the current thread if available.
+     *
+     * @param length the minimum initial capacity
+     * @return an empty HtmlStringBuffer
+     */
+    public static HtmlStringBuffer acquire(int length) {
+        char[][] pool = POOL.get();
+        if (pool != null) {
+            for (int i = 0; i < pool.length; i++) {
+                char[] characters = pool[i];
+                if (characters != null && characters.length >= length) {
+                    pool[i] = null;
+                    return new HtmlStringBuffer(characters);
+                }
+            }
+        }
+
+        return new HtmlStringBuffer(Math.max(length, 16));
+    }
+
+    /**
+     * Return the character array of the given buffer to the current thread's
+     * pool. If the pool is full the array replaces the smallest pooled array,
+     * if it is larger. The buffer is emptied and detached from the character array, so
+     * a buffer used after it is released does not corrupt a pooled array.
+     * Buffers which are not plain HtmlStringBuffer instances are ignored.
+     *
+     * @param buffer the buffer to release
+     */
+    public static void release(HtmlStringBuffer buffer) {
+        if (buffer == null || buffer.getClass() != HtmlStringBuffer.class) {
+            return;
+        }
+
+        char[] characters = buffer.characters;
+        buffer.characters = EMPTY_CHARACTERS;
+        buffer.count = 0;
+
+        if (characters.length == 0 || characters.length > MAX_BUFFER_CAPACITY) {
+            return;
+        }
+
+        char[][] pool = POOL.get();
+        if (pool == null) {
+            pool = new char[MAX_POOL_SIZE][];
+            POOL.set(pool);
+        }
+
+        // Use a free slot, or replace the smallest pooled array
+        int index = 0;
+        for (int i = 0; i < pool.length; i++) {
+            if (pool[i] == null) {
+                pool[i] = characters;
+                return;
+            }
+            if (pool[i].length < pool[index].length) {
+                index = i;
+            }
+        }
+        if (pool[index].length < characters.length) {
+            pool[index] = characters;
+        }
+    }
+}
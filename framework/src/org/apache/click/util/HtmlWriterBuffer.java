@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Provides a HtmlStringBuffer which writes its content to a <tt>Writer</tt>
+ * in fixed size chunks, rather than growing its character buffer. Rendering a
+ * control to a HtmlWriterBuffer uses a bounded amount of memory regardless
+ * of the size of the control's markup.
+ * <p/>
+ * For example:
+ * <pre class="codeJava">
+ * HtmlWriterBuffer buffer = <span class="kw">new</span> HtmlWriterBuffer(writer);
+ * table.render(buffer);
+ * buffer.flush(); </pre>
+ *
+ * The buffered characters are only written to the writer when the chunk is
+ * full or {@link #flush()} is called, so {@link #toString()} returns only the
+ * characters not yet written.
+ * <p/>
+ * As the HtmlStringBuffer append methods do not throw <tt>IOException</tt>,
+ * an error writing to the writer is recorded and the remaining content is
+ * discarded. The error is thrown by the next call to {@link #flush()}.
+ *
+ * <h4>Synchronization</h4>
+ *
+ * Like HtmlStringBuffer this class does not synchronize append operations.
+ */
+public class HtmlWriterBuffer extends HtmlStringBuffer {
+
+    // -------------------------------------------------------------- Constants
+
+    /** The default chunk size in characters: &nbsp; <tt>4096</tt>. */
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    // ----------------------------------------------------- Instance Variables
+
+    /** The writer the buffer content is written to. */
+    protected final Writer writer;
+
+    /** The number of characters written to the writer. */
+    protected int writtenCount;
+
+    /** The error which occurred writing to the writer. */
+    protected IOException ioException;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Create a new HtmlWriterBuffer for the given writer, with the specified
+     * chunk size.
+     *
+     * @param writer the writer to write the buffer content to
+     * @param chunkSize the number of characters buffered before writing to
+     * the writer
+     */
+    public HtmlWriterBuffer(Writer writer, int chunkSize) {
+        super(chunkSize);
+        if (writer == null) {
+            throw new IllegalArgumentException("Null writer parameter");
+        }
+        this.writer = writer;
+    }
+
+    /**
+     * Create a new HtmlWriterBuffer for the given writer, with the default
+     * chunk size of 4096 characters.
+     *
+     * @param writer the writer to write the buffer content to
+     */
+    public HtmlWriterBuffer(Writer writer) {
+        this(writer, DEFAULT_CHUNK_SIZE);
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Write the buffered characters to the writer. This method does not flush
+     * the underlying writer.
+     *
+     * @throws IOException if an error occurred writing to the writer
+     */
+    public void flush() throws IOException {
+        writeChunk();
+
+        if (ioException != null) {
+            throw ioException;
+        }
+    }
+
+    /**
+     * Return the number of characters appended to the buffer, including the
+     * characters written to the writer.
+     *
+     * @return the number of characters appended to the buffer
+     */
+    @Override
+    public int length() {
+        return writtenCount + count;
+    }
+
+    // ------------------------------------------------------ Protected Methods
+
+    /**
+     * Write the buffered characters to the writer to make room for the
+     * specified minimum number of characters. The character buffer is only
+     * expanded if a single append is larger than the chunk size.
+     *
+     * @param minimumCapacity the minimum desired capacity
+     */
+    @Override
+    protected void expandCapacity(int minimumCapacity) {
+        int required = minimumCapacity - count;
+
+        writeChunk();
+
+        if (required > characters.length) {
+            super.expandCapacity(required);
+        }
+    }
+
+    /**
+     * Write the buffered characters to the writer and reset the buffer.
+     */
+    protected void writeChunk() {
+        if (count == 0) {
+            return;
+        }
+
+        if (ioException == null) {
+            try {
+                writer.write(characters, 0, count);
+
+            } catch (IOException ioe) {
+                ioException = ioe;
+            }
+        }
+
+        writtenCount += count;
+        count = 0;
+    }
+}
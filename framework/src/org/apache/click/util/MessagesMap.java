@@ -31,7 +31,11 @@ import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import javax.servlet.ServletContext;
 
@@ -77,7 +81,17 @@ public class MessagesMap implements Map<String, String> {
     protected static final ClassLoaderCache<Map<CacheKey, Map<String, String>>> MESSAGES_CLASSLOADER_CACHE
         = new ClassLoaderCache<Map<CacheKey, Map<String, String>>>();
 
-    /** The cache key set load lock. */
+    /** The messages being loaded, with support for multiple class loaders. */
+    private static final ClassLoaderCache<ConcurrentMap<CacheKey, FutureTask<Map<String, String>>>> LOADS_CLASSLOADER_CACHE
+        = new ClassLoaderCache<ConcurrentMap<CacheKey, FutureTask<Map<String, String>>>>();
+
+    /**
+     * The cache key set load lock.
+     *
+     * @deprecated messages are loaded once per cache key without a global
+     * lock, this lock is no longer used
+     */
+    @Deprecated
     protected static final Object CACHE_LOAD_LOCK = new Object();
 
     // ----------------------------------------------------- Instance Variables
@@ -294,8 +308,9 @@ public class MessagesMap implements Map<String, String> {
      * This method initializes and populates the internal{@link #messages} map
      * and cache {@link #getMessagesCache()} if it is not already initialized.
      * <p/>
-     * <b>Please Note:</b> populating the cache {@link #getMessagesCache()} is not thread safe
-     * and access to the cache must be properly synchronized.
+     * In production and profile modes the messages of a cache key are loaded
+     * only once. Concurrent requests for the same cache key wait for the load
+     * in progress, while messages of other cache keys are loaded in parallel.
      */
     protected void ensureInitialized() {
         if (messages == null) {
@@ -303,43 +318,75 @@ public class MessagesMap implements Map<String, String> {
             CacheKey resourceKey = new CacheKey(globalBaseName,
                 baseClass.getName(), locale.toString());
 
-            messages = getMessagesCache().get(resourceKey);
+            Map<CacheKey, Map<String, String>> messagesCache = getMessagesCache();
+
+            messages = messagesCache.get(resourceKey);
 
             if (messages != null) {
                 return;
             }
 
-            messages = new HashMap<String, String>();
+            if (!isCacheEnabled()) {
+                messages = loadMessages();
+                return;
+            }
 
-            synchronized (CACHE_LOAD_LOCK) {
+            ConcurrentMap<CacheKey, FutureTask<Map<String, String>>> loads = getLoads();
 
-                loadResourceValuesIntoMap(globalBaseName, messages);
+            FutureTask<Map<String, String>> load =
+                new FutureTask<Map<String, String>>(new Callable<Map<String, String>>() {
+                    public Map<String, String> call() {
+                        return loadMessages();
+                    }
+                });
 
-                List<String> classnameList = new ArrayList<String>();
+            FutureTask<Map<String, String>> existingLoad = loads.putIfAbsent(resourceKey, load);
+            if (existingLoad == null) {
+                try {
+                    load.run();
+                    messages = getLoadResult(load);
+                    messagesCache.put(resourceKey, messages);
 
-                // Build class list
-                Class<?> aClass = baseClass;
-                while (!aClass.getName().equals("java.lang.Object")) {
-                    classnameList.add(aClass.getName());
-                    aClass = aClass.getSuperclass();
+                } finally {
+                    loads.remove(resourceKey, load);
                 }
 
-                // Load messages from parent to child order, so that child
-                // class messages override parent messages.
-                for (int i = classnameList.size() - 1; i >= 0; i--) {
-                    String className = classnameList.get(i);
-                    loadResourceValuesIntoMap(className, messages);
-                }
+            } else {
+                messages = getLoadResult(existingLoad);
+            }
+        }
+    }
+
+    /**
+     * Return a new unmodifiable map of the global resource bundle messages and
+     * the messages of the base class hierarchy resource bundles. Messages of a
+     * class override the messages of its super classes and the global
+     * messages.
+     *
+     * @return the map of the global and base class hierarchy messages
+     */
+    protected Map<String, String> loadMessages() {
+        Map<String, String> map = new HashMap<String, String>();
 
-                messages = Collections.unmodifiableMap(messages);
+        loadResourceValuesIntoMap(globalBaseName, map);
 
-                ServletContext servletContext = Context.getThreadLocalContext().getServletContext();
-                ConfigService configService = ClickUtils.getConfigService(servletContext);
-                if (configService.isProductionMode() || configService.isProfileMode()) {
-                    getMessagesCache().put(resourceKey, messages);
-                }
-            }
+        List<String> classnameList = new ArrayList<String>();
+
+        // Build class list
+        Class<?> aClass = baseClass;
+        while (!aClass.getName().equals("java.lang.Object")) {
+            classnameList.add(aClass.getName());
+            aClass = aClass.getSuperclass();
         }
+
+        // Load messages from parent to child order, so that child
+        // class messages override parent messages.
+        for (int i = classnameList.size() - 1; i >= 0; i--) {
+            String className = classnameList.get(i);
+            loadResourceValuesIntoMap(className, map);
+        }
+
+        return Collections.unmodifiableMap(map);
     }
 
     /**
@@ -372,12 +419,38 @@ public class MessagesMap implements Map<String, String> {
         }
     }
 
+    // Package Private Methods ------------------------------------------------
+
+    /**
+     * Return the map of localized messages, loading the messages if they are
+     * not loaded yet.
+     *
+     * @return the map of localized messages
+     */
+    Map<String, String> getMessageTable() {
+        ensureInitialized();
+        return messages;
+    }
+
+    /**
+     * Return true if loaded messages are cached, which is the case in
+     * production and profile modes.
+     *
+     * @return true if loaded messages are cached
+     */
+    static boolean isCacheEnabled() {
+        ServletContext servletContext = Context.getThreadLocalContext().getServletContext();
+        ConfigService configService = ClickUtils.getConfigService(servletContext);
+        return configService.isProductionMode() || configService.isProfileMode();
+    }
+
     // Private Methods --------------------------------------------------------
 
     protected static Set<String> getNotFoundCache() {
         Set<String> notFoundCache = NOT_FOUND_CLASSLOADER_CACHE.get();
         if (notFoundCache == null) {
-            notFoundCache = new HashSet<String>();
+            // Messages of different cache keys are loaded concurrently
+            notFoundCache = Collections.synchronizedSet(new HashSet<String>());
             NOT_FOUND_CLASSLOADER_CACHE.put(notFoundCache);
         }
 
@@ -394,6 +467,36 @@ public class MessagesMap implements Map<String, String> {
         return messagesCache;
     }
 
+    private static ConcurrentMap<CacheKey, FutureTask<Map<String, String>>> getLoads() {
+        ConcurrentMap<CacheKey, FutureTask<Map<String, String>>> loads =
+            LOADS_CLASSLOADER_CACHE.get();
+        if (loads == null) {
+            loads = new ConcurrentHashMap<CacheKey, FutureTask<Map<String, String>>>();
+            LOADS_CLASSLOADER_CACHE.put(loads);
+        }
+
+        return loads;
+    }
+
+    private static Map<String, String> getLoadResult(FutureTask<Map<String, String>> load) {
+        try {
+            return load.get();
+
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted loading messages", ie);
+
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
     /**
      * See DRY Performance article by Kirk Pepperdine.
      * <p/>
@@ -410,6 +513,9 @@ public class MessagesMap implements Map<String, String> {
         /** Locale to encapsulate in cache key. */
         private final String locale;
 
+        /** The precomputed hash code of the cache key. */
+        private final int hashCode;
+
         /**
          * Constructs a new CacheKey for the given baseName, baseClass and
          * locale.
@@ -431,6 +537,9 @@ public class MessagesMap implements Map<String, String> {
             this.globalBaseName = globalBaseName;
             this.baseClass = baseClass;
             this.locale = locale;
+            this.hashCode = globalBaseName.hashCode()
+                * 31 + baseClass.hashCode()
+                * 31 + locale.hashCode();
         }
 
         /**
@@ -472,9 +581,7 @@ public class MessagesMap implements Map<String, String> {
          */
         @Override
         public final int hashCode() {
-            return globalBaseName.hashCode()
-                * 31 + baseClass.hashCode()
-                * 31 + locale.hashCode();
+            return hashCode;
         }
     }
 }
@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.click.Control;
+import org.apache.click.Page;
+
+/**
+ * Provides flattened message tables for resolving control messages with a
+ * single lookup.
+ * <p/>
+ * A control message is resolved from the messages of the control's parent
+ * hierarchy, see {@link ClickUtils#getParentMessage(Control, String)}, and then
+ * from the control's own messages. The table returned by
+ * {@link #getMessages(Control)} combines the messages of the control, its
+ * parent controls and its parent page into one map, where messages of the
+ * top level parent override messages of lower level parents, and parent
+ * messages override the control's own messages.
+ * <p/>
+ * In production and profile modes the tables are cached per parent hierarchy
+ * of message classes and locale, so for example all the fields of a form on a
+ * page share the same table. The table of an initialized control is in turn
+ * kept by {@link org.apache.click.control.AbstractControl}, so a control
+ * message is resolved with a single map lookup.
+ */
+public final class MessagesResolver {
+
+    /** The cache of message tables, with support for multiple class loaders. */
+    private static final ClassLoaderCache<ConcurrentMap<TableKey, Map<String, String>>> TABLE_CLASSLOADER_CACHE
+        = new ClassLoaderCache<ConcurrentMap<TableKey, Map<String, String>>>();
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Prevent instantiation.
+     */
+    private MessagesResolver() {
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Return the flattened messages of the given control and its parent
+     * hierarchy, or null if the messages of the control or one of its parents
+     * are not provided by a {@link MessagesMap}. The returned map is
+     * unmodifiable and returns null for messages which are not found.
+     *
+     * @param control the control to return the flattened messages of
+     * @return the flattened messages of the control and its parent hierarchy,
+     * or null if the messages cannot be flattened
+     */
+    public static Map<String, String> getMessages(Control control) {
+        if (control == null) {
+            throw new IllegalArgumentException("Null control parameter");
+        }
+
+        // Collect the messages maps from the control to its top level parent
+        List<MessagesMap> chain = new ArrayList<MessagesMap>(4);
+        if (!addMessages(chain, control.getMessages())) {
+            return null;
+        }
+
+        Object parent = control.getParent();
+        while (parent != null) {
+            if (parent instanceof Control) {
+                Control parentControl = (Control) parent;
+                if (!addMessages(chain, parentControl.getMessages())) {
+                    return null;
+                }
+                parent = parentControl.getParent();
+
+            } else if (parent instanceof Page) {
+                if (!addMessages(chain, ((Page) parent).getMessages())) {
+                    return null;
+                }
+                parent = null;
+
+            } else {
+                // Parent messages are not used below an unknown parent class
+                chain.subList(1, chain.size()).clear();
+                parent = null;
+            }
+        }
+
+        if (!MessagesMap.isCacheEnabled()) {
+            return createTable(chain);
+        }
+
+        ConcurrentMap<TableKey, Map<String, String>> tableCache = getTableCache();
+        TableKey key = new TableKey(chain);
+
+        Map<String, String> table = tableCache.get(key);
+        if (table == null) {
+            table = createTable(chain);
+            tableCache.put(key, table);
+        }
+        return table;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    private static boolean addMessages(List<MessagesMap> chain, Map<String, String> messages) {
+        // Only MessagesMap instances are known to resolve messages from their
+        // base class and global resource bundle
+        if (messages == null || messages.getClass() != MessagesMap.class) {
+            return false;
+        }
+        chain.add((MessagesMap) messages);
+        return true;
+    }
+
+    private static Map<String, String> createTable(List<MessagesMap> chain) {
+        Map<String, String> table = new HashMap<String, String>();
+
+        // Higher level parents override the messages of lower levels
+        for (MessagesMap messages : chain) {
+            table.putAll(messages.getMessageTable());
+        }
+
+        return Collections.unmodifiableMap(table);
+    }
+
+    private static ConcurrentMap<TableKey, Map<String, String>> getTableCache() {
+        ConcurrentMap<TableKey, Map<String, String>> tableCache =
+            TABLE_CLASSLOADER_CACHE.get();
+        if (tableCache == null) {
+            tableCache = new ConcurrentHashMap<TableKey, Map<String, String>>();
+            TABLE_CLASSLOADER_CACHE.put(tableCache);
+        }
+        return tableCache;
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Identifies a message table by the base classes, global resource names
+     * and locales of the messages maps it is built from.
+     */
+    private static class TableKey {
+
+        /** The base classes of the messages maps. */
+        private final Class<?>[] baseClasses;
+
+        /** The global resource names of the messages maps. */
+        private final String[] globalBaseNames;
+
+        /** The locales of the messages maps. */
+        private final Locale[] locales;
+
+        /** The precomputed hash code of the key. */
+        private final int hashCode;
+
+        /**
+         * Create a key for the given messages maps.
+         *
+         * @param chain the messages maps the table is built from
+         */
+        TableKey(List<MessagesMap> chain) {
+            int size = chain.size();
+            baseClasses = new Class<?>[size];
+            globalBaseNames = new String[size];
+            locales = new Locale[size];
+
+            int hash = size;
+            for (int i = 0; i < size; i++) {
+                MessagesMap messages = chain.get(i);
+                baseClasses[i] = messages.baseClass;
+                globalBaseNames[i] = messages.globalBaseName;
+                locales[i] = messages.locale;
+
+                hash = hash * 31 + baseClasses[i].hashCode();
+                hash = hash * 31 + (globalBaseNames[i] != null ? globalBaseNames[i].hashCode() : 0);
+                hash = hash * 31 + (locales[i] != null ? locales[i].hashCode() : 0);
+            }
+            hashCode = hash;
+        }
+
+        /**
+         * @see Object#equals(Object)
+         *
+         * @param o the object with which to compare this instance with
+         * @return true if the specified object is the same as this object
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TableKey)) {
+                return false;
+            }
+
+            TableKey that = (TableKey) o;
+
+            return hashCode == that.hashCode
+                && Arrays.equals(baseClasses, that.baseClasses)
+                && Arrays.equals(globalBaseNames, that.globalBaseNames)
+                && Arrays.equals(locales, that.locales);
+        }
+
+        /**
+         * @see Object#hashCode()
+         *
+         * @return a hash code value for this object.
+         */
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
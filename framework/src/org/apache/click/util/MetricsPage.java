@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.click.Page;
+import org.apache.click.service.MetricsService;
+
+/**
+ * Provides a Page which writes the request metrics recorded by the application
+ * {@link MetricsService} in a plain text format, see
+ * {@link MetricsService#writeMetrics(Writer)}.
+ * <p/>
+ * To view the request metrics map the MetricsPage to a page path in your
+ * <tt>click.xml</tt> configuration file:
+ *
+ * <pre class="codeConfig">
+ * &lt;pages&gt;
+ *     &lt;page path="<span class="blue">click/metrics.htm</span>" classname="<span class="red">org.apache.click.util.MetricsPage</span>"/&gt;
+ * &lt;/pages&gt; </pre>
+ *
+ * The request metrics include the page paths of the application, so the page
+ * path should be protected, for example with a security constraint in the
+ * <tt>web.xml</tt> file, or by overriding {@link #onSecurityCheck()}.
+ */
+public class MetricsPage extends Page {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Return the content type of the metrics: &nbsp;
+     * "<tt>text/plain</tt>".
+     *
+     * @see Page#getContentType()
+     *
+     * @return the content type of the metrics
+     */
+    @Override
+    public String getContentType() {
+        return "text/plain";
+    }
+
+    /**
+     * Write the request metrics to the response.
+     *
+     * @see Page#onGet()
+     */
+    @Override
+    public void onGet() {
+        MetricsService metricsService =
+            ClickUtils.getConfigService().getMetricsService();
+
+        HttpServletResponse response = getContext().getResponse();
+        response.setContentType(getContentType());
+        response.setCharacterEncoding("UTF-8");
+
+        try {
+            Writer writer = response.getWriter();
+            metricsService.writeMetrics(writer);
+            writer.flush();
+
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        // Set path to null to indicate the response was written
+        setPath(null);
+    }
+}
@@ -544,12 +544,17 @@ public class PageImports {
         @Override
         public String toString() {
             processPageControls();
-            HtmlStringBuffer buffer = new HtmlStringBuffer(
+            HtmlStringBuffer buffer = HtmlStringBufferPool.acquire(
                 80 * cssImports.size()
                 + 80 * cssStyles.size()
                 + 80 * headElements.size());
-            PageImports.this.renderHeadElements(buffer);
-            return buffer.toString();
+            try {
+                PageImports.this.renderHeadElements(buffer);
+                return buffer.toString();
+
+            } finally {
+                HtmlStringBufferPool.release(buffer);
+            }
         }
     }
 
@@ -569,13 +574,18 @@ public class PageImports {
         @Override
         public String toString() {
             processPageControls();
-            HtmlStringBuffer buffer = new HtmlStringBuffer(
+            HtmlStringBuffer buffer = HtmlStringBufferPool.acquire(
                 80 * jsImports.size()
                 + 80 * jsScripts.size()
                 + 80 * cssImports.size()
                 + 80 * cssStyles.size());
-            PageImports.this.renderAllIncludes(buffer);
-            return buffer.toString();
+            try {
+                PageImports.this.renderAllIncludes(buffer);
+                return buffer.toString();
+
+            } finally {
+                HtmlStringBufferPool.release(buffer);
+            }
         }
     }
 
@@ -593,11 +603,15 @@ public class PageImports {
         @Override
         public String toString() {
             processPageControls();
-            HtmlStringBuffer buffer = new HtmlStringBuffer(
+            HtmlStringBuffer buffer = HtmlStringBufferPool.acquire(
                 80 * jsImports.size() + 80 * jsScripts.size());
+            try {
+                PageImports.this.renderJsElements(buffer);
+                return buffer.toString();
 
-            PageImports.this.renderJsElements(buffer);
-            return buffer.toString();
+            } finally {
+                HtmlStringBufferPool.release(buffer);
+            }
         }
     }
 
@@ -617,11 +631,15 @@ public class PageImports {
         @Override
         public String toString() {
             processPageControls();
-            HtmlStringBuffer buffer = new HtmlStringBuffer(
+            HtmlStringBuffer buffer = HtmlStringBufferPool.acquire(
                 80 * cssImports.size() + 80 * cssStyles.size());
+            try {
+                PageImports.this.renderCssElements(buffer);
+                return buffer.toString();
 
-            PageImports.this.renderCssElements(buffer);
-            return buffer.toString();
+            } finally {
+                HtmlStringBufferPool.release(buffer);
+            }
         }
     }
 }
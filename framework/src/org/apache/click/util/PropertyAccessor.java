@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.util;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provides a compiled property getter for a property path, for example
+ * <tt>"customer.address.city"</tt>.
+ * <p/>
+ * The property path is split into its segments once, when the accessor is
+ * created. Each segment caches the getter method resolved for each class it
+ * is invoked on, and checks the class of the last object it was invoked on
+ * first. Evaluating the path therefore does no string processing or method
+ * lookup, and only does a map lookup when the class of an object in the path
+ * changes, for example for rows of different subclasses.
+ * <p/>
+ * The getter method for a segment named <tt>"name"</tt> is resolved in the
+ * order <tt>getName()</tt>, <tt>isName()</tt> and <tt>name()</tt>. If an
+ * object in the path is a <tt>Map</tt>, the value for the remaining path is
+ * looked up as a key in the map.
+ * <p/>
+ * PropertyAccessor instances are thread-safe and are intended to be cached,
+ * see {@link PropertyUtils#getValue(Object, String)}.
+ */
+public final class PropertyAccessor {
+
+    // -------------------------------------------------------- Variables
+
+    /** The property path. */
+    private final String path;
+
+    /** The property path segments. */
+    private final Segment[] segments;
+
+    // ------------------------------------------------------ Constructor
+
+    /**
+     * Create a new PropertyAccessor for the given property path.
+     *
+     * @param path the property path, with segments separated by a period
+     */
+    public PropertyAccessor(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Null path parameter");
+        }
+        this.path = path;
+
+        int count = 1;
+        for (int i = 0; i < path.length(); i++) {
+            if (path.charAt(i) == '.') {
+                count++;
+            }
+        }
+
+        segments = new Segment[count];
+
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = path.indexOf('.', start);
+            if (end == -1) {
+                end = path.length();
+            }
+            segments[i] = new Segment(path.substring(start, end), path.substring(start));
+            start = end + 1;
+        }
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Return the property path of this accessor.
+     *
+     * @return the property path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Return the value of the property path for the given source object.
+     * If an object in the path is null, this method returns null.
+     *
+     * @param source the source object
+     * @return the value of the property path for the given source object
+     * @throws RuntimeException if a getter method is not found or the getter
+     * method throws an exception
+     */
+    public Object getValue(Object source) {
+        if (source == null) {
+            throw new IllegalArgumentException("Null source parameter");
+        }
+
+        Object value = source;
+        for (int i = 0; i < segments.length; i++) {
+            Segment segment = segments[i];
+
+            if (value instanceof Map) {
+                return ((Map) value).get(segment.remainingPath);
+            }
+
+            value = segment.getValue(value);
+
+            if (value == null) {
+                return null;
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Return the public no argument getter method for the given property name
+     * on the given class, or null if no getter method is found.
+     *
+     * @param type the class to find the getter method on
+     * @param name the property name
+     * @return the getter method or null if not found
+     */
+    public static Method findGetterMethod(Class<?> type, String name) {
+        String getterName = ClickUtils.toGetterName(name);
+        String isGetterName = ClickUtils.toIsGetterName(name);
+
+        Method getter = null;
+        Method isGetter = null;
+        Method nameGetter = null;
+
+        Method[] methods = type.getMethods();
+        for (int i = 0; i < methods.length; i++) {
+            Method method = methods[i];
+            if (method.getParameterTypes().length != 0) {
+                continue;
+            }
+
+            String methodName = method.getName();
+            if (methodName.equals(getterName)) {
+                getter = method;
+                break;
+            } else if (methodName.equals(isGetterName)) {
+                isGetter = method;
+            } else if (methodName.equals(name)) {
+                nameGetter = method;
+            }
+        }
+
+        if (getter != null) {
+            return getter;
+        }
+        return (isGetter != null) ? isGetter : nameGetter;
+    }
+
+    /**
+     * @see Object#toString()
+     *
+     * @return a string representation of this accessor
+     */
+    @Override
+    public String toString() {
+        return "PropertyAccessor[" + path + "]";
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Provides a property path segment which caches the getter method for
+     * each class it is invoked on.
+     */
+    private static final class Segment {
+
+        /** The segment property name. */
+        final String name;
+
+        /** The property path from this segment to the end of the path. */
+        final String remainingPath;
+
+        /** The getter methods resolved for each class, keyed by class. */
+        final Map<Class<?>, Method> methods = new ConcurrentHashMap<Class<?>, Method>(4);
+
+        /** The getter resolved for the last class this segment was invoked on. */
+        volatile Getter getter;
+
+        Segment(String name, String remainingPath) {
+            this.name = name;
+            this.remainingPath = remainingPath;
+        }
+
+        Object getValue(Object source) {
+            Class<?> sourceClass = source.getClass();
+
+            Getter cachedGetter = getter;
+            if (cachedGetter == null || cachedGetter.type != sourceClass) {
+                Method method = methods.get(sourceClass);
+                if (method == null) {
+                    method = findGetter(sourceClass);
+                    methods.put(sourceClass, method);
+                }
+                cachedGetter = new Getter(sourceClass, method);
+                getter = cachedGetter;
+            }
+
+            try {
+                return cachedGetter.method.invoke(source);
+
+            } catch (Exception e) {
+                String msg = "Error getting property '" + name + "' from " + sourceClass;
+                throw new RuntimeException(msg, e);
+            }
+        }
+
+        private Method findGetter(Class<?> sourceClass) {
+            Method method = findGetterMethod(sourceClass, name);
+
+            if (method == null) {
+                String msg = "No matching getter method found for property '"
+                    + name + "' on class " + sourceClass.getName();
+                throw new RuntimeException(msg);
+            }
+
+            try {
+                // Skip the access check on each invocation where permitted
+                method.setAccessible(true);
+            } catch (RuntimeException re) {
+                // Ignore, the method is still invoked with an access check
+            }
+
+            return method;
+        }
+    }
+
+    /**
+     * Provides an immutable class and getter method pair.
+     */
+    private static final class Getter {
+
+        /** The class the getter method was resolved for. */
+        final Class<?> type;
+
+        /** The getter method. */
+        final Method method;
+
+        Getter(Class<?> type, Method method) {
+            this.type = type;
+            this.method = method;
+        }
+    }
+}
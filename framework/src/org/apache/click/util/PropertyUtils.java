@@ -18,7 +18,6 @@
  */
 package org.apache.click.util;
 
-import java.lang.reflect.Method;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -37,11 +36,11 @@ import org.apache.commons.lang.Validate;
 public class PropertyUtils {
 
     /**
-     * Provides a synchronized cache of get value reflection methods, with
-     * support for multiple class loaders.
+     * Provides a cache of compiled property accessors keyed on class and
+     * property path, with support for multiple class loaders.
      */
-    private static final ClassLoaderCache<Map<CacheKey, Method>> GET_METHOD_CLASSLOADER_CACHE
-        = new ClassLoaderCache<Map<CacheKey, Method>>();
+    private static final ClassLoaderCache<Map<Class<?>, Map<String, PropertyAccessor>>> ACCESSOR_CLASSLOADER_CACHE
+        = new ClassLoaderCache<Map<Class<?>, Map<String, PropertyAccessor>>>();
 
     // -------------------------------------------------------- Public Methods
 
@@ -49,8 +48,8 @@ public class PropertyUtils {
      * Return the property value for the given object and property name. This
      * method uses reflection internally to get the property value.
      * <p/>
-     * This method is thread-safe, and caches reflected accessor methods in an
-     * internal synchronized cache.
+     * This method is thread-safe, and caches a compiled {@link PropertyAccessor}
+     * for each source class and property name in an internal concurrent cache.
      * <p/>
      * If the given source object is a <tt>Map</tt> this method will simply
      * return the value for the given key name.
@@ -60,72 +59,47 @@ public class PropertyUtils {
      * @return the property value for the given source object and property name
      */
     public static Object getValue(Object source, String name) {
-        String basePart = name;
-        String remainingPart = null;
-
         if (source instanceof Map) {
             return ((Map) source).get(name);
         }
 
-        int baseIndex = name.indexOf(".");
-        if (baseIndex != -1) {
-            basePart = name.substring(0, baseIndex);
-            remainingPart = name.substring(baseIndex + 1);
-        }
-
-        Object value = getObjectPropertyValue(source, basePart, getGetMethodCache());
-
-        if (remainingPart == null || value == null) {
-            return value;
-
-        } else {
-            return getValue(value, remainingPart, getGetMethodCache());
-        }
+        return getAccessor(source, name).getValue(source);
     }
 
     /**
      * Return the property value for the given object and property name. This
      * method uses reflection internally to get the property value.
      * <p/>
-     * This method caches the reflected property methods in the given Map cache.
-     * You must NOT modify the cache. Also note cache is ONLY valid for the
-     * current thread, as access to the cache is not synchronized. If you need
-     * multi-threaded access to shared cache use a thread-safe Map object, such
-     * as <tt>Collections.synchronizedMap(new HashMap())</tt>.
+     * This method caches a compiled {@link PropertyAccessor} for the property
+     * name in the given Map cache. You must NOT modify the cache. Also note
+     * cache is ONLY valid for the current thread, as access to the cache is
+     * not synchronized. If you need multi-threaded access to shared cache use
+     * a thread-safe Map object, such as
+     * <tt>Collections.synchronizedMap(new HashMap())</tt>.
      * <p/>
      * If the given source object is a <tt>Map</tt> this method will simply
      * return the value for the given key name.
      *
      * @param source the source object
      * @param name the name of the property
-     * @param cache the cache of reflected property Method objects, do NOT modify
+     * @param cache the cache of property accessor objects, do NOT modify
      * this cache
      * @return the property value for the given source object and property name
      */
     public static Object getValue(Object source, String name, Map cache) {
         Validate.notNull(cache, "Null cache parameter");
 
-        String basePart = name;
-        String remainingPart = null;
-
         if (source instanceof Map) {
             return ((Map) source).get(name);
         }
 
-        int baseIndex = name.indexOf(".");
-        if (baseIndex != -1) {
-            basePart = name.substring(0, baseIndex);
-            remainingPart = name.substring(baseIndex + 1);
+        PropertyAccessor accessor = (PropertyAccessor) cache.get(name);
+        if (accessor == null) {
+            accessor = new PropertyAccessor(name);
+            cache.put(name, accessor);
         }
 
-        Object value = getObjectPropertyValue(source, basePart, cache);
-
-        if (remainingPart == null || value == null) {
-            return value;
-
-        } else {
-            return getValue(value, remainingPart, cache);
-        }
+        return accessor.getValue(source);
     }
 
     /**
@@ -142,65 +116,34 @@ public class PropertyUtils {
     // Private Methods --------------------------------------------------------
 
     /**
-     * Return the property value for the given object and property name. This
-     * method uses reflection internally to get the property value.
+     * Return the cached property accessor for the given source object class
+     * and property name, creating it if not already cached.
      *
      * @param source the source object
      * @param name the name of the property
-     * @param cache the cache of reflected property Method objects
-     * @return the property value for the given source object and property name
+     * @return the property accessor for the source class and property name
      */
-    private static Object getObjectPropertyValue(Object source, String name, Map cache) {
-        CacheKey methodNameKey = new CacheKey(source, name);
-
-        Method method = null;
-        try {
-            method = (Method) cache.get(methodNameKey);
-
-            if (method == null) {
-
-                method = source.getClass().getMethod(ClickUtils.toGetterName(name));
-                cache.put(methodNameKey, method);
-            }
-
-            return method.invoke(source);
-
-        } catch (NoSuchMethodException nsme) {
-
-            try {
-                method = source.getClass().getMethod(ClickUtils.toIsGetterName(name));
-                cache.put(methodNameKey, method);
-
-                return method.invoke(source);
-
-            } catch (NoSuchMethodException nsme2) {
-
-                try {
-                    method = source.getClass().getMethod(name);
-                    cache.put(methodNameKey, method);
-
-                    return method.invoke(source);
-
-                } catch (NoSuchMethodException nsme3) {
-                    String msg = "No matching getter method found for property '"
-                        + name + "' on class " + source.getClass().getName();
-
-                    throw new RuntimeException(msg);
+    private static PropertyAccessor getAccessor(Object source, String name) {
+        if (source == null) {
+            throw new IllegalArgumentException("Null source parameter");
+        }
 
-                } catch (Exception e) {
-                    String msg = "Error getting property '" + name + "' from " + source.getClass();
-                    throw new RuntimeException(msg, e);
-                }
+        Map<Class<?>, Map<String, PropertyAccessor>> accessorCache = getAccessorCache();
 
-            } catch (Exception e) {
-                String msg = "Error getting property '" + name + "' from " + source.getClass();
-                throw new RuntimeException(msg, e);
-            }
+        Class<?> sourceClass = source.getClass();
+        Map<String, PropertyAccessor> classAccessors = accessorCache.get(sourceClass);
+        if (classAccessors == null) {
+            classAccessors = new ConcurrentHashMap<String, PropertyAccessor>();
+            accessorCache.put(sourceClass, classAccessors);
+        }
 
-        } catch (Exception e) {
-            String msg = "Error getting property '" + name + "' from " + source.getClass();
-            throw new RuntimeException(msg, e);
+        PropertyAccessor accessor = classAccessors.get(name);
+        if (accessor == null) {
+            accessor = new PropertyAccessor(name);
+            classAccessors.put(name, accessor);
         }
+
+        return accessor;
     }
 
     private static PropertyService getPropertyService() {
@@ -212,14 +155,15 @@ public class PropertyUtils {
         return configService.getPropertyService();
     }
 
-    private static Map<CacheKey, Method> getGetMethodCache() {
-        Map<CacheKey, Method> getMethodCache = GET_METHOD_CLASSLOADER_CACHE.get();
-        if (getMethodCache == null) {
-            getMethodCache = new ConcurrentHashMap<CacheKey, Method>();
-            GET_METHOD_CLASSLOADER_CACHE.put(getMethodCache);
+    private static Map<Class<?>, Map<String, PropertyAccessor>> getAccessorCache() {
+        Map<Class<?>, Map<String, PropertyAccessor>> accessorCache =
+            ACCESSOR_CLASSLOADER_CACHE.get();
+        if (accessorCache == null) {
+            accessorCache = new ConcurrentHashMap<Class<?>, Map<String, PropertyAccessor>>();
+            ACCESSOR_CLASSLOADER_CACHE.put(accessorCache);
         }
 
-        return getMethodCache;
+        return accessorCache;
     }
 
     // Inner Classes ----------------------------------------------------------
@@ -228,7 +172,12 @@ public class PropertyUtils {
      * See DRY Performance article by Kirk Pepperdine.
      * <p/>
      * http://www.javaspecialists.eu/archive/Issue134.html
+     *
+     * @deprecated property methods are now cached in {@link PropertyAccessor}
+     * instances, this class is no longer used and will be removed in a future
+     * release
      */
+    @Deprecated
     public static class CacheKey {
 
         /** Class to encapsulate in cache key. */
@@ -18,11 +18,20 @@
  */
 package org.apache.click;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletResponse;
+
 import junit.framework.Assert;
 import junit.framework.TestCase;
 import org.apache.click.control.Form;
 import org.apache.click.pages.BinaryPage;
 import org.apache.click.pages.ListenerPage;
+import org.apache.click.pages.PooledPage;
+import org.apache.click.pages.StatefulPage;
+import org.apache.click.servlet.MockServletConfig;
+import org.apache.click.servlet.MockServletContext;
 
 /**
  * Provides tests for ClickServlet behavior.
@@ -61,4 +70,178 @@ public class ClickServletTest extends TestCase {
 
         container.stop();
     }
+
+    /**
+     * Check that a pooled page instance is reused by the next request, and
+     * that the submitted values, errors and bound variables of the previous
+     * request are not carried over.
+     */
+    public void testPooledPage() {
+        MockContainer container = new MockContainer("web");
+        container.start();
+        container.setParameter(Form.FORM_NAME, "form"); // Simulate form submitted
+        container.setParameter("name", "Alice");
+        // Submit an empty required field so the form is invalid
+        container.setParameter("email", "");
+        container.setParameter("number", "7");
+
+        PooledPage page = container.testPage(PooledPage.class);
+        String html = container.getHtml();
+
+        Assert.assertTrue(html.indexOf("number=7") != -1);
+        Assert.assertTrue(html.indexOf("Alice") != -1);
+        Assert.assertTrue(html.indexOf("form-errors\"") != -1);
+
+        // Assert the page was restored when it was returned to the pool
+        Assert.assertEquals(0, page.number);
+        Assert.assertEquals("", page.form.getFieldValue("name"));
+        Assert.assertEquals("edit", page.form.getFieldValue("mode"));
+        Assert.assertTrue(page.form.isValid());
+
+        container.getRequest().removeParameter(Form.FORM_NAME);
+        container.getRequest().removeParameter("name");
+        container.getRequest().removeParameter("email");
+        container.getRequest().removeParameter("number");
+
+        PooledPage nextPage = container.testPage(PooledPage.class);
+        html = container.getHtml();
+
+        Assert.assertSame(page, nextPage);
+        Assert.assertTrue(html.indexOf("Alice") == -1);
+        Assert.assertTrue(html.indexOf("number=0") != -1);
+        Assert.assertTrue(html.indexOf("form-errors\"") == -1);
+        Assert.assertTrue(html.indexOf("value=\"edit\"") != -1);
+
+        container.stop();
+    }
+
+    /**
+     * Assert requests for a busy stateful page are rejected after the
+     * timeout, and read only Ajax requests are executed against a snapshot
+     * copy of the page.
+     */
+    public void testStatefulPage() throws Exception {
+        MockContainer container = new MockContainer("web");
+        MockServletContext servletContext = new MockServletContext();
+        MockServletConfig servletConfig =
+            new MockServletConfig("click-servlet", servletContext);
+        servletConfig.addInitParameter(ClickServlet.STATEFUL_PAGE_TIMEOUT, "50");
+        servletConfig.addInitParameter(ClickServlet.STATEFUL_PAGE_SNAPSHOT, "true");
+        container.setServletContext(servletContext);
+        container.setServletConfig(servletConfig);
+        container.start();
+
+        StatefulPage page = container.testPage(StatefulPage.class);
+        Assert.assertEquals(1, page.count);
+
+        // The page is reused from the session, and unlocked after the request
+        Assert.assertSame(page, container.testPage(StatefulPage.class));
+        Assert.assertEquals(2, page.count);
+        Assert.assertFalse(StatefulPageQueue.getQueue(page).isLockedByCurrentThread());
+
+        // Hold the page from another request thread
+        final StatefulPageQueue queue = StatefulPageQueue.getQueue(page);
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread() {
+            public void run() {
+                try {
+                    queue.lock(-1, -1);
+                    locked.countDown();
+                    release.await();
+                } catch (InterruptedException e) {
+                } finally {
+                    if (queue.isLockedByCurrentThread()) {
+                        queue.unlock();
+                    }
+                }
+            }
+        };
+        holder.start();
+
+        try {
+            Assert.assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+            container.testPage(StatefulPage.class);
+            Assert.assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                container.getResponse().getCode());
+            Assert.assertEquals("1", container.getResponse().getHeader("Retry-After"));
+            Assert.assertEquals(2, page.count);
+
+            // Read only Ajax GET request is served from the page snapshot
+            String method = container.getRequest().getMethod();
+            container.getRequest().setMethod("GET");
+            container.getRequest().setHeader("X-Requested-With", "XMLHttpRequest");
+            StatefulPage copy = container.testPage(StatefulPage.class);
+            Assert.assertEquals(HttpServletResponse.SC_OK, container.getResponse().getCode());
+            Assert.assertNotSame(page, copy);
+            Assert.assertEquals(3, copy.count);
+            Assert.assertSame(page, container.getSession().getAttribute(StatefulPage.class.getName()));
+            Assert.assertEquals(2, page.count);
+
+            container.getRequest().setMethod(method);
+            container.getRequest().setHeader("X-Requested-With", (String) null);
+
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+
+        Assert.assertSame(page, container.testPage(StatefulPage.class));
+        Assert.assertEquals(3, page.count);
+
+        container.stop();
+    }
+
+    /**
+     * Check a busy stateful page created through Context.createPage() is
+     * returned without waiting and the request is not rejected.
+     */
+    public void testCreateBusyStatefulPage() throws Exception {
+        MockContainer container = new MockContainer("web");
+        MockServletContext servletContext = new MockServletContext();
+        MockServletConfig servletConfig =
+            new MockServletConfig("click-servlet", servletContext);
+        servletConfig.addInitParameter(ClickServlet.STATEFUL_PAGE_TIMEOUT, "50");
+        container.setServletContext(servletContext);
+        container.setServletConfig(servletConfig);
+        container.start();
+
+        StatefulPage page = container.testPage(StatefulPage.class);
+
+        final StatefulPageQueue queue = StatefulPageQueue.getQueue(page);
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread() {
+            public void run() {
+                try {
+                    queue.lock(-1, -1);
+                    locked.countDown();
+                    release.await();
+                } catch (InterruptedException e) {
+                } finally {
+                    if (queue.isLockedByCurrentThread()) {
+                        queue.unlock();
+                    }
+                }
+            }
+        };
+        holder.start();
+
+        try {
+            Assert.assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+            // The created page is the session page, its onInit is not invoked
+            container.testPage("/create-stateful-page.htm");
+            Assert.assertEquals(HttpServletResponse.SC_OK, container.getResponse().getCode());
+            Assert.assertTrue(container.getHtml().indexOf("count=1") != -1);
+            Assert.assertEquals(1, page.count);
+
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+
+        container.stop();
+    }
 }
@@ -18,6 +18,11 @@
  */
 package org.apache.click;
 
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import junit.framework.TestCase;
 import org.apache.click.control.Form;
 import org.apache.click.pages.HeaderTestPage;
@@ -27,6 +32,8 @@ import org.apache.click.pages.RedirectToJsp;
 import org.apache.click.pages.RedirectToSelfPage;
 import org.apache.click.pages.RequestBindingPage;
 import org.apache.click.pages.SetPathToJspPage;
+import org.apache.click.service.OGNLPropertyService;
+import org.apache.click.service.PropertyService;
 import org.apache.click.servlet.MockRequest;
 
 /**
@@ -265,4 +272,58 @@ public class PageTest extends TestCase {
 
         container.stop();
     }
+
+    /**
+     * Check that request parameters are converted to the Page variable types,
+     * and bound through the variable setter if defined.
+     */
+    public void testRequestParameterBindingConversion() {
+        MockContainer container = new MockContainer("web");
+        container.start();
+
+        MockRequest request = container.getRequest();
+        request.setParameter("number", " 42 ");
+        request.setParameter("count", "21");
+        request.setParameter("string", " padded ");
+
+        RequestBindingPage page = container.testPage(RequestBindingPage.class);
+
+        assertEquals(42, page.getNumber());
+        assertEquals(Long.valueOf(42), page.count);
+        assertEquals(" padded ", page.getString());
+
+        container.stop();
+    }
+
+    /**
+     * Check that request parameters are bound through the application
+     * PropertyService if it is not one of the default property services.
+     */
+    public void testRequestParameterBindingPropertyService() throws Exception {
+        MockContainer container = new MockContainer("web");
+        container.start();
+
+        final List<String> boundNames = new ArrayList<String>();
+        PropertyService propertyService = new OGNLPropertyService() {
+            public void setValue(Object target, String name, Object value) {
+                boundNames.add(name);
+                super.setValue(target, name, value);
+            }
+        };
+
+        Field[] fields = { RequestBindingPage.class.getField("string"),
+            RequestBindingPage.class.getField("count") };
+        PageBindingPlan plan = new PageBindingPlan(RequestBindingPage.class, fields);
+
+        RequestBindingPage page = new RequestBindingPage();
+        PageBindingPlan.ParameterBinder[] binders = plan.getBinders();
+        binders[0].bind(page, "value", propertyService);
+        binders[1].bind(page, "21", propertyService);
+
+        assertEquals("value", page.getString());
+        assertEquals(Long.valueOf(42), page.count);
+        assertEquals(Arrays.asList("string", "count"), boundNames);
+
+        container.stop();
+    }
 }
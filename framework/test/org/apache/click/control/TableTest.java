@@ -20,12 +20,16 @@ package org.apache.click.control;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 
 import java.util.Map;
 import junit.framework.TestCase;
 import org.apache.click.MockContext;
+import org.apache.click.dataprovider.AbstractQueryDataProvider;
+import org.apache.click.dataprovider.DataProvider;
+import org.apache.click.dataprovider.DataQuery;
 
 /**
  * Test Table behavior.
@@ -260,4 +264,196 @@ public class TableTest extends TestCase {
         assertTrue(table.toString().contains("<th class=\"sortable\"><a href=\"/mock/mock.htm?actionLink=table-controlLink&amp;column=name&amp;page=0\">Name"));
     }
 
+    /**
+     * Check that a QueryDataProvider is passed the table row range, sort
+     * order and filter, and that the table does not sort the loaded rows.
+     */
+    public void testQueryDataProvider() {
+        MockContext.initContext(Locale.ENGLISH);
+
+        final List<DataQuery> queries = new ArrayList<DataQuery>();
+
+        Table table = new Table("table");
+        table.setPageSize(10);
+        table.setPageNumber(2);
+        table.setSortable(true);
+        table.setSortedColumn("name");
+        table.setSortedAscending(false);
+        table.setDataFilter("foo");
+        table.addColumn(new Column("name"));
+
+        table.setDataProvider(new AbstractQueryDataProvider<Foo>() {
+            private static final long serialVersionUID = 1L;
+
+            public List<Foo> getData(DataQuery query) {
+                queries.add(query);
+                List<Foo> foos = new ArrayList<Foo>();
+                for (int i = query.getFirstRow() + query.getPageSize() - 1; i >= query.getFirstRow(); i--) {
+                    foos.add(new Foo(query.getFilter() + String.valueOf(i)));
+                }
+                return foos;
+            }
+
+            public int size(DataQuery query) {
+                queries.add(query);
+                return 100;
+            }
+        });
+
+        String html = table.toString();
+
+        assertEquals(2, queries.size());
+        DataQuery query = queries.get(1);
+        assertEquals(20, query.getFirstRow());
+        assertEquals(10, query.getPageSize());
+        assertTrue(query.isPaginated());
+        assertEquals("name", query.getSortColumn());
+        assertFalse(query.isAscending());
+        assertEquals("foo", query.getFilter());
+
+        assertEquals(100, table.getRowCount());
+        assertEquals(10, table.getRowList().size());
+        assertTrue(table.isSorted());
+
+        // Rows are rendered in the order returned by the data provider
+        assertTrue(html.indexOf("foo29") < html.indexOf("foo20"));
+        assertTrue(html.indexOf("foo19") == -1);
+        assertTrue(html.indexOf("foo30") == -1);
+    }
+
+    /**
+     * Check that the sorted column is only passed to a QueryDataProvider if
+     * it is a sortable table column.
+     */
+    public void testCreateDataQuery() {
+        MockContext.initContext(Locale.ENGLISH);
+
+        Table table = new Table("table");
+        Column column = new Column("name");
+        column.setSortable(false);
+        table.addColumn(column);
+        table.addColumn(new Column("id"));
+        table.setSortable(true);
+
+        DataQuery query = table.createDataQuery();
+        assertEquals(0, query.getFirstRow());
+        assertEquals(0, query.getPageSize());
+        assertFalse(query.isPaginated());
+        assertFalse(query.isSorted());
+
+        table.setSortedColumn("unknown");
+        assertNull(table.createDataQuery().getSortColumn());
+
+        table.setSortedColumn("name");
+        assertNull(table.createDataQuery().getSortColumn());
+
+        table.setSortedColumn("id");
+        assertEquals("id", table.createDataQuery().getSortColumn());
+        assertTrue(table.createDataQuery().isSorted());
+    }
+
+    /**
+     * Check that a streaming table walks a non List Iterable once, keeps only
+     * the current page rows and renders the same markup as a List table.
+     */
+    public void testStreamingRowsPaged() {
+        MockContext.initContext(Locale.ENGLISH, "/mock.htm");
+
+        FooIterable foos = new FooIterable(1000);
+
+        Table table = createStreamingTable(foos);
+        table.setPageSize(10);
+        table.setPageNumber(3);
+        table.setShowBanner(true);
+
+        Table listTable = createStreamingTable(foos.toList());
+        listTable.setPageSize(10);
+        listTable.setPageNumber(3);
+        listTable.setShowBanner(true);
+
+        // Like a PagingDataProvider, the last page row is not followed by a
+        // new line
+        String html = table.toString();
+        String listHtml = listTable.toString();
+        assertEquals(listHtml.replace("</tr>\n</tbody>", "</tr></tbody>"), html);
+
+        assertEquals(1, foos.iterations);
+        assertEquals(10, table.getRowList().size());
+        assertEquals(1000, table.getRowCount());
+        assertTrue(html.indexOf("foo30") > 0);
+        assertTrue(html.indexOf("foo39") > 0);
+        assertTrue(html.indexOf("foo40") == -1);
+    }
+
+    /**
+     * Check that a streaming table without a page size renders the rows of a
+     * non List Iterable as they are produced, without a row list.
+     */
+    public void testStreamingRowsUnpaged() {
+        MockContext.initContext(Locale.ENGLISH, "/mock.htm");
+
+        FooIterable foos = new FooIterable(5);
+
+        Table table = createStreamingTable(foos);
+        Table listTable = createStreamingTable(foos.toList());
+
+        String html = table.toString();
+        assertEquals(listTable.toString(), html);
+
+        assertEquals(1, foos.iterations);
+        assertTrue(table.getRowList().isEmpty());
+        assertEquals(5, table.getRowCount());
+
+        // Streamed rows are discarded at the end of the request
+        table.onDestroy();
+        assertEquals(0, table.getRowCount());
+
+        // Empty Iterable
+        table = createStreamingTable(new FooIterable(0));
+        assertTrue(table.toString().indexOf("No records found.") > 0);
+    }
+
+    /**
+     * Create a sortable streaming table for the given rows.
+     */
+    private Table createStreamingTable(final Iterable<Foo> foos) {
+        Table table = new Table("table");
+        table.setSortable(true);
+        table.setStreamingRows(true);
+        table.addColumn(new Column("name"));
+        table.setDataProvider(new DataProvider<Foo>() {
+            private static final long serialVersionUID = 1L;
+
+            public Iterable<Foo> getData() {
+                return foos;
+            }
+        });
+        return table;
+    }
+
+    /**
+     * Helper Iterable which is not a List, and counts its iterations.
+     */
+    public static class FooIterable implements Iterable<Foo> {
+        private final int size;
+        private int iterations;
+
+        public FooIterable(int size) {
+            this.size = size;
+        }
+
+        public Iterator<Foo> iterator() {
+            iterations++;
+            return toList().iterator();
+        }
+
+        public List<Foo> toList() {
+            List<Foo> foos = new ArrayList<Foo>();
+            for (int i = 0; i < size; i++) {
+                foos.add(new Foo("foo" + i));
+            }
+            return foos;
+        }
+    }
+
 }
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.pages;
+
+import org.apache.click.ActionResult;
+import org.apache.click.Control;
+import org.apache.click.Page;
+import org.apache.click.ajax.DefaultAjaxBehavior;
+import org.apache.click.control.ActionLink;
+
+/**
+ * Page with an Ajax behavior for testing Ajax request processing.
+ */
+public class AjaxBehaviorPage extends Page {
+
+    private static final long serialVersionUID = 1L;
+
+    public ActionLink link = new ActionLink("link");
+
+    public AjaxBehaviorPage() {
+        link.addBehavior(new DefaultAjaxBehavior() {
+            @Override
+            public ActionResult onAction(Control source) {
+                return new ActionResult("clicked", ActionResult.TEXT);
+            }
+        });
+    }
+}
@@ -32,6 +32,8 @@ public class RequestBindingPage extends Page {
     @Bindable public BigDecimal bigDecimal = BigDecimal.ZERO;
     public String string = "";
     @Bindable public boolean bool = false;
+    @Bindable protected int number;
+    public Long count;
 
     public RequestBindingPage() {
     }
@@ -47,4 +49,12 @@ public class RequestBindingPage extends Page {
     public boolean getBoolean() {
         return bool;
     }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public void setCount(Long count) {
+        this.count = Long.valueOf(count.longValue() * 2);
+    }
 }
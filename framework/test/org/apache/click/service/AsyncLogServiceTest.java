@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for AsyncLogService and LogMessage.
+ */
+public class AsyncLogServiceTest extends TestCase {
+
+    /**
+     * Check the parameterized message placeholders are replaced in order.
+     */
+    public void testLogMessage() {
+        assertEquals("invoked: 'form' Form.onInit()",
+            new LogMessage("invoked: '{}' {}.onInit()", "form", "Form").toString());
+        assertEquals("a 1 {}", new LogMessage("a {} {}", Integer.valueOf(1)).toString());
+        assertEquals("a {}", new LogMessage("a {}").toString());
+        assertEquals("a null", new LogMessage("a {}", (Object) null).toString());
+    }
+
+    /**
+     * Check events are written in order by the writer thread, and events
+     * below the logging level are ignored.
+     */
+    public void testWriteEvents() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        AsyncLogService service = new AsyncLogService();
+        service.out = new PrintStream(output, true);
+        service.onInit(null);
+
+        service.debug("ignored");
+        service.info("first");
+        service.warn(new LogMessage("second {}", "message"));
+        service.error("third", new IllegalStateException("failure"));
+
+        service.onDestroy();
+
+        String log = output.toString();
+        assertEquals(-1, log.indexOf("ignored"));
+        int first = log.indexOf("[Click] [info ] first");
+        int second = log.indexOf("[Click] [warn ] second message");
+        int third = log.indexOf("[Click] [error] third");
+        assertTrue(first != -1);
+        assertTrue(second > first);
+        assertTrue(third > second);
+        assertTrue(log.indexOf("IllegalStateException: failure") > third);
+
+        // Events logged after the service is destroyed are written directly
+        service.info("after");
+        assertTrue(output.toString().indexOf("[Click] [info ] after") != -1);
+    }
+
+    /**
+     * Check an idle writer thread is woken up when an event is logged.
+     */
+    public void testWakeIdleWriter() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        AsyncLogService service = new AsyncLogService();
+        service.out = new PrintStream(output, true);
+        service.onInit(null);
+
+        // Let the writer thread go idle
+        Thread.sleep(100);
+        service.info("wake up");
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (output.toString().indexOf("wake up") == -1
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(output.toString().indexOf("[Click] [info ] wake up") != -1);
+
+        service.onDestroy();
+    }
+
+    /**
+     * Check events are dropped and counted when the buffer is full.
+     */
+    public void testDropPolicy() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // Stream which blocks the writer thread on the first write
+        OutputStream blockingStream = new OutputStream() {
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+            public void write(byte[] b, int off, int len) throws IOException {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e.toString());
+                }
+                output.write(b, off, len);
+            }
+        };
+
+        AsyncLogService service = new AsyncLogService();
+        service.setBufferSize(2);
+        service.out = new PrintStream(blockingStream, true);
+        service.onInit(null);
+
+        service.info("blocked");
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 5; i++) {
+            service.info("event " + i);
+        }
+        assertEquals(3, service.getDroppedCount());
+
+        release.countDown();
+        service.onDestroy();
+
+        String log = output.toString();
+        assertTrue(log.indexOf("event 0") != -1);
+        assertTrue(log.indexOf("event 1") != -1);
+        assertEquals(-1, log.indexOf("event 2"));
+        assertTrue(log.indexOf("AsyncLogService dropped 3 log events") != -1);
+    }
+
+    /**
+     * Check an invalid overflow policy is rejected.
+     */
+    public void testInvalidOverflowPolicy() throws Exception {
+        AsyncLogService service = new AsyncLogService();
+        service.setOverflowPolicy("discard");
+        try {
+            service.onInit(null);
+            fail("Invalid overflow policy should be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+import org.apache.click.MockContainer;
+import org.apache.click.servlet.MockRequest;
+import org.apache.click.servlet.MockResponse;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Tests for the ClickResourceService class.
+ */
+public class ClickResourceServiceTest extends TestCase {
+
+    private File tmpdir;
+
+    private MockContainer container;
+
+    @Override
+    protected void setUp() throws Exception {
+        tmpdir = makeTmpDir();
+
+        PrintStream pstr = makeStream(tmpdir, "WEB-INF/click.xml");
+        pstr.println("<?xml version='1.0' encoding=\"UTF-8\" standalone=\"yes\"?>");
+        pstr.println("<click-app>");
+        pstr.println(" <pages package='org.apache.click.pages'/>");
+        pstr.println(" <mode value='production'/>");
+        pstr.println("</click-app>");
+        pstr.close();
+
+        PrintStream small = makeStream(tmpdir, "assets/small.js");
+        small.print("var small = true;");
+        small.close();
+
+        PrintStream other = makeStream(tmpdir, "assets/other.js");
+        other.print("var other;");
+        other.close();
+
+        PrintStream large = makeStream(tmpdir, "assets/large.js");
+        large.print(StringUtils.repeat("var large = true;\n", 100));
+        large.close();
+
+        container = new MockContainer(tmpdir.getAbsolutePath());
+        container.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        container.stop();
+        deleteDir(tmpdir);
+    }
+
+    /**
+     * Check that resources are served with an ETag and Last-Modified header
+     * and conditional requests are answered with 304.
+     */
+    public void testConditionalRequest() throws Exception {
+        ClickResourceService service = createService();
+
+        MockResponse response = render(service, "/assets/small.js", null, null);
+        assertEquals("var small = true;", new String(response.getBinaryContent(), "UTF-8"));
+        String etag = response.getHeader("ETag");
+        assertNotNull(etag);
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+        assertNotNull(response.getHeader("Last-Modified"));
+
+        // Matching ETag
+        response = render(service, "/assets/small.js", "If-None-Match", etag);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        assertEquals(0, response.getBinaryContent().length);
+
+        // Matching ETag in a list
+        response = render(service, "/assets/small.js", "If-None-Match", "\"abc\", " + etag);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+
+        // Stale ETag
+        response = render(service, "/assets/small.js", "If-None-Match", "\"abc\"");
+        assertTrue(response.getStatus() != HttpServletResponse.SC_NOT_MODIFIED);
+        assertEquals(17, response.getBinaryContent().length);
+
+        // Unknown resource
+        response = render(service, "/assets/unknown.js", null, null);
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, response.getCode());
+    }
+
+    /**
+     * Check the cache evicts the least recently used resources when its byte
+     * budget is exceeded, and large resources are not held in memory.
+     */
+    public void testCacheBudget() throws Exception {
+        ClickResourceService service = createService();
+        service.setCacheSize(20);
+        service.setMaxEntrySize(1000);
+
+        render(service, "/assets/small.js", null, null);
+        assertTrue(service.cachedResources.containsKey("/assets/small.js"));
+        assertSame(service.cachedResources.get("/assets/small.js").getData(),
+            service.resourceCache.get("/assets/small.js"));
+
+        // Exceeding the budget evicts the least recently used resource
+        render(service, "/assets/other.js", null, null);
+        assertFalse(service.cachedResources.containsKey("/assets/small.js"));
+        assertFalse(service.resourceCache.containsKey("/assets/small.js"));
+        assertTrue(service.cachedResources.containsKey("/assets/other.js"));
+        assertTrue(service.resourceCache.containsKey("/assets/other.js"));
+
+        // Large file is not held in memory and is served from the file system
+        MockResponse response = render(service, "/assets/large.js", null, null);
+        byte[] expected = StringUtils.repeat("var large = true;\n", 100).getBytes("UTF-8");
+        assertTrue(Arrays.equals(expected, response.getBinaryContent()));
+        assertNotNull(response.getHeader("ETag"));
+
+        ClickResourceService.CachedResource resource =
+            service.cachedResources.get("/assets/large.js");
+        assertNotNull(resource.getFile());
+        assertNull(resource.getData());
+        assertFalse(service.resourceCache.containsKey("/assets/large.js"));
+        assertTrue(service.cachedResources.containsKey("/assets/other.js"));
+
+        response = render(service, "/assets/large.js", null, null);
+        assertTrue(Arrays.equals(expected, response.getBinaryContent()));
+    }
+
+    /**
+     * Check resources too large to hold in memory keep their metadata in the
+     * cache, so the ETag is only computed once.
+     */
+    public void testLargeResourceMetadata() throws Exception {
+        ClickResourceService service = createService();
+        service.setMaxEntrySize(1000);
+
+        MockResponse response = render(service, "/assets/large.js", null, null);
+        String etag = response.getHeader("ETag");
+
+        ClickResourceService.CachedResource resource =
+            service.cachedResources.get("/assets/large.js");
+        assertNotNull(resource);
+        assertNull(resource.getData());
+        assertEquals(etag, resource.getETag());
+
+        response = render(service, "/assets/large.js", "If-None-Match", etag);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+
+        response = render(service, "/assets/large.js", null, null);
+        assertEquals(1800, response.getBinaryContent().length);
+        assertSame(resource, service.cachedResources.get("/assets/large.js"));
+    }
+
+    /**
+     * Check a compressible resource which only fits in the cache without its
+     * compressed copy is cached and served uncompressed.
+     */
+    public void testCompressedCopyTooLarge() throws Exception {
+        ClickResourceService service = createService();
+        service.setMaxEntrySize(1810);
+
+        MockResponse response = render(service, "/assets/large.js", "Accept-Encoding", "gzip");
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals(1800, response.getBinaryContent().length);
+
+        ClickResourceService.CachedResource resource =
+            service.cachedResources.get("/assets/large.js");
+        assertNotNull(resource.getData());
+        assertNull(resource.getGzipData());
+
+        render(service, "/assets/large.js", "Accept-Encoding", "gzip");
+        assertSame(resource, service.cachedResources.get("/assets/large.js"));
+    }
+
+    /**
+     * Check resources are cached in development mode and reloaded when they
+     * are modified.
+     */
+    public void testDevelopmentMode() throws Exception {
+        container.stop();
+
+        PrintStream pstr = makeStream(tmpdir, "WEB-INF/click.xml");
+        pstr.println("<?xml version='1.0' encoding=\"UTF-8\" standalone=\"yes\"?>");
+        pstr.println("<click-app>");
+        pstr.println(" <pages package='org.apache.click.pages'/>");
+        pstr.println(" <mode value='development'/>");
+        pstr.println("</click-app>");
+        pstr.close();
+
+        container = new MockContainer(tmpdir.getAbsolutePath());
+        container.start();
+
+        ClickResourceService service = createService();
+
+        MockResponse response = render(service, "/assets/small.js", null, null);
+        String etag = response.getHeader("ETag");
+        ClickResourceService.CachedResource resource =
+            service.cachedResources.get("/assets/small.js");
+        assertNotNull(resource);
+
+        render(service, "/assets/small.js", null, null);
+        assertSame(resource, service.cachedResources.get("/assets/small.js"));
+
+        File file = new File(tmpdir, "assets/small.js");
+        PrintStream small = makeStream(tmpdir, "assets/small.js");
+        small.print("var small = false;");
+        small.close();
+        file.setLastModified(file.lastModified() + 2000);
+
+        response = render(service, "/assets/small.js", null, null);
+        assertEquals("var small = false;", new String(response.getBinaryContent(), "UTF-8"));
+        assertFalse(etag.equals(response.getHeader("ETag")));
+        assertNotSame(resource, service.cachedResources.get("/assets/small.js"));
+    }
+
+    /**
+     * Check resource data stored in the resource cache by a subclass is
+     * served with an ETag.
+     */
+    public void testResourceCacheData() throws Exception {
+        ClickResourceService service = createService();
+        byte[] data = "var custom = true;".getBytes("UTF-8");
+        service.resourceCache.put("/assets/custom.js", data);
+
+        MockResponse response = render(service, "/assets/custom.js", null, null);
+        assertTrue(Arrays.equals(data, response.getBinaryContent()));
+        String etag = response.getHeader("ETag");
+        assertNotNull(etag);
+
+        response = render(service, "/assets/custom.js", "If-None-Match", etag);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+    }
+
+    /**
+     * Check that text resources are served from a pre-compressed copy when
+     * the client accepts gzip.
+     */
+    public void testCompression() throws Exception {
+        ClickResourceService service = createService();
+        byte[] expected = StringUtils.repeat("var large = true;\n", 100).getBytes("UTF-8");
+
+        MockResponse response = render(service, "/assets/large.js", "Accept-Encoding", "gzip, deflate");
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        String gzipETag = response.getHeader("ETag");
+
+        byte[] compressed = response.getBinaryContent();
+        assertTrue(compressed.length < expected.length);
+        GZIPInputStream gzipStream =
+            new GZIPInputStream(new ByteArrayInputStream(compressed));
+        assertTrue(Arrays.equals(expected, IOUtils.toByteArray(gzipStream)));
+
+        // Identity copy
+        response = render(service, "/assets/large.js", null, null);
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertTrue(Arrays.equals(expected, response.getBinaryContent()));
+        assertFalse(gzipETag.equals(response.getHeader("ETag")));
+
+        // Refused gzip encoding
+        response = render(service, "/assets/large.js", "Accept-Encoding", "gzip;q=0");
+        assertNull(response.getHeader("Content-Encoding"));
+
+        // Conditional request for the compressed copy
+        MockRequest request = new MockRequest(null, "/mock", "/assets/large.js",
+            container.getServletContext(), container.getSession());
+        request.setHeader("Accept-Encoding", "gzip");
+        request.setHeader("If-None-Match", gzipETag);
+        response = new MockResponse();
+        service.renderResource(request, response);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+
+        // Small resources are not compressed
+        response = render(service, "/assets/small.js", "Accept-Encoding", "gzip");
+        assertNull(response.getHeader("Content-Encoding"));
+        assertNull(response.getHeader("Vary"));
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    private ClickResourceService createService() throws IOException {
+        ClickResourceService service = new ClickResourceService();
+        service.onInit(container.getServletContext());
+        return service;
+    }
+
+    private MockResponse render(ClickResourceService service, String path,
+        String header, String value) throws IOException {
+
+        MockRequest request = new MockRequest(null, "/mock", path,
+            container.getServletContext(), container.getSession());
+        if (header != null) {
+            request.setHeader(header, value);
+        }
+        MockResponse response = new MockResponse();
+        service.renderResource(request, response);
+        return response;
+    }
+
+    private File makeTmpDir() throws IOException {
+        File dir = File.createTempFile("click", "");
+        dir.delete();
+        dir.mkdir();
+        return dir;
+    }
+
+    private PrintStream makeStream(File dir, String filename) throws FileNotFoundException {
+        File file = new File(dir, filename);
+        file.getParentFile().mkdirs();
+        return new PrintStream(file);
+    }
+
+    private void deleteDir(File dir) throws IOException {
+        for (File f : dir.listFiles()) {
+            if (f.isDirectory()) {
+                deleteDir(f);
+            }
+            f.delete();
+        }
+        dir.delete();
+    }
+}
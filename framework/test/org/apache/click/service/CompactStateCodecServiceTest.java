@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.click.MockContext;
+import org.apache.click.control.Form;
+import org.apache.click.control.Select;
+import org.apache.click.control.Table;
+import org.apache.click.control.TextField;
+import org.apache.click.util.ClickUtils;
+
+/**
+ * Tests for CompactStateCodecService.
+ */
+public class CompactStateCodecServiceTest extends TestCase {
+
+    /** The codec under test. */
+    private CompactStateCodecService codec;
+
+    @Override
+    protected void setUp() throws Exception {
+        codec = new CompactStateCodecService();
+        codec.onInit(null);
+    }
+
+    @Override
+    protected void tearDown() {
+        codec.onDestroy();
+    }
+
+    /**
+     * Check that the supported value types are decoded to equal values of the
+     * same class.
+     */
+    public void testRoundTrip() throws Exception {
+        assertNull(codec.decode(codec.encode(null)));
+        assertRoundTrip("");
+        assertRoundTrip("caf\u00e9 \u20ac");
+        assertRoundTrip(Boolean.TRUE);
+        assertRoundTrip(Boolean.FALSE);
+        assertRoundTrip(Integer.valueOf(0));
+        assertRoundTrip(Integer.valueOf(Integer.MIN_VALUE));
+        assertRoundTrip(Integer.valueOf(Integer.MAX_VALUE));
+        assertRoundTrip(Long.valueOf(Long.MIN_VALUE));
+        assertRoundTrip(Double.valueOf(-1.5));
+        assertRoundTrip(new Date(1000L));
+
+        List<Object> list = new ArrayList<Object>();
+        list.add("a");
+        list.add(null);
+        list.add(Integer.valueOf(-7));
+        assertRoundTrip(list);
+
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("b", "1");
+        map.put("a", Arrays.asList(new String[] {"x", "y"}));
+        Object decoded = codec.decode(codec.encode(map));
+        assertEquals(LinkedHashMap.class, decoded.getClass());
+        assertEquals(map, decoded);
+        assertEquals("b", ((Map<?, ?>) decoded).keySet().iterator().next());
+
+        String[] strings = {"red", null, "blue"};
+        assertTrue(Arrays.equals(strings, (String[]) codec.decode(codec.encode(strings))));
+
+        Object[] objects = {Integer.valueOf(3), "name", null, Boolean.FALSE, strings};
+        Object[] decodedObjects = (Object[]) codec.decode(codec.encode(objects));
+        assertEquals(5, decodedObjects.length);
+        assertEquals(Integer.valueOf(3), decodedObjects[0]);
+        assertEquals("name", decodedObjects[1]);
+        assertNull(decodedObjects[2]);
+        assertEquals(Boolean.FALSE, decodedObjects[3]);
+        assertTrue(Arrays.equals(strings, (String[]) decodedObjects[4]));
+    }
+
+    /**
+     * Check the state of Table, Form and Select round trips and is smaller
+     * than the Java serialized state.
+     */
+    public void testControlState() throws Exception {
+        MockContext.initContext();
+
+        Table table = new Table("table");
+        table.setPageNumber(2);
+        table.setSortedColumn("name");
+        table.setSortedAscending(false);
+        table.getControlLink().setParameter("filter", "active");
+
+        Table restoredTable = new Table("table");
+        restoredTable.setState(codec.decode(codec.encode(table.getState())));
+        assertEquals(2, restoredTable.getPageNumber());
+        assertEquals("name", restoredTable.getSortedColumn());
+        assertFalse(restoredTable.isSortedAscending());
+        assertEquals("active", restoredTable.getControlLink().getParameter("filter"));
+
+        Form form = new Form("form");
+        form.add(new TextField("name")).setValue("Steve");
+        Select select = new Select("colors");
+        select.setMultiple(true);
+        select.setSelectedValues(Arrays.asList(new String[] {"red", "blue"}));
+        form.add(select);
+
+        Form restoredForm = new Form("form");
+        TextField restoredName = (TextField) restoredForm.add(new TextField("name"));
+        Select restoredSelect = new Select("colors");
+        restoredSelect.setMultiple(true);
+        restoredForm.add(restoredSelect);
+        restoredForm.setState(codec.decode(codec.encode(form.getState())));
+        assertEquals("Steve", restoredName.getValue());
+        assertEquals(Arrays.asList(new String[] {"red", "blue"}),
+            restoredSelect.getSelectedValues());
+
+        JavaStateCodecService javaCodec = new JavaStateCodecService();
+        assertTrue(codec.encode(table.getState()).length
+            < javaCodec.encode(table.getState()).length);
+        assertTrue(codec.encode(form.getState()).length
+            < javaCodec.encode(form.getState()).length);
+    }
+
+    /**
+     * Check state over the compression threshold is deflated and decoded.
+     */
+    public void testCompression() throws Exception {
+        Map<String, Object> map = new HashMap<String, Object>();
+        for (int i = 0; i < 200; i++) {
+            map.put("field" + i, "value" + i);
+        }
+
+        codec.setCompressionThreshold(Integer.MAX_VALUE);
+        byte[] uncompressed = codec.encode(map);
+
+        codec.setCompressionThreshold(CompactStateCodecService.DEFAULT_COMPRESSION_THRESHOLD);
+        byte[] compressed = codec.encode(map);
+        assertTrue(compressed.length < uncompressed.length);
+
+        // Pooled inflaters and deflaters are reused
+        for (int i = 0; i < 3; i++) {
+            assertEquals(map, codec.decode(codec.encode(map)));
+        }
+        assertEquals(map, codec.decode(uncompressed));
+    }
+
+    /**
+     * Check Java serialized state of the JavaStateCodecService is decoded, and
+     * unsupported format versions are rejected.
+     */
+    public void testVersions() throws Exception {
+        List<String> list = new ArrayList<String>();
+        list.add("legacy");
+        assertEquals(list, codec.decode(new JavaStateCodecService().encode(list)));
+
+        byte[] data = codec.encode("state");
+        data[1] = (byte) (CompactStateCodecService.FORMAT_VERSION + 1);
+        try {
+            codec.decode(data);
+            fail("Should throw IOException");
+        } catch (IOException ioe) {
+            assertTrue(ioe.getMessage().indexOf("version") != -1);
+        }
+    }
+
+    /**
+     * Check ClickUtils encode and decode, and saveState and restoreState use
+     * the state codec.
+     */
+    public void testClickUtils() throws Exception {
+        MockContext context = MockContext.initContext("/page.htm");
+
+        String encoded = ClickUtils.encode("hidden value");
+        assertEquals("hidden value", ClickUtils.decode(encoded));
+
+        Form form = new Form("form");
+        form.add(new TextField("name")).setValue("Steve");
+        ClickUtils.saveState(form, form.getName(), context);
+
+        Map<?, ?> pageMap = (Map<?, ?>) context.getSessionAttribute("/page.htm");
+        assertTrue(pageMap.get("form") instanceof byte[]);
+
+        Form restoredForm = new Form("form");
+        TextField restoredName = (TextField) restoredForm.add(new TextField("name"));
+        ClickUtils.restoreState(restoredForm, restoredForm.getName(), context);
+        assertEquals("Steve", restoredName.getValue());
+    }
+
+    private void assertRoundTrip(Object value) throws Exception {
+        Object decoded = codec.decode(codec.encode(value));
+        assertEquals(value.getClass(), decoded.getClass());
+        assertEquals(value, decoded);
+    }
+}
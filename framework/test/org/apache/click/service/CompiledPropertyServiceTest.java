@@ -0,0 +1,81 @@
+package org.apache.click.service;
+
+import java.util.Date;
+
+import org.apache.click.servlet.MockServletContext;
+import org.apache.click.util.ChildObject;
+import org.apache.click.util.ParentObject;
+import org.apache.click.util.SampleObject;
+
+
+public class CompiledPropertyServiceTest extends PropertyServiceTestCase {
+	
+	@Override
+	protected void setUp() {
+		propertyService = new CompiledPropertyService();
+
+		try {
+			propertyService.onInit(new MockServletContext());
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	@Override
+	protected void tearDown() {
+		try {
+			propertyService.onDestroy();
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public void test_setValueConversion() {
+		SampleObject sampleObject = new SampleObject();
+
+		propertyService.setValue(sampleObject, "int", "42");
+		assertEquals(42, sampleObject.getInt());
+
+		propertyService.setValue(sampleObject, "id", "7");
+		assertEquals(Integer.valueOf(7), sampleObject.getId());
+
+		propertyService.setValue(sampleObject, "double", Integer.valueOf(3));
+		assertEquals(3.0, sampleObject.getDouble(), 0.0);
+
+		propertyService.setValue(sampleObject, "active", "true");
+		assertTrue(sampleObject.isActive());
+
+		propertyService.setValue(sampleObject, "int", null);
+		assertEquals(0, sampleObject.getInt());
+
+		propertyService.setValue(sampleObject, "dateOfBirth", "2010-01-31");
+		assertNotNull(sampleObject.getDateOfBirth());
+
+		// Unconverted value is passed through
+		ParentObject parentObject = new ParentObject();
+		ChildObject child = new ChildObject();
+		propertyService.setValue(parentObject, "value", child);
+		assertSame(child, parentObject.getValue());
+
+		Date date = new Date();
+		propertyService.setValue(parentObject, "date", date);
+		assertSame(date, parentObject.getDate());
+	}
+
+	public void test_setValueErrors() {
+		try {
+			propertyService.setValue(new ParentObject(), "child.name", "malcolm");
+			fail("Should throw exception");
+		} catch (RuntimeException e) {
+			assertTrue(e.getMessage().indexOf("child.name") != -1);
+		}
+
+		try {
+			propertyService.setValue(new ParentObject(), "unknown", "malcolm");
+			fail("Should throw exception");
+		} catch (RuntimeException e) {
+			assertTrue(e.getMessage().indexOf("'unknown'") != -1);
+		}
+	}
+	
+}
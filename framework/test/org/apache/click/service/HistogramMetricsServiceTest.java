@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+import junit.framework.TestCase;
+
+import org.apache.click.MockContainer;
+import org.apache.click.control.ActionLink;
+import org.apache.click.control.Form;
+import org.apache.click.pages.AjaxBehaviorPage;
+import org.apache.click.pages.ListenerPage;
+import org.apache.click.pages.SessionMapPage;
+import org.apache.click.service.MetricsService.RequestPhase;
+import org.apache.click.util.ClickUtils;
+
+/**
+ * Tests for HistogramMetricsService.
+ */
+public class HistogramMetricsServiceTest extends TestCase {
+
+    /**
+     * Check values are counted in buckets whose upper bound is within 12.5%
+     * of the value.
+     */
+    public void testBucketBounds() {
+        for (long value = 0; value < 100000; value++) {
+            int index = LatencyHistogram.getBucketIndex(value);
+            long upperBound = LatencyHistogram.getBucketUpperBound(index);
+            assertTrue(value <= upperBound);
+            assertTrue(upperBound - value <= value / 8);
+            if (index > 0) {
+                assertTrue(value > LatencyHistogram.getBucketUpperBound(index - 1));
+            }
+        }
+
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1,
+            LatencyHistogram.getBucketIndex(LatencyHistogram.MAX_BUCKET_VALUE));
+    }
+
+    /**
+     * Check the percentiles, mean and maximum of the recorded values.
+     */
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100000, histogram.getMax());
+        assertEquals(50500.0, histogram.getMean(), 0.0);
+
+        long median = histogram.getValueAtPercentile(50);
+        assertTrue(median >= 50000 && median <= 50000 + 50000 / 8);
+        assertEquals(100000, histogram.getValueAtPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+
+    /**
+     * Check durations are recorded per page path and phase, and page paths
+     * above the maximum are recorded together.
+     */
+    public void testRecord() throws Exception {
+        HistogramMetricsService service = new HistogramMetricsService();
+        service.setMaxPagePaths(2);
+
+        service.record("/home.htm", RequestPhase.ON_INIT, 2000);
+        service.record("/home.htm", RequestPhase.ON_INIT, 4000);
+        service.record("/edit.htm", RequestPhase.RENDER, 1000);
+        service.record("/other.htm", RequestPhase.RENDER, 3000);
+
+        assertEquals(2, service.getCount("/home.htm", "onInit"));
+        assertEquals(4000, service.getMax("/home.htm", "onInit"));
+        assertEquals(0, service.getCount("/home.htm", "render"));
+        assertEquals(1, service.getCount(HistogramMetricsService.OTHER_PAGE_PATHS, "render"));
+        assertEquals(0, service.getCount("/other.htm", "render"));
+
+        String metrics = service.getMetrics();
+        assertTrue(metrics.indexOf("click_request_phase_nanos_count{path=\"/home.htm\",phase=\"onInit\"} 2\n") != -1);
+        assertTrue(metrics.indexOf("click_request_phase_max_nanos{path=\"/edit.htm\",phase=\"render\"} 1000\n") != -1);
+
+        service.setEnabled(false);
+        service.record("/edit.htm", RequestPhase.RENDER, 1000);
+        assertEquals(1, service.getCount("/edit.htm", "render"));
+
+        service.reset();
+        assertEquals(0, service.getPagePaths().length);
+    }
+
+    /**
+     * Check the ClickServlet records the request phases of a page request.
+     */
+    public void testPageRequest() {
+        MockContainer container = new MockContainer("web");
+        container.start();
+
+        container.testPage(SessionMapPage.class);
+
+        ConfigService configService =
+            ClickUtils.getConfigService(container.getServletContext());
+        HistogramMetricsService service =
+            (HistogramMetricsService) configService.getMetricsService();
+
+        assertEquals(1, service.getCount("/session-map.htm", "request"));
+        assertEquals(1, service.getCount("/session-map.htm", "createPage"));
+        assertEquals(1, service.getCount("/session-map.htm", "onInit"));
+        assertEquals(1, service.getCount("/session-map.htm", "render"));
+        assertEquals(1, service.getCount("/session-map.htm", "onDestroy"));
+
+        container.stop();
+    }
+
+    /**
+     * Check the action events phase is recorded once per request, for normal
+     * and Ajax requests.
+     */
+    public void testActionEventsRecordedOnce() {
+        MockContainer container = new MockContainer("web");
+        container.start();
+
+        ConfigService configService =
+            ClickUtils.getConfigService(container.getServletContext());
+        HistogramMetricsService service =
+            (HistogramMetricsService) configService.getMetricsService();
+
+        container.setParameter(Form.FORM_NAME, "form");
+        container.setParameter("save", "save");
+        container.setParameter("field", "one");
+        ListenerPage listenerPage = (ListenerPage) container.testPage(ListenerPage.class);
+        assertTrue(listenerPage.success);
+        assertEquals(1, service.getCount("/listener.htm", "actionEvents"));
+
+        container.getRequest().setHeader("X-Requested-With", "XMLHttpRequest");
+        container.setParameter(ActionLink.ACTION_LINK, "link");
+        container.setParameter("link", "link");
+        container.testPage(AjaxBehaviorPage.class);
+        assertEquals(1, service.getCount("/ajax-behavior.htm", "actionEvents"));
+        assertEquals(1, service.getCount("/ajax-behavior.htm", "request"));
+
+        container.stop();
+    }
+}
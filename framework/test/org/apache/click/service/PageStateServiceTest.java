@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpSessionBindingListener;
+
+import junit.framework.TestCase;
+
+import org.apache.click.MockContext;
+
+/**
+ * Tests for SessionPageStateService and MemoryPageStateService.
+ */
+public class PageStateServiceTest extends TestCase {
+
+    /**
+     * Check the session page state is only replaced when the control state
+     * content is modified.
+     */
+    public void testSessionPageStateService() throws Exception {
+        MockContext context = MockContext.initContext("/page.htm");
+        SessionPageStateService service = new SessionPageStateService();
+
+        assertNull(service.getState("/page.htm", "table", context));
+
+        byte[] state = new byte[] {1, 2, 3};
+        service.saveState("/page.htm", "table", state, context);
+        Map<?, ?> pageMap = (Map<?, ?>) context.getSessionAttribute("/page.htm");
+        assertSame(state, pageMap.get("table"));
+
+        // Equal state is not written back
+        service.saveState("/page.htm", "table", new byte[] {1, 2, 3}, context);
+        assertSame(state, service.getState("/page.htm", "table", context));
+
+        byte[] modified = new byte[] {1, 2, 4};
+        service.saveState("/page.htm", "table", modified, context);
+        assertSame(modified, service.getState("/page.htm", "table", context));
+
+        // Null state removes the stored state
+        service.saveState("/page.htm", "table", null, context);
+        assertNull(service.getState("/page.htm", "table", context));
+        assertNull(context.getSessionAttribute("/page.htm"));
+    }
+
+    /**
+     * Check the encoded control state is stored off heap, and released when
+     * the session is invalidated.
+     */
+    public void testMemoryPageStateService() throws Exception {
+        MockContext context = MockContext.initContext("/page.htm");
+        MemoryPageStateService service = new MemoryPageStateService();
+        service.onInit(null);
+
+        byte[] state = new byte[] {1, 2, 3};
+        service.saveState("/page.htm", "table", state, context);
+        assertNull(context.getSessionAttribute("/page.htm"));
+
+        byte[] stored = (byte[]) service.getState("/page.htm", "table", context);
+        assertNotSame(state, stored);
+        assertEquals(3, stored.length);
+        assertEquals(3, stored[2]);
+
+        // State which is not encoded is stored in the session
+        List<String> list = new ArrayList<String>();
+        service.saveState("/page.htm", "form", list, context);
+        assertSame(list, service.getState("/page.htm", "form", context));
+        assertNotNull(context.getSessionAttribute("/page.htm"));
+
+        service.removeState("/page.htm", "form", context);
+        assertNull(service.getState("/page.htm", "form", context));
+
+        HttpSessionBindingListener binding = (HttpSessionBindingListener)
+            context.getSessionAttribute(MemoryPageStateService.SESSION_BINDING_ATTRIBUTE);
+        binding.valueUnbound(null);
+        assertNull(service.getState("/page.htm", "table", context));
+
+        service.onDestroy();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.service;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.apache.click.MockContainer;
+import org.apache.click.MockContext;
+import org.apache.click.control.Column;
+import org.apache.click.control.Label;
+import org.apache.click.control.Table;
+import org.apache.click.util.HtmlStringBuffer;
+import org.apache.click.util.HtmlWriterBuffer;
+import org.apache.click.util.SampleObject;
+import org.apache.velocity.runtime.RuntimeConstants;
+
+/**
+ * Tests for the VelocityTemplateService class.
+ */
+public class VelocityTemplateServiceTest extends TestCase {
+
+    private File tmpdir;
+
+    private MockContainer container;
+
+    @Override
+    protected void setUp() throws Exception {
+        tmpdir = makeTmpDir();
+
+        PrintStream pstr = makeStream(tmpdir, "WEB-INF/click.xml");
+        pstr.println("<?xml version='1.0' encoding=\"UTF-8\" standalone=\"yes\"?>");
+        pstr.println("<click-app>");
+        pstr.println(" <pages package='org.apache.click.pages'/>");
+        pstr.println(" <mode value='production'/>");
+        pstr.println("</click-app>");
+        pstr.close();
+
+        PrintStream template = makeStream(tmpdir, "table.htm");
+        template.print("<div>$table</div><p>$label</p><span>\"$table.name\"</span>");
+        template.close();
+
+        container = new MockContainer(tmpdir.getAbsolutePath());
+        container.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        container.stop();
+        deleteDir(tmpdir);
+    }
+
+    /**
+     * Check controls rendered directly to the writer produce the same output
+     * as rendering through toString.
+     */
+    public void testStreamingRender() throws Exception {
+        MockContext.initContext();
+
+        final List<Class<?>> bufferClasses = new ArrayList<Class<?>>();
+        Table table = new Table("table") {
+            public void render(HtmlStringBuffer buffer) {
+                bufferClasses.add(buffer.getClass());
+                super.render(buffer);
+            }
+        };
+        table.addColumn(new Column("name"));
+        List<SampleObject> rows = new ArrayList<SampleObject>();
+        for (int i = 0; i < 2000; i++) {
+            SampleObject row = new SampleObject();
+            row.setName("name-" + i);
+            rows.add(row);
+        }
+        table.setRowList(rows);
+
+        Map<String, Object> model = new HashMap<String, Object>();
+        model.put("table", table);
+        model.put("label", new Label("label", "<b>note</b>"));
+
+        String expected = render(false, model);
+        assertTrue(expected.indexOf("name-1999") != -1);
+        assertEquals(HtmlStringBuffer.class, bufferClasses.get(0));
+
+        assertEquals(expected, render(true, model));
+        assertEquals(HtmlWriterBuffer.class, bufferClasses.get(bufferClasses.size() - 1));
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    private String render(boolean streamingRender, Map<String, Object> model)
+        throws Exception {
+
+        VelocityTemplateService service = new VelocityTemplateService();
+        service.setStreamingRender(streamingRender);
+        service.onInit(container.getServletContext());
+
+        Object handler = service.velocityEngine.getProperty(
+            RuntimeConstants.EVENTHANDLER_REFERENCEINSERTION);
+        assertEquals(streamingRender, handler != null);
+
+        StringWriter writer = new StringWriter();
+        service.renderTemplate("/table.htm", model, writer);
+        service.onDestroy();
+
+        return writer.toString();
+    }
+
+    private File makeTmpDir() throws IOException {
+        File dir = File.createTempFile("click", "");
+        dir.delete();
+        dir.mkdir();
+        return dir;
+    }
+
+    private PrintStream makeStream(File dir, String filename) throws FileNotFoundException {
+        File file = new File(dir, filename);
+        file.getParentFile().mkdirs();
+        return new PrintStream(file);
+    }
+
+    private void deleteDir(File dir) throws IOException {
+        for (File f : dir.listFiles()) {
+            if (f.isDirectory()) {
+                deleteDir(f);
+            }
+            f.delete();
+        }
+        dir.delete();
+    }
+}
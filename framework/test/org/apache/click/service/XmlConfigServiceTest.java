@@ -20,9 +20,12 @@ package org.apache.click.service;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -84,6 +87,51 @@ public class XmlConfigServiceTest extends TestCase {
         deleteDir(tmpdir);
     }
 
+    /**
+     * Test the initialization stages are timed, and give the same result run
+     * in parallel and sequentially.
+     */
+    public void testInitStages() throws Exception {
+        String[] threads = { "4", "1" };
+        for (String threadCount : threads) {
+            System.setProperty(XmlConfigService.INIT_THREADS_PROPERTY, threadCount);
+            File tmpdir = makeTmpDir();
+            try {
+                PrintStream pstr = makeXmlStream(tmpdir, "WEB-INF/click.xml");
+                pstr.println("<click-app charset='UTF-8'>");
+                pstr.println(" <pages package='org.apache.click.pages'/>");
+                pstr.println("</click-app>");
+                pstr.close();
+
+                PrintStream f = new PrintStream(makeFile(tmpdir, "BinaryPage.htm"));
+                f.println("template");
+                f.close();
+
+                MockContainer container = new MockContainer(tmpdir.getAbsolutePath());
+                container.start();
+                XmlConfigService config = (XmlConfigService)
+                    ClickUtils.getConfigService(container.getServletContext());
+
+                assertEquals(3, config.initStageTimes.size());
+                assertTrue(config.initStageTimes.containsKey("deploy resources"));
+                assertTrue(config.initStageTimes.containsKey("load pages"));
+                assertTrue(config.initStageTimes.containsKey("load services"));
+
+                assertSame(BinaryPage.class, config.getPageClass("/BinaryPage.htm"));
+                assertEquals("UTF-8", config.getCharset());
+                assertNotNull(config.getTemplateService());
+                assertTrue(new File(tmpdir, "click/control.css").exists());
+                assertTrue(new File(tmpdir, "click/table.css").exists());
+
+                container.stop();
+
+            } finally {
+                System.getProperties().remove(XmlConfigService.INIT_THREADS_PROPERTY);
+                deleteDir(tmpdir);
+            }
+        }
+    }
+
     public void testLocale() throws Exception {
         File tmpdir = makeTmpDir();
 
@@ -234,6 +282,49 @@ public class XmlConfigServiceTest extends TestCase {
         deleteDir(tmpdir);
     }
 
+    public void testLazyPageMapping() throws Exception {
+        File tmpdir = makeTmpDir();
+
+        PrintStream pstr = makeXmlStream(tmpdir, "WEB-INF/click.xml");
+        pstr.println("<click-app>");
+        pstr.println(" <pages package='org.apache.click.pages'/>");
+        pstr.println("</click-app>");
+        pstr.close();
+
+        MockContainer container = new MockContainer(tmpdir.getAbsolutePath());
+        container.start();
+        XmlConfigService config = (XmlConfigService)
+            ClickUtils.getConfigService(container.getServletContext());
+
+        // Unmapped paths are cached
+        assertNull(config.getPageClass("/BinaryPage.htm"));
+        assertTrue(config.unmappedPathMap.containsKey("/BinaryPage.htm"));
+        assertNull(config.getPageClass("/BinaryPage.htm"));
+
+        // Template added while the application is running
+        PrintStream f = new PrintStream(makeFile(tmpdir, "BinaryPage.htm"));
+        f.println("template");
+        f.close();
+
+        // Page is auto mapped once the cached entry has expired
+        config.unmappedPathMap.put("/BinaryPage.htm",
+            Long.valueOf(System.currentTimeMillis()
+                - XmlConfigService.UNMAPPED_PATH_CACHE_TIMEOUT));
+        assertSame(BinaryPage.class, config.getPageClass("/BinaryPage.htm"));
+        assertFalse(config.unmappedPathMap.containsKey("/BinaryPage.htm"));
+        assertEquals("/BinaryPage.htm", config.getPagePath(BinaryPage.class));
+
+        // Unmapped path cache is bounded
+        for (int i = 0; i <= XmlConfigService.UNMAPPED_PATH_CACHE_SIZE; i++) {
+            assertNull(config.getPageClass("/unknown-" + i + ".htm"));
+        }
+        assertTrue(config.unmappedPathMap.size() <= XmlConfigService.UNMAPPED_PATH_CACHE_SIZE);
+
+        container.stop();
+
+        deleteDir(tmpdir);
+    }
+
     public void testPageByClass() throws Exception {
         File tmpdir = makeTmpDir();
 
@@ -699,6 +790,124 @@ public class XmlConfigServiceTest extends TestCase {
         }
     }
 
+    /**
+     * Test the page index is generated from the web application, and is used
+     * instead of probing for page classes.
+     */
+    public void testPageIndex() throws Exception {
+        File tmpdir = makeTmpDir();
+
+        PrintStream pstr = makeXmlStream(tmpdir, "WEB-INF/click.xml");
+        pstr.println("<click-app>");
+        pstr.println(" <pages package='org.apache.click.pages'/>");
+        pstr.println("</click-app>");
+        pstr.close();
+
+        String[] templates = { "BinaryPage.htm", "listener.htm",
+            "other/unknown.htm", "WEB-INF/hidden.htm" };
+        for (String template : templates) {
+            PrintStream f = new PrintStream(makeFile(tmpdir, template));
+            f.println("template");
+            f.close();
+        }
+
+        PageIndex index = PageIndex.create(tmpdir, getClass().getClassLoader());
+        assertEquals(Arrays.asList("/BinaryPage.htm", "/listener.htm", "/other/unknown.htm"),
+            index.getTemplates());
+        assertTrue(index.containsPageClass("/BinaryPage.htm", BinaryPage.class.getName()));
+        assertTrue(index.containsPageClass("/listener.htm", ListenerPage.class.getName()));
+        assertTrue(index.containsTemplate("/other/unknown.htm"));
+        assertFalse(index.containsPageClass("/other/unknown.htm", "org.apache.click.pages.other.Unknown"));
+
+        // Write an index which does not list the BinaryPage class, to show
+        // the index is used instead of probing for page classes
+        index = new PageIndex();
+        index.addTemplate("/BinaryPage.htm");
+        index.addPageClass("/listener.htm", ListenerPage.class.getName());
+        OutputStream outputStream =
+            new FileOutputStream(makeFile(tmpdir, "WEB-INF/click-page-index.properties"));
+        index.store(outputStream);
+        outputStream.close();
+
+        // Template which is not in the index
+        PrintStream f = new PrintStream(makeFile(tmpdir, "binary.htm"));
+        f.println("template");
+        f.close();
+
+        MockContainer container = new MockContainer(tmpdir.getAbsolutePath());
+        container.start();
+        XmlConfigService config = (XmlConfigService)
+            ClickUtils.getConfigService(container.getServletContext());
+
+        assertNotNull(config.pageIndex);
+        assertSame(ListenerPage.class, config.getPageClass("/listener.htm"));
+        assertNull(config.getPageClass("/BinaryPage.htm"));
+
+        // Templates not in the index are still automapped
+        assertSame(BinaryPage.class, config.getPageClass("/binary.htm"));
+
+        container.stop();
+
+        deleteDir(tmpdir);
+    }
+
+    /**
+     * Test the page index is trusted in production mode, and a stale index
+     * fails the startup when the index is verified.
+     */
+    public void testPageIndexProductionMode() throws Exception {
+        File tmpdir = makeTmpDir();
+
+        PrintStream pstr = makeXmlStream(tmpdir, "WEB-INF/click.xml");
+        pstr.println("<click-app>");
+        pstr.println(" <pages package='org.apache.click.pages'/>");
+        pstr.println(" <mode value='production'/>");
+        pstr.println("</click-app>");
+        pstr.close();
+
+        String[] templates = { "listener.htm", "binary.htm" };
+        for (String template : templates) {
+            PrintStream f = new PrintStream(makeFile(tmpdir, template));
+            f.println("template");
+            f.close();
+        }
+
+        // Index built before binary.htm was added
+        PageIndex index = new PageIndex();
+        index.addPageClass("/listener.htm", ListenerPage.class.getName());
+        OutputStream outputStream =
+            new FileOutputStream(makeFile(tmpdir, "WEB-INF/click-page-index.properties"));
+        index.store(outputStream);
+        outputStream.close();
+
+        MockContainer container = new MockContainer(tmpdir.getAbsolutePath());
+        container.start();
+        XmlConfigService config = (XmlConfigService)
+            ClickUtils.getConfigService(container.getServletContext());
+
+        assertTrue(config.isProductionMode());
+        assertNotNull(config.pageIndex);
+        assertSame(ListenerPage.class, config.getPageClass("/listener.htm"));
+
+        // The web application is not scanned for templates
+        assertNull(config.getPageClass("/binary.htm"));
+
+        container.stop();
+
+        System.setProperty(XmlConfigService.PAGE_INDEX_VERIFY_PROPERTY, "true");
+        try {
+            container = new MockContainer(tmpdir.getAbsolutePath());
+            container.start();
+            fail("binary.htm is not in the page index. Container should fail to start up");
+
+        } catch (Exception expected) {
+        } finally {
+            System.getProperties().remove(XmlConfigService.PAGE_INDEX_VERIFY_PROPERTY);
+            container.stop();
+        }
+
+        deleteDir(tmpdir);
+    }
 
     private File makeTmpDir() throws IOException {
         File tmpdir = File.createTempFile("click", "");
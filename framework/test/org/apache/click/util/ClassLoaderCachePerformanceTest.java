@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.TestCase;
+
+/**
+ * Contention benchmark for ClassLoaderCache, printing the read throughput
+ * for an increasing number of threads.
+ */
+public class ClassLoaderCachePerformanceTest extends TestCase {
+
+    private static final int READS_PER_THREAD = 2000000;
+
+    public void testContention() throws Exception {
+        ClassLoaderCache<Object> cache = new ClassLoaderCache<Object>();
+        cache.put(new Object());
+
+        // Warm up
+        runReaders(cache, 2);
+
+        for (int threads = 1; threads <= 8; threads *= 2) {
+            long duration = runReaders(cache, threads);
+            long reads = (long) threads * READS_PER_THREAD;
+
+            System.err.printf("ClassLoaderCache %1d threads: %2d reads/ms \n",
+                threads, reads / Math.max(duration, 1));
+        }
+    }
+
+    private long runReaders(final ClassLoaderCache<Object> cache, int threads)
+        throws InterruptedException {
+
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch endLatch = new CountDownLatch(threads);
+        final AtomicLong misses = new AtomicLong();
+        final ClassLoader classLoader =
+            Thread.currentThread().getContextClassLoader();
+
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread() {
+                public void run() {
+                    try {
+                        startLatch.await();
+                        int count = 0;
+                        for (int j = 0; j < READS_PER_THREAD; j++) {
+                            if (cache.get() == null) {
+                                count++;
+                            }
+                        }
+                        misses.addAndGet(count);
+
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+
+                    } finally {
+                        endLatch.countDown();
+                    }
+                }
+            };
+            thread.setContextClassLoader(classLoader);
+            thread.start();
+        }
+
+        long start = System.currentTimeMillis();
+        startLatch.countDown();
+        endLatch.await();
+        long duration = System.currentTimeMillis() - start;
+
+        assertEquals(0, misses.get());
+        return duration;
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.util;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for ClassLoaderCache.
+ */
+public class ClassLoaderCacheTest extends TestCase {
+
+    private ClassLoader originalClassLoader;
+
+    @Override
+    protected void setUp() {
+        originalClassLoader = Thread.currentThread().getContextClassLoader();
+    }
+
+    @Override
+    protected void tearDown() {
+        Thread.currentThread().setContextClassLoader(originalClassLoader);
+    }
+
+    /**
+     * Check values are cached per context classloader, including the null
+     * classloader.
+     */
+    public void testGetPut() {
+        ClassLoaderCache<String> cache = new ClassLoaderCache<String>();
+        assertNull(cache.get());
+
+        cache.put("app");
+        assertEquals("app", cache.get());
+
+        ClassLoader otherClassLoader = new URLClassLoader(new URL[0]);
+        Thread.currentThread().setContextClassLoader(otherClassLoader);
+        assertNull(cache.get());
+        cache.put("other");
+        assertEquals("other", cache.get());
+
+        Thread.currentThread().setContextClassLoader(null);
+        assertNull(cache.get());
+        cache.put("null");
+        assertEquals("null", cache.get());
+
+        Thread.currentThread().setContextClassLoader(originalClassLoader);
+        assertEquals("app", cache.get());
+        cache.put("app2");
+        assertEquals("app2", cache.get());
+        assertEquals(3, cache.size());
+
+        Thread.currentThread().setContextClassLoader(otherClassLoader);
+        assertEquals("other", cache.get());
+
+        cache.clear();
+        assertNull(cache.get());
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Check the cache does not prevent a classloader from being garbage
+     * collected.
+     */
+    public void testWeakClassLoader() {
+        ClassLoaderCache<String> cache = new ClassLoaderCache<String>();
+
+        ClassLoader otherClassLoader = new URLClassLoader(new URL[0]);
+        Thread.currentThread().setContextClassLoader(otherClassLoader);
+        cache.put("other");
+        Thread.currentThread().setContextClassLoader(originalClassLoader);
+
+        WeakReference<ClassLoader> reference =
+            new WeakReference<ClassLoader>(otherClassLoader);
+        otherClassLoader = null;
+
+        for (int i = 0; i < 20 && reference.get() != null; i++) {
+            System.gc();
+        }
+        assertNull(reference.get());
+
+        // The collected classloader entry is removed on the next put
+        cache.put("app");
+        assertEquals(1, cache.size());
+        assertEquals("app", cache.get());
+    }
+
+    /**
+     * Check the entries of collected classloaders are removed when a value
+     * is not found.
+     */
+    public void testRemoveClearedOnGet() {
+        ClassLoaderCache<String> cache = new ClassLoaderCache<String>();
+        cache.put("app");
+
+        ClassLoader otherClassLoader = new URLClassLoader(new URL[0]);
+        Thread.currentThread().setContextClassLoader(otherClassLoader);
+        cache.put("other");
+        Thread.currentThread().setContextClassLoader(originalClassLoader);
+        assertEquals(2, cache.size());
+
+        WeakReference<ClassLoader> reference =
+            new WeakReference<ClassLoader>(otherClassLoader);
+        otherClassLoader = null;
+
+        for (int i = 0; i < 20 && reference.get() != null; i++) {
+            System.gc();
+        }
+        assertNull(reference.get());
+
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[0]));
+        assertNull(cache.get());
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Check a dropped application classloader is collected once its values
+     * are removed, although the cached values refer to its classes.
+     */
+    public void testRemoveAll() throws Exception {
+        URL classesUrl =
+            Bean.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader appClassLoader = new URLClassLoader(new URL[] { classesUrl }, null);
+
+        Class<?> beanClass = appClassLoader.loadClass(Bean.class.getName());
+        assertNotSame(Bean.class, beanClass);
+
+        Thread.currentThread().setContextClassLoader(appClassLoader);
+        assertEquals("bean", PropertyUtils.getValue(beanClass.newInstance(), "name"));
+
+        ClassLoaderCache.removeAll();
+        Thread.currentThread().setContextClassLoader(originalClassLoader);
+
+        WeakReference<ClassLoader> reference =
+            new WeakReference<ClassLoader>(appClassLoader);
+        appClassLoader = null;
+        beanClass = null;
+
+        for (int i = 0; i < 20 && reference.get() != null; i++) {
+            System.gc();
+        }
+        assertNull(reference.get());
+    }
+
+    /**
+     * Provides a bean loaded by a separate application classloader.
+     */
+    public static class Bean {
+
+        public String getName() {
+            return "bean";
+        }
+    }
+
+}
@@ -18,10 +18,13 @@
  */
 package org.apache.click.util;
 
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -31,11 +34,14 @@ import org.apache.click.Context;
 import org.apache.click.MockContext;
 import org.apache.click.Page;
 import org.apache.click.control.Checkbox;
+import org.apache.click.control.Column;
 import org.apache.click.control.Field;
 import org.apache.click.control.FieldSet;
 import org.apache.click.control.FileField;
 import org.apache.click.control.Form;
 import org.apache.click.control.HiddenField;
+import org.apache.click.control.Label;
+import org.apache.click.control.Table;
 import org.apache.click.control.TextField;
 import org.apache.click.fileupload.MockFileItem;
 import org.apache.click.servlet.MockRequest;
@@ -690,4 +696,47 @@ final String formError = "error";
         // pageMap is also cleared from the session
         assertNull(context.getSessionAttribute(pagePath));
     }
+
+    /**
+     * Check renderControl writes the same markup as the control's toString
+     * method.
+     */
+    public void testRenderControl() throws Exception {
+        MockContext.initContext();
+
+        Table table = new Table("table");
+        table.addColumn(new Column("name"));
+        table.addColumn(new Column("telephone"));
+        List<SampleObject> rows = new ArrayList<SampleObject>();
+        for (int i = 0; i < 500; i++) {
+            SampleObject row = new SampleObject();
+            row.setName(NAME + i);
+            row.setTelephone(TELEPHONE);
+            rows.add(row);
+        }
+        table.setRowList(rows);
+
+        assertTrue(ClickUtils.isStreamingRenderSupported(table));
+        StringWriter writer = new StringWriter();
+        ClickUtils.renderControl(table, writer);
+        assertEquals(table.toString(), writer.toString());
+
+        // Label toString returns the label
+        Label label = new Label("label", "<b>note</b>");
+        assertFalse(ClickUtils.isStreamingRenderSupported(label));
+        writer = new StringWriter();
+        ClickUtils.renderControl(label, writer);
+        assertEquals("<b>note</b>", writer.toString());
+
+        // Application toString override is used
+        TextField field = new TextField("field") {
+            public String toString() {
+                return "custom";
+            }
+        };
+        assertFalse(ClickUtils.isStreamingRenderSupported(field));
+        writer = new StringWriter();
+        ClickUtils.renderControl(field, writer);
+        assertEquals("custom", writer.toString());
+    }
 }
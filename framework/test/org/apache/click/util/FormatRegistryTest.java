@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.util;
+
+import java.text.DateFormat;
+import java.text.DecimalFormat;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+/**
+ * FormatRegistry test.
+ */
+public class FormatRegistryTest extends TestCase {
+
+    /**
+     * Clear the registry before each test.
+     */
+    @Override
+    protected void setUp() {
+        FormatRegistry.clear();
+    }
+
+    /**
+     * Check formats are cached per thread and key, and counted as hits and
+     * misses.
+     */
+    public void testThreadFormats() throws Exception {
+        DateFormat format = FormatRegistry.getDateFormat("dd MMM yyyy", Locale.ENGLISH);
+        assertEquals(0, FormatRegistry.getHitCount());
+        assertEquals(1, FormatRegistry.getMissCount());
+
+        assertSame(format, FormatRegistry.getDateFormat("dd MMM yyyy", Locale.ENGLISH));
+        assertEquals(1, FormatRegistry.getHitCount());
+
+        // Different pattern, locale and type are different keys
+        assertNotSame(format, FormatRegistry.getDateFormat("dd MM yyyy", Locale.ENGLISH));
+        assertNotSame(format, FormatRegistry.getDateFormat("dd MMM yyyy", Locale.FRENCH));
+        assertNotSame(FormatRegistry.getCurrencyInstance(Locale.ENGLISH),
+            FormatRegistry.getPercentInstance(Locale.ENGLISH));
+        assertEquals(1, FormatRegistry.getHitCount());
+        assertEquals(5, FormatRegistry.getMissCount());
+
+        // Another thread has its own format
+        final DateFormat[] otherFormat = new DateFormat[1];
+        Thread thread = new Thread() {
+            public void run() {
+                otherFormat[0] = FormatRegistry.getDateFormat("dd MMM yyyy", Locale.ENGLISH);
+            }
+        };
+        thread.start();
+        thread.join();
+        assertNotNull(otherFormat[0]);
+        assertNotSame(format, otherFormat[0]);
+        assertEquals(format, otherFormat[0]);
+    }
+
+    /**
+     * Check the least recently used format is evicted when the thread cache
+     * is full, instead of clearing the cache.
+     */
+    public void testLeastRecentlyUsedEviction() {
+        Locale locale = Locale.ENGLISH;
+
+        MessageFormat first = FormatRegistry.getMessageFormat("{0} 0", locale);
+        MessageFormat second = FormatRegistry.getMessageFormat("{0} 1", locale);
+        for (int i = 2; i < FormatRegistry.MAX_THREAD_FORMATS; i++) {
+            FormatRegistry.getMessageFormat("{0} " + i, locale);
+        }
+
+        // Use the first format, so the second is the least recently used
+        assertSame(first, FormatRegistry.getMessageFormat("{0} 0", locale));
+
+        FormatRegistry.getMessageFormat("{0} " + FormatRegistry.MAX_THREAD_FORMATS, locale);
+        long misses = FormatRegistry.getMissCount();
+
+        assertSame(first, FormatRegistry.getMessageFormat("{0} 0", locale));
+        assertEquals(misses, FormatRegistry.getMissCount());
+
+        assertNotSame(second, FormatRegistry.getMessageFormat("{0} 1", locale));
+        assertEquals(misses + 1, FormatRegistry.getMissCount());
+    }
+
+    /**
+     * Check the hit counts of concurrent threads are summed.
+     */
+    public void testConcurrentCounts() throws Exception {
+        final int count = 1000;
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < count; j++) {
+                        FormatRegistry.getDecimalFormat("#,##0.00");
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(threads.length, FormatRegistry.getMissCount());
+        assertEquals(threads.length * (count - 1), FormatRegistry.getHitCount());
+    }
+
+    /**
+     * Check the registry formats match the java.text formats.
+     */
+    public void testFormats() {
+        Date date = new Date(1262304000000L);
+        Locale locale = Locale.ENGLISH;
+
+        assertEquals(new SimpleDateFormat("dd MMM yyyy", locale).format(date),
+            FormatRegistry.getDateFormat("dd MMM yyyy", locale).format(date));
+        assertEquals(DateFormat.getDateInstance(DateFormat.LONG, locale).format(date),
+            FormatRegistry.getDateInstance(DateFormat.LONG, locale).format(date));
+        assertEquals(DateFormat.getTimeInstance(DateFormat.SHORT, locale).format(date),
+            FormatRegistry.getTimeInstance(DateFormat.SHORT, locale).format(date));
+        assertEquals(new DecimalFormat("#,##0.00").format(1234.5),
+            FormatRegistry.getDecimalFormat("#,##0.00").format(1234.5));
+        assertEquals(new DecimalFormat().format(1234.5),
+            FormatRegistry.getDecimalFormat(null).format(1234.5));
+        assertEquals(NumberFormat.getCurrencyInstance(locale).format(1234.5),
+            FormatRegistry.getCurrencyInstance(locale).format(1234.5));
+        assertEquals(NumberFormat.getPercentInstance(locale).format(0.5),
+            FormatRegistry.getPercentInstance(locale).format(0.5));
+        assertEquals("hello world",
+            FormatRegistry.getMessageFormat("hello {0}", locale).format(new Object[] {"world"}));
+
+        try {
+            FormatRegistry.getDateFormat(null, locale);
+            fail("Should throw exception");
+        } catch (IllegalArgumentException iae) {
+            // Expected
+        }
+    }
+
+    /**
+     * Check the new methods return formats owned by the caller.
+     */
+    public void testNewFormats() {
+        SimpleDateFormat format = FormatRegistry.newDateFormat("dd/MM/yyyy", Locale.ENGLISH);
+        assertNotSame(format, FormatRegistry.newDateFormat("dd/MM/yyyy", Locale.ENGLISH));
+        assertNotSame(format, FormatRegistry.getDateFormat("dd/MM/yyyy", Locale.ENGLISH));
+
+        // Modifying an owned format does not affect the registry formats
+        format.setLenient(false);
+        assertTrue(FormatRegistry.getDateFormat("dd/MM/yyyy", Locale.ENGLISH).isLenient());
+        assertTrue(FormatRegistry.newDateFormat("dd/MM/yyyy", Locale.ENGLISH).isLenient());
+
+        MessageFormat messageFormat = FormatRegistry.newMessageFormat("{0}", Locale.ENGLISH);
+        assertNotSame(messageFormat, FormatRegistry.newMessageFormat("{0}", Locale.ENGLISH));
+    }
+}
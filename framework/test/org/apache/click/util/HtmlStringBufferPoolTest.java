@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.util;
+
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+/**
+ * HtmlStringBufferPool test.
+ */
+public class HtmlStringBufferPoolTest extends TestCase {
+
+    /**
+     * Check released character arrays are reused and released buffers are
+     * detached from the pooled array.
+     */
+    public void testAcquireRelease() {
+        HtmlStringBuffer buffer = HtmlStringBufferPool.acquire(64);
+        buffer.append("<div>");
+        char[] characters = buffer.characters;
+        HtmlStringBufferPool.release(buffer);
+
+        // Released buffer no longer shares the pooled array
+        assertEquals(0, buffer.length());
+        buffer.append("stale");
+        assertNotSame(characters, buffer.characters);
+
+        HtmlStringBuffer reused = HtmlStringBufferPool.acquire(32);
+        assertSame(characters, reused.characters);
+        assertEquals(0, reused.length());
+
+        // Nested buffers do not share an array
+        HtmlStringBuffer nested = HtmlStringBufferPool.acquire(32);
+        assertNotSame(reused.characters, nested.characters);
+        HtmlStringBufferPool.release(nested);
+        HtmlStringBufferPool.release(reused);
+
+        // Larger request than the pooled arrays
+        HtmlStringBuffer large = HtmlStringBufferPool.acquire(1000);
+        assertTrue(large.characters.length >= 1000);
+        HtmlStringBufferPool.release(large);
+    }
+
+    /**
+     * Check buffers over the capacity limit and writer buffers are not pooled.
+     */
+    public void testNotPooled() {
+        HtmlStringBuffer buffer =
+            HtmlStringBufferPool.acquire(HtmlStringBufferPool.MAX_BUFFER_CAPACITY + 1);
+        char[] characters = buffer.characters;
+        HtmlStringBufferPool.release(buffer);
+
+        HtmlStringBuffer next =
+            HtmlStringBufferPool.acquire(HtmlStringBufferPool.MAX_BUFFER_CAPACITY + 1);
+        assertNotSame(characters, next.characters);
+
+        HtmlWriterBuffer writerBuffer = new HtmlWriterBuffer(new StringWriter());
+        writerBuffer.append("text");
+        HtmlStringBufferPool.release(writerBuffer);
+        assertEquals(4, writerBuffer.length());
+    }
+
+}
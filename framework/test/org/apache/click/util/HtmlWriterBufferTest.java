@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import junit.framework.TestCase;
+
+/**
+ * HtmlWriterBuffer test.
+ */
+public class HtmlWriterBufferTest extends TestCase {
+
+    /**
+     * Check content is written to the writer in chunks.
+     */
+    public void testChunkedWrite() throws IOException {
+        StringWriter writer = new StringWriter();
+        HtmlWriterBuffer buffer = new HtmlWriterBuffer(writer, 32);
+
+        buffer.elementStart("input");
+        buffer.appendAttribute("type", "text");
+        assertEquals("", writer.toString());
+
+        buffer.appendAttributeEscaped("value", "bl'ah\"s");
+        buffer.elementEnd();
+        assertTrue(writer.toString().length() > 0);
+
+        String expected = "<input type=\"text\" value=\"bl&#039;ah&quot;s\"/>";
+        assertEquals(expected.length(), buffer.length());
+
+        buffer.flush();
+        assertEquals(expected, writer.toString());
+        assertEquals("", buffer.toString());
+        assertEquals(32, buffer.characters.length);
+
+        // Append larger than the chunk size
+        String large = "0123456789012345678901234567890123456789";
+        buffer.append(large);
+        buffer.flush();
+        assertEquals(expected + large, writer.toString());
+    }
+
+    /**
+     * Check a write error is thrown on flush.
+     */
+    public void testWriteError() {
+        Writer writer = new Writer() {
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException("Connection reset");
+            }
+            public void flush() {
+            }
+            public void close() {
+            }
+        };
+
+        HtmlWriterBuffer buffer = new HtmlWriterBuffer(writer, 8);
+        buffer.append("0123456789");
+        buffer.append("0123456789");
+
+        try {
+            buffer.flush();
+            fail("Should throw IOException");
+        } catch (IOException ioe) {
+            assertEquals("Connection reset", ioe.getMessage());
+        }
+    }
+
+}
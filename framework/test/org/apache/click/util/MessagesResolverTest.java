@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.click.util;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.click.MockContext;
+import org.apache.click.control.Form;
+import org.apache.click.control.TextField;
+
+/**
+ * Tests for MessagesResolver.
+ */
+public class MessagesResolverTest extends TestCase {
+
+    /**
+     * Check the flattened messages resolve parent messages before the control
+     * messages, and top level parent messages before lower level parents.
+     */
+    public void testParentHierarchy() {
+        MockContext.initContext(Locale.ENGLISH);
+
+        ResolverForm form = new ResolverForm("form");
+        TextField field = new TextField("name");
+        form.add(field);
+
+        Map<String, String> messages = MessagesResolver.getMessages(field);
+        assertEquals("Form Name", messages.get("name.label"));
+        assertEquals("Form Title", messages.get("title"));
+        assertEquals("You must enter a value for {0}", messages.get("field-required-error"));
+        assertNull(messages.get("unknown"));
+        assertEquals("Form Name", field.getLabel());
+
+        TestPage page = new TestPage();
+        page.addControl(form);
+
+        messages = MessagesResolver.getMessages(field);
+        assertEquals("Title", messages.get("title"));
+        assertEquals("Form Name", messages.get("name.label"));
+
+        // The flattened messages resolve the same as the parent hierarchy
+        assertEquals(ClickUtils.getParentMessage(field, "title"), field.getMessage("title"));
+        assertEquals(ClickUtils.getParentMessage(field, "name.label"), field.getMessage("name.label"));
+    }
+
+    /**
+     * Check messages which are not provided by a MessagesMap are not
+     * flattened.
+     */
+    public void testCustomMessages() {
+        MockContext.initContext(Locale.ENGLISH);
+
+        TextField field = new TextField("name") {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public Map<String, String> getMessages() {
+                return Collections.singletonMap("name.label", "Custom");
+            }
+        };
+
+        assertNull(MessagesResolver.getMessages(field));
+        assertEquals("Custom", field.getMessage("name.label"));
+    }
+
+    /**
+     * Check the flattened messages are resolved once after the control is
+     * initialized, and again after its parent container is added to a new
+     * parent.
+     */
+    public void testResolvedOnce() {
+        MockContext.initContext(Locale.ENGLISH);
+
+        ResolverForm form = new ResolverForm("form");
+        CountingField field = new CountingField("name");
+        form.add(field);
+
+        // Messages are resolved for each lookup before the control is initialized
+        int count = field.count;
+        assertEquals("Form Title", field.getMessage("title"));
+        assertEquals("Form Title", field.getMessage("title"));
+        assertEquals(count + 2, field.count);
+
+        TestPage page = new TestPage();
+        page.addControl(form);
+        form.onInit();
+
+        count = field.count;
+        assertEquals("Title", field.getMessage("title"));
+        assertEquals("Form Name", field.getMessage("name.label"));
+        assertEquals("Form Name", field.getLabel());
+        assertEquals(count + 1, field.count);
+
+        // Adding the form to a new parent clears the resolved messages
+        form.setParent(null);
+        assertEquals("Form Title", field.getMessage("title"));
+        assertEquals("Form Title", field.getMessage("title"));
+        assertEquals(count + 2, field.count);
+    }
+
+    /**
+     * Field which counts the lookups of its messages.
+     */
+    public static class CountingField extends TextField {
+        private static final long serialVersionUID = 1L;
+
+        /** The number of lookups of the field messages. */
+        int count;
+
+        /**
+         * Create a field with the given name.
+         *
+         * @param name the field name
+         */
+        public CountingField(String name) {
+            super(name);
+        }
+
+        @Override
+        public Map<String, String> getMessages() {
+            count++;
+            return super.getMessages();
+        }
+    }
+
+    /**
+     * Form with a resource bundle.
+     */
+    public static class ResolverForm extends Form {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Create a form with the given name.
+         *
+         * @param name the form name
+         */
+        public ResolverForm(String name) {
+            super(name);
+        }
+    }
+}
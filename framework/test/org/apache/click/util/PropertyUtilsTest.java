@@ -93,5 +93,45 @@ public class PropertyUtilsTest extends TestCase {
 
         assertEquals("malcolm", PropertyUtils.getValue(map, "name"));
     }
-    
+
+    /**
+     * Test that a PropertyAccessor resolves nested paths, maps within the path
+     * and objects of different classes at the same path segment.
+     */
+    public void testPropertyAccessor() {
+        PropertyAccessor accessor = new PropertyAccessor("child.name");
+
+        ParentObject parentObject = new ParentObject("malcolm", null, new Date(),
+            Boolean.TRUE, new ChildObject("edgar", "medgar@avoka.com"));
+        assertEquals("edgar", accessor.getValue(parentObject));
+
+        // Null value in the path
+        assertNull(accessor.getValue(new ParentObject()));
+
+        // Map in the path uses the remaining path as the key
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("child.name", "bob");
+        assertEquals("bob", accessor.getValue(map));
+
+        // Different class at the same segment
+        ParentObject otherParent = new ParentObject("john", null, null, null,
+            new ChildObject("fred", null) {
+                public String getName() {
+                    return "sub-" + super.getName();
+                }
+            });
+        assertEquals("sub-fred", accessor.getValue(otherParent));
+        assertEquals("edgar", accessor.getValue(parentObject));
+
+        // Is getter
+        assertEquals(Boolean.TRUE, new PropertyAccessor("valid").getValue(parentObject));
+
+        try {
+            new PropertyAccessor("child.unknown").getValue(parentObject);
+            fail("Should throw exception");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().indexOf("'unknown'") != -1);
+        }
+    }
+
 }